@@ -0,0 +1,81 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.bench;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Module;
+import com.google.inject.util.Modules;
+import org.chaston.oakfunds.jdbc.LocalDataSourceModule;
+
+/**
+ * A single operation to be timed by the {@link BenchmarkRunner}. Each benchmark is given a fresh
+ * {@link BenchmarkEnvironment} to set up its data in before the timed runs start.
+ */
+public abstract class Benchmark {
+  private final String name;
+  private final ImmutableMap<String, Object> parameters;
+
+  // Written to by consume() so that the JIT cannot discard the results of the operation.
+  private volatile int sink;
+
+  protected Benchmark(String name) {
+    this(name, ImmutableMap.<String, Object>of());
+  }
+
+  protected Benchmark(String name, ImmutableMap<String, Object> parameters) {
+    this.name = name;
+    this.parameters = parameters;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public ImmutableMap<String, Object> getParameters() {
+    return parameters;
+  }
+
+  /**
+   * Returns the module that provides the database connections of the benchmark's environment.
+   */
+  public Module createDataSourceModule() {
+    return new LocalDataSourceModule();
+  }
+
+  /**
+   * Returns a module with any bindings (such as extra record types) that the benchmark needs.
+   */
+  public Module createBenchmarkModule() {
+    return Modules.EMPTY_MODULE;
+  }
+
+  public void setUp(BenchmarkEnvironment environment) throws Exception {
+    // Do nothing by default.
+  }
+
+  /**
+   * Runs the operation being measured once.
+   */
+  public abstract void run() throws Exception;
+
+  public void tearDown() throws Exception {
+    // Do nothing by default.
+  }
+
+  protected void consume(Object value) {
+    sink += System.identityHashCode(value);
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.bench;
+
+import com.google.common.collect.ImmutableList;
+import org.chaston.oakfunds.model.SetMonthlyRecurringEventBenchmark;
+import org.chaston.oakfunds.security.ActionType;
+import org.chaston.oakfunds.security.AssertAccessBenchmark;
+import org.chaston.oakfunds.storage.FindInstantRecordsBenchmark;
+import org.chaston.oakfunds.storage.FindWideRecordsBenchmark;
+import org.chaston.oakfunds.storage.PooledReadBenchmark;
+import org.chaston.oakfunds.storage.RecordProxyBenchmark;
+import org.chaston.oakfunds.storage.ReportBuilderBenchmark;
+import org.chaston.oakfunds.storage.ReportDateGranularity;
+import org.chaston.oakfunds.storage.StoreCrudBenchmark;
+import org.chaston.oakfunds.util.Flag;
+import org.chaston.oakfunds.util.Flags;
+import org.joda.time.Instant;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the benchmarks against an in-memory database and writes the results as JSON, so that
+ * they can be compared between releases.
+ */
+public class BenchmarkCmd {
+
+  private static final Flag<String> BENCHMARK_FILTER =
+      Flag.builder("benchmark_filter", ".*").build();
+  private static final Flag<Integer> WARMUP_ITERATIONS =
+      Flag.builder("warmup_iterations", 5).build();
+  private static final Flag<Integer> MEASUREMENT_ITERATIONS =
+      Flag.builder("measurement_iterations", 10).build();
+  private static final Flag<Integer> ITERATION_MILLIS =
+      Flag.builder("iteration_millis", 1000).build();
+  private static final Flag<String> OUTPUT_FILE =
+      Flag.builder("output_file", "").build();
+
+  private static ImmutableList<Benchmark> createBenchmarks() {
+    return ImmutableList.of(
+        new StoreCrudBenchmark(),
+        new FindInstantRecordsBenchmark(100),
+        new FindInstantRecordsBenchmark(1000),
+        new FindInstantRecordsBenchmark(10000),
+        new FindWideRecordsBenchmark(1000),
+        new PooledReadBenchmark(false),
+        new PooledReadBenchmark(true),
+        new RecordProxyBenchmark(),
+        new ReportBuilderBenchmark(ReportDateGranularity.YEAR, 1000),
+        new ReportBuilderBenchmark(ReportDateGranularity.MONTH, 1000),
+        new ReportBuilderBenchmark(ReportDateGranularity.YEAR, 1000000),
+        new ReportBuilderBenchmark(ReportDateGranularity.MONTH, 1000000),
+        new SetMonthlyRecurringEventBenchmark(),
+        new AssertAccessBenchmark(ActionType.READ),
+        new AssertAccessBenchmark(ActionType.CREATE));
+  }
+
+  @SuppressWarnings("unchecked")
+  public static void main(String[] args) throws Exception {
+    Flags.parse(args);
+    Pattern filter = Pattern.compile(BENCHMARK_FILTER.get());
+    BenchmarkRunner runner = new BenchmarkRunner(WARMUP_ITERATIONS.get(),
+        MEASUREMENT_ITERATIONS.get(), ITERATION_MILLIS.get());
+
+    JSONArray results = new JSONArray();
+    for (Benchmark benchmark : createBenchmarks()) {
+      if (filter.matcher(benchmark.getName()).matches()) {
+        results.add(runner.run(benchmark).toJSONObject());
+      }
+    }
+
+    JSONObject report = new JSONObject();
+    report.put("timestamp", Instant.now().toString());
+    report.put("java_version", System.getProperty("java.version"));
+    report.put("benchmarks", results);
+
+    if (OUTPUT_FILE.get().isEmpty()) {
+      PrintWriter writer = new PrintWriter(System.out);
+      report.writeJSONString(writer);
+      writer.println();
+      writer.flush();
+    } else {
+      try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+          new FileOutputStream(OUTPUT_FILE.get()), StandardCharsets.UTF_8))) {
+        report.writeJSONString(writer);
+      }
+      System.out.println("Wrote benchmark results to " + OUTPUT_FILE.get() + ".");
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.bench;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Stage;
+import com.google.inject.multibindings.Multibinder;
+import org.chaston.oakfunds.account.AccountCode;
+import org.chaston.oakfunds.account.AccountCodeModule;
+import org.chaston.oakfunds.bootstrap.BootstrapModule;
+import org.chaston.oakfunds.bootstrap.BootstrappingDependency;
+import org.chaston.oakfunds.jdbc.DatabaseTearDown;
+import org.chaston.oakfunds.ledger.AccountTransaction;
+import org.chaston.oakfunds.ledger.LedgerModule;
+import org.chaston.oakfunds.model.ModelModule;
+import org.chaston.oakfunds.security.ActionType;
+import org.chaston.oakfunds.security.AuthenticationScope;
+import org.chaston.oakfunds.security.AuthorizationContext;
+import org.chaston.oakfunds.security.LocalUserAuthenticatorModule;
+import org.chaston.oakfunds.security.Permission;
+import org.chaston.oakfunds.security.SinglePermissionAssertion;
+import org.chaston.oakfunds.security.SystemAuthenticationManager;
+import org.chaston.oakfunds.security.UserSecurityModule;
+import org.chaston.oakfunds.storage.RecordTypeRegistryModule;
+import org.chaston.oakfunds.storage.StorageModule;
+import org.chaston.oakfunds.storage.mgmt.StorageManagementModule;
+import org.chaston.oakfunds.system.SystemModule;
+import org.chaston.oakfunds.system.TestSystemBootstrapModuleBuilder;
+
+import java.sql.SQLException;
+
+/**
+ * A bootstrapped in-memory HSQLDB database, in the same configuration that the tests use. The
+ * benchmarks run as the system, in the same way as the command line tools.
+ */
+public class BenchmarkEnvironment implements AutoCloseable {
+  public static final int CURRENT_YEAR = 2014;
+  public static final int TIME_HORIZON = 10;
+
+  /**
+   * Allows the benchmarks to use the store directly for the record types that they work with.
+   */
+  static final Permission PERMISSION_BENCHMARK_STORE_ACCESS =
+      Permission.builder("benchmark.store_access")
+          .addRelatedAction(AccountCode.TYPE, ActionType.CREATE)
+          .addRelatedAction(AccountCode.TYPE, ActionType.DELETE)
+          .addRelatedAction(AccountTransaction.TYPE, ActionType.CREATE)
+          .addRelatedAction(AccountTransaction.TYPE, ActionType.REPORT)
+          .build();
+
+  private final Injector injector;
+  private final AuthenticationScope authenticationScope;
+  private SinglePermissionAssertion storeAccessAssertion;
+
+  BenchmarkEnvironment(Module dataSourceModule, Module benchmarkModule) throws Exception {
+    // The singletons are created eagerly, as some of them authenticate themselves while being
+    // constructed, which would fail inside the benchmark's authentication scope.
+    injector = Guice.createInjector(Stage.PRODUCTION,
+        new AccountCodeModule(),
+        new LedgerModule(),
+        new BootstrapModule(),
+        new ModelModule(),
+        new UserSecurityModule(),
+        new SystemModule(),
+        new TestSystemBootstrapModuleBuilder()
+            .setCurrentYear(CURRENT_YEAR)
+            .setTimeHorizon(TIME_HORIZON)
+            .build(),
+        new RecordTypeRegistryModule(),
+        dataSourceModule,
+        new StorageModule(),
+        new StorageManagementModule(),
+        new LocalUserAuthenticatorModule(),
+        benchmarkModule,
+        new AbstractModule() {
+          @Override
+          protected void configure() {
+            Multibinder.newSetBinder(binder(), Permission.class).addBinding()
+                .toInstance(PERMISSION_BENCHMARK_STORE_ACCESS);
+          }
+        });
+    // Creates the schema in the new database and bootstraps it.
+    injector.getInstance(BootstrappingDependency.class);
+    authenticationScope =
+        injector.getInstance(SystemAuthenticationManager.class).authenticateSystem();
+  }
+
+  public <T> T getInstance(Class<T> type) {
+    return injector.getInstance(type);
+  }
+
+  /**
+   * Grants access to the store for the rest of the benchmark, for benchmarks that bypass the
+   * managers (which would otherwise assert the permissions).
+   */
+  public void grantStoreAccess() {
+    if (storeAccessAssertion == null) {
+      storeAccessAssertion = getInstance(AuthorizationContext.class)
+          .assertPermission(PERMISSION_BENCHMARK_STORE_ACCESS.getName());
+    }
+  }
+
+  @Override
+  public void close() throws SQLException {
+    if (storeAccessAssertion != null) {
+      storeAccessAssertion.close();
+    }
+    authenticationScope.close();
+    injector.getInstance(DatabaseTearDown.class).teardown();
+  }
+}
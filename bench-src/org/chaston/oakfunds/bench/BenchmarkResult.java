@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.bench;
+
+import org.chaston.oakfunds.util.JSONRepresentable;
+import org.json.simple.JSONObject;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The timings of each measurement iteration of a single benchmark.
+ */
+public class BenchmarkResult implements JSONRepresentable {
+  private final Benchmark benchmark;
+  private final int warmupIterations;
+  private final List<Double> nanosPerOperation;
+  private final long operations;
+
+  BenchmarkResult(Benchmark benchmark, int warmupIterations, List<Double> nanosPerOperation,
+      long operations) {
+    this.benchmark = benchmark;
+    this.warmupIterations = warmupIterations;
+    this.nanosPerOperation = nanosPerOperation;
+    this.operations = operations;
+  }
+
+  public double getMean() {
+    double total = 0;
+    for (double value : nanosPerOperation) {
+      total += value;
+    }
+    return total / nanosPerOperation.size();
+  }
+
+  public double getStandardDeviation() {
+    if (nanosPerOperation.size() < 2) {
+      return 0;
+    }
+    double mean = getMean();
+    double sumOfSquares = 0;
+    for (double value : nanosPerOperation) {
+      sumOfSquares += (value - mean) * (value - mean);
+    }
+    return Math.sqrt(sumOfSquares / (nanosPerOperation.size() - 1));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public JSONObject toJSONObject() {
+    JSONObject jsonObject = new JSONObject();
+    jsonObject.put("name", benchmark.getName());
+    JSONObject parameters = new JSONObject();
+    for (Map.Entry<String, Object> entry : benchmark.getParameters().entrySet()) {
+      parameters.put(entry.getKey(), entry.getValue());
+    }
+    jsonObject.put("parameters", parameters);
+    jsonObject.put("warmup_iterations", warmupIterations);
+    jsonObject.put("iterations", nanosPerOperation.size());
+    jsonObject.put("operations", operations);
+    jsonObject.put("unit", "ns/op");
+    jsonObject.put("mean", getMean());
+    jsonObject.put("min", getMin());
+    jsonObject.put("max", getMax());
+    jsonObject.put("stddev", getStandardDeviation());
+    jsonObject.put("ops_per_second", 1e9 / getMean());
+    return jsonObject;
+  }
+
+  private double getMin() {
+    double min = Double.MAX_VALUE;
+    for (double value : nanosPerOperation) {
+      min = Math.min(min, value);
+    }
+    return min;
+  }
+
+  private double getMax() {
+    double max = 0;
+    for (double value : nanosPerOperation) {
+      max = Math.max(max, value);
+    }
+    return max;
+  }
+}
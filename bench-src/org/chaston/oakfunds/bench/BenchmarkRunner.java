@@ -0,0 +1,75 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Runs a benchmark for a number of warmup iterations followed by a number of measured
+ * iterations. Each iteration repeats the operation until the iteration time has passed and
+ * records the average time per operation.
+ */
+public class BenchmarkRunner {
+  private static final Logger logger = Logger.getLogger(BenchmarkRunner.class.getName());
+
+  private final int warmupIterations;
+  private final int measurementIterations;
+  private final long iterationNanos;
+
+  public BenchmarkRunner(int warmupIterations, int measurementIterations, long iterationMillis) {
+    this.warmupIterations = warmupIterations;
+    this.measurementIterations = measurementIterations;
+    this.iterationNanos = TimeUnit.MILLISECONDS.toNanos(iterationMillis);
+  }
+
+  public BenchmarkResult run(Benchmark benchmark) throws Exception {
+    logger.info("Running " + benchmark.getName() + " " + benchmark.getParameters() + "...");
+    try (BenchmarkEnvironment environment = new BenchmarkEnvironment(
+        benchmark.createDataSourceModule(), benchmark.createBenchmarkModule())) {
+      benchmark.setUp(environment);
+      try {
+        for (int i = 0; i < warmupIterations; i++) {
+          runIteration(benchmark);
+        }
+        List<Double> nanosPerOperation = new ArrayList<>();
+        long totalOperations = 0;
+        for (int i = 0; i < measurementIterations; i++) {
+          long start = System.nanoTime();
+          long operations = runIteration(benchmark);
+          nanosPerOperation.add((double) (System.nanoTime() - start) / operations);
+          totalOperations += operations;
+        }
+        return new BenchmarkResult(benchmark, warmupIterations, nanosPerOperation,
+            totalOperations);
+      } finally {
+        benchmark.tearDown();
+      }
+    }
+  }
+
+  private long runIteration(Benchmark benchmark) throws Exception {
+    long end = System.nanoTime() + iterationNanos;
+    long operations = 0;
+    do {
+      benchmark.run();
+      operations++;
+    } while (System.nanoTime() < end);
+    return operations;
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.model;
+
+import org.chaston.oakfunds.account.AccountCode;
+import org.chaston.oakfunds.account.AccountCodeManager;
+import org.chaston.oakfunds.bench.Benchmark;
+import org.chaston.oakfunds.bench.BenchmarkEnvironment;
+import org.chaston.oakfunds.ledger.ExpenseAccount;
+import org.chaston.oakfunds.ledger.LedgerManager;
+import org.chaston.oakfunds.storage.StorageException;
+import org.chaston.oakfunds.storage.Store;
+import org.chaston.oakfunds.storage.Transaction;
+import org.chaston.oakfunds.util.BigDecimalUtil;
+import org.joda.time.Instant;
+
+import java.math.BigDecimal;
+
+/**
+ * Changes the amount of a monthly recurring event that spans the whole time horizon, which
+ * rewrites all of its model transactions.
+ */
+public class SetMonthlyRecurringEventBenchmark extends Benchmark {
+  private static final BigDecimal[] AMOUNTS =
+      { BigDecimalUtil.valueOf(1000), BigDecimalUtil.valueOf(1200) };
+
+  private Store store;
+  private ModelManager modelManager;
+  private Model model;
+  private ExpenseAccount account;
+  private Instant start;
+  private Instant end;
+  private int runs;
+
+  public SetMonthlyRecurringEventBenchmark() {
+    super("set_monthly_recurring_event_details");
+  }
+
+  @Override
+  public void setUp(BenchmarkEnvironment environment) throws StorageException {
+    store = environment.getInstance(Store.class);
+    modelManager = environment.getInstance(ModelManager.class);
+    start = Instant.parse(BenchmarkEnvironment.CURRENT_YEAR + "-01-01");
+    end = Instant.parse(
+        (BenchmarkEnvironment.CURRENT_YEAR + BenchmarkEnvironment.TIME_HORIZON) + "-01-01");
+
+    Transaction transaction = store.startTransaction();
+    boolean success = false;
+    try {
+      AccountCode accountCode = environment.getInstance(AccountCodeManager.class)
+          .createAccountCode(7000, "Utilities");
+      account = environment.getInstance(LedgerManager.class)
+          .createExpenseAccount(accountCode, "Electricity", null);
+      model = modelManager.getBaseModel();
+      success = true;
+    } finally {
+      if (success) {
+        transaction.commit();
+      } else {
+        transaction.rollback();
+      }
+    }
+  }
+
+  @Override
+  public void run() throws StorageException {
+    Transaction transaction = store.startTransaction();
+    boolean success = false;
+    try {
+      consume(modelManager.setMonthlyRecurringEventDetails(model, account, start, end,
+          AMOUNTS[runs++ % AMOUNTS.length]));
+      success = true;
+    } finally {
+      if (success) {
+        transaction.commit();
+      } else {
+        transaction.rollback();
+      }
+    }
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.security;
+
+import com.google.common.collect.ImmutableMap;
+import org.chaston.oakfunds.bench.Benchmark;
+import org.chaston.oakfunds.bench.BenchmarkEnvironment;
+import org.chaston.oakfunds.ledger.AccountTransaction;
+
+/**
+ * Checks the access of the authenticated user to a record type, as every store operation does.
+ */
+public class AssertAccessBenchmark extends Benchmark {
+  private final ActionType actionType;
+  private AuthorizationContext authorizationContext;
+  private SinglePermissionAssertion permissionAssertion;
+
+  public AssertAccessBenchmark(ActionType actionType) {
+    super("assert_access", ImmutableMap.<String, Object>of("action_type", actionType.name()));
+    this.actionType = actionType;
+  }
+
+  @Override
+  public void setUp(BenchmarkEnvironment environment) {
+    authorizationContext = environment.getInstance(AuthorizationContext.class);
+    // READ is implied by CREATE, so the two action types cover both paths through the check.
+    permissionAssertion = authorizationContext.assertPermission("account_transaction.create");
+  }
+
+  @Override
+  public void run() {
+    authorizationContext.assertAccess(AccountTransaction.TYPE, actionType);
+  }
+
+  @Override
+  public void tearDown() {
+    permissionAssertion.close();
+  }
+}
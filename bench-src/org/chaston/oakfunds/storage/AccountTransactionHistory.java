@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage;
+
+import com.google.common.collect.ImmutableMap;
+import org.chaston.oakfunds.account.AccountCode;
+import org.chaston.oakfunds.account.AccountCodeManager;
+import org.chaston.oakfunds.bench.BenchmarkEnvironment;
+import org.chaston.oakfunds.ledger.AccountTransaction;
+import org.chaston.oakfunds.ledger.ExpenseAccount;
+import org.chaston.oakfunds.ledger.LedgerManager;
+import org.chaston.oakfunds.util.BigDecimalUtil;
+import org.chaston.oakfunds.util.Pair;
+import org.joda.time.Instant;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates an account with a history of transactions spread evenly over a number of years.
+ */
+class AccountTransactionHistory {
+  static final int YEARS = 5;
+
+  private static final int BATCH_SIZE = 500;
+
+  static ExpenseAccount create(BenchmarkEnvironment environment, int transactionCount)
+      throws StorageException {
+    environment.grantStoreAccess();
+    Store store = environment.getInstance(Store.class);
+    AccountCodeManager accountCodeManager = environment.getInstance(AccountCodeManager.class);
+    LedgerManager ledgerManager = environment.getInstance(LedgerManager.class);
+
+    Transaction transaction = store.startTransaction();
+    boolean success = false;
+    try {
+      AccountCode accountCode = accountCodeManager.createAccountCode(7000, "Maintenance");
+      ExpenseAccount account =
+          ledgerManager.createExpenseAccount(accountCode, "House Painting", null);
+
+      long startMillis = Instant.parse(BenchmarkEnvironment.CURRENT_YEAR + "-01-01").getMillis();
+      long endMillis =
+          Instant.parse((BenchmarkEnvironment.CURRENT_YEAR + YEARS) + "-01-01").getMillis();
+      long step = (endMillis - startMillis) / transactionCount;
+      List<Pair<Instant, Map<String, Object>>> records = new ArrayList<>();
+      for (int i = 0; i < transactionCount; i++) {
+        Map<String, Object> attributes = ImmutableMap.<String, Object>of(
+            AccountTransaction.ATTRIBUTE_AMOUNT, BigDecimalUtil.valueOf(i % 100 + 0.5));
+        records.add(Pair.of(new Instant(startMillis + i * step), attributes));
+        if (records.size() == BATCH_SIZE) {
+          store.insertInstantRecords(account, AccountTransaction.TYPE, records);
+          records.clear();
+        }
+      }
+      if (!records.isEmpty()) {
+        store.insertInstantRecords(account, AccountTransaction.TYPE, records);
+      }
+      success = true;
+      return account;
+    } finally {
+      if (success) {
+        transaction.commit();
+      } else {
+        transaction.rollback();
+      }
+    }
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.chaston.oakfunds.bench.Benchmark;
+import org.chaston.oakfunds.bench.BenchmarkEnvironment;
+import org.chaston.oakfunds.ledger.AccountTransaction;
+import org.chaston.oakfunds.ledger.ExpenseAccount;
+import org.chaston.oakfunds.util.DateUtil;
+
+/**
+ * Reads the whole transaction history of an account.
+ */
+public class FindInstantRecordsBenchmark extends Benchmark {
+  private final int historySize;
+  private Store store;
+  private ExpenseAccount account;
+
+  public FindInstantRecordsBenchmark(int historySize) {
+    super("find_instant_records", ImmutableMap.<String, Object>of("history_size", historySize));
+    this.historySize = historySize;
+  }
+
+  @Override
+  public void setUp(BenchmarkEnvironment environment) throws StorageException {
+    store = environment.getInstance(Store.class);
+    account = AccountTransactionHistory.create(environment, historySize);
+  }
+
+  @Override
+  public void run() throws StorageException {
+    for (AccountTransaction accountTransaction : store.findInstantRecords(account,
+        AccountTransaction.TYPE, DateUtil.BEGINNING_OF_TIME, DateUtil.END_OF_TIME,
+        ImmutableList.<SearchTerm>of())) {
+      consume(accountTransaction.getAmount());
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.AbstractModule;
+import com.google.inject.Module;
+import com.google.inject.multibindings.Multibinder;
+import org.chaston.oakfunds.account.AccountCode;
+import org.chaston.oakfunds.account.AccountCodeManager;
+import org.chaston.oakfunds.bench.Benchmark;
+import org.chaston.oakfunds.bench.BenchmarkEnvironment;
+import org.chaston.oakfunds.ledger.ExpenseAccount;
+import org.chaston.oakfunds.ledger.LedgerManager;
+import org.chaston.oakfunds.security.ActionType;
+import org.chaston.oakfunds.security.AuthorizationContext;
+import org.chaston.oakfunds.security.Permission;
+import org.chaston.oakfunds.security.SinglePermissionAssertion;
+import org.chaston.oakfunds.util.BigDecimalUtil;
+import org.chaston.oakfunds.util.DateUtil;
+import org.chaston.oakfunds.util.Pair;
+import org.joda.time.Instant;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads all of the records of a type with many attributes, which is dominated by the cost of
+ * reading the columns of each row.
+ */
+public class FindWideRecordsBenchmark extends Benchmark {
+  private static final Permission PERMISSION_WIDE_RECORD_ACCESS =
+      Permission.builder("benchmark.wide_record_access")
+          .addRelatedAction(WideRecord.TYPE, ActionType.CREATE)
+          .build();
+
+  private final int recordCount;
+  private Store store;
+  private SinglePermissionAssertion permissionAssertion;
+  private ExpenseAccount account;
+
+  public FindWideRecordsBenchmark(int recordCount) {
+    super("find_wide_records", ImmutableMap.<String, Object>of("record_count", recordCount));
+    this.recordCount = recordCount;
+  }
+
+  @Override
+  public Module createBenchmarkModule() {
+    return new AbstractModule() {
+      @Override
+      protected void configure() {
+        Multibinder.newSetBinder(binder(), RecordType.class).addBinding()
+            .toInstance(WideRecord.TYPE);
+        Multibinder.newSetBinder(binder(), Permission.class).addBinding()
+            .toInstance(PERMISSION_WIDE_RECORD_ACCESS);
+      }
+    };
+  }
+
+  @Override
+  public void setUp(BenchmarkEnvironment environment) throws StorageException {
+    store = environment.getInstance(Store.class);
+    permissionAssertion = environment.getInstance(AuthorizationContext.class)
+        .assertPermission(PERMISSION_WIDE_RECORD_ACCESS.getName());
+    AccountCodeManager accountCodeManager = environment.getInstance(AccountCodeManager.class);
+    LedgerManager ledgerManager = environment.getInstance(LedgerManager.class);
+
+    Transaction transaction = store.startTransaction();
+    boolean success = false;
+    try {
+      AccountCode accountCode = accountCodeManager.createAccountCode(7000, "Maintenance");
+      account = ledgerManager.createExpenseAccount(accountCode, "House Painting", null);
+
+      long startMillis = Instant.parse(BenchmarkEnvironment.CURRENT_YEAR + "-01-01").getMillis();
+      List<Pair<Instant, Map<String, Object>>> records = new ArrayList<>();
+      for (int i = 0; i < recordCount; i++) {
+        ImmutableMap.Builder<String, Object> attributes = ImmutableMap.builder();
+        for (int j = 0; j < 5; j++) {
+          attributes.put("string_" + j, "value " + i + "." + j);
+          attributes.put("int_" + j, i + j);
+          attributes.put("decimal_" + j, BigDecimalUtil.valueOf(i % 100 + j + 0.5));
+        }
+        for (int j = 0; j < 3; j++) {
+          attributes.put("date_" + j, new Instant(startMillis + j));
+        }
+        for (int j = 0; j < 2; j++) {
+          attributes.put("boolean_" + j, (i + j) % 2 == 0);
+        }
+        records.add(Pair.<Instant, Map<String, Object>>of(
+            new Instant(startMillis + i * 1000L), attributes.build()));
+      }
+      store.insertInstantRecords(account, WideRecord.TYPE, records);
+      success = true;
+    } finally {
+      if (success) {
+        transaction.commit();
+      } else {
+        transaction.rollback();
+      }
+    }
+  }
+
+  @Override
+  public void run() throws StorageException {
+    for (WideRecord wideRecord : store.findInstantRecords(account, WideRecord.TYPE,
+        DateUtil.BEGINNING_OF_TIME, DateUtil.END_OF_TIME, ImmutableList.<SearchTerm>of())) {
+      consume(wideRecord.getString4());
+    }
+  }
+
+  @Override
+  public void tearDown() {
+    permissionAssertion.close();
+  }
+}
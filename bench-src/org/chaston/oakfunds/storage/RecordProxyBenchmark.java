@@ -0,0 +1,56 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage;
+
+import com.google.common.collect.ImmutableMap;
+import org.chaston.oakfunds.bench.Benchmark;
+import org.chaston.oakfunds.bench.BenchmarkEnvironment;
+import org.chaston.oakfunds.ledger.AccountTransaction;
+import org.chaston.oakfunds.ledger.ExpenseAccount;
+import org.chaston.oakfunds.util.BigDecimalUtil;
+import org.joda.time.Instant;
+
+/**
+ * Calls each of the getters of a proxied record, which is what every consumer of a record that
+ * was read from the store pays for.
+ */
+public class RecordProxyBenchmark extends Benchmark {
+  private AccountTransaction accountTransaction;
+
+  public RecordProxyBenchmark() {
+    super("record_proxy_getters");
+  }
+
+  @Override
+  public void setUp(BenchmarkEnvironment environment) throws StorageException {
+    ExpenseAccount account = AccountTransactionHistory.create(environment, 1);
+    accountTransaction = RecordProxy.proxyInstantRecord(AccountTransaction.TYPE, account, 1,
+        Instant.parse("2014-04-25"),
+        ImmutableMap.<String, Object>of(
+            AccountTransaction.ATTRIBUTE_AMOUNT, BigDecimalUtil.valueOf(12.34567),
+            AccountTransaction.ATTRIBUTE_COMMENT, "a comment"));
+  }
+
+  @Override
+  public void run() {
+    consume(accountTransaction.getRecordType());
+    consume(accountTransaction.getId());
+    consume(accountTransaction.getAccountId());
+    consume(accountTransaction.getInstant());
+    consume(accountTransaction.getAmount());
+    consume(accountTransaction.getComment());
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage;
+
+import com.google.common.collect.ImmutableMap;
+import org.chaston.oakfunds.account.AccountCode;
+import org.chaston.oakfunds.bench.Benchmark;
+import org.chaston.oakfunds.bench.BenchmarkEnvironment;
+
+/**
+ * Creates, reads, updates and deletes a record in a single transaction.
+ */
+public class StoreCrudBenchmark extends Benchmark {
+  private Store store;
+  private int nextId = 1;
+
+  public StoreCrudBenchmark() {
+    super("store_crud");
+  }
+
+  @Override
+  public void setUp(BenchmarkEnvironment environment) {
+    environment.grantStoreAccess();
+    store = environment.getInstance(Store.class);
+  }
+
+  @Override
+  public void run() throws StorageException {
+    Transaction transaction = store.startTransaction();
+    boolean success = false;
+    try {
+      AccountCode accountCode = store.createRecord(AccountCode.TYPE, nextId++,
+          ImmutableMap.<String, Object>of(AccountCode.ATTRIBUTE_TITLE, "Created"));
+      accountCode = store.getRecord(AccountCode.TYPE, accountCode.getId());
+      accountCode = store.updateRecord(accountCode,
+          ImmutableMap.<String, Object>of(AccountCode.ATTRIBUTE_TITLE, "Updated"));
+      store.deleteRecord(accountCode);
+      success = true;
+    } finally {
+      if (success) {
+        transaction.commit();
+      } else {
+        transaction.rollback();
+      }
+    }
+  }
+}
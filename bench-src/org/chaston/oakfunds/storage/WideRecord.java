@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage;
+
+import org.chaston.oakfunds.ledger.Account;
+import org.joda.time.Instant;
+
+import java.math.BigDecimal;
+
+/**
+ * A record type with many attributes, for measuring how the cost of reading records grows with
+ * the number of columns.
+ */
+public interface WideRecord extends InstantRecord<WideRecord> {
+
+  public static final RecordType<WideRecord> TYPE =
+      RecordType.builder("wide_record", WideRecord.class)
+          .containedBy(Account.TYPE)
+          .build();
+
+  @AttributeMethod(attribute = "string_0")
+  String getString0();
+
+  @AttributeMethod(attribute = "string_1")
+  String getString1();
+
+  @AttributeMethod(attribute = "string_2")
+  String getString2();
+
+  @AttributeMethod(attribute = "string_3")
+  String getString3();
+
+  @AttributeMethod(attribute = "string_4")
+  String getString4();
+
+  @AttributeMethod(attribute = "int_0")
+  int getInt0();
+
+  @AttributeMethod(attribute = "int_1")
+  int getInt1();
+
+  @AttributeMethod(attribute = "int_2")
+  int getInt2();
+
+  @AttributeMethod(attribute = "int_3")
+  int getInt3();
+
+  @AttributeMethod(attribute = "int_4")
+  int getInt4();
+
+  @AttributeMethod(attribute = "decimal_0")
+  BigDecimal getDecimal0();
+
+  @AttributeMethod(attribute = "decimal_1")
+  BigDecimal getDecimal1();
+
+  @AttributeMethod(attribute = "decimal_2")
+  BigDecimal getDecimal2();
+
+  @AttributeMethod(attribute = "decimal_3")
+  BigDecimal getDecimal3();
+
+  @AttributeMethod(attribute = "decimal_4")
+  BigDecimal getDecimal4();
+
+  @AttributeMethod(attribute = "date_0")
+  Instant getDate0();
+
+  @AttributeMethod(attribute = "date_1")
+  Instant getDate1();
+
+  @AttributeMethod(attribute = "date_2")
+  Instant getDate2();
+
+  @AttributeMethod(attribute = "boolean_0")
+  boolean getBoolean0();
+
+  @AttributeMethod(attribute = "boolean_1")
+  boolean getBoolean1();
+}
@@ -39,5 +39,9 @@ public class DatabaseTearDown {
         stmt.execute("shutdown;");
       }
     }
+    if (dataSource instanceof PooledDataSource) {
+      // The pooled connections were closed by the shutdown.
+      ((PooledDataSource) dataSource).close();
+    }
   }
 }
@@ -15,13 +15,17 @@
  */
 package org.chaston.oakfunds.jdbc;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
+import org.chaston.oakfunds.util.Flag;
 import org.hsqldb.jdbc.JDBCDataSource;
 
+import javax.annotation.Nullable;
 import javax.sql.DataSource;
 import java.sql.SQLException;
+import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -30,9 +34,35 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public class LocalDataSourceModule extends AbstractModule {
 
+  private static final Flag<Boolean> LOCAL_CONNECTION_POOLING =
+      Flag.builder("local_connection_pooling", true).build();
+
+  private static final String VALIDATION_QUERY =
+      "SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS";
+
   private static final AtomicInteger INSTANCE_COUNTER = new AtomicInteger();
   private final int instance = INSTANCE_COUNTER.incrementAndGet();
 
+  @Nullable
+  private final ConnectionPoolConfig connectionPoolConfig;
+
+  public LocalDataSourceModule() {
+    this(LOCAL_CONNECTION_POOLING.get()
+        ? ConnectionPoolConfig.builder().setValidationQuery(VALIDATION_QUERY).build()
+        : null);
+  }
+
+  public LocalDataSourceModule(@Nullable ConnectionPoolConfig connectionPoolConfig) {
+    this.connectionPoolConfig = connectionPoolConfig;
+  }
+
+  /**
+   * Returns a module that opens a new connection to the database every time one is needed.
+   */
+  public static LocalDataSourceModule unpooled() {
+    return new LocalDataSourceModule(null);
+  }
+
   @Override
   protected void configure() {
     bind(DatabaseTearDown.class).in(Singleton.class);
@@ -42,9 +72,8 @@ public class LocalDataSourceModule extends AbstractModule {
   @Provides
   @Singleton
   DataSource provideDataSource() throws SQLException {
-    JDBCDataSource dataSource = new JDBCDataSource();
-    dataSource.setUrl("jdbc:hsqldb:mem:test_" + instance);
-    Properties props = new Properties();
+    String url = "jdbc:hsqldb:mem:test_" + instance;
+    ImmutableMap.Builder<String, String> props = ImmutableMap.builder();
 
     // Require explict shutdown.
     props.put("shutdown", "false");
@@ -57,8 +86,18 @@ public class LocalDataSourceModule extends AbstractModule {
     props.put("sql.enforce_refs", "true");
     props.put("sql.enforce_types", "true");
 
-    dataSource.setProperties(props);
+    if (connectionPoolConfig != null) {
+      return new PooledDataSource(connectionPoolConfig, "org.hsqldb.jdbc.JDBCDriver", url,
+          props.build());
+    }
 
+    JDBCDataSource dataSource = new JDBCDataSource();
+    dataSource.setUrl(url);
+    Properties properties = new Properties();
+    for (Map.Entry<String, String> prop : props.build().entrySet()) {
+      properties.put(prop.getKey(), prop.getValue());
+    }
+    dataSource.setProperties(properties);
     return dataSource;
   }
 
@@ -15,7 +15,8 @@
  */
 package org.chaston.oakfunds.gitkit;
 
-import com.google.identitytoolkit.GitkitClient;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.identitytoolkit.GitkitClientException;
 import com.google.identitytoolkit.GitkitUser;
 import com.google.inject.Inject;
@@ -31,34 +32,60 @@ import org.chaston.oakfunds.security.UserManager;
 import org.chaston.oakfunds.storage.StorageException;
 import org.chaston.oakfunds.storage.Store;
 import org.chaston.oakfunds.storage.Transaction;
+import org.chaston.oakfunds.util.Flag;
 
+import javax.annotation.Nullable;
 import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
-import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
 
 /**
  * TODO(mchaston): write JavaDocs
  */
 class GitKitUserAuthenticator implements UserAuthenticator {
 
-  private static final String TOKEN_COOKIE_NAME = "gtoken";
+  private static final Flag<Integer> GITKIT_TOKEN_CACHE_SECONDS =
+      Flag.builder("gitkit_token_cache_seconds", 300).build();
+  private static final int MAXIMUM_CACHED_TOKENS = 1000;
 
   private final Store store;
   private final SystemAuthenticationManager systemAuthenticationManager;
   private final UserManager userManager;
   private final Provider<AuthenticationState> authenticationStateProvider;
+  private final GitkitTokenValidator tokenValidator;
+  // Recently validated tokens, so that new sessions with the same token skip validation and
+  // the update of the user.
+  private final Cache<String, ValidatedToken> validatedTokens;
 
   @Inject
   GitKitUserAuthenticator(
       Store store,
       SystemAuthenticationManager systemAuthenticationManager,
       UserManager userManager,
-      Provider<AuthenticationState> authenticationStateProvider) {
+      Provider<AuthenticationState> authenticationStateProvider,
+      GitkitTokenValidator tokenValidator) {
+    this(store, systemAuthenticationManager, userManager, authenticationStateProvider,
+        tokenValidator, GITKIT_TOKEN_CACHE_SECONDS.get());
+  }
+
+  GitKitUserAuthenticator(
+      Store store,
+      SystemAuthenticationManager systemAuthenticationManager,
+      UserManager userManager,
+      Provider<AuthenticationState> authenticationStateProvider,
+      GitkitTokenValidator tokenValidator,
+      int tokenCacheSeconds) {
     this.store = store;
     this.systemAuthenticationManager = systemAuthenticationManager;
     this.userManager = userManager;
     this.authenticationStateProvider = authenticationStateProvider;
+    this.tokenValidator = tokenValidator;
+    this.validatedTokens = CacheBuilder.newBuilder()
+        .maximumSize(MAXIMUM_CACHED_TOKENS)
+        .expireAfterWrite(tokenCacheSeconds, TimeUnit.SECONDS)
+        .build();
   }
 
   @Override
@@ -81,22 +108,26 @@ class GitKitUserAuthenticator implements UserAuthenticator {
     if (authenticationState.isAuthenticated()) {
       return true;
     }
-    GitkitClient gitkitClient = GitkitClient.newBuilder()
-        .setCookieName(TOKEN_COOKIE_NAME)
-        .setGoogleClientId(
-            "885468929755-ld03mp2llinf9osesobrhmggh1oqjve3.apps.googleusercontent.com")
-        .setServiceAccountEmail(
-            "885468929755-6s74fog0a1ladlmce1u3o2q119ub73n5@developer.gserviceaccount.com")
-        .setWidgetUrl("https://mchaston-oakfunds.appspot.com/index.html")
-        .setKeyStream(getKeyStream())
-        .build();
-    GitkitUser gitKitUser;
-    try {
-      gitKitUser = gitkitClient.validateTokenInRequest(servletRequest);
-    } catch (GitkitClientException e) {
-      throw new ServletException("Failure to validate authentication token.", e);
+    String token = getToken(servletRequest);
+    if (token == null) {
+      return false;
     }
-    if (gitKitUser != null) {
+    return authenticateToken(authenticationState, token);
+  }
+
+  boolean authenticateToken(AuthenticationState authenticationState, String token)
+      throws ServletException {
+    ValidatedToken validatedToken = validatedTokens.getIfPresent(token);
+    if (validatedToken == null) {
+      GitkitUser gitKitUser;
+      try {
+        gitKitUser = tokenValidator.validateToken(token);
+      } catch (GitkitClientException e) {
+        throw new ServletException("Failure to validate authentication token.", e);
+      }
+      if (gitKitUser == null) {
+        return false;
+      }
       User user;
       try {
         // Ensure that the user exists.
@@ -117,17 +148,26 @@ class GitKitUserAuthenticator implements UserAuthenticator {
       } catch (StorageException e) {
         throw new ServletException("Failed to load user data.", e);
       }
-      // bind user to session
-      authenticationState.bindToken(user.getId(), gitKitUser);
-      return true;
-    } else {
-      return false;
+      validatedToken = new ValidatedToken(user.getId(), gitKitUser);
+      validatedTokens.put(token, validatedToken);
     }
+    // bind user to session
+    authenticationState.bindToken(validatedToken.userId, validatedToken.gitkitUser);
+    return true;
   }
 
-  private InputStream getKeyStream() {
-    return getClass().getClassLoader()
-        .getResourceAsStream("META-INF/secrets/ServiceAccountPrivateKey.p12");
+  @Nullable
+  private static String getToken(HttpServletRequest servletRequest) {
+    Cookie[] cookies = servletRequest.getCookies();
+    if (cookies == null) {
+      return null;
+    }
+    for (Cookie cookie : cookies) {
+      if (cookie.getName().equals(GitkitClientTokenValidator.TOKEN_COOKIE_NAME)) {
+        return cookie.getValue();
+      }
+    }
+    return null;
   }
 
   void signout(HttpServletRequest servletRequest) {
@@ -138,4 +178,14 @@ class GitKitUserAuthenticator implements UserAuthenticator {
       session.invalidate();
     }
   }
+
+  private static class ValidatedToken {
+    private final long userId;
+    private final GitkitUser gitkitUser;
+
+    ValidatedToken(long userId, GitkitUser gitkitUser) {
+      this.userId = userId;
+      this.gitkitUser = gitkitUser;
+    }
+  }
 }
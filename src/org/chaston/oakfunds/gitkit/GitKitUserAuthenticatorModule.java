@@ -29,6 +29,8 @@ public class GitKitUserAuthenticatorModule extends AbstractModule {
   protected void configure() {
     bind(UserAuthenticator.class).to(GitKitUserAuthenticator.class);
     bind(GitKitUserAuthenticator.class).in(Singleton.class);
+    bind(GitkitTokenValidator.class).to(GitkitClientTokenValidator.class);
+    bind(GitkitClientTokenValidator.class).in(Singleton.class);
     bind(AuthenticationState.class).in(ServletScopes.SESSION);
     install(new GitKitServletModule());
   }
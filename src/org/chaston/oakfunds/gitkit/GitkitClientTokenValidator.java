@@ -0,0 +1,55 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.gitkit;
+
+import com.google.identitytoolkit.GitkitClient;
+import com.google.identitytoolkit.GitkitClientException;
+import com.google.identitytoolkit.GitkitUser;
+
+import java.io.InputStream;
+
+/**
+ * Validates tokens using a single {@link GitkitClient}, so that the service account key is only
+ * loaded once.
+ */
+class GitkitClientTokenValidator implements GitkitTokenValidator {
+
+  static final String TOKEN_COOKIE_NAME = "gtoken";
+
+  private final GitkitClient gitkitClient;
+
+  GitkitClientTokenValidator() {
+    gitkitClient = GitkitClient.newBuilder()
+        .setCookieName(TOKEN_COOKIE_NAME)
+        .setGoogleClientId(
+            "885468929755-ld03mp2llinf9osesobrhmggh1oqjve3.apps.googleusercontent.com")
+        .setServiceAccountEmail(
+            "885468929755-6s74fog0a1ladlmce1u3o2q119ub73n5@developer.gserviceaccount.com")
+        .setWidgetUrl("https://mchaston-oakfunds.appspot.com/index.html")
+        .setKeyStream(getKeyStream())
+        .build();
+  }
+
+  @Override
+  public GitkitUser validateToken(String token) throws GitkitClientException {
+    return gitkitClient.validateToken(token);
+  }
+
+  private InputStream getKeyStream() {
+    return getClass().getClassLoader()
+        .getResourceAsStream("META-INF/secrets/ServiceAccountPrivateKey.p12");
+  }
+}
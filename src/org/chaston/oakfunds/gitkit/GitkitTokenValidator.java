@@ -0,0 +1,32 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.gitkit;
+
+import com.google.identitytoolkit.GitkitClientException;
+import com.google.identitytoolkit.GitkitUser;
+
+import javax.annotation.Nullable;
+
+/**
+ * Validates the identity toolkit tokens that are set as cookies by the login page.
+ */
+interface GitkitTokenValidator {
+  /**
+   * Returns the user that the token identifies, or {@code null} if the token is not valid.
+   */
+  @Nullable
+  GitkitUser validateToken(String token) throws GitkitClientException;
+}
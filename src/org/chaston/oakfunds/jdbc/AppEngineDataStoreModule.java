@@ -18,11 +18,10 @@ package org.chaston.oakfunds.jdbc;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
-import org.apache.commons.dbcp.BasicDataSource;
+import com.google.common.collect.ImmutableMap;
 import org.chaston.oakfunds.storage.SystemColumnDefs;
 
 import javax.sql.DataSource;
-import java.sql.SQLException;
 
 /**
  * TODO(mchaston): write JavaDocs
@@ -35,12 +34,25 @@ public class AppEngineDataStoreModule extends AbstractModule {
 
   @Provides
   @Singleton
-  DataSource provideDataSource() throws SQLException {
-    BasicDataSource dataSource = new BasicDataSource();
-    dataSource.setDriverClassName("com.mysql.jdbc.GoogleDriver");
-    dataSource.setUrl(
+  DataSource provideDataSource() {
+    // Enable server side prepared statements and cache them within the driver, so that the
+    // statements StoreImpl generates are only parsed once per connection. Cursor fetching makes
+    // the driver honour the fetch size of streamed queries instead of reading every row at once.
+    String url =
         "jdbc:google:mysql://mchaston-oakfunds:oakfunds2/" + SystemColumnDefs.SCHEMA
-            + "?user=root");
-    return dataSource;
+            + "?user=root"
+            + "&useServerPrepStmts=true"
+            + "&cachePrepStmts=true"
+            + "&prepStmtCacheSize=250"
+            + "&prepStmtCacheSqlLimit=2048"
+            + "&useCursorFetch=true";
+    // The evictor that validates idle connections in the background runs in a timer thread, which
+    // the App Engine sandbox does not allow, so connections are validated as they are borrowed.
+    return new PooledDataSource(
+        ConnectionPoolConfig.builder()
+            .setValidationQuery("SELECT 1")
+            .setValidationIntervalMillis(0)
+            .build(),
+        "com.mysql.jdbc.GoogleDriver", url, ImmutableMap.<String, String>of());
   }
 }
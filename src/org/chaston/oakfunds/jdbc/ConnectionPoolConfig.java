@@ -0,0 +1,170 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.jdbc;
+
+import org.chaston.oakfunds.util.Flag;
+
+import javax.annotation.Nullable;
+
+/**
+ * The settings of the connection pool behind a {@link PooledDataSource}.
+ */
+public class ConnectionPoolConfig {
+
+  private static final Flag<Integer> CONNECTION_POOL_MIN_IDLE =
+      Flag.builder("connection_pool_min_idle", 1).build();
+  private static final Flag<Integer> CONNECTION_POOL_MAX_IDLE =
+      Flag.builder("connection_pool_max_idle", 8).build();
+  private static final Flag<Integer> CONNECTION_POOL_MAX_ACTIVE =
+      Flag.builder("connection_pool_max_active", 16).build();
+  private static final Flag<Integer> CONNECTION_POOL_MAX_WAIT_MILLIS =
+      Flag.builder("connection_pool_max_wait_millis", 5000).build();
+  private static final Flag<Integer> CONNECTION_POOL_VALIDATION_INTERVAL_MILLIS =
+      Flag.builder("connection_pool_validation_interval_millis", 60000).build();
+  private static final Flag<Boolean> CONNECTION_POOL_PREPARED_STATEMENTS =
+      Flag.builder("connection_pool_prepared_statements", true).build();
+  private static final Flag<Integer> CONNECTION_POOL_MAX_OPEN_PREPARED_STATEMENTS =
+      Flag.builder("connection_pool_max_open_prepared_statements", 100).build();
+
+  private final int minIdle;
+  private final int maxIdle;
+  private final int maxActive;
+  private final long maxWaitMillis;
+  private final String validationQuery;
+  private final long validationIntervalMillis;
+  private final boolean poolPreparedStatements;
+  private final int maxOpenPreparedStatements;
+
+  private ConnectionPoolConfig(Builder builder) {
+    this.minIdle = builder.minIdle;
+    this.maxIdle = builder.maxIdle;
+    this.maxActive = builder.maxActive;
+    this.maxWaitMillis = builder.maxWaitMillis;
+    this.validationQuery = builder.validationQuery;
+    this.validationIntervalMillis = builder.validationIntervalMillis;
+    this.poolPreparedStatements = builder.poolPreparedStatements;
+    this.maxOpenPreparedStatements = builder.maxOpenPreparedStatements;
+  }
+
+  public int getMinIdle() {
+    return minIdle;
+  }
+
+  public int getMaxIdle() {
+    return maxIdle;
+  }
+
+  public int getMaxActive() {
+    return maxActive;
+  }
+
+  public long getMaxWaitMillis() {
+    return maxWaitMillis;
+  }
+
+  /**
+   * The query used to check idle connections, or null if they are not checked.
+   */
+  @Nullable
+  public String getValidationQuery() {
+    return validationQuery;
+  }
+
+  /**
+   * How often idle connections are checked by the background evictor. If this is zero or less,
+   * there is no evictor and each connection is checked when it is borrowed instead.
+   */
+  public long getValidationIntervalMillis() {
+    return validationIntervalMillis;
+  }
+
+  public boolean isPoolPreparedStatements() {
+    return poolPreparedStatements;
+  }
+
+  public int getMaxOpenPreparedStatements() {
+    return maxOpenPreparedStatements;
+  }
+
+  /**
+   * Returns a builder initialized from the connection pool flags.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+    private int minIdle = CONNECTION_POOL_MIN_IDLE.get();
+    private int maxIdle = CONNECTION_POOL_MAX_IDLE.get();
+    private int maxActive = CONNECTION_POOL_MAX_ACTIVE.get();
+    private long maxWaitMillis = CONNECTION_POOL_MAX_WAIT_MILLIS.get();
+    private String validationQuery;
+    private long validationIntervalMillis = CONNECTION_POOL_VALIDATION_INTERVAL_MILLIS.get();
+    private boolean poolPreparedStatements = CONNECTION_POOL_PREPARED_STATEMENTS.get();
+    private int maxOpenPreparedStatements = CONNECTION_POOL_MAX_OPEN_PREPARED_STATEMENTS.get();
+
+    private Builder() {
+    }
+
+    public Builder setMinIdle(int minIdle) {
+      this.minIdle = minIdle;
+      return this;
+    }
+
+    public Builder setMaxIdle(int maxIdle) {
+      this.maxIdle = maxIdle;
+      return this;
+    }
+
+    public Builder setMaxActive(int maxActive) {
+      this.maxActive = maxActive;
+      return this;
+    }
+
+    public Builder setMaxWaitMillis(long maxWaitMillis) {
+      this.maxWaitMillis = maxWaitMillis;
+      return this;
+    }
+
+    public Builder setValidationQuery(String validationQuery) {
+      this.validationQuery = validationQuery;
+      return this;
+    }
+
+    public Builder setValidationIntervalMillis(long validationIntervalMillis) {
+      this.validationIntervalMillis = validationIntervalMillis;
+      return this;
+    }
+
+    public Builder setPoolPreparedStatements(boolean poolPreparedStatements) {
+      this.poolPreparedStatements = poolPreparedStatements;
+      return this;
+    }
+
+    public Builder setMaxOpenPreparedStatements(int maxOpenPreparedStatements) {
+      this.maxOpenPreparedStatements = maxOpenPreparedStatements;
+      return this;
+    }
+
+    public ConnectionPoolConfig build() {
+      if (minIdle > maxIdle) {
+        throw new IllegalArgumentException(
+            "Minimum idle connections (" + minIdle + ") exceeds maximum (" + maxIdle + ").");
+      }
+      return new ConnectionPoolConfig(this);
+    }
+  }
+}
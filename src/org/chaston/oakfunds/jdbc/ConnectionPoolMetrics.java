@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.jdbc;
+
+import org.chaston.oakfunds.util.JSONRepresentable;
+import org.json.simple.JSONObject;
+
+/**
+ * A snapshot of the state of a {@link PooledDataSource}.
+ */
+public class ConnectionPoolMetrics implements JSONRepresentable {
+  private final int numActive;
+  private final int numIdle;
+  private final int maxActive;
+  private final long connectionsRequested;
+  private final long totalWaitNanos;
+  private final long maxWaitNanos;
+
+  ConnectionPoolMetrics(int numActive, int numIdle, int maxActive, long connectionsRequested,
+      long totalWaitNanos, long maxWaitNanos) {
+    this.numActive = numActive;
+    this.numIdle = numIdle;
+    this.maxActive = maxActive;
+    this.connectionsRequested = connectionsRequested;
+    this.totalWaitNanos = totalWaitNanos;
+    this.maxWaitNanos = maxWaitNanos;
+  }
+
+  /**
+   * The number of connections currently borrowed from the pool.
+   */
+  public int getNumActive() {
+    return numActive;
+  }
+
+  /**
+   * The number of open connections waiting in the pool.
+   */
+  public int getNumIdle() {
+    return numIdle;
+  }
+
+  public int getMaxActive() {
+    return maxActive;
+  }
+
+  public long getConnectionsRequested() {
+    return connectionsRequested;
+  }
+
+  /**
+   * The total time spent waiting for connections, including the time taken to open them.
+   */
+  public long getTotalWaitNanos() {
+    return totalWaitNanos;
+  }
+
+  public long getMaxWaitNanos() {
+    return maxWaitNanos;
+  }
+
+  public double getAverageWaitNanos() {
+    return connectionsRequested == 0 ? 0 : (double) totalWaitNanos / connectionsRequested;
+  }
+
+  @Override
+  public JSONObject toJSONObject() {
+    JSONObject jsonObject = new JSONObject();
+    jsonObject.put("num_active", numActive);
+    jsonObject.put("num_idle", numIdle);
+    jsonObject.put("max_active", maxActive);
+    jsonObject.put("connections_requested", connectionsRequested);
+    jsonObject.put("total_wait_nanos", totalWaitNanos);
+    jsonObject.put("average_wait_nanos", getAverageWaitNanos());
+    jsonObject.put("max_wait_nanos", maxWaitNanos);
+    return jsonObject;
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.jdbc;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * TODO(mchaston): write JavaDocs
+ */
+public class IndexDef {
+  private final String name;
+  private final ImmutableList<String> columnNames;
+  private final boolean unique;
+
+  public IndexDef(String name, List<String> columnNames) {
+    this(name, columnNames, false);
+  }
+
+  public IndexDef(String name, List<String> columnNames, boolean unique) {
+    if (columnNames.isEmpty()) {
+      throw new IllegalArgumentException("Index " + name + " must have at least one column.");
+    }
+    this.name = name;
+    this.columnNames = ImmutableList.copyOf(columnNames);
+    this.unique = unique;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public ImmutableList<String> getColumnNames() {
+    return columnNames;
+  }
+
+  /**
+   * Whether no two rows may have the same values in all of the columns of the index.
+   */
+  public boolean isUnique() {
+    return unique;
+  }
+}
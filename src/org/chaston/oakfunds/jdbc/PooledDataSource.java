@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.jdbc;
+
+import org.apache.commons.dbcp.BasicDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * A DBCP connection pool that keeps track of how long callers wait for their connections.
+ */
+public class PooledDataSource extends BasicDataSource {
+
+  private final AtomicLong connectionsRequested = new AtomicLong();
+  private final AtomicLong totalWaitNanos = new AtomicLong();
+  private final AtomicLong maxWaitNanos = new AtomicLong();
+
+  public PooledDataSource(ConnectionPoolConfig config, String driverClassName, String url,
+      Map<String, String> connectionProperties) {
+    setDriverClassName(driverClassName);
+    setUrl(url);
+    for (Map.Entry<String, String> connectionProperty : connectionProperties.entrySet()) {
+      addConnectionProperty(connectionProperty.getKey(), connectionProperty.getValue());
+    }
+    setMinIdle(config.getMinIdle());
+    setMaxIdle(config.getMaxIdle());
+    setMaxActive(config.getMaxActive());
+    setMaxWait(config.getMaxWaitMillis());
+    setPoolPreparedStatements(config.isPoolPreparedStatements());
+    setMaxOpenPreparedStatements(config.getMaxOpenPreparedStatements());
+    if (config.getValidationQuery() != null) {
+      setValidationQuery(config.getValidationQuery());
+      if (config.getValidationIntervalMillis() > 0) {
+        // Connections are checked in the background rather than every time they are borrowed,
+        // as borrowing happens for every read.
+        setTestOnBorrow(false);
+        setTestWhileIdle(true);
+        setTimeBetweenEvictionRunsMillis(config.getValidationIntervalMillis());
+      } else {
+        // Without an evictor (which needs a thread of its own) the minimum idle connections
+        // are not kept open either.
+        setTestOnBorrow(true);
+      }
+    }
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    long start = System.nanoTime();
+    try {
+      return super.getConnection();
+    } finally {
+      recordWait(System.nanoTime() - start);
+    }
+  }
+
+  private void recordWait(long waitNanos) {
+    connectionsRequested.incrementAndGet();
+    totalWaitNanos.addAndGet(waitNanos);
+    long currentMax = maxWaitNanos.get();
+    while (waitNanos > currentMax && !maxWaitNanos.compareAndSet(currentMax, waitNanos)) {
+      currentMax = maxWaitNanos.get();
+    }
+  }
+
+  public ConnectionPoolMetrics getMetrics() {
+    return new ConnectionPoolMetrics(getNumActive(), getNumIdle(), getMaxActive(),
+        connectionsRequested.get(), totalWaitNanos.get(), maxWaitNanos.get());
+  }
+
+  @Override
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    throw new SQLFeatureNotSupportedException("DBCP does not log through java.util.logging.");
+  }
+}
@@ -27,11 +27,14 @@ public class TableDef {
   private final String schema;
   private final String name;
   private final ImmutableMap<String, ColumnDef> columnDefs;
+  private final ImmutableMap<String, IndexDef> indexDefs;
 
-  private TableDef(String schema, String name, ImmutableMap<String, ColumnDef> columnDefs) {
+  private TableDef(String schema, String name, ImmutableMap<String, ColumnDef> columnDefs,
+      ImmutableMap<String, IndexDef> indexDefs) {
     this.schema = schema;
     this.name = name;
     this.columnDefs = columnDefs;
+    this.indexDefs = indexDefs;
   }
 
   public static Builder builder(String schema, String name) {
@@ -50,10 +53,15 @@ public class TableDef {
     return columnDefs;
   }
 
+  public ImmutableMap<String, IndexDef> getIndexDefs() {
+    return indexDefs;
+  }
+
   public static class Builder {
     private final String schema;
     private final String name;
     private final Map<String, ColumnDef> columnDefs = new HashMap<>();
+    private final Map<String, IndexDef> indexDefs = new HashMap<>();
 
     private Builder(String schema, String name) {
       this.schema = schema;
@@ -69,8 +77,26 @@ public class TableDef {
       return this;
     }
 
+    public Builder addIndexDef(IndexDef indexDef) {
+      if (indexDefs.containsKey(indexDef.getName())) {
+        throw new IllegalStateException(
+            "TableDef already contains index of name " + indexDef.getName() + ".");
+      }
+      indexDefs.put(indexDef.getName(), indexDef);
+      return this;
+    }
+
     public TableDef build() {
-      return new TableDef(schema, name, ImmutableMap.<String, ColumnDef>of().copyOf(columnDefs));
+      for (IndexDef indexDef : indexDefs.values()) {
+        for (String columnName : indexDef.getColumnNames()) {
+          if (!columnDefs.containsKey(columnName)) {
+            throw new IllegalStateException("Index " + indexDef.getName()
+                + " refers to column " + columnName + " which is not in table " + name + ".");
+          }
+        }
+      }
+      return new TableDef(schema, name, ImmutableMap.<String, ColumnDef>of().copyOf(columnDefs),
+          ImmutableMap.copyOf(indexDefs));
     }
   }
 }
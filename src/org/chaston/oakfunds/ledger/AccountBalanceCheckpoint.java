@@ -0,0 +1,45 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.ledger;
+
+import org.chaston.oakfunds.storage.AttributeMethod;
+import org.chaston.oakfunds.storage.InstantRecord;
+import org.chaston.oakfunds.storage.ParentIdMethod;
+import org.chaston.oakfunds.storage.RecordType;
+
+import java.math.BigDecimal;
+
+/**
+ * The balance of an account at the end of a month, including every transaction up to and
+ * including the instant of the checkpoint. Maintained alongside the account transactions so that
+ * a balance can be calculated from the nearest checkpoint rather than the entire history.
+ */
+public interface AccountBalanceCheckpoint extends InstantRecord<AccountBalanceCheckpoint> {
+
+  public static final RecordType<AccountBalanceCheckpoint> TYPE =
+      RecordType.builder("account_balance_checkpoint", AccountBalanceCheckpoint.class)
+          .containedBy(Account.TYPE)
+          .withUniqueInstants()
+          .build();
+
+  String ATTRIBUTE_BALANCE = "balance";
+
+  @AttributeMethod(attribute = ATTRIBUTE_BALANCE, required = true)
+  BigDecimal getBalance();
+
+  @ParentIdMethod
+  int getAccountId();
+}
@@ -15,14 +15,20 @@
  */
 package org.chaston.oakfunds.ledger;
 
+import com.google.common.collect.ImmutableMap;
 import org.chaston.oakfunds.account.AccountCode;
+import org.chaston.oakfunds.storage.InstantRecordPosition;
+import org.chaston.oakfunds.storage.RecordIterator;
 import org.chaston.oakfunds.storage.Report;
 import org.chaston.oakfunds.storage.ReportDateGranularity;
 import org.chaston.oakfunds.storage.StorageException;
+import org.chaston.oakfunds.util.Pair;
 import org.joda.time.Instant;
+import org.joda.time.Interval;
 
 import javax.annotation.Nullable;
 import java.math.BigDecimal;
+import java.util.List;
 
 /**
  * TODO(mchaston): write JavaDocs
@@ -40,10 +46,23 @@ public interface LedgerManager {
   void setInterestRate(BankAccount bankAccount, BigDecimal interestRate, Instant start, Instant end)
       throws StorageException;
 
+  /**
+   * Applies a schedule of interest rates to the account, in order, as if
+   * {@link #setInterestRate} had been called for each of them.
+   */
+  void setInterestRates(BankAccount bankAccount, List<Pair<Interval, BigDecimal>> interestRates)
+      throws StorageException;
+
   BigDecimal getInterestRate(BankAccount bankAccount, Instant date) throws StorageException;
 
   BigDecimal getBalance(BankAccount bankAccount, Instant date) throws StorageException;
 
+  /**
+   * Recreates the balance checkpoints of the account from its transactions. This is only needed
+   * for data that was recorded before the checkpoints were maintained, or to repair them.
+   */
+  void rebuildBalanceCheckpoints(Account account) throws StorageException;
+
   ExpenseAccount getExpenseAccount(int id) throws StorageException;
 
   ExpenseAccount createExpenseAccount(AccountCode accountCode, String title,
@@ -76,6 +95,21 @@ public interface LedgerManager {
 
   Iterable<AccountTransaction> getAccountTransactions(Account account) throws StorageException;
 
+  /**
+   * Streams the transactions of the account in date order, starting after the given position
+   * and returning at most {@code limit} transactions (or all of them if the limit is zero).
+   */
+  RecordIterator<AccountTransaction> getAccountTransactions(Account account,
+      @Nullable InstantRecordPosition after, int limit) throws StorageException;
+
   Report runReport(Account<?> account, int startYear, int endYear,
       ReportDateGranularity granularity) throws StorageException;
+
+  /**
+   * Runs the same report as {@link #runReport} for each of the accounts, using a single query.
+   *
+   * @return the report of each account, keyed by the account ID
+   */
+  ImmutableMap<Integer, Report> runReports(Iterable<? extends Account<?>> accounts, int startYear,
+      int endYear, ReportDateGranularity granularity) throws StorageException;
 }
@@ -24,18 +24,25 @@ import org.chaston.oakfunds.security.Permission;
 import org.chaston.oakfunds.security.PermissionAssertion;
 import org.chaston.oakfunds.storage.AttributeOrderingTerm;
 import org.chaston.oakfunds.storage.ContainerIdentifierSearchTerm;
+import org.chaston.oakfunds.storage.InstantRecordPosition;
 import org.chaston.oakfunds.storage.OrderingTerm;
+import org.chaston.oakfunds.storage.RecordIterator;
 import org.chaston.oakfunds.storage.Report;
 import org.chaston.oakfunds.storage.ReportDateGranularity;
 import org.chaston.oakfunds.storage.SearchTerm;
 import org.chaston.oakfunds.storage.StorageException;
 import org.chaston.oakfunds.storage.Store;
 import org.chaston.oakfunds.util.DateUtil;
+import org.chaston.oakfunds.util.Pair;
+import org.joda.time.DateTime;
 import org.joda.time.Instant;
+import org.joda.time.Interval;
 
 import javax.annotation.Nullable;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -90,14 +97,26 @@ class LedgerManagerImpl implements LedgerManager {
 
   static final Permission PERMISSION_ACCOUNT_TRANSACTION_READ =
       Permission.builder("account_transaction.read")
-          .addRelatedAction(AccountTransaction.TYPE, ActionType.READ).build();
+          .addRelatedAction(AccountTransaction.TYPE, ActionType.READ)
+          .addRelatedAction(AccountBalanceCheckpoint.TYPE, ActionType.READ)
+          .build();
   static final Permission PERMISSION_ACCOUNT_TRANSACTION_CREATE =
       Permission.builder("account_transaction.create")
-          .addRelatedAction(AccountTransaction.TYPE, ActionType.CREATE).build();
+          .addRelatedAction(AccountTransaction.TYPE, ActionType.CREATE)
+          .addRelatedAction(AccountBalanceCheckpoint.TYPE, ActionType.CREATE)
+          .addRelatedAction(AccountBalanceCheckpoint.TYPE, ActionType.UPDATE)
+          .build();
   static final Permission PERMISSION_ACCOUNT_TRANSACTION_REPORT =
       Permission.builder("account_transaction.report")
           .addRelatedAction(AccountTransaction.TYPE, ActionType.REPORT).build();
 
+  static final Permission PERMISSION_ACCOUNT_BALANCE_CHECKPOINT_REBUILD =
+      Permission.builder("account_balance_checkpoint.rebuild")
+          .addRelatedAction(AccountTransaction.TYPE, ActionType.READ)
+          .addRelatedAction(AccountBalanceCheckpoint.TYPE, ActionType.CREATE)
+          .addRelatedAction(AccountBalanceCheckpoint.TYPE, ActionType.DELETE)
+          .build();
+
   private final Store store;
 
   @Inject
@@ -137,6 +156,19 @@ class LedgerManagerImpl implements LedgerManager {
         attributes);
   }
 
+  @Override
+  @PermissionAssertion("bank_account_interest.update")
+  public void setInterestRates(BankAccount bankAccount,
+      List<Pair<Interval, BigDecimal>> interestRates) throws StorageException {
+    ImmutableList.Builder<Pair<Interval, Map<String, Object>>> updates = ImmutableList.builder();
+    for (Pair<Interval, BigDecimal> interestRate : interestRates) {
+      Map<String, Object> attributes = new HashMap<>();
+      attributes.put(BankAccountInterest.ATTRIBUTE_INTEREST_RATE, interestRate.getSecond());
+      updates.add(Pair.of(interestRate.getFirst(), attributes));
+    }
+    store.updateIntervalRecords(bankAccount, BankAccountInterest.TYPE, updates.build());
+  }
+
   @Override
   @PermissionAssertion("bank_account_interest.read")
   public BigDecimal getInterestRate(BankAccount bankAccount, Instant date) throws StorageException {
@@ -148,16 +180,60 @@ class LedgerManagerImpl implements LedgerManager {
   @Override
   @PermissionAssertion("account_transaction.read")
   public BigDecimal getBalance(BankAccount bankAccount, Instant date) throws StorageException {
-    Iterable<AccountTransaction> accountTransactions =
-        store.findInstantRecords(bankAccount, AccountTransaction.TYPE,
-            DateUtil.BEGINNING_OF_TIME, date.plus(1), ImmutableList.<SearchTerm>of());
+    return calculateBalance(bankAccount, date);
+  }
+
+  /**
+   * Calculates the balance from the nearest checkpoint at or before the date, only reading the
+   * transactions that have happened since.
+   */
+  private BigDecimal calculateBalance(Account account, Instant date) throws StorageException {
+    AccountBalanceCheckpoint checkpoint =
+        store.getLatestInstantRecord(account, AccountBalanceCheckpoint.TYPE, date);
     BigDecimal balance = BigDecimal.ZERO;
+    Instant start = DateUtil.BEGINNING_OF_TIME;
+    if (checkpoint != null) {
+      balance = checkpoint.getBalance();
+      start = checkpoint.getInstant().plus(1);
+    }
+    Iterable<AccountTransaction> accountTransactions =
+        store.findInstantRecords(account, AccountTransaction.TYPE,
+            start, date.plus(1), ImmutableList.<SearchTerm>of());
     for (AccountTransaction accountTransaction : accountTransactions) {
       balance = balance.add(accountTransaction.getAmount());
     }
     return balance;
   }
 
+  @Override
+  @PermissionAssertion("account_balance_checkpoint.rebuild")
+  public void rebuildBalanceCheckpoints(Account account) throws StorageException {
+    store.lockRecord(account);
+    store.deleteInstantRecords(account, AccountBalanceCheckpoint.TYPE,
+        ImmutableList.of(ContainerIdentifierSearchTerm.of(
+            account.getRecordType(), account.getId())));
+
+    Iterable<AccountTransaction> accountTransactions =
+        store.findInstantRecords(account, AccountTransaction.TYPE,
+            DateUtil.BEGINNING_OF_TIME, DateUtil.END_OF_TIME,
+            ImmutableList.<SearchTerm>of());
+    List<Pair<Instant, Map<String, Object>>> checkpoints = new ArrayList<>();
+    BigDecimal balance = BigDecimal.ZERO;
+    Instant checkpointInstant = null;
+    for (AccountTransaction accountTransaction : accountTransactions) {
+      Instant transactionCheckpointInstant = getCheckpointInstant(accountTransaction.getInstant());
+      if (checkpointInstant != null && !checkpointInstant.equals(transactionCheckpointInstant)) {
+        checkpoints.add(Pair.of(checkpointInstant, createCheckpointAttributes(balance)));
+      }
+      checkpointInstant = transactionCheckpointInstant;
+      balance = balance.add(accountTransaction.getAmount());
+    }
+    if (checkpointInstant != null) {
+      checkpoints.add(Pair.of(checkpointInstant, createCheckpointAttributes(balance)));
+      store.insertInstantRecords(account, AccountBalanceCheckpoint.TYPE, checkpoints);
+    }
+  }
+
   @Override
   @PermissionAssertion("bank_account.read")
   public BankAccount getBankAccount(int id) throws StorageException {
@@ -267,6 +343,15 @@ class LedgerManagerImpl implements LedgerManager {
         ImmutableList.<SearchTerm>of());
   }
 
+  @Override
+  @PermissionAssertion("account_transaction.read")
+  public RecordIterator<AccountTransaction> getAccountTransactions(Account account,
+      @Nullable InstantRecordPosition after, int limit) throws StorageException {
+    return store.streamInstantRecords(account, AccountTransaction.TYPE,
+        DateUtil.BEGINNING_OF_TIME, DateUtil.END_OF_TIME,
+        ImmutableList.<SearchTerm>of(), after, limit);
+  }
+
   @Override
   @PermissionAssertion("account_transaction.create")
   public AccountTransaction recordTransaction(Account account, Instant date, BigDecimal amount)
@@ -296,6 +381,20 @@ class LedgerManagerImpl implements LedgerManager {
         .build();
   }
 
+  @Override
+  @PermissionAssertion("account_transaction.report")
+  public ImmutableMap<Integer, Report> runReports(Iterable<? extends Account<?>> accounts,
+      int startYear, int endYear, ReportDateGranularity granularity) throws StorageException {
+    ImmutableMap<String, String> dimensions = ImmutableMap.of();
+    ImmutableMap<String, String> measures =
+        ImmutableMap.of(AccountTransaction.ATTRIBUTE_AMOUNT, AccountTransaction.ATTRIBUTE_AMOUNT);
+    return store.newReportBuilder(startYear, endYear, granularity, "account_id")
+        .restrictToContainers(accounts)
+        .addRecordSource(AccountTransaction.TYPE, ImmutableList.<SearchTerm>of(),
+            dimensions, measures)
+        .buildByContainer();
+  }
+
   private AccountTransaction recordTransaction(Account account, Instant date, BigDecimal amount,
       String comment, Integer sisterTransactionId) throws StorageException {
     Map<String, Object> attributes = new HashMap<>();
@@ -308,6 +407,7 @@ class LedgerManagerImpl implements LedgerManager {
     }
     AccountTransaction transaction =
         store.insertInstantRecord(account, AccountTransaction.TYPE, date, attributes);
+    updateBalanceCheckpoints(account, date, amount);
     if (account instanceof ExpenseAccount) {
       ExpenseAccount expenseAccount = (ExpenseAccount) account;
       if (expenseAccount.getDefaultSourceAccountId() != null) {
@@ -324,4 +424,53 @@ class LedgerManagerImpl implements LedgerManager {
     }
     return transaction;
   }
+
+  /**
+   * Applies a new transaction to the checkpoints of the account. Every checkpoint at or after the
+   * transaction is adjusted and, if the month of the transaction has no checkpoint yet, one is
+   * created from the previous checkpoint.
+   *
+   * <p>The account is locked first, so that concurrent transactions on the same account (even on
+   * other servers) apply their changes one after the other instead of overwriting each other's
+   * balances. Once it is locked, the checkpoints and transactions of the account are read with
+   * locking reads, which see the changes of the previous holder of the lock. The unique instants
+   * of the checkpoint type guard against two checkpoints for the same month if the lock is ever
+   * bypassed.
+   */
+  private void updateBalanceCheckpoints(Account account, Instant date, BigDecimal amount)
+      throws StorageException {
+    store.lockRecord(account);
+    Instant checkpointInstant = getCheckpointInstant(date);
+    Iterable<AccountBalanceCheckpoint> checkpoints =
+        store.findInstantRecords(account, AccountBalanceCheckpoint.TYPE,
+            date, DateUtil.END_OF_TIME, ImmutableList.<SearchTerm>of());
+    boolean checkpointFound = false;
+    List<Pair<AccountBalanceCheckpoint, Map<String, Object>>> updates = new ArrayList<>();
+    for (AccountBalanceCheckpoint checkpoint : checkpoints) {
+      if (checkpoint.getInstant().equals(checkpointInstant)) {
+        checkpointFound = true;
+      }
+      updates.add(Pair.of(checkpoint,
+          createCheckpointAttributes(checkpoint.getBalance().add(amount))));
+    }
+    if (!updates.isEmpty()) {
+      store.updateInstantRecords(account, AccountBalanceCheckpoint.TYPE, updates);
+    }
+    if (!checkpointFound) {
+      // The new transaction is already stored, so it is included in the calculated balance.
+      store.insertInstantRecord(account, AccountBalanceCheckpoint.TYPE, checkpointInstant,
+          createCheckpointAttributes(calculateBalance(account, checkpointInstant)));
+    }
+  }
+
+  private static Instant getCheckpointInstant(Instant date) {
+    DateTime dateTime = date.toDateTime();
+    return DateUtil.endOfMonth(dateTime.getYear(), dateTime.getMonthOfYear());
+  }
+
+  private static Map<String, Object> createCheckpointAttributes(BigDecimal balance) {
+    Map<String, Object> attributes = new HashMap<>();
+    attributes.put(AccountBalanceCheckpoint.ATTRIBUTE_BALANCE, balance);
+    return attributes;
+  }
 }
@@ -30,6 +30,7 @@ public class LedgerTypesModule extends AbstractModule {
         = Multibinder.newSetBinder(binder(), RecordType.class);
 
     recordTypeMultibinder.addBinding().toInstance(Account.TYPE);
+    recordTypeMultibinder.addBinding().toInstance(AccountBalanceCheckpoint.TYPE);
     recordTypeMultibinder.addBinding().toInstance(AccountTransaction.TYPE);
     recordTypeMultibinder.addBinding().toInstance(BankAccount.TYPE);
     recordTypeMultibinder.addBinding().toInstance(BankAccountInterest.TYPE);
@@ -70,5 +71,7 @@ public class LedgerTypesModule extends AbstractModule {
         .toInstance(LedgerManagerImpl.PERMISSION_ACCOUNT_TRANSACTION_CREATE);
     permissionMultibinder.addBinding()
         .toInstance(LedgerManagerImpl.PERMISSION_ACCOUNT_TRANSACTION_REPORT);
+    permissionMultibinder.addBinding()
+        .toInstance(LedgerManagerImpl.PERMISSION_ACCOUNT_BALANCE_CHECKPOINT_REBUILD);
   }
 }
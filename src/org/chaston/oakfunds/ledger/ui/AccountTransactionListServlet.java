@@ -19,10 +19,15 @@ import com.google.inject.Inject;
 import org.chaston.oakfunds.ledger.Account;
 import org.chaston.oakfunds.ledger.AccountTransaction;
 import org.chaston.oakfunds.ledger.LedgerManager;
+import org.chaston.oakfunds.storage.InstantRecordPosition;
+import org.chaston.oakfunds.storage.RecordIterator;
 import org.chaston.oakfunds.storage.StorageException;
 import org.chaston.oakfunds.util.JSONUtils;
+import org.chaston.oakfunds.util.ParameterHandler;
 import org.chaston.oakfunds.util.RequestHandler;
+import org.joda.time.Instant;
 
+import javax.annotation.Nullable;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -39,6 +44,19 @@ class AccountTransactionListServlet extends HttpServlet {
   static final String URI_REGEX = "/ledger/account/([0-9]+)/transactions";
   private static final Pattern URI_PATTERN = Pattern.compile(URI_REGEX);
 
+  private static final ParameterHandler<Integer> PARAMETER_LIMIT =
+      ParameterHandler.intParameter("limit")
+          .withDefaultValue(0)
+          .build();
+
+  private static final ParameterHandler<Instant> PARAMETER_AFTER_INSTANT =
+      ParameterHandler.instantParameter("after_instant")
+          .build();
+
+  private static final ParameterHandler<Integer> PARAMETER_AFTER_ID =
+      ParameterHandler.intParameter("after_id")
+          .build();
+
   private final RequestHandler requestHandler;
   private final LedgerManager ledgerManager;
 
@@ -63,19 +81,46 @@ class AccountTransactionListServlet extends HttpServlet {
     }
 
     final int id = Integer.parseInt(matcher.group(1));
-    Iterable<AccountTransaction> accountTransactions =
-        requestHandler.handle(request, response,
-            new RequestHandler.Action<Iterable<AccountTransaction>>() {
-              @Override
-              public Iterable<AccountTransaction> doAction(HttpServletRequest request)
-                  throws StorageException, ServletException {
-                Account account = ledgerManager.getAccount(id);
-                return ledgerManager.getAccountTransactions(account);
-              }
-            });
+    requestHandler.handle(request, response,
+        new RequestHandler.Action<RecordIterator<AccountTransaction>>() {
+          @Override
+          public RecordIterator<AccountTransaction> doAction(HttpServletRequest request)
+              throws StorageException, ServletException {
+            int limit = PARAMETER_LIMIT.parse(request);
+            if (limit < 0) {
+              throw new ServletException("The limit cannot be negative: " + limit);
+            }
+            Account account = ledgerManager.getAccount(id);
+            return ledgerManager.getAccountTransactions(account, parseAfter(request), limit);
+          }
+        },
+        new RequestHandler.ResponseWriter<RecordIterator<AccountTransaction>>() {
+          @Override
+          public void writeResponse(RecordIterator<AccountTransaction> accountTransactions,
+              HttpServletResponse response) throws IOException {
+            // Write result to response, streaming the transactions as they are read.
+            try {
+              response.setContentType("application/json");
+              JSONUtils.writeJSONString(response.getWriter(), accountTransactions);
+            } finally {
+              accountTransactions.close();
+            }
+          }
+        });
+  }
 
-    // Write result to response.
-    response.setContentType("application/json");
-    JSONUtils.writeJSONString(response.getWriter(), accountTransactions);
+  @Nullable
+  private static InstantRecordPosition parseAfter(HttpServletRequest request)
+      throws ServletException {
+    Instant afterInstant = PARAMETER_AFTER_INSTANT.parse(request);
+    Integer afterId = PARAMETER_AFTER_ID.parse(request);
+    if (afterInstant == null && afterId == null) {
+      return null;
+    }
+    if (afterInstant == null || afterId == null) {
+      throw new ServletException(
+          "Both after_instant and after_id must be supplied to continue from a transaction.");
+    }
+    return InstantRecordPosition.of(afterInstant, afterId);
   }
 }
@@ -20,7 +20,9 @@ import org.chaston.oakfunds.storage.Record;
 import org.chaston.oakfunds.storage.RecordType;
 
 /**
- * TODO(mchaston): write JavaDocs
+ * A set of modelled transactions. Every model other than the base model is an overlay on the
+ * base model: it only stores the transactions that it adds and the changes that it makes to the
+ * transactions of the base model, and reports on it include the transactions of both.
  */
 public interface Model extends Record<Model> {
 
@@ -30,6 +30,7 @@ public interface ModelAccountTransaction extends InstantRecord<ModelAccountTrans
   public static final RecordType<ModelAccountTransaction> TYPE =
       RecordType.builder("model_account_transaction", ModelAccountTransaction.class)
           .containedBy(Account.TYPE)
+          .withIndex(ModelBound.ATTRIBUTE_MODEL_ID)
           .build();
 
   String ATTRIBUTE_AMOUNT = "amount";
@@ -37,6 +38,7 @@ public interface ModelAccountTransaction extends InstantRecord<ModelAccountTrans
   String ATTRIBUTE_DISTRIBUTION_TIME_UNIT = "distribution_time_unit";
   String ATTRIBUTE_DERIVED = "derived";
   String ATTRIBUTE_SISTER_TRANSACTION_ID = "sister_transaction_id";
+  String ATTRIBUTE_OVERRIDDEN_TRANSACTION_ID = "overridden_transaction_id";
 
   @AttributeMethod(attribute = ATTRIBUTE_AMOUNT, required = true)
   BigDecimal getAmount();
@@ -52,4 +54,11 @@ public interface ModelAccountTransaction extends InstantRecord<ModelAccountTrans
 
   @AttributeMethod(attribute = ATTRIBUTE_SISTER_TRANSACTION_ID)
   int getSisterTransactionId();
+
+  /**
+   * Returns the ID of the base model transaction that this transaction overrides within its
+   * model, or null if it is not part of an override.
+   */
+  @AttributeMethod(attribute = ATTRIBUTE_OVERRIDDEN_TRANSACTION_ID)
+  Integer getOverriddenTransactionId();
 }
@@ -30,6 +30,8 @@ public interface ModelDistributionTransaction extends InstantRecord<ModelDistrib
   static final RecordType<ModelDistributionTransaction> TYPE =
       RecordType.builder("model_distribution_transaction", ModelDistributionTransaction.class)
           .containedBy(Account.TYPE)
+          .withIndex(ModelBound.ATTRIBUTE_MODEL_ID)
+          .withIndex(ModelDistributionTransaction.ATTRIBUTE_ACCOUNT_TRANSACTION_ID)
           .build();
 
   String ATTRIBUTE_AMOUNT = "amount";
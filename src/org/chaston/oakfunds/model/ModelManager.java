@@ -58,6 +58,28 @@ public interface ModelManager {
   void deleteAdHocEvent(ModelAccountTransaction modelAccountTransaction)
       throws StorageException;
 
+  /**
+   * Replaces an ad hoc event of the base model within another model, without changing the base
+   * model. Any previous override of the event within the model is replaced.
+   */
+  ModelAccountTransaction overrideAdHocEvent(Model model,
+      ModelAccountTransaction baseModelAccountTransaction, Instant date, int distributionTime,
+      DistributionTimeUnit distributionTimeUnit, BigDecimal amount)
+      throws StorageException;
+
+  /**
+   * Removes an ad hoc event of the base model from another model, without changing the base
+   * model.
+   */
+  void excludeAdHocEvent(Model model, ModelAccountTransaction baseModelAccountTransaction)
+      throws StorageException;
+
+  /**
+   * Undoes any override or exclusion of an ad hoc event of the base model within another model.
+   */
+  void revertAdHocEvent(Model model, ModelAccountTransaction baseModelAccountTransaction)
+      throws StorageException;
+
   Iterable<ModelAccountTransaction> getModelTransactions(Model model, Account account,
       Instant start, Instant end) throws StorageException;
 
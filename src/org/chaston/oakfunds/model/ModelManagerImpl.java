@@ -15,9 +15,11 @@
  */
 package org.chaston.oakfunds.model;
 
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
 import com.google.inject.Inject;
 import org.chaston.oakfunds.ledger.Account;
 import org.chaston.oakfunds.ledger.AccountTransaction;
@@ -46,16 +48,21 @@ import org.chaston.oakfunds.storage.Store;
 import org.chaston.oakfunds.storage.Transaction;
 import org.chaston.oakfunds.system.SystemPropertiesManager;
 import org.chaston.oakfunds.util.DateUtil;
+import org.chaston.oakfunds.util.Pair;
 import org.joda.time.DateTimeFieldType;
 import org.joda.time.DurationFieldType;
 import org.joda.time.Instant;
 import org.joda.time.MutableDateTime;
 
+import javax.annotation.Nullable;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * TODO(mchaston): write JavaDocs
@@ -106,6 +113,9 @@ class ModelManagerImpl implements ModelManager {
           .addRelatedAction(Model.TYPE, ActionType.READ)
           .addRelatedAction(Account.TYPE, ActionType.READ)
           .addRelatedAction(ModelAccountTransaction.TYPE, ActionType.UPDATE)
+          // The cancellations of overrides in other models are replaced with the event.
+          .addRelatedAction(ModelAccountTransaction.TYPE, ActionType.CREATE)
+          .addRelatedAction(ModelAccountTransaction.TYPE, ActionType.DELETE)
           .addRelatedAction(ModelDistributionTransaction.TYPE, ActionType.CREATE)
           .addRelatedAction(ModelDistributionTransaction.TYPE, ActionType.UPDATE)
           .addRelatedAction(ModelDistributionTransaction.TYPE, ActionType.DELETE)
@@ -116,6 +126,15 @@ class ModelManagerImpl implements ModelManager {
           .addRelatedAction(ModelAccountTransaction.TYPE, ActionType.DELETE)
           .addRelatedAction(ModelDistributionTransaction.TYPE, ActionType.DELETE)
           .build();
+  static final Permission PERMISSION_MODEL_ACCOUNT_TRANSACTION_OVERRIDE =
+      Permission.builder("model_account_transaction.override")
+          .addRelatedAction(Account.TYPE, ActionType.READ)
+          .addRelatedAction(ModelAccountTransaction.TYPE, ActionType.CREATE)
+          .addRelatedAction(ModelAccountTransaction.TYPE, ActionType.DELETE)
+          .addRelatedAction(ModelDistributionTransaction.TYPE, ActionType.CREATE)
+          .addRelatedAction(ModelDistributionTransaction.TYPE, ActionType.UPDATE)
+          .addRelatedAction(ModelDistributionTransaction.TYPE, ActionType.DELETE)
+          .build();
   static final Permission PERMISSION_MODEL_ACCOUNT_TRANSACTION_REPORT =
       Permission.builder("model_account_transaction.report")
           .addRelatedAction(AccountTransaction.TYPE, ActionType.REPORT)
@@ -255,12 +274,17 @@ class ModelManagerImpl implements ModelManager {
     attributes.put(ModelAccountTransaction.ATTRIBUTE_DERIVED, false);
     attributes.put(ModelAccountTransaction.ATTRIBUTE_DISTRIBUTION_TIME, distributionTime);
     attributes.put(ModelAccountTransaction.ATTRIBUTE_DISTRIBUTION_TIME_UNIT, distributionTimeUnit);
+    return insertAdHocEvent(model, account, date, attributes);
+  }
+
+  private ModelAccountTransaction insertAdHocEvent(Model model, Account account, Instant date,
+      Map<String, Object> attributes) throws StorageException {
     ModelAccountTransaction accountTransaction =
         store.insertInstantRecord(account, ModelAccountTransaction.TYPE, date, attributes);
     recalculateDistributionTransactions(model, account, accountTransaction);
-    ModelAccountTransaction compensatingAccountTransaction =
-        createCompensatingAccountTransaction(account, accountTransaction, attributes);
-    if (compensatingAccountTransaction != null) {
+    for (ModelAccountTransaction compensatingAccountTransaction
+        : createCompensatingAccountTransactions(account,
+            ImmutableList.of(accountTransaction), attributes)) {
       recalculateDistributionTransactions(model, account, compensatingAccountTransaction);
     }
     return accountTransaction;
@@ -271,6 +295,7 @@ class ModelManagerImpl implements ModelManager {
   public ModelAccountTransaction updateAdHocEvent(ModelAccountTransaction modelAccountTransaction,
       Instant date, int distributionTime, DistributionTimeUnit distributionTimeUnit,
       BigDecimal amount) throws StorageException {
+    checkChangeable(modelAccountTransaction);
     Map<String, Object> attributes = new HashMap<>();
     attributes.put(ModelBound.ATTRIBUTE_MODEL_ID, modelAccountTransaction.getModelId());
     attributes.put(ModelAccountTransaction.ATTRIBUTE_AMOUNT, amount);
@@ -285,6 +310,9 @@ class ModelManagerImpl implements ModelManager {
         store.updateInstantRecord(account,
             ModelAccountTransaction.TYPE, modelAccountTransaction.getId(), date, attributes);
     recalculateDistributionTransactions(model, account, updatedModelAccountTransaction);
+    if (updatedModelAccountTransaction.getModelId() == baseModelId) {
+      recalculateCancellations(account, updatedModelAccountTransaction);
+    }
     return updatedModelAccountTransaction;
   }
 
@@ -292,12 +320,239 @@ class ModelManagerImpl implements ModelManager {
   @PermissionAssertion("model_account_transaction.delete")
   public void deleteAdHocEvent(ModelAccountTransaction modelAccountTransaction)
       throws StorageException {
+    checkChangeable(modelAccountTransaction);
     Account account =
         store.getRecord(Account.TYPE, modelAccountTransaction.getAccountId());
     store.deleteInstantRecords(account,
         ModelAccountTransaction.TYPE, ImmutableList.of(
             IdentifierSearchTerm.of(modelAccountTransaction.getId())));
     deleteDistributionTransactions(account, modelAccountTransaction);
+    if (modelAccountTransaction.getModelId() == baseModelId) {
+      // Other models can no longer override the event, so all of their overrides are removed.
+      deleteOverridingTransactions(account, modelAccountTransaction.getId(),
+          ImmutableList.<SearchTerm>of());
+    }
+  }
+
+  @Override
+  @PermissionAssertion("model_account_transaction.override")
+  public ModelAccountTransaction overrideAdHocEvent(Model model,
+      ModelAccountTransaction baseModelAccountTransaction, Instant date, int distributionTime,
+      DistributionTimeUnit distributionTimeUnit, BigDecimal amount)
+      throws StorageException {
+    Account account = cancelBaseAdHocEvent(model, baseModelAccountTransaction);
+    Map<String, Object> attributes = new HashMap<>();
+    attributes.put(ModelBound.ATTRIBUTE_MODEL_ID, model.getId());
+    attributes.put(ModelAccountTransaction.ATTRIBUTE_AMOUNT, amount);
+    attributes.put(ModelAccountTransaction.ATTRIBUTE_DERIVED, false);
+    attributes.put(ModelAccountTransaction.ATTRIBUTE_DISTRIBUTION_TIME, distributionTime);
+    attributes.put(ModelAccountTransaction.ATTRIBUTE_DISTRIBUTION_TIME_UNIT, distributionTimeUnit);
+    attributes.put(ModelAccountTransaction.ATTRIBUTE_OVERRIDDEN_TRANSACTION_ID,
+        baseModelAccountTransaction.getId());
+    return insertAdHocEvent(model, account, date, attributes);
+  }
+
+  @Override
+  @PermissionAssertion("model_account_transaction.override")
+  public void excludeAdHocEvent(Model model, ModelAccountTransaction baseModelAccountTransaction)
+      throws StorageException {
+    cancelBaseAdHocEvent(model, baseModelAccountTransaction);
+  }
+
+  @Override
+  @PermissionAssertion("model_account_transaction.override")
+  public void revertAdHocEvent(Model model, ModelAccountTransaction baseModelAccountTransaction)
+      throws StorageException {
+    checkOverridable(model, baseModelAccountTransaction);
+    Account account = store.getRecord(Account.TYPE, baseModelAccountTransaction.getAccountId());
+    deleteOverridingTransactions(account, baseModelAccountTransaction.getId(),
+        ImmutableList.of(modelSearchTerm(model.getId())));
+  }
+
+  /**
+   * Cancels out an ad hoc event of the base model within another model. The model only stores
+   * the difference from the base model: copies of the event and its compensating transactions
+   * with the opposite amounts, which the reports add to the base event. The cancellation is
+   * derived from what the base model stores, and is recalculated whenever the event changes.
+   *
+   * @return the account of the event
+   */
+  private Account cancelBaseAdHocEvent(Model model,
+      ModelAccountTransaction baseModelAccountTransaction) throws StorageException {
+    checkOverridable(model, baseModelAccountTransaction);
+    Account account = store.getRecord(Account.TYPE, baseModelAccountTransaction.getAccountId());
+    deleteOverridingTransactions(account, baseModelAccountTransaction.getId(),
+        ImmutableList.of(modelSearchTerm(model.getId())));
+    insertCancellation(model.getId(), account, baseModelAccountTransaction);
+    return account;
+  }
+
+  private void checkOverridable(Model model,
+      ModelAccountTransaction baseModelAccountTransaction) {
+    if (model.isBaseModel()) {
+      throw new IllegalArgumentException("The base model cannot override its own events.");
+    }
+    if (baseModelAccountTransaction.getModelId() != baseModelId) {
+      throw new IllegalArgumentException("Only events of the base model can be overridden.");
+    }
+    if (baseModelAccountTransaction.isDerived()) {
+      throw new IllegalArgumentException("Only ad hoc events can be overridden.");
+    }
+  }
+
+  /**
+   * The cancellations of the events of the base model are derived from those events, so they
+   * are only changed by overriding or reverting the events.
+   */
+  private void checkChangeable(ModelAccountTransaction modelAccountTransaction) {
+    if (modelAccountTransaction.getOverriddenTransactionId() != null
+        && modelAccountTransaction.isDerived()) {
+      throw new IllegalArgumentException("Cancellations of base model events cannot be changed"
+          + " directly; use overrideAdHocEvent or revertAdHocEvent.");
+    }
+  }
+
+  /**
+   * Replaces the cancellations of an event of the base model that was changed, in each of the
+   * models that override it, leaving the replacement events of the models as they are.
+   */
+  private void recalculateCancellations(Account account,
+      ModelAccountTransaction baseModelAccountTransaction) throws StorageException {
+    ImmutableList<SearchTerm> searchTerms = ImmutableList.<SearchTerm>of(
+        AttributeSearchTerm.of(ModelAccountTransaction.ATTRIBUTE_OVERRIDDEN_TRANSACTION_ID,
+            SearchOperator.EQUALS, baseModelAccountTransaction.getId()),
+        AttributeSearchTerm.of(ModelAccountTransaction.ATTRIBUTE_DERIVED,
+            SearchOperator.EQUALS, true));
+    Set<Integer> overridingModelIds = new LinkedHashSet<>();
+    for (ModelAccountTransaction cancellation
+        : store.findInstantRecords(account, ModelAccountTransaction.TYPE,
+            DateUtil.BEGINNING_OF_TIME, DateUtil.END_OF_TIME, searchTerms)) {
+      overridingModelIds.add(cancellation.getModelId());
+    }
+    if (overridingModelIds.isEmpty()) {
+      return;
+    }
+    deleteOverridingTransactions(account, baseModelAccountTransaction.getId(),
+        ImmutableList.of(AttributeSearchTerm.of(ModelAccountTransaction.ATTRIBUTE_DERIVED,
+            SearchOperator.EQUALS, true)));
+    for (int modelId : overridingModelIds) {
+      insertCancellation(modelId, account, baseModelAccountTransaction);
+    }
+  }
+
+  /**
+   * Stores the cancellation of an event of the base model in a model. Rather than being
+   * calculated again (which depends on the current year), the distributions are copied from
+   * those of the base model so that they cancel out month by month.
+   */
+  private void insertCancellation(int modelId, Account account,
+      ModelAccountTransaction baseModelAccountTransaction) throws StorageException {
+    ModelAccountTransaction cancellation = insertCancellingTransaction(modelId, account,
+        account, baseModelAccountTransaction, baseModelAccountTransaction.getId(), null);
+    BankAccount compensatingAccount = getCompensatingAccount(account);
+    if (compensatingAccount == null) {
+      return;
+    }
+    ImmutableList<SearchTerm> searchTerms = ImmutableList.<SearchTerm>of(
+        modelSearchTerm(baseModelId),
+        AttributeSearchTerm.of(ModelAccountTransaction.ATTRIBUTE_SISTER_TRANSACTION_ID,
+            SearchOperator.EQUALS, baseModelAccountTransaction.getId()));
+    List<ModelAccountTransaction> baseCompensatingAccountTransactions = ImmutableList.copyOf(
+        store.findInstantRecords(compensatingAccount, ModelAccountTransaction.TYPE,
+            DateUtil.BEGINNING_OF_TIME, DateUtil.END_OF_TIME, searchTerms));
+    for (ModelAccountTransaction baseCompensatingAccountTransaction
+        : baseCompensatingAccountTransactions) {
+      insertCancellingTransaction(modelId, account, compensatingAccount,
+          baseCompensatingAccountTransaction, baseModelAccountTransaction.getId(),
+          cancellation.getId());
+    }
+  }
+
+  /**
+   * Stores a copy of a transaction of the base model, and of its distributions (which are kept
+   * in the account of the event, even for compensating transactions), with the opposite amounts.
+   */
+  private ModelAccountTransaction insertCancellingTransaction(int modelId, Account account,
+      Account transactionAccount, ModelAccountTransaction baseAccountTransaction,
+      int overriddenTransactionId, @Nullable Integer sisterTransactionId)
+      throws StorageException {
+    Map<String, Object> attributes = new HashMap<>();
+    attributes.put(ModelBound.ATTRIBUTE_MODEL_ID, modelId);
+    attributes.put(ModelAccountTransaction.ATTRIBUTE_AMOUNT,
+        baseAccountTransaction.getAmount().negate());
+    attributes.put(ModelAccountTransaction.ATTRIBUTE_DERIVED, true);
+    attributes.put(ModelAccountTransaction.ATTRIBUTE_DISTRIBUTION_TIME,
+        baseAccountTransaction.getDistributionTime());
+    attributes.put(ModelAccountTransaction.ATTRIBUTE_DISTRIBUTION_TIME_UNIT,
+        baseAccountTransaction.getDistributionTimeUnit());
+    attributes.put(ModelAccountTransaction.ATTRIBUTE_OVERRIDDEN_TRANSACTION_ID,
+        overriddenTransactionId);
+    if (sisterTransactionId != null) {
+      attributes.put(ModelAccountTransaction.ATTRIBUTE_SISTER_TRANSACTION_ID,
+          sisterTransactionId);
+    }
+    ModelAccountTransaction cancellingTransaction = store.insertInstantRecord(
+        transactionAccount, ModelAccountTransaction.TYPE,
+        baseAccountTransaction.getInstant(), attributes);
+
+    List<Pair<Instant, Map<String, Object>>> distributionRecords = new ArrayList<>();
+    for (ModelDistributionTransaction baseDistribution
+        : store.findInstantRecords(account, ModelDistributionTransaction.TYPE,
+            DateUtil.BEGINNING_OF_TIME, DateUtil.END_OF_TIME,
+            ImmutableList.of(AttributeSearchTerm.of(
+                ModelDistributionTransaction.ATTRIBUTE_ACCOUNT_TRANSACTION_ID,
+                SearchOperator.EQUALS, baseAccountTransaction.getId())))) {
+      Map<String, Object> distributionAttributes = new HashMap<>();
+      distributionAttributes.put(ModelBound.ATTRIBUTE_MODEL_ID, modelId);
+      distributionAttributes.put(ModelDistributionTransaction.ATTRIBUTE_ACCOUNT_TRANSACTION_ID,
+          cancellingTransaction.getId());
+      distributionAttributes.put(ModelDistributionTransaction.ATTRIBUTE_AMOUNT,
+          baseDistribution.getAmount().negate());
+      distributionRecords.add(Pair.of(baseDistribution.getInstant(), distributionAttributes));
+    }
+    if (!distributionRecords.isEmpty()) {
+      store.insertInstantRecords(account, ModelDistributionTransaction.TYPE, distributionRecords);
+    }
+    return cancellingTransaction;
+  }
+
+  private static SearchTerm modelSearchTerm(int modelId) {
+    return AttributeSearchTerm.of(ModelBound.ATTRIBUTE_MODEL_ID, SearchOperator.EQUALS, modelId);
+  }
+
+  /**
+   * Deletes the transactions that override the event of the base model (restricted by the
+   * search terms), including the compensating transactions and all of the distributions.
+   */
+  private void deleteOverridingTransactions(Account account, int overriddenTransactionId,
+      List<SearchTerm> searchTerms) throws StorageException {
+    deleteOverridingTransactions(account, account, overriddenTransactionId, searchTerms);
+    BankAccount compensatingAccount = getCompensatingAccount(account);
+    if (compensatingAccount != null) {
+      deleteOverridingTransactions(account, compensatingAccount, overriddenTransactionId,
+          searchTerms);
+    }
+  }
+
+  private void deleteOverridingTransactions(Account account, Account transactionAccount,
+      int overriddenTransactionId, List<SearchTerm> searchTerms) throws StorageException {
+    ImmutableList<SearchTerm> overridingSearchTerms = ImmutableList.<SearchTerm>builder()
+        .addAll(searchTerms)
+        .add(AttributeSearchTerm.of(ModelAccountTransaction.ATTRIBUTE_OVERRIDDEN_TRANSACTION_ID,
+            SearchOperator.EQUALS, overriddenTransactionId))
+        .build();
+    List<ModelAccountTransaction> overridingTransactions = ImmutableList.copyOf(
+        store.findInstantRecords(transactionAccount, ModelAccountTransaction.TYPE,
+            DateUtil.BEGINNING_OF_TIME, DateUtil.END_OF_TIME, overridingSearchTerms));
+    if (overridingTransactions.isEmpty()) {
+      return;
+    }
+    for (ModelAccountTransaction overridingTransaction : overridingTransactions) {
+      // The distributions of compensating transactions are also kept in the account of the event.
+      deleteDistributionTransactions(account, overridingTransaction);
+    }
+    store.deleteInstantRecords(transactionAccount, ModelAccountTransaction.TYPE,
+        overridingSearchTerms);
   }
 
   @Override
@@ -324,6 +579,7 @@ class ModelManagerImpl implements ModelManager {
   @PermissionAssertion("model_account_transaction.report")
   public Report runTransactionReport(Model model, int startYear, int endYear,
       ReportDateGranularity reportDateGranularity) throws StorageException {
+    // The model only stores its differences from the base model, so both are summed together.
     ImmutableList<SearchTerm> modelBoundSearhTerms = ImmutableList.<SearchTerm>of(
         OrSearchTerm.of(
             AttributeSearchTerm.of(ModelBound.ATTRIBUTE_MODEL_ID,
@@ -341,6 +597,7 @@ class ModelManagerImpl implements ModelManager {
             modelBoundSearhTerms,
             ImmutableMap.<String, String>of(),
             ImmutableMap.of(ModelAccountTransaction.ATTRIBUTE_AMOUNT, MEASURE_AMOUNT))
+        .inParallel()
         .build();
   }
 
@@ -376,12 +633,14 @@ class ModelManagerImpl implements ModelManager {
         attributes.put(ModelBound.ATTRIBUTE_MODEL_ID, model.getId());
         attributes.put(ModelAccountTransaction.ATTRIBUTE_AMOUNT, recurringEvent.getAmount());
         attributes.put(ModelAccountTransaction.ATTRIBUTE_DERIVED, true);
+        List<Pair<Instant, Map<String, Object>>> records = new ArrayList<>();
         for (Instant instant
             : getAllInstantsInRange(recurringEvent.getStart(), recurringEvent.getEnd())) {
-          ModelAccountTransaction accountTransaction = store.insertInstantRecord(
-              account, ModelAccountTransaction.TYPE, instant, attributes);
-          createCompensatingAccountTransaction(account, accountTransaction, attributes);
+          records.add(Pair.of(instant, attributes));
         }
+        List<ModelAccountTransaction> accountTransactions =
+            store.insertInstantRecords(account, ModelAccountTransaction.TYPE, records);
+        createCompensatingAccountTransactions(account, accountTransactions, attributes);
       }
       if (recurringEvent instanceof AnnualRecurringEvent) {
         AnnualRecurringEvent annualRecurringEvent = (AnnualRecurringEvent) recurringEvent;
@@ -393,52 +652,77 @@ class ModelManagerImpl implements ModelManager {
         attributes.put(ModelAccountTransaction.ATTRIBUTE_DISTRIBUTION_TIME_UNIT,
             DistributionTimeUnit.YEARS);
 
+        List<Pair<Instant, Map<String, Object>>> records = new ArrayList<>();
         for (Instant instant
             : getAllInstantsInRange(recurringEvent.getStart(), recurringEvent.getEnd())) {
           if (instant.get(DateTimeFieldType.monthOfYear()) == annualRecurringEvent.getPaymentMonth()) {
-            ModelAccountTransaction accountTransaction =
-                store.insertInstantRecord(account, ModelAccountTransaction.TYPE, instant,
-                    attributes);
-            recalculateDistributionTransactions(model, account, accountTransaction);
-            ModelAccountTransaction compensatingAccountTransaction =
-                createCompensatingAccountTransaction(account, accountTransaction, attributes);
-            if (compensatingAccountTransaction != null) {
-              recalculateDistributionTransactions(model, account, compensatingAccountTransaction);
-            }
+            records.add(Pair.of(instant, attributes));
           }
         }
+        List<ModelAccountTransaction> accountTransactions =
+            store.insertInstantRecords(account, ModelAccountTransaction.TYPE, records);
+        for (ModelAccountTransaction accountTransaction : accountTransactions) {
+          recalculateDistributionTransactions(model, account, accountTransaction);
+        }
+        for (ModelAccountTransaction compensatingAccountTransaction
+            : createCompensatingAccountTransactions(account, accountTransactions, attributes)) {
+          recalculateDistributionTransactions(model, account, compensatingAccountTransaction);
+        }
       }
     }
   }
 
-  private ModelAccountTransaction createCompensatingAccountTransaction(Account account,
-      ModelAccountTransaction accountTransaction, Map<String, Object> attributes) throws StorageException {
-    Map<String, Object> alternateAttributes = new HashMap<>(attributes);
-    alternateAttributes.put(
-        ModelAccountTransaction.ATTRIBUTE_SISTER_TRANSACTION_ID, accountTransaction.getId());
+  private List<ModelAccountTransaction> createCompensatingAccountTransactions(Account account,
+      List<ModelAccountTransaction> accountTransactions, Map<String, Object> attributes)
+      throws StorageException {
+    BankAccount bankAccount = getCompensatingAccount(account);
+    if (bankAccount == null) {
+      return ImmutableList.of();
+    }
     if (account instanceof ExpenseAccount) {
-      ExpenseAccount revenueAccount = (ExpenseAccount) account;
-      if (revenueAccount.getDefaultSourceAccountId() != null) {
-        BankAccount bankAccount =
-            ledgerManager.getBankAccount(revenueAccount.getDefaultSourceAccountId());
-        BigDecimal amount = (BigDecimal) attributes.get(ModelAccountTransaction.ATTRIBUTE_AMOUNT);
-        alternateAttributes.put(ModelAccountTransaction.ATTRIBUTE_AMOUNT, amount.negate());
-        return store.insertInstantRecord(bankAccount,
-            ModelAccountTransaction.TYPE, accountTransaction.getInstant(), alternateAttributes);
+      BigDecimal amount = (BigDecimal) attributes.get(ModelAccountTransaction.ATTRIBUTE_AMOUNT);
+      Map<String, Object> negatedAttributes = new HashMap<>(attributes);
+      negatedAttributes.put(ModelAccountTransaction.ATTRIBUTE_AMOUNT, amount.negate());
+      return store.insertInstantRecords(bankAccount, ModelAccountTransaction.TYPE,
+          createCompensatingRecords(accountTransactions, negatedAttributes));
+    }
+    return store.insertInstantRecords(bankAccount, ModelAccountTransaction.TYPE,
+        createCompensatingRecords(accountTransactions, attributes));
+  }
+
+  /**
+   * Returns the bank account that the transactions of the account are compensated in, or null
+   * if they are not compensated.
+   */
+  @Nullable
+  private BankAccount getCompensatingAccount(Account account) throws StorageException {
+    if (account instanceof ExpenseAccount) {
+      ExpenseAccount expenseAccount = (ExpenseAccount) account;
+      if (expenseAccount.getDefaultSourceAccountId() != null) {
+        return ledgerManager.getBankAccount(expenseAccount.getDefaultSourceAccountId());
       }
     }
     if (account instanceof RevenueAccount) {
       RevenueAccount revenueAccount = (RevenueAccount) account;
       if (revenueAccount.getDefaultDepositAccountId() != null) {
-        BankAccount bankAccount =
-            ledgerManager.getBankAccount(revenueAccount.getDefaultDepositAccountId());
-        return store.insertInstantRecord(bankAccount,
-            ModelAccountTransaction.TYPE, accountTransaction.getInstant(), alternateAttributes);
+        return ledgerManager.getBankAccount(revenueAccount.getDefaultDepositAccountId());
       }
     }
     return null;
   }
 
+  private List<Pair<Instant, Map<String, Object>>> createCompensatingRecords(
+      List<ModelAccountTransaction> accountTransactions, Map<String, Object> attributes) {
+    List<Pair<Instant, Map<String, Object>>> records = new ArrayList<>();
+    for (ModelAccountTransaction accountTransaction : accountTransactions) {
+      Map<String, Object> alternateAttributes = new HashMap<>(attributes);
+      alternateAttributes.put(
+          ModelAccountTransaction.ATTRIBUTE_SISTER_TRANSACTION_ID, accountTransaction.getId());
+      records.add(Pair.of(accountTransaction.getInstant(), alternateAttributes));
+    }
+    return records;
+  }
+
   private void recalculateDistributionTransactions(Model model, Account account, ModelAccountTransaction modelAccountTransaction)
       throws StorageException {
     int distributionMonths = modelAccountTransaction.getDistributionTimeUnit() == DistributionTimeUnit.MONTHS
@@ -452,12 +736,7 @@ class ModelManagerImpl implements ModelManager {
         modelAccountTransaction.getAmount().divide(
             BigDecimal.valueOf(distributionMonths), 5, RoundingMode.HALF_UP);
     BigDecimal firstDistributionAmount = BigDecimal.ZERO;
-
-    // Delete previous distributions.
-    store.deleteInstantRecords(account, ModelDistributionTransaction.TYPE,
-        ImmutableList.of(AttributeSearchTerm.of(
-            ModelDistributionTransaction.ATTRIBUTE_ACCOUNT_TRANSACTION_ID, SearchOperator.EQUALS,
-            modelAccountTransaction.getId())));
+    List<Pair<Instant, Map<String, Object>>> distributionRecords = new ArrayList<>();
 
     while (mutableDateTime.isBefore(end)) {
       if (mutableDateTime.isBefore(firstDistributionInstant)) {
@@ -470,8 +749,7 @@ class ModelManagerImpl implements ModelManager {
             modelAccountTransaction.getId());
         distributionAttributes.put(ModelDistributionTransaction.ATTRIBUTE_AMOUNT,
             amountPerDistribution);
-        store.insertInstantRecord(account, ModelDistributionTransaction.TYPE,
-            mutableDateTime.toInstant(), distributionAttributes);
+        distributionRecords.add(Pair.of(mutableDateTime.toInstant(), distributionAttributes));
       }
       mutableDateTime.add(DurationFieldType.months(), 1);
     }
@@ -484,8 +762,7 @@ class ModelManagerImpl implements ModelManager {
           modelAccountTransaction.getId());
       firstDistributionAttributes.put(ModelDistributionTransaction.ATTRIBUTE_AMOUNT,
           firstDistributionAmount);
-      store.insertInstantRecord(account, ModelDistributionTransaction.TYPE,
-          firstDistributionInstant, firstDistributionAttributes);
+      distributionRecords.add(Pair.of(firstDistributionInstant, firstDistributionAttributes));
     }
 
     // Add the anti-distribution that cancels out the others when the transaction is executed.
@@ -496,8 +773,64 @@ class ModelManagerImpl implements ModelManager {
         modelAccountTransaction.getId());
     antiDistributionAttributes.put(ModelDistributionTransaction.ATTRIBUTE_AMOUNT,
         amountPerDistribution.negate().multiply(BigDecimal.valueOf(distributionMonths - 1)));
-    store.insertInstantRecord(account, ModelDistributionTransaction.TYPE,
-        mutableDateTime.toInstant(), antiDistributionAttributes);
+    distributionRecords.add(Pair.of(mutableDateTime.toInstant(), antiDistributionAttributes));
+
+    reconcileDistributionTransactions(account, modelAccountTransaction, distributionRecords);
+  }
+
+  /**
+   * Brings the stored distributions in line with the calculated ones, reusing the existing rows
+   * wherever the instant matches so that a change to the amount alone is a batch of updates.
+   */
+  private void reconcileDistributionTransactions(Account account,
+      ModelAccountTransaction modelAccountTransaction,
+      List<Pair<Instant, Map<String, Object>>> distributionRecords) throws StorageException {
+    ListMultimap<Instant, ModelDistributionTransaction> existingDistributions =
+        ArrayListMultimap.create();
+    for (ModelDistributionTransaction existingDistribution :
+        store.findInstantRecords(account, ModelDistributionTransaction.TYPE,
+            DateUtil.BEGINNING_OF_TIME, DateUtil.END_OF_TIME,
+            ImmutableList.of(AttributeSearchTerm.of(
+                ModelDistributionTransaction.ATTRIBUTE_ACCOUNT_TRANSACTION_ID,
+                SearchOperator.EQUALS, modelAccountTransaction.getId())))) {
+      existingDistributions.put(existingDistribution.getInstant(), existingDistribution);
+    }
+
+    List<Pair<ModelDistributionTransaction, Map<String, Object>>> updates = new ArrayList<>();
+    List<Pair<Instant, Map<String, Object>>> inserts = new ArrayList<>();
+    for (Pair<Instant, Map<String, Object>> distributionRecord : distributionRecords) {
+      List<ModelDistributionTransaction> candidates =
+          existingDistributions.get(distributionRecord.getFirst());
+      if (candidates.isEmpty()) {
+        inserts.add(distributionRecord);
+        continue;
+      }
+      ModelDistributionTransaction existingDistribution = candidates.remove(0);
+      Map<String, Object> attributes = distributionRecord.getSecond();
+      BigDecimal amount = (BigDecimal) attributes.get(ModelDistributionTransaction.ATTRIBUTE_AMOUNT);
+      if (existingDistribution.getAmount().compareTo(amount) != 0
+          || existingDistribution.getModelId()
+              != (Integer) attributes.get(ModelBound.ATTRIBUTE_MODEL_ID)) {
+        updates.add(Pair.of(existingDistribution, attributes));
+      }
+    }
+
+    // Whatever was not matched is no longer part of the distribution.
+    if (!existingDistributions.isEmpty()) {
+      List<SearchTerm> obsoleteIds = new ArrayList<>();
+      for (ModelDistributionTransaction obsoleteDistribution : existingDistributions.values()) {
+        obsoleteIds.add(IdentifierSearchTerm.of(obsoleteDistribution.getId()));
+      }
+      store.deleteInstantRecords(account, ModelDistributionTransaction.TYPE,
+          ImmutableList.<SearchTerm>of(
+              OrSearchTerm.of(obsoleteIds.toArray(new SearchTerm[obsoleteIds.size()]))));
+    }
+    if (!updates.isEmpty()) {
+      store.updateInstantRecords(account, ModelDistributionTransaction.TYPE, updates);
+    }
+    if (!inserts.isEmpty()) {
+      store.insertInstantRecords(account, ModelDistributionTransaction.TYPE, inserts);
+    }
   }
 
   private void deleteDistributionTransactions(Account account, ModelAccountTransaction modelAccountTransaction)
@@ -59,6 +59,8 @@ public class ModelTypesModule extends AbstractModule {
         .toInstance(ModelManagerImpl.PERMISSION_MODEL_ACCOUNT_TRANSACTION_UPDATE);
     permissionMultibinder.addBinding()
         .toInstance(ModelManagerImpl.PERMISSION_MODEL_ACCOUNT_TRANSACTION_DELETE);
+    permissionMultibinder.addBinding()
+        .toInstance(ModelManagerImpl.PERMISSION_MODEL_ACCOUNT_TRANSACTION_OVERRIDE);
     permissionMultibinder.addBinding()
         .toInstance(ModelManagerImpl.PERMISSION_MODEL_ACCOUNT_TRANSACTION_REPORT);
     permissionMultibinder.addBinding()
@@ -30,6 +30,7 @@ public interface RecurringEvent<T extends RecurringEvent> extends IntervalRecord
   static final RecordType<RecurringEvent> TYPE =
       RecordType.builder("recurring_event", RecurringEvent.class)
           .containedBy(Account.TYPE)
+          .withIndex(ModelBound.ATTRIBUTE_MODEL_ID)
           .build();
 
   String ATTRIBUTE_AMOUNT = "amount";
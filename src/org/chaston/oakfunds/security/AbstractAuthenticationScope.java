@@ -15,36 +15,48 @@
  */
 package org.chaston.oakfunds.security;
 
-import org.chaston.oakfunds.storage.RecordType;
-
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
  * TODO(mchaston): write JavaDocs
  */
 abstract class AbstractAuthenticationScope implements AuthenticationScope {
 
-  private final Map<RecordType, Map<ActionType, AtomicInteger>> accessCounterMap = new HashMap<>();
+  // The number of currently asserted permissions that grant each (record type, action) pair, by
+  // the access slot from the PermissionRegistry. The scope may be shared with other threads (see
+  // SystemAuthenticationManagerImpl#propagateCurrentScope), so the counters are atomic.
+  private final AtomicIntegerArray accessCounters;
   private final SystemAuthenticationManagerImpl authenticationManager;
 
   protected AbstractAuthenticationScope(SystemAuthenticationManagerImpl authenticationManager) {
     this.authenticationManager = authenticationManager;
+    this.accessCounters = new AtomicIntegerArray(
+        authenticationManager.getPermissionRegistry().getAccessSlotCount());
   }
 
-  abstract boolean hasPermission(String permissionName);
+  /**
+   * Returns whether the permission with the given ordinal (which is -1 for permissions that do
+   * not exist) has been granted.
+   */
+  abstract boolean hasPermission(int permissionOrdinal);
 
   abstract Set<String> getPermissions();
 
-  Map<ActionType, AtomicInteger> getAccessCounters(RecordType<?> recordType) {
-    Map<ActionType, AtomicInteger> accessCounters = accessCounterMap.get(recordType);
-    if (accessCounters == null) {
-      accessCounters = new HashMap<>();
-      accessCounterMap.put(recordType, accessCounters);
+  void grantAccess(int[] accessSlots) {
+    for (int accessSlot : accessSlots) {
+      accessCounters.incrementAndGet(accessSlot);
+    }
+  }
+
+  void revokeAccess(int[] accessSlots) {
+    for (int accessSlot : accessSlots) {
+      accessCounters.decrementAndGet(accessSlot);
     }
-    return accessCounters;
+  }
+
+  boolean hasAccess(int accessSlot) {
+    return accessSlot >= 0 && accessCounters.get(accessSlot) > 0;
   }
 
   @Override
@@ -19,6 +19,7 @@ import org.chaston.oakfunds.storage.Record;
 import org.chaston.oakfunds.storage.RecordType;
 
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 /**
  * TODO(mchaston): write JavaDocs
@@ -29,4 +30,10 @@ public interface AuthorizationContext {
   SinglePermissionAssertion assertPermission(String permissionName);
 
   Set<String> getAllPermissions();
+
+  /**
+   * Wraps the callable so that it is authorized as the current user (with the permissions that
+   * are currently asserted) when it is called on another thread.
+   */
+  <V> Callable<V> inCurrentScope(Callable<V> callable);
 }
@@ -19,9 +19,8 @@ import com.google.inject.Inject;
 import org.chaston.oakfunds.storage.Record;
 import org.chaston.oakfunds.storage.RecordType;
 
-import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Callable;
 
 /**
  * TODO(mchaston): write JavaDocs
@@ -41,14 +40,24 @@ class AuthorizationContextImpl implements AuthorizationContext {
 
   @Override
   public SinglePermissionAssertion assertPermission(String permissionName) {
-    if (!currentUserHasPermission(permissionName)) {
+    return assertPermission(permissionName,
+        permissionRegistry.getPermissionOrdinal(permissionName));
+  }
+
+  /**
+   * Asserts the permission with the given name and ordinal, for callers that have already
+   * looked up the ordinal.
+   */
+  SinglePermissionAssertion assertPermission(String permissionName, int permissionOrdinal) {
+    AbstractAuthenticationScope authenticationScope = authenticationManager.getCurrentScope();
+    if (!authenticationScope.hasPermission(permissionOrdinal)) {
       throw throwAuthorizationException(permissionName);
     }
-    Permission permission = permissionRegistry.getPermission(permissionName);
-    if (permission == null) {
+    if (permissionOrdinal < 0) {
       throw new IllegalArgumentException("Permission " + permissionName + " does not exist.");
     }
-    return new SinglePermissionAssertionImpl(authenticationManager.getCurrentScope(), permission);
+    return new SinglePermissionAssertionImpl(authenticationScope,
+        permissionRegistry.getAccessSlots(permissionOrdinal));
   }
 
   @Override
@@ -56,30 +65,18 @@ class AuthorizationContextImpl implements AuthorizationContext {
     return authenticationManager.getCurrentScope().getPermissions();
   }
 
-  private boolean currentUserHasPermission(String permission) {
-    return authenticationManager.getCurrentScope().hasPermission(permission);
+  @Override
+  public <V> Callable<V> inCurrentScope(Callable<V> callable) {
+    return authenticationManager.propagateCurrentScope(callable);
   }
 
   @Override
   public <T extends Record> void assertAccess(RecordType<T> recordType, ActionType actionType) {
-    AbstractAuthenticationScope authenticationScope = authenticationManager.getCurrentScope();
-    Map<ActionType, AtomicInteger> actionTypeCounters =
-        authenticationScope.getAccessCounters(recordType);
-    // Check for direct access.
-    AtomicInteger actionTypeCounter = actionTypeCounters.get(actionType);
-    if (actionTypeCounter != null && actionTypeCounter.get() > 0) {
-      // Found a match.
-      return;
-    }
-    // Check for implied access.
-    for (ActionType impliedActionType : actionType.getImpliedActions()) {
-      actionTypeCounter = actionTypeCounters.get(impliedActionType);
-      if (actionTypeCounter != null && actionTypeCounter.get() > 0) {
-        // Found a match.
-        return;
-      }
+    // The access slots of the permissions include the implied actions, so one check is enough.
+    if (!authenticationManager.getCurrentScope().hasAccess(
+        permissionRegistry.getAccessSlot(recordType, actionType))) {
+      throw throwAuthorizationException(recordType, actionType);
     }
-    throw throwAuthorizationException(recordType, actionType);
   }
 
   private <T extends Record> AuthorizationException throwAuthorizationException(
@@ -17,23 +17,73 @@ package org.chaston.oakfunds.security;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
+import org.chaston.oakfunds.storage.RecordType;
 
 import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 /**
- * TODO(mchaston): write JavaDocs
+ * The permissions that can be granted, each of which is given a dense ordinal when the registry
+ * is built. Every record type that a permission relates to is also given an ordinal, so that
+ * each (record type, action) pair has a slot in an array of access counters (see
+ * {@link AbstractAuthenticationScope}). A permission's slots include those of the actions that
+ * its actions imply, so checking access is a single array read.
  */
 class PermissionRegistry {
+  private static final ActionType[] ACTION_TYPES = ActionType.values();
+
   private final ImmutableMap<String, Permission> permissions;
+  private final ImmutableMap<String, Integer> permissionOrdinals;
+  private final ImmutableMap<RecordType, Integer> recordTypeOrdinals;
+  // The access slots granted by each permission, by the ordinal of the permission.
+  private final int[][] permissionAccessSlots;
 
   @Inject
   PermissionRegistry(Set<Permission> permissions) {
     ImmutableMap.Builder<String, Permission> permissionsBuilder = ImmutableMap.builder();
+    ImmutableMap.Builder<String, Integer> permissionOrdinalsBuilder = ImmutableMap.builder();
+    Map<RecordType, Integer> recordTypeOrdinalsBuilder = new HashMap<>();
     for (Permission permission : permissions) {
       permissionsBuilder.put(permission.getName(), permission);
+      for (RecordType recordType : permission.getRelatedActions().keySet()) {
+        if (!recordTypeOrdinalsBuilder.containsKey(recordType)) {
+          recordTypeOrdinalsBuilder.put(recordType, recordTypeOrdinalsBuilder.size());
+        }
+      }
     }
     this.permissions = permissionsBuilder.build();
+    this.recordTypeOrdinals = ImmutableMap.copyOf(recordTypeOrdinalsBuilder);
+
+    permissionAccessSlots = new int[this.permissions.size()][];
+    int permissionOrdinal = 0;
+    for (Permission permission : this.permissions.values()) {
+      permissionOrdinalsBuilder.put(permission.getName(), permissionOrdinal);
+      permissionAccessSlots[permissionOrdinal] = computeAccessSlots(permission);
+      permissionOrdinal++;
+    }
+    this.permissionOrdinals = permissionOrdinalsBuilder.build();
+  }
+
+  private int[] computeAccessSlots(Permission permission) {
+    TreeSet<Integer> accessSlots = new TreeSet<>();
+    for (Map.Entry<RecordType, ActionType> entry : permission.getRelatedActions().entries()) {
+      for (ActionType actionType : ACTION_TYPES) {
+        // Being able to perform an action also grants the actions that it implies.
+        if (actionType == entry.getValue()
+            || actionType.getImpliedActions().contains(entry.getValue())) {
+          accessSlots.add(getAccessSlot(entry.getKey(), actionType));
+        }
+      }
+    }
+    int[] accessSlotArray = new int[accessSlots.size()];
+    int i = 0;
+    for (int accessSlot : accessSlots) {
+      accessSlotArray[i++] = accessSlot;
+    }
+    return accessSlotArray;
   }
 
   @Nullable
@@ -44,4 +94,39 @@ class PermissionRegistry {
   Set<String> getAllPermissionNames() {
     return permissions.keySet();
   }
+
+  int getPermissionCount() {
+    return permissions.size();
+  }
+
+  /**
+   * Returns the ordinal of the permission, or -1 if there is no such permission.
+   */
+  int getPermissionOrdinal(String permissionName) {
+    Integer permissionOrdinal = permissionOrdinals.get(permissionName);
+    return permissionOrdinal == null ? -1 : permissionOrdinal;
+  }
+
+  /**
+   * Returns the access slots that are granted by the permission with the given ordinal. The
+   * array is shared, so it must not be modified.
+   */
+  int[] getAccessSlots(int permissionOrdinal) {
+    return permissionAccessSlots[permissionOrdinal];
+  }
+
+  int getAccessSlotCount() {
+    return recordTypeOrdinals.size() * ACTION_TYPES.length;
+  }
+
+  /**
+   * Returns the access slot of the action on the record type, or -1 if no permission relates to
+   * the record type.
+   */
+  int getAccessSlot(RecordType<?> recordType, ActionType actionType) {
+    Integer recordTypeOrdinal = recordTypeOrdinals.get(recordType);
+    return recordTypeOrdinal == null
+        ? -1
+        : recordTypeOrdinal * ACTION_TYPES.length + actionType.ordinal();
+  }
 }
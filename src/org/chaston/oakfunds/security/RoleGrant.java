@@ -24,6 +24,7 @@ import org.chaston.oakfunds.storage.RecordType;
  */
 public interface RoleGrant extends Record<RoleGrant> {
   RecordType<RoleGrant> TYPE = RecordType.builder("role_grant", RoleGrant.class)
+      .withIndex(RoleGrant.ATTRIBUTE_USER_ID)
       .build();
 
   String ATTRIBUTE_USER_ID = "user_id";
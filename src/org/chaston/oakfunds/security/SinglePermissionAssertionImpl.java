@@ -15,43 +15,24 @@
  */
 package org.chaston.oakfunds.security;
 
-import com.google.common.collect.ImmutableList;
-import org.chaston.oakfunds.storage.RecordType;
-
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
-
 /**
  * TODO(mchaston): write JavaDocs
  */
 class SinglePermissionAssertionImpl implements SinglePermissionAssertion {
 
-  private final List<AtomicInteger> actionTypeCounts;
+  private final AbstractAuthenticationScope authenticationScope;
+  private final int[] accessSlots;
 
   public SinglePermissionAssertionImpl(
       AbstractAuthenticationScope authenticationScope,
-      Permission permission) {
-
-    ImmutableList.Builder<AtomicInteger> actionTypeCounts = ImmutableList.builder();
-    for (Map.Entry<RecordType, ActionType> entry : permission.getRelatedActions().entries()) {
-      Map<ActionType, AtomicInteger> actionCounters =
-          authenticationScope.getAccessCounters(entry.getKey());
-      AtomicInteger actionTypeCount = actionCounters.get(entry.getValue());
-      if (actionTypeCount == null) {
-        actionTypeCount = new AtomicInteger();
-        actionCounters.put(entry.getValue(), actionTypeCount);
-      }
-      actionTypeCount.incrementAndGet();
-      actionTypeCounts.add(actionTypeCount);
-    }
-    this.actionTypeCounts = actionTypeCounts.build();
+      int[] accessSlots) {
+    this.authenticationScope = authenticationScope;
+    this.accessSlots = accessSlots;
+    authenticationScope.grantAccess(accessSlots);
   }
 
   @Override
   public void close() {
-    for (AtomicInteger actionTypeCount : actionTypeCounts) {
-      actionTypeCount.decrementAndGet();
-    }
+    authenticationScope.revokeAccess(accessSlots);
   }
 }
@@ -17,6 +17,8 @@ package org.chaston.oakfunds.security;
 
 import com.google.inject.Inject;
 
+import java.util.concurrent.Callable;
+
 /**
  * TODO(mchaston): write JavaDocs
  */
@@ -25,7 +27,7 @@ public class SystemAuthenticationManagerImpl implements SystemAuthenticationMana
   private final ThreadLocal<AbstractAuthenticationScope> currentAuthenticationScope =
       new ThreadLocal<>();
 
-  private PermissionRegistry permissionRegistry;
+  private final PermissionRegistry permissionRegistry;
 
   @Inject
   SystemAuthenticationManagerImpl(PermissionRegistry permissionRegistry) {
@@ -50,6 +52,10 @@ public class SystemAuthenticationManagerImpl implements SystemAuthenticationMana
     currentAuthenticationScope.remove();
   }
 
+  PermissionRegistry getPermissionRegistry() {
+    return permissionRegistry;
+  }
+
   AbstractAuthenticationScope getCurrentScope() {
     return currentAuthenticationScope.get();
   }
@@ -57,4 +63,33 @@ public class SystemAuthenticationManagerImpl implements SystemAuthenticationMana
   void setCurrentScope(AbstractAuthenticationScope authenticationScope) {
     currentAuthenticationScope.set(authenticationScope);
   }
+
+  /**
+   * Wraps the callable so that it runs within the current scope, whichever thread calls it.
+   * The scope is only borrowed by the other thread; it is still closed by its owner.
+   */
+  <V> Callable<V> propagateCurrentScope(final Callable<V> callable) {
+    final AbstractAuthenticationScope authenticationScope = currentAuthenticationScope.get();
+    if (authenticationScope == null) {
+      throw new IllegalStateException("Not within an authentication scope.");
+    }
+    return new Callable<V>() {
+      @Override
+      public V call() throws Exception {
+        AbstractAuthenticationScope existingScope = currentAuthenticationScope.get();
+        if (existingScope == authenticationScope) {
+          return callable.call();
+        }
+        if (existingScope != null) {
+          throw new IllegalStateException("Already withing an authentication scope.");
+        }
+        currentAuthenticationScope.set(authenticationScope);
+        try {
+          return callable.call();
+        } finally {
+          currentAuthenticationScope.remove();
+        }
+      }
+    };
+  }
 }
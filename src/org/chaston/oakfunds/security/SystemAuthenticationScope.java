@@ -30,7 +30,7 @@ class SystemAuthenticationScope extends AbstractAuthenticationScope {
   }
 
   @Override
-  boolean hasPermission(String permissionName) {
+  boolean hasPermission(int permissionOrdinal) {
     return true;
   }
 
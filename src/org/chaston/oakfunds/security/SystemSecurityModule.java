@@ -23,6 +23,10 @@ import com.google.inject.multibindings.Multibinder;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
  * TODO(mchaston): write JavaDocs
  */
@@ -31,6 +35,7 @@ public class SystemSecurityModule extends AbstractModule {
   @Override
   protected void configure() {
     bind(AuthorizationContext.class).to(AuthorizationContextImpl.class);
+    bind(AuthorizationContextImpl.class).in(Singleton.class);
 
     bind(SystemAuthenticationManager.class).to(SystemAuthenticationManagerImpl.class);
     bind(SystemAuthenticationManagerImpl.class).in(Singleton.class);
@@ -38,29 +43,60 @@ public class SystemSecurityModule extends AbstractModule {
     bind(PermissionRegistry.class).in(Singleton.class);
 
     bindInterceptor(Matchers.any(), Matchers.annotatedWith(PermissionAssertion.class),
-        new PermissionAssertionInterceptor(getProvider(AuthorizationContext.class)));
+        new PermissionAssertionInterceptor(getProvider(AuthorizationContextImpl.class),
+            getProvider(PermissionRegistry.class)));
 
     // Bind an empty set to ensure that there is always a value.
     Multibinder.newSetBinder(binder(), Permission.class);
   }
 
+  /**
+   * Asserts the permission of each annotated method around its invocation. The permission of a
+   * method is resolved the first time that it is called.
+   */
   private static class PermissionAssertionInterceptor implements MethodInterceptor {
 
-    private final Provider<AuthorizationContext> authorizationContextProvider;
+    private final Provider<AuthorizationContextImpl> authorizationContextProvider;
+    private final Provider<PermissionRegistry> permissionRegistryProvider;
+    private final ConcurrentMap<Method, MethodPermission> methodPermissions =
+        new ConcurrentHashMap<>();
 
     private PermissionAssertionInterceptor(
-        Provider<AuthorizationContext> authorizationContextProvider) {
+        Provider<AuthorizationContextImpl> authorizationContextProvider,
+        Provider<PermissionRegistry> permissionRegistryProvider) {
       this.authorizationContextProvider = authorizationContextProvider;
+      this.permissionRegistryProvider = permissionRegistryProvider;
     }
 
     @Override
     public Object invoke(MethodInvocation methodInvocation) throws Throwable {
-      PermissionAssertion permissionAssertion =
-          methodInvocation.getMethod().getAnnotation(PermissionAssertion.class);
+      MethodPermission methodPermission = getMethodPermission(methodInvocation.getMethod());
       try (SinglePermissionAssertion singlePermissionAssertion =
-               authorizationContextProvider.get().assertPermission(permissionAssertion.value())) {
+               authorizationContextProvider.get().assertPermission(
+                   methodPermission.permissionName, methodPermission.permissionOrdinal)) {
         return methodInvocation.proceed();
       }
     }
+
+    private MethodPermission getMethodPermission(Method method) {
+      MethodPermission methodPermission = methodPermissions.get(method);
+      if (methodPermission == null) {
+        String permissionName = method.getAnnotation(PermissionAssertion.class).value();
+        methodPermission = new MethodPermission(permissionName,
+            permissionRegistryProvider.get().getPermissionOrdinal(permissionName));
+        methodPermissions.putIfAbsent(method, methodPermission);
+      }
+      return methodPermission;
+    }
+  }
+
+  private static class MethodPermission {
+    private final String permissionName;
+    private final int permissionOrdinal;
+
+    private MethodPermission(String permissionName, int permissionOrdinal) {
+      this.permissionName = permissionName;
+      this.permissionOrdinal = permissionOrdinal;
+    }
   }
 }
@@ -24,6 +24,7 @@ import org.chaston.oakfunds.storage.RecordType;
  */
 public interface User extends Record<User> {
   RecordType<User> TYPE = RecordType.builder("user", User.class)
+      .withIndex(User.ATTRIBUTE_IDENTIFIER)
       .build();
 
   String ATTRIBUTE_IDENTIFIER = "identifier";
@@ -15,6 +15,7 @@
  */
 package org.chaston.oakfunds.security;
 
+import com.google.common.cache.CacheStats;
 import org.chaston.oakfunds.storage.StorageException;
 
 /**
@@ -22,4 +23,9 @@ import org.chaston.oakfunds.storage.StorageException;
  */
 public interface UserAuthenticationManager {
   AuthenticationScope authenticateUser() throws StorageException, AuthenticationException;
+
+  /**
+   * Returns the hit rate and load times of the cache of the users' resolved permissions.
+   */
+  CacheStats getPermissionCacheStats();
 }
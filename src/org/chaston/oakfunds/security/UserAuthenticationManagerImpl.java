@@ -15,13 +15,16 @@
  */
 package org.chaston.oakfunds.security;
 
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 import org.chaston.oakfunds.bootstrap.BootstrappingDependency;
 import org.chaston.oakfunds.storage.StorageException;
 
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.logging.Logger;
 
 /**
@@ -35,6 +38,7 @@ class UserAuthenticationManagerImpl implements UserAuthenticationManager {
   private final UserAuthenticator userAuthenticator;
   private final UserManager userManager;
   private final RoleRegistry roleRegistry;
+  private final UserPermissionCache userPermissionCache;
 
   @Inject
   UserAuthenticationManagerImpl(
@@ -42,11 +46,13 @@ class UserAuthenticationManagerImpl implements UserAuthenticationManager {
       SystemAuthenticationManagerImpl systemAuthenticationManager,
       UserAuthenticator userAuthenticator,
       UserManager userManager,
-      RoleRegistry roleRegistry) {
+      RoleRegistry roleRegistry,
+      UserPermissionCache userPermissionCache) {
     this.systemAuthenticationManager = systemAuthenticationManager;
     this.userAuthenticator = userAuthenticator;
     this.userManager = userManager;
     this.roleRegistry = roleRegistry;
+    this.userPermissionCache = userPermissionCache;
   }
 
   @Override
@@ -54,23 +60,54 @@ class UserAuthenticationManagerImpl implements UserAuthenticationManager {
     if (systemAuthenticationManager.getCurrentScope() != null) {
       throw new IllegalStateException("Already withing an authentication scope.");
     }
-    AuthenticatedUser authenticatedUser = userAuthenticator.getAuthenticatedUser();
-    Set<String> userPermissions;
+    final AuthenticatedUser authenticatedUser = userAuthenticator.getAuthenticatedUser();
+    UserPermissionCache.UserPermissions userPermissions =
+        userPermissionCache.get(authenticatedUser.getIdentifier(),
+            new Callable<UserPermissionCache.UserPermissions>() {
+              @Override
+              public UserPermissionCache.UserPermissions call() throws StorageException {
+                return loadUserPermissions(authenticatedUser);
+              }
+            });
+    UserAuthenticationScope userAuthenticationScope = new UserAuthenticationScope(
+        systemAuthenticationManager, userPermissions.getPermissionNames(),
+        userPermissions.getPermissionOrdinals());
+    systemAuthenticationManager.setCurrentScope(userAuthenticationScope);
+    return userAuthenticationScope;
+  }
+
+  @Override
+  public CacheStats getPermissionCacheStats() {
+    return userPermissionCache.getStats();
+  }
+
+  private UserPermissionCache.UserPermissions loadUserPermissions(
+      AuthenticatedUser authenticatedUser) throws StorageException {
     try (AuthenticationScope authenticationScope =
              systemAuthenticationManager.authenticateSystem()) {
       User user = userManager.getUser(authenticatedUser.getIdentifier());
       if (user == null) {
         throw new IllegalStateException("No authenticated user available.");
       }
-      userPermissions = getUserPermissions(user);
+      ImmutableSet<String> permissionNames = getUserPermissions(user);
+      return new UserPermissionCache.UserPermissions(user.getId(), permissionNames,
+          getPermissionOrdinals(permissionNames));
     }
-    UserAuthenticationScope userAuthenticationScope =
-        new UserAuthenticationScope(systemAuthenticationManager, userPermissions);
-    systemAuthenticationManager.setCurrentScope(userAuthenticationScope);
-    return userAuthenticationScope;
   }
 
-  private Set<String> getUserPermissions(User user) throws StorageException {
+  private BitSet getPermissionOrdinals(Set<String> permissionNames) {
+    PermissionRegistry permissionRegistry = systemAuthenticationManager.getPermissionRegistry();
+    BitSet permissionOrdinals = new BitSet(permissionRegistry.getPermissionCount());
+    for (String permissionName : permissionNames) {
+      int permissionOrdinal = permissionRegistry.getPermissionOrdinal(permissionName);
+      if (permissionOrdinal >= 0) {
+        permissionOrdinals.set(permissionOrdinal);
+      }
+    }
+    return permissionOrdinals;
+  }
+
+  private ImmutableSet<String> getUserPermissions(User user) throws StorageException {
     Set<String> permissionNames = new HashSet<>();
     for (RoleGrant roleGrant : userManager.getRoleGrants(user)) {
       Role role = roleRegistry.getRole(roleGrant.getName());
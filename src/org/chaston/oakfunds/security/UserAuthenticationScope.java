@@ -17,6 +17,7 @@ package org.chaston.oakfunds.security;
 
 import com.google.common.collect.ImmutableSet;
 
+import java.util.BitSet;
 import java.util.Set;
 
 /**
@@ -24,17 +25,20 @@ import java.util.Set;
  */
 class UserAuthenticationScope extends AbstractAuthenticationScope {
   private final ImmutableSet<String> userPermissions;
+  // The ordinals of the user's permissions, which must not be modified.
+  private final BitSet userPermissionOrdinals;
 
-  UserAuthenticationScope(
-      SystemAuthenticationManagerImpl authenticationManager, Set<String> userPermissions) {
+  UserAuthenticationScope(SystemAuthenticationManagerImpl authenticationManager,
+      Set<String> userPermissions, BitSet userPermissionOrdinals) {
     super(authenticationManager);
 
     this.userPermissions = ImmutableSet.copyOf(userPermissions);
+    this.userPermissionOrdinals = userPermissionOrdinals;
   }
 
   @Override
-  boolean hasPermission(String permissionName) {
-    return userPermissions.contains(permissionName);
+  boolean hasPermission(int permissionOrdinal) {
+    return permissionOrdinal >= 0 && userPermissionOrdinals.get(permissionOrdinal);
   }
 
   @Override
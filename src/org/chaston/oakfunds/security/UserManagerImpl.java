@@ -68,11 +68,14 @@ public class UserManagerImpl implements UserManager {
 
   private final Store store;
   private final RoleRegistry roleRegistry;
+  private final UserPermissionCache userPermissionCache;
 
   @Inject
-  UserManagerImpl(Store store, RoleRegistry roleRegistry) {
+  UserManagerImpl(Store store, RoleRegistry roleRegistry,
+      UserPermissionCache userPermissionCache) {
     this.store = store;
     this.roleRegistry = roleRegistry;
+    this.userPermissionCache = userPermissionCache;
   }
 
   @Override
@@ -124,6 +127,7 @@ public class UserManagerImpl implements UserManager {
       attributes.put(User.ATTRIBUTE_IDENTIFIER, identifier);
       attributes.put(User.ATTRIBUTE_EMAIL, email);
       attributes.put(User.ATTRIBUTE_NAME, name);
+      invalidatePermissionsAfterCommit(identifier);
       return store.updateRecord(oldUser, attributes);
     } else {
       return oldUser;
@@ -136,6 +140,7 @@ public class UserManagerImpl implements UserManager {
     Map<String, Object> attributes = new HashMap<>();
     attributes.put(User.ATTRIBUTE_EMAIL, email);
     attributes.put(User.ATTRIBUTE_NAME, name);
+    invalidatePermissionsAfterCommit(user.getIdentifier());
     return store.updateRecord(user, attributes);
   }
 
@@ -162,6 +167,7 @@ public class UserManagerImpl implements UserManager {
     Map<String, Object> attributes = ImmutableMap.<String, Object>of(
         RoleGrant.ATTRIBUTE_USER_ID, user.getId(),
         RoleGrant.ATTRIBUTE_NAME, roleName);
+    invalidatePermissionsAfterCommit(user.getIdentifier());
     store.createRecord(RoleGrant.TYPE, attributes);
   }
 
@@ -169,9 +175,29 @@ public class UserManagerImpl implements UserManager {
   @PermissionAssertion("role_grant.delete")
   public void revokeRole(RoleGrant roleGrant) throws StorageException {
     Preconditions.checkNotNull(roleGrant, "roleGrant");
+    final int userId = roleGrant.getUserId();
+    store.runAfterCommit(new Runnable() {
+      @Override
+      public void run() {
+        userPermissionCache.invalidate(userId);
+      }
+    });
     store.deleteRecord(roleGrant);
   }
 
+  /**
+   * The cached permissions are only dropped once the change has committed. Dropping them any
+   * earlier would let a concurrent request cache the old permissions again until they expire.
+   */
+  private void invalidatePermissionsAfterCommit(final String identifier) {
+    store.runAfterCommit(new Runnable() {
+      @Override
+      public void run() {
+        userPermissionCache.invalidate(identifier);
+      }
+    });
+  }
+
   @Override
   @PermissionAssertion("role.read")
   public Iterable<String> getRoleNames() throws StorageException {
@@ -27,5 +27,6 @@ public class UserManagerModule extends AbstractModule {
     install(new UserTypesModule());
     bind(UserManager.class).to(UserManagerImpl.class);
     bind(UserManagerImpl.class).in(Singleton.class);
+    bind(UserPermissionCache.class).in(Singleton.class);
   }
 }
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.security;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.chaston.oakfunds.storage.StorageException;
+import org.chaston.oakfunds.util.Flag;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded cache of the permissions resolved for each user, keyed by the user's identifier, so
+ * that authenticating a user does not need to read the user and their role grants every time.
+ *
+ * <p>{@link UserManagerImpl} invalidates a user's permissions whenever it changes them, once the
+ * transaction making the change has committed, so that a concurrent request cannot cache the old
+ * permissions again. Entries also expire after a short time, which only matters for changes made
+ * without going through {@link UserManagerImpl} (such as directly in the database).
+ */
+class UserPermissionCache {
+
+  private static final Flag<Integer> USER_PERMISSION_CACHE_SIZE =
+      Flag.builder("user_permission_cache_size", 1000).build();
+  private static final Flag<Integer> USER_PERMISSION_CACHE_TTL_SECONDS =
+      Flag.builder("user_permission_cache_ttl_seconds", 60).build();
+
+  private final Cache<String, UserPermissions> userPermissions;
+
+  UserPermissionCache() {
+    this(USER_PERMISSION_CACHE_SIZE.get(), USER_PERMISSION_CACHE_TTL_SECONDS.get());
+  }
+
+  UserPermissionCache(int maximumSize, int ttlSeconds) {
+    userPermissions = CacheBuilder.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * Returns the cached permissions of the user, calling the loader to resolve them if they are
+   * not cached.
+   */
+  UserPermissions get(String identifier, Callable<UserPermissions> loader)
+      throws StorageException {
+    try {
+      return userPermissions.get(identifier, loader);
+    } catch (ExecutionException e) {
+      Throwables.propagateIfInstanceOf(e.getCause(), StorageException.class);
+      throw new IllegalStateException("Failed to load permissions of " + identifier, e);
+    } catch (UncheckedExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  void invalidate(String identifier) {
+    userPermissions.invalidate(identifier);
+  }
+
+  void invalidate(int userId) {
+    Iterator<UserPermissions> iterator = userPermissions.asMap().values().iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().getUserId() == userId) {
+        iterator.remove();
+      }
+    }
+  }
+
+  CacheStats getStats() {
+    return userPermissions.stats();
+  }
+
+  /**
+   * The permissions that were resolved for a single user.
+   */
+  static class UserPermissions {
+    private final int userId;
+    private final ImmutableSet<String> permissionNames;
+    // The ordinals of the permissions in the PermissionRegistry, which must not be modified.
+    private final BitSet permissionOrdinals;
+
+    UserPermissions(int userId, ImmutableSet<String> permissionNames,
+        BitSet permissionOrdinals) {
+      this.userId = userId;
+      this.permissionNames = permissionNames;
+      this.permissionOrdinals = permissionOrdinals;
+    }
+
+    int getUserId() {
+      return userId;
+    }
+
+    ImmutableSet<String> getPermissionNames() {
+      return permissionNames;
+    }
+
+    BitSet getPermissionOrdinals() {
+      return permissionOrdinals;
+    }
+  }
+}
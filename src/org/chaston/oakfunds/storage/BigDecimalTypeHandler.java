@@ -35,8 +35,8 @@ class BigDecimalTypeHandler extends JdbcTypeHandler {
   }
 
   @Override
-  Object get(ResultSet rs) throws SQLException {
-    long value = rs.getLong(getColumnName());
+  Object get(ResultSet rs, int columnIndex) throws SQLException {
+    long value = rs.getLong(columnIndex);
     return rs.wasNull() ? null : BigDecimal.valueOf(value, SCALE);
   }
 
@@ -29,8 +29,8 @@ class BooleanTypeHandler extends JdbcTypeHandler {
   }
 
   @Override
-  Object get(ResultSet rs) throws SQLException {
-    boolean value = rs.getBoolean(getColumnName());
+  Object get(ResultSet rs, int columnIndex) throws SQLException {
+    boolean value = rs.getBoolean(columnIndex);
     return rs.wasNull() ? null : value;
   }
 
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts values into buckets with fixed upper bounds. The last bucket counts every value above
+ * the highest bound. Recording a value never allocates or locks, so it is cheap enough to do
+ * for every statement.
+ */
+class Histogram {
+
+  /**
+   * Bounds for times in microseconds, from a tenth of a millisecond up to ten seconds.
+   */
+  static final long[] MICROS_BOUNDS = {
+      100, 300, 1000, 3000, 10000, 30000, 100000, 300000, 1000000, 3000000, 10000000};
+
+  /**
+   * Bounds for counts, such as the number of statements of a request.
+   */
+  static final long[] COUNT_BOUNDS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000};
+
+  private final long[] upperBounds;
+  private final String unit;
+  private final AtomicLongArray counts;
+
+  Histogram(long[] upperBounds, String unit) {
+    this.upperBounds = upperBounds;
+    this.unit = unit;
+    this.counts = new AtomicLongArray(upperBounds.length + 1);
+  }
+
+  void record(long value) {
+    int bucket = 0;
+    while (bucket < upperBounds.length && value > upperBounds[bucket]) {
+      bucket++;
+    }
+    counts.incrementAndGet(bucket);
+  }
+
+  long getCount(int bucket) {
+    return counts.get(bucket);
+  }
+
+  int getBucketCount() {
+    return counts.length();
+  }
+
+  /**
+   * Returns the counts keyed by a label for each bucket, in bucket order. If other histograms
+   * with the same bounds are given, their counts are added in.
+   */
+  Map<String, Long> toMap(Histogram... others) {
+    Map<String, Long> map = new LinkedHashMap<>();
+    for (int bucket = 0; bucket < counts.length(); bucket++) {
+      long count = counts.get(bucket);
+      for (Histogram other : others) {
+        count += other.counts.get(bucket);
+      }
+      map.put(getLabel(bucket), count);
+    }
+    return map;
+  }
+
+  private String getLabel(int bucket) {
+    if (bucket < upperBounds.length) {
+      return "<=" + upperBounds[bucket] + unit;
+    }
+    return ">" + upperBounds[upperBounds.length - 1] + unit;
+  }
+
+  JSONArray toJSONArray() {
+    JSONArray jsonArray = new JSONArray();
+    for (int bucket = 0; bucket < counts.length(); bucket++) {
+      JSONObject jsonBucket = new JSONObject();
+      jsonBucket.put("upper_bound", bucket < upperBounds.length ? upperBounds[bucket] : null);
+      jsonBucket.put("count", counts.get(bucket));
+      jsonArray.add(jsonBucket);
+    }
+    return jsonArray;
+  }
+}
@@ -39,8 +39,8 @@ class IdentifiableTypeHandler extends JdbcTypeHandler {
   }
 
   @Override
-  Object get(ResultSet rs) throws SQLException {
-    byte value = rs.getByte(getColumnName());
+  Object get(ResultSet rs, int columnIndex) throws SQLException {
+    byte value = rs.getByte(columnIndex);
     return rs.wasNull() ? null : identifiableSource.lookup(value);
   }
 
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage;
+
+import org.joda.time.Instant;
+
+/**
+ * The position of an instant record within the ordering of its container's records (by instant
+ * and then by ID), used to request the page of records after it.
+ */
+public class InstantRecordPosition {
+  private final Instant instant;
+  private final int id;
+
+  private InstantRecordPosition(Instant instant, int id) {
+    this.instant = instant;
+    this.id = id;
+  }
+
+  public static InstantRecordPosition of(Instant instant, int id) {
+    return new InstantRecordPosition(instant, id);
+  }
+
+  public static InstantRecordPosition of(InstantRecord<?> record) {
+    return new InstantRecordPosition(record.getInstant(), record.getId());
+  }
+
+  public Instant getInstant() {
+    return instant;
+  }
+
+  public int getId() {
+    return id;
+  }
+}
@@ -32,8 +32,8 @@ class InstantTypeHandler extends JdbcTypeHandler {
   }
 
   @Override
-  Object get(ResultSet rs) throws SQLException {
-    Timestamp value = rs.getTimestamp(getColumnName());
+  Object get(ResultSet rs, int columnIndex) throws SQLException {
+    Timestamp value = rs.getTimestamp(columnIndex);
     return rs.wasNull() ? null : new Instant(value);
   }
 
@@ -29,8 +29,8 @@ class IntegerTypeHandler extends JdbcTypeHandler {
   }
 
   @Override
-  Object get(ResultSet rs) throws SQLException {
-    int value = rs.getInt(getColumnName());
+  Object get(ResultSet rs, int columnIndex) throws SQLException {
+    int value = rs.getInt(columnIndex);
     return rs.wasNull() ? null : value;
   }
 
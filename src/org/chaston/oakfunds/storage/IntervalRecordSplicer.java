@@ -0,0 +1,172 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage;
+
+import com.google.common.collect.ImmutableList;
+import org.joda.time.Instant;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Works out, in memory, the changes needed to splice a series of new intervals into the
+ * interval records of a container, so that {@link StoreImpl} can apply them with a fixed number
+ * of batched statements however many records are affected.
+ */
+class IntervalRecordSplicer {
+
+  /**
+   * An interval record as it will be once the changes are applied.
+   */
+  static class Segment {
+    private final RecordType<?> recordType;
+    private final Map<String, Object> attributes;
+    private Integer id;
+    private Instant start;
+    private Instant end;
+    private boolean resized;
+
+    private Segment(RecordType<?> recordType, Integer id, Instant start, Instant end,
+        Map<String, Object> attributes) {
+      this.recordType = recordType;
+      this.id = id;
+      this.start = start;
+      this.end = end;
+      this.attributes = attributes;
+    }
+
+    RecordType<?> getRecordType() {
+      return recordType;
+    }
+
+    /**
+     * Returns the ID of the record, or null if it has not been inserted yet.
+     */
+    Integer getId() {
+      return id;
+    }
+
+    void setId(int id) {
+      this.id = id;
+    }
+
+    Instant getStart() {
+      return start;
+    }
+
+    Instant getEnd() {
+      return end;
+    }
+
+    Map<String, Object> getAttributes() {
+      return attributes;
+    }
+
+    boolean isNew() {
+      return id == null;
+    }
+
+    boolean isResized() {
+      return resized;
+    }
+
+    private boolean overlaps(Instant start, Instant end) {
+      return this.start.isBefore(end) && this.end.isAfter(start);
+    }
+  }
+
+  private final List<Segment> segments = new ArrayList<>();
+  private final List<Integer> deletedIds = new ArrayList<>();
+
+  IntervalRecordSplicer(Iterable<? extends RawIntervalRecord<?>> existingRecords) {
+    for (RawIntervalRecord<?> existingRecord : existingRecords) {
+      segments.add(new Segment(existingRecord.getRecordType(), existingRecord.getId(),
+          existingRecord.getStart(), existingRecord.getEnd(), existingRecord.getAttributes()));
+    }
+  }
+
+  /**
+   * Replaces whatever covers the interval from start (inclusive) to end (exclusive) with a new
+   * record. Records that only partly overlap the interval are truncated, and a record that
+   * covers the whole interval is split in two.
+   */
+  Segment splice(RecordType<?> recordType, Instant start, Instant end,
+      Map<String, Object> attributes) {
+    List<Segment> clones = new ArrayList<>();
+    Iterator<Segment> iterator = segments.iterator();
+    while (iterator.hasNext()) {
+      Segment segment = iterator.next();
+      if (!segment.overlaps(start, end)) {
+        continue;
+      }
+      if (segment.start.isBefore(start)) {
+        if (segment.end.isAfter(end)) {
+          clones.add(new Segment(segment.recordType, null, end, segment.end,
+              segment.attributes));
+        }
+        segment.end = start;
+        segment.resized = true;
+      } else if (segment.end.isAfter(end)) {
+        segment.start = end;
+        segment.resized = true;
+      } else {
+        iterator.remove();
+        if (!segment.isNew()) {
+          deletedIds.add(segment.id);
+        }
+      }
+    }
+    segments.addAll(clones);
+    Segment newSegment = new Segment(recordType, null, start, end, attributes);
+    segments.add(newSegment);
+    return newSegment;
+  }
+
+  /**
+   * Returns the existing records that need to be deleted.
+   */
+  List<Integer> getDeletedIds() {
+    return ImmutableList.copyOf(deletedIds);
+  }
+
+  /**
+   * Returns the existing records that have a new start or end.
+   */
+  List<Segment> getResizedSegments() {
+    ImmutableList.Builder<Segment> resizedSegments = ImmutableList.builder();
+    for (Segment segment : segments) {
+      if (!segment.isNew() && segment.isResized()) {
+        resizedSegments.add(segment);
+      }
+    }
+    return resizedSegments.build();
+  }
+
+  /**
+   * Returns the records that need to be inserted, in the order that they were created.
+   */
+  List<Segment> getNewSegments() {
+    ImmutableList.Builder<Segment> newSegments = ImmutableList.builder();
+    for (Segment segment : segments) {
+      if (segment.isNew()) {
+        newSegments.add(segment);
+      }
+    }
+    return newSegments.build();
+  }
+}
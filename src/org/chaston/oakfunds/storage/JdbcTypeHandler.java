@@ -34,7 +34,7 @@ abstract class JdbcTypeHandler {
     return columnName;
   }
 
-  abstract Object get(ResultSet rs) throws SQLException;
+  abstract Object get(ResultSet rs, int columnIndex) throws SQLException;
 
   abstract void set(PreparedStatement stmt, int index, Object value) throws SQLException;
 
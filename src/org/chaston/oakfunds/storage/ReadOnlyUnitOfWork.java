@@ -0,0 +1,29 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage;
+
+/**
+ * A series of reads that share a single read-only connection, instead of each read outside of a
+ * transaction taking a connection of its own. The connection is taken when it is first needed
+ * and released when the unit of work is closed.
+ *
+ * <p>Records that are streamed (see {@link Store#streamInstantRecords}) still use a connection of
+ * their own, as they can be read after the unit of work has been closed.
+ */
+public interface ReadOnlyUnitOfWork extends AutoCloseable {
+  @Override
+  void close();
+}
@@ -15,12 +15,12 @@
  */
 package org.chaston.oakfunds.storage;
 
-import org.chaston.oakfunds.util.JSONRepresentable;
+import org.chaston.oakfunds.util.JSONStreamable;
 
 /**
  * TODO(mchaston): write JavaDocs
  */
-public interface Record<T extends Record> extends JSONRepresentable {
+public interface Record<T extends Record> extends JSONStreamable {
   int getId();
 
   RecordType<T> getRecordType();
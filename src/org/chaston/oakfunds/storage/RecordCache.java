@@ -0,0 +1,137 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.chaston.oakfunds.util.Flag;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of committed records, used by {@link StoreImpl#getRecord} to avoid re-reading
+ * the same records. Only records without a temporal type are cached.
+ *
+ * <p>Transactions never put the records they have written into the cache; instead the records
+ * are invalidated when the transaction commits. As a read can race with a commit, records are
+ * only cached if no invalidation happened while they were being read.
+ *
+ * <p>Only commits on this server invalidate the cache. Changes committed by other servers that
+ * share the database are not seen until the cached copy expires, so reads outside of
+ * transactions may be up to {@code record_cache_expiry_seconds} old. Transactions never read
+ * from the cache, so whatever they write is based on the committed records.
+ */
+class RecordCache {
+
+  private static final Flag<Integer> RECORD_CACHE_SIZE =
+      Flag.builder("record_cache_size", 1000).build();
+  private static final Flag<Integer> RECORD_CACHE_EXPIRY_SECONDS =
+      Flag.builder("record_cache_expiry_seconds", 60).build();
+
+  @Nullable
+  private final Cache<RecordKey, RawRecord<?>> records;
+  private final AtomicLong generation = new AtomicLong();
+
+  RecordCache() {
+    this(RECORD_CACHE_SIZE.get(), RECORD_CACHE_EXPIRY_SECONDS.get());
+  }
+
+  RecordCache(int maximumSize, int expirySeconds) {
+    if (maximumSize > 0 && expirySeconds > 0) {
+      records = CacheBuilder.newBuilder()
+          .maximumSize(maximumSize)
+          .expireAfterWrite(expirySeconds, TimeUnit.SECONDS)
+          .recordStats()
+          .build();
+    } else {
+      records = null;
+    }
+  }
+
+  static RecordKey key(RecordType<?> recordType, int id) {
+    return new RecordKey(recordType.getRootType(), id);
+  }
+
+  boolean isCacheable(RecordType<?> recordType) {
+    return records != null && recordType.getTemporalType() == RecordTemporalType.NONE;
+  }
+
+  @Nullable
+  RawRecord<?> get(RecordKey key) {
+    return records.getIfPresent(key);
+  }
+
+  /**
+   * Returns the current generation, which must be read before reading a record from the
+   * database that will be passed to {@link #put}.
+   */
+  long getGeneration() {
+    return generation.get();
+  }
+
+  void put(RecordKey key, RawRecord<?> record, long readGeneration) {
+    if (generation.get() != readGeneration) {
+      return;
+    }
+    records.put(key, record);
+    if (generation.get() != readGeneration) {
+      // An invalidation happened at the same time, so the record may be out of date.
+      records.invalidate(key);
+    }
+  }
+
+  void invalidateAll(Iterable<RecordKey> keys) {
+    if (records == null) {
+      return;
+    }
+    generation.incrementAndGet();
+    records.invalidateAll(keys);
+  }
+
+  CacheStats getStats() {
+    return records == null ? new CacheStats(0, 0, 0, 0, 0, 0) : records.stats();
+  }
+
+  static class RecordKey {
+    private final RecordType<?> rootType;
+    private final int id;
+
+    private RecordKey(RecordType<?> rootType, int id) {
+      this.rootType = rootType;
+      this.id = id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof RecordKey)) {
+        return false;
+      }
+      RecordKey that = (RecordKey) o;
+      return id == that.id && rootType.equals(that.rootType);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * rootType.hashCode() + id;
+    }
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Creates the record instances for a single {@link RecordType}.
+ *
+ * <p>All of the reflection needed to implement a record interface (finding the proxy class and
+ * working out what each method should return) is done once when the type is built, so that
+ * creating a record is a single constructor call and every getter is a single map lookup.
+ */
+class RecordFactory<T extends Record> {
+
+  enum MethodKind {
+    RECORD_TYPE,
+    ID,
+    TO_JSON_OBJECT,
+    WRITE_JSON,
+    PARENT_ID,
+    ATTRIBUTE,
+    TO_STRING,
+    INSTANT,
+    START,
+    END,
+  }
+
+  /**
+   * The resolved behaviour of a single method of a record interface.
+   */
+  static class MethodBinding {
+    private final MethodKind kind;
+    private final String attribute;
+
+    private MethodBinding(MethodKind kind, String attribute) {
+      this.kind = kind;
+      this.attribute = attribute;
+    }
+
+    MethodKind getKind() {
+      return kind;
+    }
+
+    String getAttribute() {
+      return attribute;
+    }
+  }
+
+  private final Class<T> recordTypeClass;
+  private final Constructor<?> proxyConstructor;
+  private final ImmutableMap<Method, MethodBinding> methodBindings;
+
+  RecordFactory(Class<T> recordTypeClass) {
+    this.recordTypeClass = recordTypeClass;
+    Class<?> proxyClass =
+        Proxy.getProxyClass(recordTypeClass.getClassLoader(), recordTypeClass);
+    try {
+      this.proxyConstructor = proxyClass.getConstructor(InvocationHandler.class);
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException(
+          "Failed to find proxy constructor for " + recordTypeClass.getName(), e);
+    }
+    this.methodBindings = buildMethodBindings(recordTypeClass);
+  }
+
+  private static ImmutableMap<Method, MethodBinding> buildMethodBindings(Class<?> recordTypeClass) {
+    ImmutableMap.Builder<Method, MethodBinding> methodBindings = ImmutableMap.builder();
+    for (Method method : recordTypeClass.getMethods()) {
+      MethodBinding methodBinding = bindMethod(method);
+      if (methodBinding != null) {
+        methodBindings.put(method, methodBinding);
+      }
+    }
+    // The proxy passes through the Object methods as well.
+    for (Method method : Object.class.getMethods()) {
+      if (method.getName().equals("toString")) {
+        methodBindings.put(method, new MethodBinding(MethodKind.TO_STRING, null));
+      }
+    }
+    return methodBindings.build();
+  }
+
+  private static MethodBinding bindMethod(Method method) {
+    if (method.getName().equals("getRecordType")) {
+      return new MethodBinding(MethodKind.RECORD_TYPE, null);
+    }
+    if (method.getName().equals("getId")) {
+      return new MethodBinding(MethodKind.ID, null);
+    }
+    if (method.getName().equals("toJSONObject")) {
+      return new MethodBinding(MethodKind.TO_JSON_OBJECT, null);
+    }
+    if (method.getName().equals("writeJSON")) {
+      return new MethodBinding(MethodKind.WRITE_JSON, null);
+    }
+    if (method.getAnnotation(ParentIdMethod.class) != null) {
+      return new MethodBinding(MethodKind.PARENT_ID, null);
+    }
+    AttributeMethod attributeMethod = method.getAnnotation(AttributeMethod.class);
+    if (attributeMethod != null) {
+      return new MethodBinding(MethodKind.ATTRIBUTE, attributeMethod.attribute());
+    }
+    if (method.getName().equals("toString") && method.getReturnType() == String.class) {
+      return new MethodBinding(MethodKind.TO_STRING, null);
+    }
+    if (method.getName().equals("getInstant")) {
+      return new MethodBinding(MethodKind.INSTANT, null);
+    }
+    if (method.getName().equals("getStart")) {
+      return new MethodBinding(MethodKind.START, null);
+    }
+    if (method.getName().equals("getEnd")) {
+      return new MethodBinding(MethodKind.END, null);
+    }
+    return null;
+  }
+
+  MethodBinding getMethodBinding(Method method) {
+    MethodBinding methodBinding = methodBindings.get(method);
+    if (methodBinding == null) {
+      throw new IllegalStateException("Method " + method.getName()
+          + " was called on " + recordTypeClass + " but was not supported.");
+    }
+    return methodBinding;
+  }
+
+  T newRecord(InvocationHandler invocationHandler) {
+    try {
+      return recordTypeClass.cast(proxyConstructor.newInstance(invocationHandler));
+    } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+      throw new IllegalStateException(
+          "Failed to create record of type " + recordTypeClass.getName(), e);
+    }
+  }
+}
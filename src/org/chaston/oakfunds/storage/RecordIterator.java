@@ -0,0 +1,28 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage;
+
+import java.util.Iterator;
+
+/**
+ * An iterator over records that are read lazily from the database. It holds on to database
+ * resources until it is either exhausted or closed, so it should always be used within a
+ * try-with-resources block.
+ */
+public interface RecordIterator<T extends Record> extends Iterator<T>, AutoCloseable {
+  @Override
+  void close();
+}
@@ -18,12 +18,13 @@ package org.chaston.oakfunds.storage;
 import org.joda.time.Instant;
 import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.ISODateTimeFormat;
+import org.chaston.oakfunds.util.JSONStreamWriter;
 import org.json.simple.JSONObject;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.util.Map;
 
 /**
@@ -35,25 +36,19 @@ class RecordProxy {
 
   static <T extends Record> T proxyRecord(
       RecordType<T> recordType, @Nullable Record<?> parent, int id, Map<String, Object> attributes) {
-    return (T) Proxy.newProxyInstance(
-        recordType.getRecordTypeClass().getClassLoader(),
-        new Class[] { recordType.getRecordTypeClass() },
+    return recordType.getRecordFactory().newRecord(
         new RecordProxyInvocationHandler(recordType, parent, id, attributes));
   }
 
   static <T extends InstantRecord> T proxyInstantRecord(
       RecordType<T> recordType, @Nullable Record<?> parent, int id, Instant instant, Map<String, Object> attributes) {
-    return (T) Proxy.newProxyInstance(
-        recordType.getRecordTypeClass().getClassLoader(),
-        new Class[] { recordType.getRecordTypeClass() },
+    return recordType.getRecordFactory().newRecord(
         new InstantRecordProxyInvocationHandler(recordType, parent, id, instant, attributes));
   }
 
   static <T extends IntervalRecord> T proxyIntervalRecord(
       RecordType<T> recordType, @Nullable Record<?> parent, int id, Instant start, Instant end, Map<String, Object> attributes) {
-    return (T) Proxy.newProxyInstance(
-        recordType.getRecordTypeClass().getClassLoader(),
-        new Class[] { recordType.getRecordTypeClass() },
+    return recordType.getRecordFactory().newRecord(
         new IntervalRecordProxyInvocationHandler(recordType, parent, id, start, end, attributes));
   }
 
@@ -74,32 +69,32 @@ class RecordProxy {
 
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-      if (method.getName().equals("getRecordType")) {
-        return recordType;
+      RecordFactory.MethodBinding methodBinding =
+          recordType.getRecordFactory().getMethodBinding(method);
+      switch (methodBinding.getKind()) {
+        case RECORD_TYPE:
+          return recordType;
+        case ID:
+          return id;
+        case TO_JSON_OBJECT:
+          return toJSONObject();
+        case WRITE_JSON:
+          writeJSON((JSONStreamWriter) args[0]);
+          return null;
+        case PARENT_ID:
+          return parentId;
+        case ATTRIBUTE:
+          return attributes.get(methodBinding.getAttribute());
+        case TO_STRING:
+          return recordType.getName() + ":" + id;
+        default:
+          Object otherReturnValue = getOtherReturnValue(methodBinding.getKind());
+          if (otherReturnValue == null) {
+            throw new IllegalStateException("Method " + method.getName()
+                + " was called on " + recordType.getRecordTypeClass() + " but was not supported.");
+          }
+          return otherReturnValue;
       }
-      if (method.getName().equals("getId")) {
-        return id;
-      }
-      if (method.getName().equals("toJSONObject")) {
-        return toJSONObject();
-      }
-      ParentIdMethod parentIdMethod = method.getAnnotation(ParentIdMethod.class);
-      if (parentIdMethod != null) {
-        return parentId;
-      }
-      AttributeMethod attributeMethod = method.getAnnotation(AttributeMethod.class);
-      if (attributeMethod != null) {
-        return attributes.get(attributeMethod.attribute());
-      }
-      if (method.getName().equals("toString") && method.getReturnType() == String.class) {
-        return recordType.getName() + ":" + id;
-      }
-      Object otherReturnValue = getOtherReturnValue(method);
-      if (otherReturnValue == null) {
-        throw new IllegalStateException("Method " + method.getName()
-            + " was called on " + recordType.getRecordTypeClass() + " but was not supported.");
-      }
-      return otherReturnValue;
     }
 
     protected JSONObject toJSONObject() {
@@ -121,7 +116,31 @@ class RecordProxy {
       return jsonObject;
     }
 
-    Object getOtherReturnValue(Method method) {
+    /**
+     * Writes the same JSON as {@link #toJSONObject()}, without creating it first.
+     */
+    private void writeJSON(JSONStreamWriter writer) throws IOException {
+      writer.beginObject();
+      writer.member("id", id);
+      writer.member("type", recordType.getName());
+      if (parentId != null) {
+        writer.member("parent_id", parentId);
+      }
+      writer.name("attributes").beginObject();
+      for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+        writer.member(entry.getKey(),
+            recordType.getJdbcTypeHandler(entry.getKey())
+                .toJson(entry.getValue()));
+      }
+      writer.endObject();
+      writeOtherJSON(writer);
+      writer.endObject();
+    }
+
+    void writeOtherJSON(JSONStreamWriter writer) throws IOException {
+    }
+
+    Object getOtherReturnValue(RecordFactory.MethodKind methodKind) {
       return null;
     }
   }
@@ -138,8 +157,8 @@ class RecordProxy {
     }
 
     @Override
-    Object getOtherReturnValue(Method method) {
-      if (method.getName().equals("getInstant")) {
+    Object getOtherReturnValue(RecordFactory.MethodKind methodKind) {
+      if (methodKind == RecordFactory.MethodKind.INSTANT) {
         return instant;
       }
       return null;
@@ -151,6 +170,11 @@ class RecordProxy {
       jsonObject.put("instant", JSON_DATE_FORMAT.print(instant));
       return jsonObject;
     }
+
+    @Override
+    void writeOtherJSON(JSONStreamWriter writer) throws IOException {
+      writer.member("instant", JSON_DATE_FORMAT.print(instant));
+    }
   }
 
   private static class IntervalRecordProxyInvocationHandler<T extends IntervalRecord>
@@ -167,11 +191,11 @@ class RecordProxy {
     }
 
     @Override
-    Object getOtherReturnValue(Method method) {
-      if (method.getName().equals("getStart")) {
+    Object getOtherReturnValue(RecordFactory.MethodKind methodKind) {
+      if (methodKind == RecordFactory.MethodKind.START) {
         return start;
       }
-      if (method.getName().equals("getEnd")) {
+      if (methodKind == RecordFactory.MethodKind.END) {
         return end;
       }
       return null;
@@ -184,5 +208,11 @@ class RecordProxy {
       jsonObject.put("end", JSON_DATE_FORMAT.print(end));
       return jsonObject;
     }
+
+    @Override
+    void writeOtherJSON(JSONStreamWriter writer) throws IOException {
+      writer.member("start", JSON_DATE_FORMAT.print(start));
+      writer.member("end", JSON_DATE_FORMAT.print(end));
+    }
   }
 }
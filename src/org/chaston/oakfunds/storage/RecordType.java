@@ -15,14 +15,19 @@
  */
 package org.chaston.oakfunds.storage;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import org.chaston.oakfunds.jdbc.IndexDef;
 import org.joda.time.Instant;
 
 import javax.annotation.Nullable;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -33,19 +38,25 @@ public class RecordType<T extends Record> {
   private final String name;
   private final Class<T> recordTypeClass;
   private final boolean autoIncrementId;
+  private final boolean uniqueInstants;
   private final RecordType<?> containingType;
   private final RecordTemporalType temporalType;
   private final RecordType parentType;
   private final ImmutableMap<String, AttributeType> attributes;
   private final ImmutableMap<String, JdbcTypeHandler> jdbcTypeHandlers;
+  private final ImmutableList<IndexDef> indexDefs;
+  private final RecordFactory<T> recordFactory;
 
   private RecordType(String name, Class<T> recordTypeClass,
       boolean autoIncrementId,
+      boolean uniqueInstants,
       @Nullable RecordType<? super T> parentType,
-      @Nullable RecordType<?> containingType) {
+      @Nullable RecordType<?> containingType,
+      List<List<String>> indexedAttributes) {
     this.name = name;
     this.recordTypeClass = recordTypeClass;
     this.autoIncrementId = autoIncrementId;
+    this.uniqueInstants = uniqueInstants;
     if (parentType != null && containingType != null) {
       throw new IllegalStateException(
           "A type cannot have a parent type and an explicitly declared containing type.");
@@ -86,6 +97,8 @@ public class RecordType<T extends Record> {
     this.attributes = buildAttributes(recordTypeClass, columnNamespace,
         parentType == null ? null : parentType.getRecordTypeClass());
     this.jdbcTypeHandlers = buildTypeHandlers(attributes, parentType);
+    this.indexDefs = buildIndexDefs(name, jdbcTypeHandlers, indexedAttributes);
+    this.recordFactory = new RecordFactory<>(recordTypeClass);
   }
 
   private static boolean interfacesContain(Class<?> superInterface,
@@ -159,6 +172,26 @@ public class RecordType<T extends Record> {
     return jdbcTypeHandlers.build();
   }
 
+  private static ImmutableList<IndexDef> buildIndexDefs(String name,
+      ImmutableMap<String, JdbcTypeHandler> jdbcTypeHandlers,
+      List<List<String>> indexedAttributes) {
+    ImmutableList.Builder<IndexDef> indexDefs = ImmutableList.builder();
+    for (List<String> attributes : indexedAttributes) {
+      List<String> columnNames = new ArrayList<>();
+      for (String attribute : attributes) {
+        JdbcTypeHandler jdbcTypeHandler = jdbcTypeHandlers.get(attribute);
+        if (jdbcTypeHandler == null) {
+          throw new IllegalStateException("Attribute " + attribute
+              + " cannot be indexed as it is not declared for type " + name + ".");
+        }
+        columnNames.add(jdbcTypeHandler.getColumnName());
+      }
+      indexDefs.add(new IndexDef(name + "_" + Joiner.on("_").join(attributes) + "_idx",
+          columnNames));
+    }
+    return indexDefs.build();
+  }
+
   private static JdbcTypeHandler createJdbcTypeHandler(AttributeType attributeType) {
     if (attributeType.getType().equals(String.class)) {
       return new StringTypeHandler(attributeType.getColumnName());
@@ -216,6 +249,13 @@ public class RecordType<T extends Record> {
     return autoIncrementId;
   }
 
+  /**
+   * Whether a container may have at most one record of this (instant) type at each instant.
+   */
+  public boolean hasUniqueInstants() {
+    return uniqueInstants;
+  }
+
   @Override
   public String toString() {
     return name;
@@ -234,6 +274,14 @@ public class RecordType<T extends Record> {
     return attributes;
   }
 
+  /**
+   * Returns the indexes explicitly requested for the attributes of this type (but not of its
+   * parent types).
+   */
+  public ImmutableList<IndexDef> getIndexDefs() {
+    return indexDefs;
+  }
+
   public static <T extends Record<T>> RecordTypeBuilder<T> builder(
       String name, Class<T> recordTypeClass) {
     return new RecordTypeBuilder<>(name, recordTypeClass);
@@ -247,6 +295,10 @@ public class RecordType<T extends Record> {
     return jdbcTypeHandlers;
   }
 
+  RecordFactory<T> getRecordFactory() {
+    return recordFactory;
+  }
+
   @Override
   public int hashCode() {
     return name.hashCode();
@@ -268,8 +320,10 @@ public class RecordType<T extends Record> {
     private final String name;
     private final Class<T> recordTypeClass;
     private boolean autoIncrementId = true;
+    private boolean uniqueInstants;
     private RecordType<?> containingType;
     private RecordType<? super T> parentType;
+    private final List<List<String>> indexedAttributes = new ArrayList<>();
 
     private RecordTypeBuilder(String name, Class<T> recordTypeClass) {
       this.name = name;
@@ -291,8 +345,19 @@ public class RecordType<T extends Record> {
       return this;
     }
 
+    public RecordTypeBuilder<T> withUniqueInstants() {
+      this.uniqueInstants = true;
+      return this;
+    }
+
+    public RecordTypeBuilder<T> withIndex(String... attributes) {
+      this.indexedAttributes.add(ImmutableList.copyOf(attributes));
+      return this;
+    }
+
     public RecordType<T> build() {
-      return new RecordType<T>(name, recordTypeClass, autoIncrementId, parentType, containingType);
+      return new RecordType<T>(name, recordTypeClass, autoIncrementId, uniqueInstants, parentType,
+          containingType, indexedAttributes);
     }
   }
 }
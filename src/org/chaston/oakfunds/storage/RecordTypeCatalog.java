@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage;
+
+import com.google.common.collect.ImmutableMap;
+import org.chaston.oakfunds.jdbc.TableDef;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * The table that assigns each record type a small, stable ID. The ID of the type is stored in
+ * every row instead of its name, which keeps the rows (and their indexes) small and allows the
+ * type of a row to be found without a lookup by name.
+ *
+ * <p>IDs are assigned when the schema is updated and are never reused or changed, so the IDs in
+ * the rows stay valid as record types are added.
+ */
+public class RecordTypeCatalog {
+  public static final TableDef TABLE_DEF =
+      TableDef.builder(SystemColumnDefs.SCHEMA, "sys_record_type")
+          .addColumnDef(SystemColumnDefs.MANUAL_ID)
+          .addColumnDef(SystemColumnDefs.NAME)
+          .build();
+
+  // The type IDs are stored in SMALLINT columns.
+  private static final int MAXIMUM_TYPE_ID = Short.MAX_VALUE;
+
+  private RecordTypeCatalog() {
+  }
+
+  /**
+   * Reads the IDs of all of the record types that have been registered, by name.
+   */
+  public static ImmutableMap<String, Integer> readTypeIds(Connection connection)
+      throws SQLException {
+    ImmutableMap.Builder<String, Integer> typeIds = ImmutableMap.builder();
+    try (Statement stmt = connection.createStatement();
+         ResultSet rs = stmt.executeQuery("SELECT " + SystemColumnDefs.ID_COLUMN_NAME + ", "
+             + SystemColumnDefs.NAME.getName() + " FROM " + TABLE_DEF.getFullName() + ";")) {
+      while (rs.next()) {
+        typeIds.put(rs.getString(2), rs.getInt(1));
+      }
+    }
+    return typeIds.build();
+  }
+
+  /**
+   * Assigns IDs to the record types that have not yet been registered. New IDs follow on from
+   * the highest existing ID and are assigned in name order, so that a new database is always
+   * numbered in the same way.
+   *
+   * @return the names of the types that were registered
+   */
+  public static Iterable<String> registerTypes(Connection connection, Iterable<String> typeNames)
+      throws SQLException {
+    Map<String, Integer> typeIds = readTypeIds(connection);
+    int maxTypeId = 0;
+    for (int typeId : typeIds.values()) {
+      maxTypeId = Math.max(maxTypeId, typeId);
+    }
+    TreeSet<String> newTypeNames = new TreeSet<>();
+    for (String typeName : typeNames) {
+      if (!typeIds.containsKey(typeName)) {
+        newTypeNames.add(typeName);
+      }
+    }
+    if (maxTypeId + newTypeNames.size() > MAXIMUM_TYPE_ID) {
+      throw new SQLException("Too many record types to register " + newTypeNames + ".");
+    }
+    try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO "
+        + TABLE_DEF.getFullName() + " (" + SystemColumnDefs.ID_COLUMN_NAME + ", "
+        + SystemColumnDefs.NAME.getName() + ") VALUES (?, ?);")) {
+      for (String typeName : newTypeNames) {
+        stmt.setInt(1, ++maxTypeId);
+        stmt.setString(2, typeName);
+        stmt.executeUpdate();
+      }
+    }
+    return newTypeNames;
+  }
+}
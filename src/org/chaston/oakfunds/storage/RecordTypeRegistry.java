@@ -24,7 +24,16 @@ public interface RecordTypeRegistry {
   void validateRecordAttributes(RecordType<?> recordType, Map<String, Object> attributes,
       boolean create) throws StorageException;
 
-  <T extends Record> RecordType<T> getType(String name, RecordType<T> recordType);
+  /**
+   * Returns the type with the given ID (from the {@link RecordTypeCatalog}), which must be the
+   * given type or one of its subtypes.
+   */
+  <T extends Record> RecordType<T> getType(int typeId, RecordType<T> recordType);
+
+  /**
+   * Returns the ID of the type in the {@link RecordTypeCatalog}.
+   */
+  int getTypeId(RecordType<?> recordType);
 
   Iterable<RecordType> getAssignableTypes(RecordType recordType);
 }
@@ -21,21 +21,33 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.MultimapBuilder;
 import com.google.inject.Inject;
 
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * TODO(mchaston): write JavaDocs
  */
 public class RecordTypeRegistryImpl implements RecordTypeRegistry {
 
+  private static final Logger logger = Logger.getLogger(RecordTypeRegistryImpl.class.getName());
+
+  private final DataSource dataSource;
   private final ImmutableMap<String, RecordType> recordTypes;
   private final ImmutableMap<String, RecordValidator> recordValidators;
   private final ImmutableMultimap<String, RecordType> assignableRecordTypes;
+  // Read from the catalog when first needed, as the catalog may not exist until the schema has
+  // been updated.
+  private volatile TypeIds typeIds;
 
   @Inject
-  RecordTypeRegistryImpl(Set<RecordType> recordTypes) {
+  RecordTypeRegistryImpl(DataSource dataSource, Set<RecordType> recordTypes) {
+    this.dataSource = dataSource;
     Map<String, RecordType> recordTypesBuilder = new HashMap<>();
     Map<String, RecordValidator> recordValidatorsBuilder = new HashMap<>();
     Multimap<String, RecordType> assignableRecordTypesBuilder =
@@ -71,15 +83,82 @@ public class RecordTypeRegistryImpl implements RecordTypeRegistry {
   }
 
   @Override
-  public <T extends Record> RecordType<T> getType(String name, RecordType<T> parentRecordType) {
-    RecordType<?> recordType = recordTypes.get(name);
+  public <T extends Record> RecordType<T> getType(int typeId, RecordType<T> parentRecordType) {
+    RecordType<?>[] typesById = getTypeIds().typesById;
+    RecordType<?> recordType = typeId >= 0 && typeId < typesById.length ? typesById[typeId] : null;
+    if (recordType == parentRecordType) {
+      return parentRecordType;
+    }
+    if (recordType == null) {
+      throw new IllegalArgumentException("RecordType " + typeId + " is not bound.");
+    }
     if (recordType.isTypeOf(parentRecordType)) {
       return (RecordType<T>) recordType;
     }
-    throw new IllegalArgumentException("RecordType " + name
+    throw new IllegalArgumentException("RecordType " + recordType.getName()
         + " is not a subtype of " + parentRecordType.getName() + ".");
   }
 
+  @Override
+  public int getTypeId(RecordType<?> recordType) {
+    Integer typeId = getTypeIds().idsByName.get(recordType.getName());
+    if (typeId == null) {
+      throw new IllegalStateException(
+          "RecordType " + recordType.getName() + " was not bound.");
+    }
+    return typeId;
+  }
+
+  private TypeIds getTypeIds() {
+    TypeIds typeIds = this.typeIds;
+    if (typeIds == null) {
+      synchronized (this) {
+        typeIds = this.typeIds;
+        if (typeIds == null) {
+          typeIds = loadTypeIds();
+          this.typeIds = typeIds;
+        }
+      }
+    }
+    return typeIds;
+  }
+
+  private TypeIds loadTypeIds() {
+    ImmutableMap<String, Integer> catalogTypeIds;
+    try (Connection connection = dataSource.getConnection()) {
+      catalogTypeIds = RecordTypeCatalog.readTypeIds(connection);
+    } catch (SQLException e) {
+      logger.log(Level.WARNING, "Failed to read the record type catalog", e);
+      throw new IllegalStateException("Failed to read the record type catalog", e);
+    }
+    int maxTypeId = 0;
+    for (int typeId : catalogTypeIds.values()) {
+      maxTypeId = Math.max(maxTypeId, typeId);
+    }
+    RecordType<?>[] typesById = new RecordType<?>[maxTypeId + 1];
+    ImmutableMap.Builder<String, Integer> idsByName = ImmutableMap.builder();
+    for (RecordType<?> recordType : recordTypes.values()) {
+      Integer typeId = catalogTypeIds.get(recordType.getName());
+      if (typeId == null) {
+        throw new IllegalStateException("RecordType " + recordType.getName()
+            + " has not been registered in the catalog; the schema must be updated.");
+      }
+      typesById[typeId] = recordType;
+      idsByName.put(recordType.getName(), typeId);
+    }
+    return new TypeIds(typesById, idsByName.build());
+  }
+
+  private static class TypeIds {
+    private final RecordType<?>[] typesById;
+    private final ImmutableMap<String, Integer> idsByName;
+
+    private TypeIds(RecordType<?>[] typesById, ImmutableMap<String, Integer> idsByName) {
+      this.typesById = typesById;
+      this.idsByName = idsByName;
+    }
+  }
+
   @Override
   public Iterable<RecordType> getAssignableTypes(RecordType recordType) {
     return assignableRecordTypes.get(recordType.getName());
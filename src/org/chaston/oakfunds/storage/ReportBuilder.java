@@ -17,50 +17,51 @@ package org.chaston.oakfunds.storage;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableSet;
 import org.chaston.oakfunds.util.DateUtil;
 import org.joda.time.Instant;
 
 import javax.annotation.Nullable;
-import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.SortedMap;
-import java.util.TreeMap;
 
 /**
- * TODO(mchaston): write JavaDocs
+ * Builds a report of cumulative measures, bucketed by date and grouped by dimension values.
+ *
+ * <p>The aggregation is columnar: each distinct set of dimension values is interned to a row
+ * index, and each row keeps its measures as unscaled {@code long} values (at
+ * {@link org.chaston.oakfunds.util.BigDecimalUtil#STANDARD_SCALE}, the same as they are stored) in
+ * a single array indexed by bucket and measure. {@link java.math.BigDecimal}s are only created
+ * when the measures of the finished report are read.
  */
 public class ReportBuilder {
 
-  private final Map<Map<String, Object>, DimensionAggregator> dimensionAggregators =
-      new HashMap<>();
+  private final Map<ImmutableMap<String, Object>, Integer> dimensionIds = new HashMap<>();
+  private final List<DimensionAggregator> dimensionAggregators = new ArrayList<>();
   private final StoreImpl store;
-  private final int startYear;
-  private final int endYear;
-  private final ReportDateGranularity granularity;
   private final String containerIdDimension;
-  private final List<RecordSource> recordSources = new ArrayList<>();
-  private ImmutableSet<String> measures;
-  private final Set<Instant> instants;
+  private final List<RecordSource<?>> recordSources = new ArrayList<>();
+  private final ImmutableList<Instant> instants;
+  private ImmutableMap<String, Integer> measureIndexes;
+  private ImmutableList<Integer> containerIds;
+  private OrSearchTerm containerSearchTerm;
+  private boolean parallel;
 
   ReportBuilder(StoreImpl store, int startYear, int endYear, ReportDateGranularity granularity,
       @Nullable String containerIdDimension) {
     this.store = store;
-    this.startYear = startYear;
-    this.endYear = endYear;
-    this.granularity = granularity;
     this.containerIdDimension = containerIdDimension;
     instants = buildReportInstants(granularity, startYear, endYear);
   }
 
-  private Set<Instant> buildReportInstants(ReportDateGranularity granularity,
+  private ImmutableList<Instant> buildReportInstants(ReportDateGranularity granularity,
       int startYear, int endYear) {
-    ImmutableSet.Builder<Instant> instants = ImmutableSet.builder();
+    ImmutableList.Builder<Instant> instants = ImmutableList.builder();
     instants.add(DateUtil.endOfYear(startYear - 1));
     switch (granularity) {
       case YEAR:
@@ -82,25 +83,97 @@ public class ReportBuilder {
     return instants.build();
   }
 
+  /**
+   * Restricts every record source to the records of the given containers, so that a report
+   * covering many containers still runs a single query per record source.
+   */
+  public ReportBuilder restrictToContainers(Iterable<? extends Record> containers) {
+    ImmutableList.Builder<Integer> containerIds = ImmutableList.builder();
+    ImmutableList.Builder<SearchTerm> containerSearchTerms = ImmutableList.builder();
+    for (Record container : containers) {
+      containerIds.add(container.getId());
+      containerSearchTerms.add(
+          ContainerIdentifierSearchTerm.of(container.getRecordType(), container.getId()));
+    }
+    this.containerIds = containerIds.build();
+    this.containerSearchTerm = new OrSearchTerm(containerSearchTerms.build());
+    return this;
+  }
+
+  /**
+   * Runs the queries of the record sources at the same time, each on its own connection, rather
+   * than one after the other. This is only worth doing when there are several record sources.
+   */
+  public ReportBuilder inParallel() {
+    this.parallel = true;
+    return this;
+  }
+
   public Report build() throws StorageException {
-    Set<String> measures = new HashSet<>();
+    if (containerIds != null && containerIds.isEmpty()) {
+      // There is nothing to report on.
+      return new Report();
+    }
+    Set<String> measures = new LinkedHashSet<>();
     for (RecordSource<?> recordSource : recordSources) {
       measures.addAll(recordSource.measureMappings.values());
     }
-    this.measures = ImmutableSet.copyOf(measures);
+    ImmutableMap.Builder<String, Integer> measureIndexes = ImmutableMap.builder();
+    int measureIndex = 0;
+    for (String measure : measures) {
+      measureIndexes.put(measure, measureIndex++);
+    }
+    this.measureIndexes = measureIndexes.build();
+    for (RecordSource<?> recordSource : recordSources) {
+      recordSource.resolveMeasureIndexes();
+    }
 
     // Run the queries and get the results populated.
-    for (RecordSource recordSource : recordSources) {
-      store.buildReportPiece(startYear, endYear, granularity, recordSource);
+    if (parallel) {
+      store.buildReportPiecesInParallel(instants, recordSources);
+    } else {
+      for (RecordSource recordSource : recordSources) {
+        store.buildReportPiece(instants, recordSource);
+      }
     }
 
     Report report = new Report();
-    for (DimensionAggregator dimensionAggregator : dimensionAggregators.values()) {
+    for (DimensionAggregator dimensionAggregator : dimensionAggregators) {
       report.addReportRow(dimensionAggregator.createRow());
     }
     return report;
   }
 
+  /**
+   * Builds the report and splits its rows by the container that they came from. This requires
+   * the container ID to be one of the dimensions of the report.
+   *
+   * @return the report of each container, including empty reports for any containers that the
+   *     report was restricted to but that had no records
+   */
+  public ImmutableMap<Integer, Report> buildByContainer() throws StorageException {
+    if (containerIdDimension == null) {
+      throw new IllegalStateException(
+          "Reports can only be split by container if the container ID is a dimension.");
+    }
+    Map<Integer, Report> reports = new LinkedHashMap<>();
+    if (containerIds != null) {
+      for (Integer containerId : containerIds) {
+        reports.put(containerId, new Report());
+      }
+    }
+    for (ReportRow reportRow : build().getRows()) {
+      Integer containerId = (Integer) reportRow.getDimension(containerIdDimension);
+      Report report = reports.get(containerId);
+      if (report == null) {
+        report = new Report();
+        reports.put(containerId, report);
+      }
+      report.addReportRow(reportRow);
+    }
+    return ImmutableMap.copyOf(reports);
+  }
+
   public <T extends InstantRecord> ReportBuilder addRecordSource(RecordType<T> recordType,
       ImmutableList<? extends SearchTerm> searchTerms,
       ImmutableMap<String, String> dimensionMappings,
@@ -115,6 +188,7 @@ public class ReportBuilder {
     private final ImmutableList<? extends SearchTerm> searchTerms;
     private final ImmutableMap<String, String> dimensionMappings;
     private final ImmutableMap<String, String> measureMappings;
+    private int[] measureIndexes;
 
     RecordSource(RecordType<T> recordType,
         ImmutableList<? extends SearchTerm> searchTerms,
@@ -126,30 +200,68 @@ public class ReportBuilder {
       this.measureMappings = measureMappings;
     }
 
+    private void resolveMeasureIndexes() {
+      measureIndexes = new int[measureMappings.size()];
+      int i = 0;
+      for (String measure : measureMappings.values()) {
+        measureIndexes[i++] = ReportBuilder.this.measureIndexes.get(measure);
+      }
+    }
+
     RecordType<T> getRecordType() {
       return recordType;
     }
 
     ImmutableList<? extends SearchTerm> getSearchTerms() {
-      return searchTerms;
+      if (containerSearchTerm == null) {
+        return searchTerms;
+      }
+      return ImmutableList.<SearchTerm>builder()
+          .addAll(searchTerms)
+          .add(containerSearchTerm)
+          .build();
     }
 
     Set<String> getDimensionAttributes() {
       return dimensionMappings.keySet();
     }
 
-    Set<String> getMeasureAttributes() {
-      return measureMappings.keySet();
+    /**
+     * Returns the measure attributes, in the order that their values are passed to
+     * {@link #aggregateEntry}.
+     */
+    ImmutableList<String> getMeasureAttributes() {
+      return measureMappings.keySet().asList();
     }
 
-    void aggregateEntry(Instant instant, int containerId, Map<String, Object> value) {
-      ImmutableMap<String, Object> dimensionValues = readDimensionValues(containerId, value);
-      DimensionAggregator dimensionAggregator = dimensionAggregators.get(dimensionValues);
-      if (dimensionAggregator == null) {
-        dimensionAggregator = new DimensionAggregator(dimensionValues, instants);
-        dimensionAggregators.put(dimensionValues, dimensionAggregator);
+    /**
+     * Adds the measures of a single result to the report.
+     *
+     * @param bucket the index of the report instant that the result is aggregated into
+     * @param measureValues the unscaled values of the measures, in the order of
+     *     {@link #getMeasureAttributes()}
+     * @param measurePresent whether each measure had a (non-null) value
+     */
+    void aggregateEntry(int bucket, int containerId, Map<String, Object> dimensionValues,
+        long[] measureValues, boolean[] measurePresent) {
+      ImmutableMap<String, Object> mappedDimensionValues =
+          readDimensionValues(containerId, dimensionValues);
+      // The record sources may be aggregating from several threads at once (see inParallel()),
+      // and they all share the same dimension aggregators.
+      synchronized (ReportBuilder.this) {
+        Integer dimensionId = dimensionIds.get(mappedDimensionValues);
+        if (dimensionId == null) {
+          dimensionId = dimensionAggregators.size();
+          dimensionIds.put(mappedDimensionValues, dimensionId);
+          dimensionAggregators.add(new DimensionAggregator(mappedDimensionValues));
+        }
+        DimensionAggregator dimensionAggregator = dimensionAggregators.get(dimensionId);
+        for (int i = 0; i < measureIndexes.length; i++) {
+          if (measurePresent[i]) {
+            dimensionAggregator.aggregateMeasure(bucket, measureIndexes[i], measureValues[i]);
+          }
+        }
       }
-      dimensionAggregator.aggregateMeasures(instant, readMeasureValues(value));
     }
 
     private ImmutableMap<String, Object> readDimensionValues(
@@ -166,85 +278,43 @@ public class ReportBuilder {
       }
       return dimensionValues.build();
     }
-
-    private Map<String, BigDecimal> readMeasureValues(Map<String, Object> value) {
-      ImmutableMap.Builder<String, BigDecimal> measureValues = ImmutableMap.builder();
-      for (Map.Entry<String, String> measureMapping : measureMappings.entrySet()) {
-        BigDecimal measureValue = (BigDecimal) value.get(measureMapping.getKey());
-        if (measureValue == null) {
-          measureValues.put(measureMapping.getValue(), BigDecimal.ZERO);
-        } else {
-          measureValues.put(measureMapping.getValue(), measureValue);
-        }
-      }
-      return measureValues.build();
-    }
   }
 
   private class DimensionAggregator {
 
     private final ImmutableMap<String, Object> dimensionValues;
-    private final SortedMap<Instant, MeasureAggregator> measureAggregators = new TreeMap<>();
+    // The unscaled measure values, indexed by bucket * measure count + measure index.
+    private final long[] measureValues;
+    // The first bucket that a value was aggregated into, for each measure.
+    private final int[] firstValueBuckets;
 
-    DimensionAggregator(ImmutableMap<String, Object> dimensionValues, Set<Instant> instants) {
+    DimensionAggregator(ImmutableMap<String, Object> dimensionValues) {
       this.dimensionValues = dimensionValues;
-      for (Instant instant : instants) {
-        measureAggregators.put(instant, new MeasureAggregator(instant));
-      }
+      this.measureValues = new long[instants.size() * measureIndexes.size()];
+      this.firstValueBuckets = new int[measureIndexes.size()];
+      Arrays.fill(firstValueBuckets, Integer.MAX_VALUE);
     }
 
-    public void aggregateMeasures(Instant instant, Map<String, BigDecimal> measureValues) {
-      SortedMap<Instant, MeasureAggregator> tailMap = measureAggregators.tailMap(instant);
-      if (!tailMap.isEmpty()) {
-        tailMap.get(tailMap.firstKey()).aggregateMeasures(measureValues);
+    void aggregateMeasure(int bucket, int measureIndex, long unscaledValue) {
+      measureValues[bucket * measureIndexes.size() + measureIndex] += unscaledValue;
+      if (bucket < firstValueBuckets[measureIndex]) {
+        firstValueBuckets[measureIndex] = bucket;
       }
     }
 
-    public ReportRow createRow() {
+    ReportRow createRow() {
+      // Turn the values of each bucket into running totals.
+      int measureCount = measureIndexes.size();
+      for (int i = measureCount; i < measureValues.length; i++) {
+        measureValues[i] += measureValues[i - measureCount];
+      }
+      ReportColumns reportColumns =
+          new ReportColumns(measureIndexes, measureValues, firstValueBuckets);
       ReportRow reportRow = new ReportRow(dimensionValues);
-      Map<String, BigDecimal> measureValues = null;
-      for (MeasureAggregator measureAggregator : measureAggregators.values()) {
-        if (measureValues == null) {
-          measureValues = new HashMap<>(measureAggregator.getMeasureValues());
-        } else {
-          addAllMeasures(measureValues, measureAggregator.getMeasureValues());
-        }
-        reportRow.addEntry(
-            new ReportEntry(measureAggregator.getInstant(), ImmutableMap.copyOf(measureValues)));
+      for (int bucket = 0; bucket < instants.size(); bucket++) {
+        reportRow.addEntry(new ReportEntry(instants.get(bucket), reportColumns, bucket));
       }
       return reportRow;
     }
   }
-
-  private class MeasureAggregator {
-    private final Instant instant;
-    private final Map<String, BigDecimal> measureValues = new HashMap<>();
-
-    MeasureAggregator(Instant instant) {
-      this.instant = instant;
-      for (String measure : ReportBuilder.this.measures) {
-        measureValues.put(measure, BigDecimal.ZERO);
-      }
-    }
-
-    void aggregateMeasures(Map<String, BigDecimal> measureValues) {
-      addAllMeasures(this.measureValues, measureValues);
-    }
-
-    public Instant getInstant() {
-      return instant;
-    }
-
-    public Map<String,BigDecimal> getMeasureValues() {
-      return measureValues;
-    }
-  }
-
-  private static void addAllMeasures(Map<String, BigDecimal> currentMeasures,
-      Map<String, BigDecimal> additionalMeasures) {
-    for (Map.Entry<String, BigDecimal> entry : additionalMeasures.entrySet()) {
-      String attribute = entry.getKey();
-      currentMeasures.put(attribute, currentMeasures.get(attribute).add(entry.getValue()));
-    }
-  }
 }
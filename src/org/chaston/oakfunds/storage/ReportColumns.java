@@ -0,0 +1,52 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage;
+
+import com.google.common.collect.ImmutableMap;
+import org.chaston.oakfunds.util.BigDecimalUtil;
+
+import javax.annotation.Nullable;
+import java.math.BigDecimal;
+
+/**
+ * The measures of a single report row, held as unscaled running totals for every bucket.
+ */
+class ReportColumns {
+  private final ImmutableMap<String, Integer> measureIndexes;
+  private final long[] measureValues;
+  private final int[] firstValueBuckets;
+
+  ReportColumns(ImmutableMap<String, Integer> measureIndexes, long[] measureValues,
+      int[] firstValueBuckets) {
+    this.measureIndexes = measureIndexes;
+    this.measureValues = measureValues;
+    this.firstValueBuckets = firstValueBuckets;
+  }
+
+  @Nullable
+  BigDecimal getMeasure(int bucket, String measure) {
+    Integer measureIndex = measureIndexes.get(measure);
+    if (measureIndex == null) {
+      return null;
+    }
+    if (bucket < firstValueBuckets[measureIndex]) {
+      // Nothing has been added to the total yet.
+      return BigDecimal.ZERO;
+    }
+    return BigDecimal.valueOf(measureValues[bucket * measureIndexes.size() + measureIndex],
+        BigDecimalUtil.STANDARD_SCALE);
+  }
+}
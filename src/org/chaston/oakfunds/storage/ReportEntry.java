@@ -15,23 +15,22 @@
  */
 package org.chaston.oakfunds.storage;
 
-import com.google.common.collect.ImmutableMap;
 import org.joda.time.Instant;
 
 import java.math.BigDecimal;
-import java.util.Map;
 
 /**
  * TODO(mchaston): write JavaDocs
  */
 public class ReportEntry {
   private final Instant instant;
-  private final ImmutableMap<String, BigDecimal> attributes;
+  private final ReportColumns reportColumns;
+  private final int bucket;
 
-  ReportEntry(Instant instant,
-      Map<String, BigDecimal> measures) {
+  ReportEntry(Instant instant, ReportColumns reportColumns, int bucket) {
     this.instant = instant;
-    this.attributes = ImmutableMap.copyOf(measures);
+    this.reportColumns = reportColumns;
+    this.bucket = bucket;
   }
 
   public Instant getInstant() {
@@ -39,6 +38,6 @@ public class ReportEntry {
   }
 
   public BigDecimal getMeasure(String attribute) {
-    return attributes.get(attribute);
+    return reportColumns.getMeasure(bucket, attribute);
   }
 }
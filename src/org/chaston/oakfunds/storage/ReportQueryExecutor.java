@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage;
+
+import com.google.appengine.api.ThreadManager;
+import com.google.appengine.api.utils.SystemProperty;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.chaston.oakfunds.util.Flag;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded pool of threads used by {@link StoreImpl} to run the queries of independent report
+ * record sources at the same time. The threads are only started when there is work for them and
+ * stop again once they have been idle for a while.
+ *
+ * <p>App Engine only allows threads made by {@link ThreadManager}, and request threads must be
+ * created by (and finish within) the request that uses them, so when running there the pool is
+ * built from the request thread factory for each call instead of being shared.
+ */
+class ReportQueryExecutor {
+
+  private static final Flag<Integer> REPORT_QUERY_THREADS =
+      Flag.builder("report_query_threads", 4).build();
+  private static final long IDLE_THREAD_SECONDS = 60;
+
+  private final int threadCount;
+  @Nullable
+  private final ThreadPoolExecutor sharedExecutor;
+
+  ReportQueryExecutor() {
+    this(REPORT_QUERY_THREADS.get());
+  }
+
+  ReportQueryExecutor(int threadCount) {
+    this.threadCount = threadCount;
+    if (threadCount > 1 && SystemProperty.environment.value() == null) {
+      sharedExecutor = new ThreadPoolExecutor(threadCount, threadCount,
+          IDLE_THREAD_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+          new ThreadFactoryBuilder()
+              .setNameFormat("report-query-%d")
+              .setDaemon(true)
+              .build());
+      sharedExecutor.allowCoreThreadTimeOut(true);
+    } else {
+      sharedExecutor = null;
+    }
+  }
+
+  /**
+   * Returns whether queries can be run in parallel at all.
+   */
+  boolean isEnabled() {
+    return threadCount > 1;
+  }
+
+  /**
+   * Runs all of the tasks in the pool and waits for them to finish. If any of the tasks fail,
+   * the first failure (in the order of the tasks) is rethrown once all of them have finished.
+   */
+  <V> List<V> invokeAll(List<Callable<V>> tasks) throws StorageException {
+    if (!isEnabled()) {
+      throw new IllegalStateException("Parallel report queries are not enabled.");
+    }
+    ExecutorService executor = sharedExecutor;
+    if (executor == null) {
+      executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threadCount, tasks.size())),
+          ThreadManager.currentRequestThreadFactory());
+    }
+    List<Future<V>> futures;
+    try {
+      futures = executor.invokeAll(tasks);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StorageException("Interrupted while running report queries", e);
+    } finally {
+      if (executor != sharedExecutor) {
+        // The request threads must not outlive the request.
+        executor.shutdownNow();
+      }
+    }
+    List<V> results = new ArrayList<>();
+    for (Future<V> future : futures) {
+      try {
+        results.add(future.get());
+      } catch (InterruptedException e) {
+        // Cannot happen, as invokeAll only returns once every task is done.
+        Thread.currentThread().interrupt();
+        throw new StorageException("Interrupted while running report queries", e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof StorageException) {
+          throw (StorageException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new StorageException("Failed to run report query", cause);
+      }
+    }
+    return results;
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage;
+
+import com.google.common.collect.ImmutableMap;
+import org.chaston.oakfunds.jdbc.ColumnDef;
+import org.joda.time.Instant;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reads the rows of a query by column index rather than by column name. The index of each column
+ * is looked up once, from the {@link ResultSetMetaData} of the query, instead of by every read of
+ * every row (which the drivers do with a case-insensitive search). Decoders are cached by
+ * {@link SqlTemplateCache} for each statement, so the lookups are only done once per statement.
+ */
+class RowDecoder {
+
+  private final int columnCount;
+  // The 1-based index of each column, by its upper-cased name.
+  private final ImmutableMap<String, Integer> columnIndexes;
+  private final int typeColumn;
+  private final int idColumn;
+  private final int containerIdColumn;
+  private final int instantColumn;
+  private final int startTimeColumn;
+  private final int endTimeColumn;
+  private final ConcurrentMap<RecordType<?>, AttributeColumns> recordTypeAttributeColumns =
+      new ConcurrentHashMap<>();
+
+  private RowDecoder(int columnCount, ImmutableMap<String, Integer> columnIndexes) {
+    this.columnCount = columnCount;
+    this.columnIndexes = columnIndexes;
+    typeColumn = findColumnIndex(SystemColumnDefs.TYPE.getName());
+    idColumn = findColumnIndex(SystemColumnDefs.ID_COLUMN_NAME);
+    containerIdColumn = findColumnIndex(SystemColumnDefs.CONTAINER_ID.getName());
+    instantColumn = findColumnIndex(SystemColumnDefs.INSTANT.getName());
+    startTimeColumn = findColumnIndex(SystemColumnDefs.START_TIME.getName());
+    endTimeColumn = findColumnIndex(SystemColumnDefs.END_TIME.getName());
+  }
+
+  static RowDecoder create(ResultSetMetaData metaData) throws SQLException {
+    Map<String, Integer> columnIndexes = new HashMap<>();
+    for (int i = metaData.getColumnCount(); i >= 1; i--) {
+      // Going backwards means that the first of any duplicate names wins, as it does by name.
+      columnIndexes.put(normalize(metaData.getColumnLabel(i)), i);
+    }
+    return new RowDecoder(metaData.getColumnCount(), ImmutableMap.copyOf(columnIndexes));
+  }
+
+  /**
+   * Returns whether the decoder can still be used for a result with the given columns. The
+   * columns can only change if the schema is updated while the statement is cached.
+   */
+  boolean matches(ResultSetMetaData metaData) throws SQLException {
+    return metaData.getColumnCount() == columnCount;
+  }
+
+  int getColumnIndex(String columnName) throws SQLException {
+    int columnIndex = findColumnIndex(columnName);
+    if (columnIndex == 0) {
+      throw new SQLException("Column " + columnName + " is not part of the result.");
+    }
+    return columnIndex;
+  }
+
+  int getTypeId(ResultSet rs) throws SQLException {
+    return rs.getInt(requireColumn(typeColumn, SystemColumnDefs.TYPE));
+  }
+
+  int getId(ResultSet rs) throws SQLException {
+    return rs.getInt(requireColumn(idColumn, SystemColumnDefs.MANUAL_ID));
+  }
+
+  int getContainerId(ResultSet rs) throws SQLException {
+    return rs.getInt(requireColumn(containerIdColumn, SystemColumnDefs.CONTAINER_ID));
+  }
+
+  Instant getInstant(ResultSet rs) throws SQLException {
+    return getInstant(rs, requireColumn(instantColumn, SystemColumnDefs.INSTANT));
+  }
+
+  Instant getStartTime(ResultSet rs) throws SQLException {
+    return getInstant(rs, requireColumn(startTimeColumn, SystemColumnDefs.START_TIME));
+  }
+
+  Instant getEndTime(ResultSet rs) throws SQLException {
+    return getInstant(rs, requireColumn(endTimeColumn, SystemColumnDefs.END_TIME));
+  }
+
+  /**
+   * Reads all of the attributes of the record type from the current row.
+   */
+  Map<String, Object> readAttributes(RecordType<?> recordType, ResultSet rs)
+      throws SQLException {
+    AttributeColumns attributeColumns = recordTypeAttributeColumns.get(recordType);
+    if (attributeColumns == null) {
+      attributeColumns = bindAttributes(recordType.getJdbcTypeHandlers());
+      recordTypeAttributeColumns.put(recordType, attributeColumns);
+    }
+    return attributeColumns.read(rs);
+  }
+
+  /**
+   * Finds the columns of the attributes, so that they can be read from each row.
+   */
+  AttributeColumns bindAttributes(Map<String, JdbcTypeHandler> jdbcTypeHandlers)
+      throws SQLException {
+    String[] attributes = new String[jdbcTypeHandlers.size()];
+    JdbcTypeHandler[] handlers = new JdbcTypeHandler[jdbcTypeHandlers.size()];
+    int[] attributeColumnIndexes = new int[jdbcTypeHandlers.size()];
+    int i = 0;
+    for (Map.Entry<String, JdbcTypeHandler> jdbcTypeHandlerEntry : jdbcTypeHandlers.entrySet()) {
+      attributes[i] = jdbcTypeHandlerEntry.getKey();
+      handlers[i] = jdbcTypeHandlerEntry.getValue();
+      attributeColumnIndexes[i] = getColumnIndex(handlers[i].getColumnName());
+      i++;
+    }
+    return new AttributeColumns(attributes, handlers, attributeColumnIndexes);
+  }
+
+  private int findColumnIndex(String columnName) {
+    Integer columnIndex = columnIndexes.get(normalize(columnName));
+    return columnIndex == null ? 0 : columnIndex;
+  }
+
+  private static int requireColumn(int columnIndex, ColumnDef columnDef) throws SQLException {
+    if (columnIndex == 0) {
+      throw new SQLException("Column " + columnDef.getName() + " is not part of the result.");
+    }
+    return columnIndex;
+  }
+
+  private static Instant getInstant(ResultSet rs, int columnIndex) throws SQLException {
+    return new Instant(rs.getTimestamp(columnIndex));
+  }
+
+  private static String normalize(String columnName) {
+    return columnName.toUpperCase(Locale.ENGLISH);
+  }
+
+  /**
+   * The columns that a set of attributes are read from.
+   */
+  static class AttributeColumns {
+    private final String[] attributes;
+    private final JdbcTypeHandler[] handlers;
+    private final int[] columnIndexes;
+
+    private AttributeColumns(String[] attributes, JdbcTypeHandler[] handlers,
+        int[] columnIndexes) {
+      this.attributes = attributes;
+      this.handlers = handlers;
+      this.columnIndexes = columnIndexes;
+    }
+
+    /**
+     * Reads the (non-null) attributes from the current row.
+     */
+    Map<String, Object> read(ResultSet rs) throws SQLException {
+      ImmutableMap.Builder<String, Object> values = ImmutableMap.builder();
+      for (int i = 0; i < handlers.length; i++) {
+        Object value = handlers[i].get(rs, columnIndexes[i]);
+        if (value != null) {
+          values.put(attributes[i], value);
+        }
+      }
+      return values.build();
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.Nullable;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Caches the SQL text generated by {@link StoreImpl}, so that the same statement is not rebuilt
+ * for every request. Templates are keyed by the record type, the operation and the shape of the
+ * statement (the sorted attribute names, search terms, etc.) but never by the parameter values.
+ * The {@link RowDecoder}s of the queries are cached in the same way.
+ */
+class SqlTemplateCache {
+
+  private static final int MAXIMUM_SIZE = 1000;
+
+  enum Operation {
+    INSERT_RECORD_WITH_ID,
+    INSERT_RECORD,
+    GET_RECORD,
+    UPDATE_RECORD,
+    DELETE_RECORD,
+    LOCK_RECORD,
+    FIND_OVERLAPPING_INTERVAL_RECORDS,
+    RESIZE_INTERVAL_RECORD,
+    INSERT_INTERVAL_RECORD,
+    INSERT_INSTANT_RECORD,
+    UPDATE_INSTANT_RECORD,
+    DELETE_INSTANT_RECORDS,
+    FIND_INSTANT_RECORDS,
+    FIND_INSTANT_RECORDS_FOR_UPDATE,
+    STREAM_INSTANT_RECORDS,
+    GET_LATEST_INSTANT_RECORD,
+    GET_LATEST_INSTANT_RECORD_FOR_UPDATE,
+    GET_INTERVAL_RECORD,
+    FIND_RECORDS,
+    FIND_INTERVAL_RECORDS,
+    BUILD_REPORT_PIECE,
+  }
+
+  private final Cache<TemplateKey, String> templates =
+      CacheBuilder.newBuilder().maximumSize(MAXIMUM_SIZE).build();
+  private final Cache<TemplateKey, RowDecoder> rowDecoders =
+      CacheBuilder.newBuilder().maximumSize(MAXIMUM_SIZE).build();
+
+  @Nullable
+  String get(RecordType<?> recordType, Operation operation, List<?> shape) {
+    return templates.getIfPresent(new TemplateKey(recordType, operation, shape));
+  }
+
+  String put(RecordType<?> recordType, Operation operation, List<?> shape, String sql) {
+    templates.put(new TemplateKey(recordType, operation, shape), sql);
+    return sql;
+  }
+
+  /**
+   * Returns the decoder for the rows of the query, creating it from the result if this is the
+   * first time that the query has been run.
+   */
+  RowDecoder getRowDecoder(RecordType<?> recordType, Operation operation, List<?> shape,
+      ResultSet rs) throws SQLException {
+    TemplateKey templateKey = new TemplateKey(recordType, operation, shape);
+    RowDecoder rowDecoder = rowDecoders.getIfPresent(templateKey);
+    ResultSetMetaData metaData = rs.getMetaData();
+    if (rowDecoder == null || !rowDecoder.matches(metaData)) {
+      rowDecoder = RowDecoder.create(metaData);
+      rowDecoders.put(templateKey, rowDecoder);
+    }
+    return rowDecoder;
+  }
+
+  long size() {
+    return templates.size();
+  }
+
+  private static class TemplateKey {
+    private final RecordType<?> recordType;
+    private final Operation operation;
+    private final List<?> shape;
+
+    TemplateKey(RecordType<?> recordType, Operation operation, List<?> shape) {
+      this.recordType = recordType;
+      this.operation = operation;
+      this.shape = ImmutableList.copyOf(shape);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof TemplateKey)) {
+        return false;
+      }
+      TemplateKey that = (TemplateKey) o;
+      return recordType.equals(that.recordType)
+          && operation == that.operation
+          && shape.equals(that.shape);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * recordType.hashCode() + operation.hashCode()) + shape.hashCode();
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage;
+
+import javax.annotation.Nullable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Runs a single statement for {@link StoreImpl}, timing the calls into JDBC and counting the
+ * rows that it reads or changes. The totals are passed to the {@link StorageInstrumentation}
+ * when the recorder is closed. A recorder is only used by one thread at a time.
+ */
+class StatementRecorder implements AutoCloseable {
+
+  private final StorageInstrumentation storageInstrumentation;
+  private final SqlTemplateCache.Operation operation;
+  @Nullable
+  private final StorageStatistics storageStatistics;
+  private long jdbcNanos;
+  private long rowsRead;
+  private long rowsAffected;
+  private boolean closed;
+
+  StatementRecorder(StorageInstrumentation storageInstrumentation,
+      SqlTemplateCache.Operation operation, @Nullable StorageStatistics storageStatistics) {
+    this.storageInstrumentation = storageInstrumentation;
+    this.operation = operation;
+    this.storageStatistics = storageStatistics;
+  }
+
+  ResultSet executeQuery(PreparedStatement stmt) throws SQLException {
+    long start = System.nanoTime();
+    try {
+      return stmt.executeQuery();
+    } finally {
+      jdbcNanos += System.nanoTime() - start;
+    }
+  }
+
+  /**
+   * Moves to the next row of the results of the statement, counting it if there is one.
+   */
+  boolean next(ResultSet rs) throws SQLException {
+    long start = System.nanoTime();
+    try {
+      if (rs.next()) {
+        rowsRead++;
+        return true;
+      }
+      return false;
+    } finally {
+      jdbcNanos += System.nanoTime() - start;
+    }
+  }
+
+  int executeUpdate(PreparedStatement stmt) throws SQLException {
+    long start = System.nanoTime();
+    try {
+      int updateCount = stmt.executeUpdate();
+      rowsAffected += updateCount;
+      return updateCount;
+    } finally {
+      jdbcNanos += System.nanoTime() - start;
+    }
+  }
+
+  int[] executeBatch(PreparedStatement stmt) throws SQLException {
+    long start = System.nanoTime();
+    try {
+      int[] updateCounts = stmt.executeBatch();
+      for (int updateCount : updateCounts) {
+        // Drivers may report success without a count.
+        if (updateCount > 0) {
+          rowsAffected += updateCount;
+        }
+      }
+      return updateCounts;
+    } finally {
+      jdbcNanos += System.nanoTime() - start;
+    }
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    storageInstrumentation.recordStatement(
+        storageStatistics, operation, jdbcNanos, rowsRead, rowsAffected);
+  }
+}
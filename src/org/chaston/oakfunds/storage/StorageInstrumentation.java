@@ -0,0 +1,181 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage;
+
+import com.google.inject.Inject;
+import org.chaston.oakfunds.jdbc.PooledDataSource;
+import org.chaston.oakfunds.security.Permission;
+import org.chaston.oakfunds.util.Flag;
+
+import javax.annotation.Nullable;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records the statements run by the {@link Store} and the connections that it uses, both for
+ * the request that is running on the current thread and in the cumulative
+ * {@link StorageMetrics}. The metrics are also published through JMX when the
+ * {@code storage_metrics_jmx} flag is set; it is off by default because the App Engine sandbox
+ * does not allow access to the platform MBean server.
+ */
+public class StorageInstrumentation {
+
+  private static final Logger logger = Logger.getLogger(StorageInstrumentation.class.getName());
+
+  private static final Flag<Integer> SLOW_REQUEST_MILLIS =
+      Flag.builder("storage_slow_request_millis", 1000).build();
+  private static final Flag<Integer> CHATTY_REQUEST_STATEMENTS =
+      Flag.builder("storage_chatty_request_statements", 100).build();
+  private static final Flag<Boolean> STORAGE_METRICS_JMX =
+      Flag.builder("storage_metrics_jmx", false).build();
+
+  private static final String MBEAN_NAME = "org.chaston.oakfunds:type=StorageMetrics";
+
+  static final Permission PERMISSION_STORAGE_METRICS_READ =
+      Permission.builder("storage_metrics.read").build();
+
+  private final ThreadLocal<StorageStatistics> currentStatistics = new ThreadLocal<>();
+  private final long slowRequestNanos;
+  private final int chattyRequestStatements;
+  private final StorageMetrics storageMetrics;
+
+  @Inject
+  StorageInstrumentation(DataSource dataSource) {
+    this.slowRequestNanos = TimeUnit.MILLISECONDS.toNanos(SLOW_REQUEST_MILLIS.get());
+    this.chattyRequestStatements = CHATTY_REQUEST_STATEMENTS.get();
+    this.storageMetrics = new StorageMetrics(dataSource instanceof PooledDataSource
+        ? (PooledDataSource) dataSource : null);
+    if (STORAGE_METRICS_JMX.get()) {
+      registerMBean(storageMetrics);
+    }
+  }
+
+  /**
+   * Registers the metrics with the platform MBean server, replacing those of any earlier
+   * instance (such as one from a previous injector in the same JVM). Failures are logged rather
+   * than thrown, including the linkage errors raised where {@link ManagementFactory} is not
+   * available.
+   */
+  private static void registerMBean(StorageMetrics storageMetrics) {
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = new ObjectName(MBEAN_NAME);
+      if (mBeanServer.isRegistered(objectName)) {
+        mBeanServer.unregisterMBean(objectName);
+      }
+      mBeanServer.registerMBean(storageMetrics, objectName);
+    } catch (JMException | SecurityException | LinkageError e) {
+      logger.log(Level.WARNING, "Failed to register storage metrics MBean", e);
+    }
+  }
+
+  /**
+   * Starts collecting the statistics of a request on the current thread.
+   */
+  public StorageStatistics startRequest() {
+    if (currentStatistics.get() != null) {
+      throw new IllegalStateException("Already in request.");
+    }
+    StorageStatistics storageStatistics = new StorageStatistics();
+    currentStatistics.set(storageStatistics);
+    return storageStatistics;
+  }
+
+  /**
+   * Stops collecting the statistics of the request on the current thread and adds the request
+   * to the cumulative metrics. Any record iterators of the request must be closed first, so
+   * that their statements are included.
+   */
+  public void endRequest(StorageStatistics storageStatistics) {
+    currentStatistics.remove();
+    storageMetrics.recordRequest(storageStatistics,
+        isSlow(storageStatistics), isChatty(storageStatistics));
+  }
+
+  /**
+   * Returns whether the request spent longer than the threshold in JDBC or waiting for
+   * connections.
+   */
+  public boolean isSlow(StorageStatistics storageStatistics) {
+    return storageStatistics.getJdbcNanos() + storageStatistics.getConnectionWaitNanos()
+        >= slowRequestNanos;
+  }
+
+  /**
+   * Returns whether the request ran more statements than the threshold.
+   */
+  public boolean isChatty(StorageStatistics storageStatistics) {
+    return storageStatistics.getStatementCount() >= chattyRequestStatements;
+  }
+
+  public StorageMetrics getStorageMetrics() {
+    return storageMetrics;
+  }
+
+  /**
+   * Wraps the callable so that it adds to the statistics of the current request when it is
+   * called on another thread.
+   */
+  <V> Callable<V> inCurrentRequest(final Callable<V> callable) {
+    final StorageStatistics storageStatistics = currentStatistics.get();
+    if (storageStatistics == null) {
+      return callable;
+    }
+    return new Callable<V>() {
+      @Override
+      public V call() throws Exception {
+        StorageStatistics originalStatistics = currentStatistics.get();
+        currentStatistics.set(storageStatistics);
+        try {
+          return callable.call();
+        } finally {
+          if (originalStatistics == null) {
+            currentStatistics.remove();
+          } else {
+            currentStatistics.set(originalStatistics);
+          }
+        }
+      }
+    };
+  }
+
+  StatementRecorder startStatement(SqlTemplateCache.Operation operation) {
+    return new StatementRecorder(this, operation, currentStatistics.get());
+  }
+
+  void recordStatement(@Nullable StorageStatistics storageStatistics,
+      SqlTemplateCache.Operation operation, long jdbcNanos, long rowsRead, long rowsAffected) {
+    if (storageStatistics != null) {
+      storageStatistics.recordStatement(operation, jdbcNanos, rowsRead, rowsAffected);
+    }
+    storageMetrics.recordStatement(operation, jdbcNanos, rowsRead, rowsAffected);
+  }
+
+  void recordConnection(long waitNanos) {
+    StorageStatistics storageStatistics = currentStatistics.get();
+    if (storageStatistics != null) {
+      storageStatistics.recordConnection(waitNanos);
+    }
+    storageMetrics.recordConnection(waitNanos);
+  }
+}
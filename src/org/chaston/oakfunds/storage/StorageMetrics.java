@@ -0,0 +1,239 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage;
+
+import org.chaston.oakfunds.jdbc.PooledDataSource;
+import org.chaston.oakfunds.util.JSONRepresentable;
+import org.json.simple.JSONObject;
+
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The storage work done since the server started, with histograms of the time taken by the
+ * statements of each operation and of the work done by each request. When the data source is a
+ * {@link PooledDataSource} the state of the pool is reported as well.
+ */
+public class StorageMetrics implements StorageMetricsMXBean, JSONRepresentable {
+
+  private static final SqlTemplateCache.Operation[] OPERATIONS =
+      SqlTemplateCache.Operation.values();
+
+  private final OperationMetrics[] operationMetrics = new OperationMetrics[OPERATIONS.length];
+  private final AtomicLong connectionCount = new AtomicLong();
+  private final AtomicLong connectionWaitNanos = new AtomicLong();
+  private final Histogram connectionWaitMicros = new Histogram(Histogram.MICROS_BOUNDS, "us");
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong slowRequestCount = new AtomicLong();
+  private final AtomicLong chattyRequestCount = new AtomicLong();
+  private final Histogram requestStatements = new Histogram(Histogram.COUNT_BOUNDS, "");
+  private final Histogram requestJdbcMicros = new Histogram(Histogram.MICROS_BOUNDS, "us");
+  @Nullable
+  private final PooledDataSource pooledDataSource;
+
+  StorageMetrics(@Nullable PooledDataSource pooledDataSource) {
+    this.pooledDataSource = pooledDataSource;
+    for (int i = 0; i < operationMetrics.length; i++) {
+      operationMetrics[i] = new OperationMetrics();
+    }
+  }
+
+  void recordStatement(SqlTemplateCache.Operation operation, long jdbcNanos, long rowsRead,
+      long rowsAffected) {
+    OperationMetrics metrics = operationMetrics[operation.ordinal()];
+    metrics.statementCount.incrementAndGet();
+    metrics.rowsRead.addAndGet(rowsRead);
+    metrics.rowsAffected.addAndGet(rowsAffected);
+    metrics.jdbcNanos.addAndGet(jdbcNanos);
+    metrics.latencyMicros.record(TimeUnit.NANOSECONDS.toMicros(jdbcNanos));
+  }
+
+  void recordConnection(long waitNanos) {
+    connectionCount.incrementAndGet();
+    connectionWaitNanos.addAndGet(waitNanos);
+    connectionWaitMicros.record(TimeUnit.NANOSECONDS.toMicros(waitNanos));
+  }
+
+  void recordRequest(StorageStatistics storageStatistics, boolean slow, boolean chatty) {
+    requestCount.incrementAndGet();
+    if (slow) {
+      slowRequestCount.incrementAndGet();
+    }
+    if (chatty) {
+      chattyRequestCount.incrementAndGet();
+    }
+    requestStatements.record(storageStatistics.getStatementCount());
+    requestJdbcMicros.record(TimeUnit.NANOSECONDS.toMicros(storageStatistics.getJdbcNanos()));
+  }
+
+  @Override
+  public long getStatementCount() {
+    long statementCount = 0;
+    for (OperationMetrics metrics : operationMetrics) {
+      statementCount += metrics.statementCount.get();
+    }
+    return statementCount;
+  }
+
+  @Override
+  public long getRowsRead() {
+    long rowsRead = 0;
+    for (OperationMetrics metrics : operationMetrics) {
+      rowsRead += metrics.rowsRead.get();
+    }
+    return rowsRead;
+  }
+
+  @Override
+  public long getRowsAffected() {
+    long rowsAffected = 0;
+    for (OperationMetrics metrics : operationMetrics) {
+      rowsAffected += metrics.rowsAffected.get();
+    }
+    return rowsAffected;
+  }
+
+  @Override
+  public long getJdbcTimeMillis() {
+    long jdbcNanos = 0;
+    for (OperationMetrics metrics : operationMetrics) {
+      jdbcNanos += metrics.jdbcNanos.get();
+    }
+    return TimeUnit.NANOSECONDS.toMillis(jdbcNanos);
+  }
+
+  @Override
+  public long getConnectionCount() {
+    return connectionCount.get();
+  }
+
+  @Override
+  public long getConnectionWaitMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(connectionWaitNanos.get());
+  }
+
+  @Override
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+  @Override
+  public long getSlowRequestCount() {
+    return slowRequestCount.get();
+  }
+
+  @Override
+  public long getChattyRequestCount() {
+    return chattyRequestCount.get();
+  }
+
+  @Override
+  public Map<String, Long> getStatementCountsByOperation() {
+    Map<String, Long> statementCounts = new LinkedHashMap<>();
+    for (SqlTemplateCache.Operation operation : OPERATIONS) {
+      statementCounts.put(getName(operation),
+          operationMetrics[operation.ordinal()].statementCount.get());
+    }
+    return statementCounts;
+  }
+
+  @Override
+  public Map<String, Long> getStatementLatencyHistogram() {
+    Histogram[] others = new Histogram[operationMetrics.length - 1];
+    for (int i = 1; i < operationMetrics.length; i++) {
+      others[i - 1] = operationMetrics[i].latencyMicros;
+    }
+    return operationMetrics[0].latencyMicros.toMap(others);
+  }
+
+  @Override
+  public Map<String, Long> getConnectionWaitHistogram() {
+    return connectionWaitMicros.toMap();
+  }
+
+  @Override
+  public Map<String, Long> getRequestStatementHistogram() {
+    return requestStatements.toMap();
+  }
+
+  @Override
+  public Map<String, Long> getRequestJdbcTimeHistogram() {
+    return requestJdbcMicros.toMap();
+  }
+
+  @Override
+  public JSONObject toJSONObject() {
+    JSONObject jsonObject = new JSONObject();
+    jsonObject.put("statement_count", getStatementCount());
+    jsonObject.put("rows_read", getRowsRead());
+    jsonObject.put("rows_affected", getRowsAffected());
+    jsonObject.put("jdbc_time_millis", getJdbcTimeMillis());
+
+    JSONObject jsonOperations = new JSONObject();
+    for (SqlTemplateCache.Operation operation : OPERATIONS) {
+      OperationMetrics metrics = operationMetrics[operation.ordinal()];
+      if (metrics.statementCount.get() > 0) {
+        jsonOperations.put(getName(operation), metrics.toJSONObject());
+      }
+    }
+    jsonObject.put("operations", jsonOperations);
+
+    JSONObject jsonConnections = new JSONObject();
+    jsonConnections.put("count", getConnectionCount());
+    jsonConnections.put("wait_millis", getConnectionWaitMillis());
+    jsonConnections.put("wait_micros_histogram", connectionWaitMicros.toJSONArray());
+    jsonObject.put("connections", jsonConnections);
+
+    JSONObject jsonRequests = new JSONObject();
+    jsonRequests.put("count", getRequestCount());
+    jsonRequests.put("slow_count", getSlowRequestCount());
+    jsonRequests.put("chatty_count", getChattyRequestCount());
+    jsonRequests.put("statements_histogram", requestStatements.toJSONArray());
+    jsonRequests.put("jdbc_micros_histogram", requestJdbcMicros.toJSONArray());
+    jsonObject.put("requests", jsonRequests);
+
+    if (pooledDataSource != null) {
+      jsonObject.put("connection_pool", pooledDataSource.getMetrics().toJSONObject());
+    }
+    return jsonObject;
+  }
+
+  private static String getName(SqlTemplateCache.Operation operation) {
+    return operation.name().toLowerCase(Locale.US);
+  }
+
+  private static class OperationMetrics {
+    private final AtomicLong statementCount = new AtomicLong();
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong rowsAffected = new AtomicLong();
+    private final AtomicLong jdbcNanos = new AtomicLong();
+    private final Histogram latencyMicros = new Histogram(Histogram.MICROS_BOUNDS, "us");
+
+    JSONObject toJSONObject() {
+      JSONObject jsonObject = new JSONObject();
+      jsonObject.put("statement_count", statementCount.get());
+      jsonObject.put("rows_read", rowsRead.get());
+      jsonObject.put("rows_affected", rowsAffected.get());
+      jsonObject.put("jdbc_time_millis", TimeUnit.NANOSECONDS.toMillis(jdbcNanos.get()));
+      jsonObject.put("latency_micros_histogram", latencyMicros.toJSONArray());
+      return jsonObject;
+    }
+  }
+}
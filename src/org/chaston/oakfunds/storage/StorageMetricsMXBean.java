@@ -0,0 +1,52 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage;
+
+import java.util.Map;
+
+/**
+ * The management interface of the cumulative {@link StorageMetrics}. The histograms are keyed
+ * by the bounds of their buckets.
+ */
+public interface StorageMetricsMXBean {
+  long getStatementCount();
+
+  long getRowsRead();
+
+  long getRowsAffected();
+
+  long getJdbcTimeMillis();
+
+  long getConnectionCount();
+
+  long getConnectionWaitMillis();
+
+  long getRequestCount();
+
+  long getSlowRequestCount();
+
+  long getChattyRequestCount();
+
+  Map<String, Long> getStatementCountsByOperation();
+
+  Map<String, Long> getStatementLatencyHistogram();
+
+  Map<String, Long> getConnectionWaitHistogram();
+
+  Map<String, Long> getRequestStatementHistogram();
+
+  Map<String, Long> getRequestJdbcTimeHistogram();
+}
@@ -18,6 +18,7 @@ package org.chaston.oakfunds.storage;
 import com.google.inject.AbstractModule;
 import com.google.inject.Singleton;
 import org.chaston.oakfunds.security.AuthorizationContext;
+import org.chaston.oakfunds.storage.ui.StorageServletModule;
 
 import javax.sql.DataSource;
 
@@ -33,5 +34,9 @@ public class StorageModule extends AbstractModule {
     requireBinding(AuthorizationContext.class);
     bind(Store.class).to(StoreImpl.class);
     bind(StoreImpl.class).in(Singleton.class);
+    bind(StorageInstrumentation.class).in(Singleton.class);
+    bind(StorageMetricsManager.class).to(StorageMetricsManagerImpl.class);
+    bind(StorageMetricsManagerImpl.class).in(Singleton.class);
+    install(new StorageServletModule());
   }
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The storage work done for a single request, broken down by the type of operation. The
+ * statistics can be updated from more than one thread, as the queries of a report run in
+ * parallel.
+ */
+public class StorageStatistics {
+
+  private static final SqlTemplateCache.Operation[] OPERATIONS =
+      SqlTemplateCache.Operation.values();
+
+  private final AtomicLongArray statementCounts = new AtomicLongArray(OPERATIONS.length);
+  private final AtomicLongArray rowsRead = new AtomicLongArray(OPERATIONS.length);
+  private final AtomicLongArray rowsAffected = new AtomicLongArray(OPERATIONS.length);
+  private final AtomicLongArray jdbcNanos = new AtomicLongArray(OPERATIONS.length);
+  private final AtomicLong connectionCount = new AtomicLong();
+  private final AtomicLong connectionWaitNanos = new AtomicLong();
+
+  void recordStatement(SqlTemplateCache.Operation operation, long jdbcNanos, long rowsRead,
+      long rowsAffected) {
+    int index = operation.ordinal();
+    this.statementCounts.incrementAndGet(index);
+    this.rowsRead.addAndGet(index, rowsRead);
+    this.rowsAffected.addAndGet(index, rowsAffected);
+    this.jdbcNanos.addAndGet(index, jdbcNanos);
+  }
+
+  void recordConnection(long waitNanos) {
+    connectionCount.incrementAndGet();
+    connectionWaitNanos.addAndGet(waitNanos);
+  }
+
+  public long getStatementCount() {
+    return sum(statementCounts);
+  }
+
+  /**
+   * The number of rows returned by the queries.
+   */
+  public long getRowsRead() {
+    return sum(rowsRead);
+  }
+
+  /**
+   * The number of rows inserted, updated or deleted.
+   */
+  public long getRowsAffected() {
+    return sum(rowsAffected);
+  }
+
+  /**
+   * The time spent executing statements and fetching their results.
+   */
+  public long getJdbcNanos() {
+    return sum(jdbcNanos);
+  }
+
+  public long getConnectionCount() {
+    return connectionCount.get();
+  }
+
+  public long getConnectionWaitNanos() {
+    return connectionWaitNanos.get();
+  }
+
+  /**
+   * Returns a one line description of the statistics that is suitable for logging.
+   */
+  public String getSummary() {
+    StringBuilder stringBuilder = new StringBuilder();
+    stringBuilder.append(getStatementCount()).append(" statements");
+    boolean first = true;
+    for (SqlTemplateCache.Operation operation : OPERATIONS) {
+      long statementCount = statementCounts.get(operation.ordinal());
+      if (statementCount == 0) {
+        continue;
+      }
+      stringBuilder.append(first ? " (" : ", ")
+          .append(operation.name().toLowerCase(Locale.US)).append(": ").append(statementCount);
+      first = false;
+    }
+    if (!first) {
+      stringBuilder.append(")");
+    }
+    stringBuilder.append(", ").append(getRowsRead()).append(" rows read, ")
+        .append(getRowsAffected()).append(" rows affected, ")
+        .append(toMillis(getJdbcNanos())).append(" ms in JDBC, ")
+        .append(getConnectionCount()).append(" connections (")
+        .append(toMillis(getConnectionWaitNanos())).append(" ms waiting)");
+    return stringBuilder.toString();
+  }
+
+  private static String toMillis(long nanos) {
+    return String.format(Locale.US, "%.1f", (double) nanos / TimeUnit.MILLISECONDS.toNanos(1));
+  }
+
+  private static long sum(AtomicLongArray values) {
+    long sum = 0;
+    for (int i = 0; i < values.length(); i++) {
+      sum += values.get(i);
+    }
+    return sum;
+  }
+}
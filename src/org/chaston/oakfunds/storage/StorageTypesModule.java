@@ -21,6 +21,7 @@ import com.google.inject.Key;
 import com.google.inject.Provides;
 import com.google.inject.multibindings.Multibinder;
 import org.chaston.oakfunds.jdbc.FunctionDef;
+import org.chaston.oakfunds.security.Permission;
 
 import java.io.IOException;
 import java.lang.annotation.Retention;
@@ -53,6 +54,12 @@ public class StorageTypesModule extends AbstractModule {
         .to(Key.get(FunctionDef.class, ReportingMonthFunction.class));
     functionDefMultibinder.addBinding()
         .to(Key.get(FunctionDef.class, ReportingDayFunction.class));
+
+    Multibinder<Permission> permissionMultibinder
+        = Multibinder.newSetBinder(binder(), Permission.class);
+
+    permissionMultibinder.addBinding()
+        .toInstance(StorageInstrumentation.PERMISSION_STORAGE_METRICS_READ);
   }
 
   @Provides
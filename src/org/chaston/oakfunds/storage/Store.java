@@ -15,7 +15,10 @@
  */
 package org.chaston.oakfunds.storage;
 
+import com.google.common.cache.CacheStats;
+import org.chaston.oakfunds.util.Pair;
 import org.joda.time.Instant;
+import org.joda.time.Interval;
 
 import javax.annotation.Nullable;
 import java.util.List;
@@ -28,6 +31,18 @@ public interface Store {
 
   Transaction startTransaction() throws StorageException;
 
+  /**
+   * Runs the action once the current transaction has committed, such as to invalidate a cache
+   * of what the transaction changed. The action is dropped if the transaction is rolled back.
+   */
+  void runAfterCommit(Runnable action);
+
+  /**
+   * Starts a unit of work in which all reads on this thread that are not part of a transaction
+   * share one read-only connection.
+   */
+  ReadOnlyUnitOfWork startReadOnlyUnitOfWork();
+
   <T extends Record> T createRecord(RecordType<T> recordType, int id,
       Map<String, Object> attributes) throws StorageException;
 
@@ -40,19 +55,51 @@ public interface Store {
 
   <T extends Record> void deleteRecord(T record) throws StorageException;
 
+  /**
+   * Locks the record until the current transaction ends, so that any other transaction that
+   * locks it waits until then. This serializes changes to data that is derived from the record
+   * (such as the balances of an account) across every server that shares the database. No
+   * access is checked, as the record is not read or changed.
+   *
+   * <p>Later reads of the instant records contained by the record in the same transaction lock
+   * the rows that they read, so that they see the latest committed changes.
+   */
+  void lockRecord(Record record) throws StorageException;
+
   <T extends IntervalRecord> T updateIntervalRecord(Record containingRecord,
       RecordType<T> recordType, Instant start, Instant end,
       Map<String, Object> attributes)
       throws StorageException;
 
+  /**
+   * Applies a series of interval updates to the container in order, as if
+   * {@link #updateIntervalRecord} had been called for each of them, but using a fixed number of
+   * statements.
+   */
+  <T extends IntervalRecord> void updateIntervalRecords(Record containingRecord,
+      RecordType<T> recordType, List<Pair<Interval, Map<String, Object>>> updates)
+      throws StorageException;
+
   <T extends InstantRecord> T insertInstantRecord(Record containingRecord,
       RecordType<T> recordType, Instant instant, Map<String, Object> attributes)
       throws StorageException;
 
+  <T extends InstantRecord> List<T> insertInstantRecords(Record containingRecord,
+      RecordType<T> recordType, List<Pair<Instant, Map<String, Object>>> records)
+      throws StorageException;
+
   <T extends InstantRecord> T updateInstantRecord(Record containingRecord,
       RecordType<T> recordType, int id, Instant instant, Map<String, Object> attributes)
       throws StorageException;
 
+  /**
+   * Updates the attributes of each of the records, leaving their instants unchanged. The
+   * updates are sent to the database in batches.
+   */
+  <T extends InstantRecord> List<T> updateInstantRecords(Record containingRecord,
+      RecordType<T> recordType, List<Pair<T, Map<String, Object>>> updates)
+      throws StorageException;
+
   <T extends InstantRecord> void deleteInstantRecords(Record containingRecord,
       RecordType<T> recordType, List<? extends SearchTerm> searchTerms)
       throws StorageException;
@@ -61,6 +108,32 @@ public interface Store {
       RecordType<T> recordType, Instant start, Instant end,
       List<? extends SearchTerm> searchTerms) throws StorageException;
 
+  /**
+   * Returns the same records as {@link #findInstantRecords}, but reads them lazily as the
+   * iterator is advanced rather than loading them all into memory.
+   */
+  <T extends InstantRecord> RecordIterator<T> streamInstantRecords(Record containingRecord,
+      RecordType<T> recordType, Instant start, Instant end,
+      List<? extends SearchTerm> searchTerms) throws StorageException;
+
+  /**
+   * Streams at most {@code limit} records that come after the given position (or from the first
+   * record, if the position is {@code null}). A limit of zero streams all of the remaining
+   * records.
+   */
+  <T extends InstantRecord> RecordIterator<T> streamInstantRecords(Record containingRecord,
+      RecordType<T> recordType, Instant start, Instant end,
+      List<? extends SearchTerm> searchTerms, @Nullable InstantRecordPosition after, int limit)
+      throws StorageException;
+
+  /**
+   * Returns the instant record with the latest instant that is not after the given date, or
+   * {@code null} if there is no such record.
+   */
+  @Nullable
+  <T extends InstantRecord> T getLatestInstantRecord(Record containingRecord,
+      RecordType<T> recordType, Instant date) throws StorageException;
+
   <T extends IntervalRecord> T getIntervalRecord(Record containingRecord,
       RecordType<T> recordType, Instant date) throws StorageException;
 
@@ -72,6 +145,11 @@ public interface Store {
       RecordType<T> recordType, Instant start, Instant end, List<? extends SearchTerm> searchTerms)
       throws StorageException;
 
+  /**
+   * Returns the hit and miss counts of the cache used by {@link #getRecord}.
+   */
+  CacheStats getRecordCacheStats();
+
   ReportBuilder newReportBuilder(int startYear, int endYear, ReportDateGranularity granularity,
       @Nullable String containerIdDimension);
 }
@@ -18,15 +18,19 @@ package org.chaston.oakfunds.storage;
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Ordering;
 import com.google.inject.Inject;
-import org.chaston.oakfunds.jdbc.ColumnDef;
 import org.chaston.oakfunds.security.ActionType;
 import org.chaston.oakfunds.security.AuthorizationContext;
 import org.chaston.oakfunds.util.DateUtil;
+import org.chaston.oakfunds.util.Pair;
 import org.joda.time.Instant;
+import org.joda.time.Interval;
 
 import javax.annotation.Nullable;
 import javax.sql.DataSource;
@@ -36,10 +40,12 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -49,19 +55,28 @@ import java.util.logging.Logger;
 class StoreImpl implements Store {
 
   private static final Logger logger = Logger.getLogger(StoreImpl.class.getName());
+  private static final int STREAMING_FETCH_SIZE = 100;
+  private static final String REPORT_BUCKET_COLUMN = "report_bucket";
   private final ThreadLocal<TransactionImpl> currentTransaction = new ThreadLocal<>();
+  private final ThreadLocal<ReadOnlyUnitOfWorkImpl> currentUnitOfWork = new ThreadLocal<>();
 
   private final DataSource dataSource;
   private final RecordTypeRegistry recordTypeRegistry;
   private final AuthorizationContext authorizationContext;
+  private final StorageInstrumentation storageInstrumentation;
+  private final SqlTemplateCache sqlTemplateCache = new SqlTemplateCache();
+  private final RecordCache recordCache = new RecordCache();
+  private final ReportQueryExecutor reportQueryExecutor = new ReportQueryExecutor();
 
   @Inject
   StoreImpl(DataSource dataSource,
       RecordTypeRegistry recordTypeRegistry,
-      AuthorizationContext authorizationContext) {
+      AuthorizationContext authorizationContext,
+      StorageInstrumentation storageInstrumentation) {
     this.dataSource = dataSource;
     this.recordTypeRegistry = recordTypeRegistry;
     this.authorizationContext = authorizationContext;
+    this.storageInstrumentation = storageInstrumentation;
   }
 
   @Override
@@ -79,11 +94,36 @@ class StoreImpl implements Store {
     return newTransaction;
   }
 
-  void endTransaction(Connection connection) {
+  @Override
+  public void runAfterCommit(Runnable action) {
+    TransactionImpl currentTransaction = this.currentTransaction.get();
+    if (currentTransaction == null) {
+      throw new IllegalStateException("Not within transaction.");
+    }
+    currentTransaction.runAfterCommit(action);
+  }
+
+  @Override
+  public ReadOnlyUnitOfWork startReadOnlyUnitOfWork() {
+    if (currentUnitOfWork.get() != null) {
+      throw new IllegalStateException("Already in unit of work.");
+    }
+    ReadOnlyUnitOfWorkImpl unitOfWork = new ReadOnlyUnitOfWorkImpl();
+    currentUnitOfWork.set(unitOfWork);
+    return unitOfWork;
+  }
+
+  void endTransaction(Connection connection, Iterable<RecordCache.RecordKey> writtenRecords) {
     currentTransaction.remove();
+    recordCache.invalidateAll(writtenRecords);
     closeConnection(connection);
   }
 
+  @Override
+  public CacheStats getRecordCacheStats() {
+    return recordCache.getStats();
+  }
+
   @Override
   public <T extends Record> T createRecord(RecordType<T> recordType, int id,
       Map<String, Object> attributes) throws StorageException {
@@ -94,6 +134,7 @@ class StoreImpl implements Store {
       throw new IllegalStateException("Not within transaction.");
     }
     insertRecord(currentTransaction.getConnection(), recordType, id, attributes);
+    currentTransaction.recordWritten(RecordCache.key(recordType, id));
     return getRecord(recordType, id);
   }
 
@@ -102,20 +143,31 @@ class StoreImpl implements Store {
     Preconditions.checkArgument(!recordType.isAutoIncrementId(),
         "You cannot specify an ID for an auto-incrementing record type.");
 
-    StringBuilder stringBuilder = new StringBuilder();
-    stringBuilder.append("INSERT INTO ").append(recordType.getTableName()).append("(");
-    stringBuilder.append(SystemColumnDefs.ID_COLUMN_NAME).append(", ");
-    stringBuilder.append(SystemColumnDefs.TYPE.getName()).append(", ");
-    appendAttributeColumnNames(stringBuilder, recordType, attributes);
-    stringBuilder.append(") VALUES (");
-    appendQuestionMarks(stringBuilder, attributes.size() + 2);
-    stringBuilder.append(");");
+    List<String> attributeNames = sortedAttributeNames(attributes);
+    String sql = sqlTemplateCache.get(recordType,
+        SqlTemplateCache.Operation.INSERT_RECORD_WITH_ID, attributeNames);
+    if (sql == null) {
+      StringBuilder stringBuilder = new StringBuilder();
+      stringBuilder.append("INSERT INTO ").append(recordType.getTableName()).append("(");
+      stringBuilder.append(SystemColumnDefs.ID_COLUMN_NAME).append(", ");
+      stringBuilder.append(SystemColumnDefs.TYPE.getName()).append(", ");
+      appendAttributeColumnNames(stringBuilder, recordType, attributeNames);
+      stringBuilder.append(") VALUES (");
+      appendQuestionMarks(stringBuilder, attributeNames.size() + 2);
+      stringBuilder.append(");");
+      sql = sqlTemplateCache.put(recordType,
+          SqlTemplateCache.Operation.INSERT_RECORD_WITH_ID, attributeNames,
+          stringBuilder.toString());
+    }
 
-    try (PreparedStatement stmt = connection.prepareStatement(stringBuilder.toString())) {
+    try (PreparedStatement stmt = connection.prepareStatement(sql);
+        StatementRecorder recorder =
+            storageInstrumentation.startStatement(
+                SqlTemplateCache.Operation.INSERT_RECORD_WITH_ID)) {
       stmt.setInt(1, id);
-      stmt.setString(2, recordType.getName());
-      setParameters(recordType, stmt, 3, attributes);
-      stmt.executeUpdate();
+      stmt.setInt(2, recordTypeRegistry.getTypeId(recordType));
+      setParameters(recordType, stmt, 3, attributeNames, attributes);
+      recorder.executeUpdate(stmt);
     } catch (SQLException e) {
       logger.log(Level.WARNING, "Failed to insert record of type " + recordType.getName(), e);
       throw new StorageException("Failed to insert record of type " + recordType.getName(), e);
@@ -132,6 +184,7 @@ class StoreImpl implements Store {
       throw new IllegalStateException("Not within transaction.");
     }
     int newId = insertRecord(currentTransaction.getConnection(), recordType, attributes);
+    currentTransaction.recordWritten(RecordCache.key(recordType, newId));
     return getRecord(recordType, newId);
   }
 
@@ -141,19 +194,28 @@ class StoreImpl implements Store {
     Preconditions.checkArgument(recordType.isAutoIncrementId(),
         "You must specify an ID for a manually identifying record type.");
 
-    StringBuilder stringBuilder = new StringBuilder();
-    stringBuilder.append("INSERT INTO ").append(recordType.getTableName()).append("(");
-    stringBuilder.append(SystemColumnDefs.TYPE.getName()).append(", ");
-    appendAttributeColumnNames(stringBuilder, recordType, attributes);
-    stringBuilder.append(") VALUES (");
-    appendQuestionMarks(stringBuilder, attributes.size() + 1);
-    stringBuilder.append(");");
-
-    try (PreparedStatement stmt = connection.prepareStatement(stringBuilder.toString(),
-        Statement.RETURN_GENERATED_KEYS)) {
-      stmt.setString(1, recordType.getName());
-      setParameters(recordType, stmt, 2, attributes);
-      stmt.executeUpdate();
+    List<String> attributeNames = sortedAttributeNames(attributes);
+    String sql = sqlTemplateCache.get(recordType,
+        SqlTemplateCache.Operation.INSERT_RECORD, attributeNames);
+    if (sql == null) {
+      StringBuilder stringBuilder = new StringBuilder();
+      stringBuilder.append("INSERT INTO ").append(recordType.getTableName()).append("(");
+      stringBuilder.append(SystemColumnDefs.TYPE.getName()).append(", ");
+      appendAttributeColumnNames(stringBuilder, recordType, attributeNames);
+      stringBuilder.append(") VALUES (");
+      appendQuestionMarks(stringBuilder, attributeNames.size() + 1);
+      stringBuilder.append(");");
+      sql = sqlTemplateCache.put(recordType,
+          SqlTemplateCache.Operation.INSERT_RECORD, attributeNames, stringBuilder.toString());
+    }
+
+    try (PreparedStatement stmt = connection.prepareStatement(sql,
+        Statement.RETURN_GENERATED_KEYS);
+        StatementRecorder recorder =
+            storageInstrumentation.startStatement(SqlTemplateCache.Operation.INSERT_RECORD)) {
+      stmt.setInt(1, recordTypeRegistry.getTypeId(recordType));
+      setParameters(recordType, stmt, 2, attributeNames, attributes);
+      recorder.executeUpdate(stmt);
       // Get the generated ID back.
       ResultSet tableKeys = stmt.getGeneratedKeys();
       if (!tableKeys.next()) {
@@ -172,8 +234,24 @@ class StoreImpl implements Store {
   @Override
   public <T extends Record> T getRecord(RecordType<T> recordType, int id) throws StorageException {
     authorizationContext.assertAccess(recordType, ActionType.READ);
+    RecordCache.RecordKey recordKey = RecordCache.key(recordType, id);
+    TransactionImpl currentTransaction = this.currentTransaction.get();
+    // Transactions read the committed record rather than a cached copy that may be stale (if it
+    // was changed on another server), so that what they write is based on the latest data.
+    boolean cacheable = recordCache.isCacheable(recordType) && currentTransaction == null;
+    if (cacheable) {
+      RawRecord<?> cachedRecord = recordCache.get(recordKey);
+      if (cachedRecord != null && cachedRecord.getRecordType().isTypeOf(recordType)) {
+        return RecordProxy.proxyRecord((RecordType<T>) cachedRecord.getRecordType(),
+            null, id, cachedRecord.getAttributes());
+      }
+    }
+    long cacheGeneration = recordCache.getGeneration();
     try (ReadingDataSource readingDataSource = new ReadingDataSource()) {
       RawRecord<T> rawRecord = getRecord(readingDataSource.getConnection(), recordType, id);
+      if (cacheable) {
+        recordCache.put(recordKey, rawRecord, cacheGeneration);
+      }
       return RecordProxy.proxyRecord(rawRecord.getRecordType(),
           null, id, rawRecord.getAttributes());
     }
@@ -181,21 +259,32 @@ class StoreImpl implements Store {
 
   private <T extends Record> RawRecord<T> getRecord(Connection connection,
       RecordType<T> recordType, int id) throws StorageException {
-    StringBuilder stringBuilder = new StringBuilder();
-    stringBuilder.append("SELECT * FROM ").append(recordType.getTableName());
-    stringBuilder.append(" WHERE ").append(SystemColumnDefs.ID_COLUMN_NAME).append(" = ?;");
+    String sql = sqlTemplateCache.get(recordType,
+        SqlTemplateCache.Operation.GET_RECORD, ImmutableList.of());
+    if (sql == null) {
+      StringBuilder stringBuilder = new StringBuilder();
+      stringBuilder.append("SELECT * FROM ").append(recordType.getTableName());
+      stringBuilder.append(" WHERE ").append(SystemColumnDefs.ID_COLUMN_NAME).append(" = ?;");
+      sql = sqlTemplateCache.put(recordType,
+          SqlTemplateCache.Operation.GET_RECORD, ImmutableList.of(), stringBuilder.toString());
+    }
 
-    try (PreparedStatement stmt = connection.prepareStatement(stringBuilder.toString())) {
+    try (PreparedStatement stmt = connection.prepareStatement(sql);
+        StatementRecorder recorder =
+            storageInstrumentation.startStatement(SqlTemplateCache.Operation.GET_RECORD)) {
       stmt.setInt(1, id);
-      try (ResultSet rs = stmt.executeQuery()) {
-        if (!rs.next()) {
+      try (ResultSet rs = recorder.executeQuery(stmt)) {
+        RowDecoder rowDecoder = sqlTemplateCache.getRowDecoder(recordType,
+            SqlTemplateCache.Operation.GET_RECORD, ImmutableList.of(), rs);
+        if (!recorder.next(rs)) {
           logger.log(Level.WARNING,
               "Failed to read record " + id + " for type " + recordType.getName());
           throw new StorageException(
               "Failed to read record " + id + " for type " + recordType.getName());
         }
-        RecordType<T> loadedRecordType = loadedRecordType(rs, recordType);
-        return new RawRecord<>(loadedRecordType, id, readAttributes(loadedRecordType, rs));
+        RecordType<T> loadedRecordType = loadedRecordType(rowDecoder, rs, recordType);
+        return new RawRecord<>(loadedRecordType, id,
+            rowDecoder.readAttributes(loadedRecordType, rs));
       }
     } catch (SQLException e) {
       logger.log(Level.WARNING,
@@ -205,9 +294,9 @@ class StoreImpl implements Store {
     }
   }
 
-  private <T extends Record> RecordType<T> loadedRecordType(
+  private <T extends Record> RecordType<T> loadedRecordType(RowDecoder rowDecoder,
       ResultSet rs, RecordType<T> recordType) throws SQLException {
-    return recordTypeRegistry.getType(rs.getString(SystemColumnDefs.TYPE.getName()), recordType);
+    return recordTypeRegistry.getType(rowDecoder.getTypeId(rs), recordType);
   }
 
   @Override
@@ -221,21 +310,31 @@ class StoreImpl implements Store {
     }
     updateRecord(currentTransaction.getConnection(),
         record.getRecordType(), record.getId(), attributes);
+    currentTransaction.recordWritten(RecordCache.key(record.getRecordType(), record.getId()));
     return (T) getRecord(record.getRecordType(), record.getId());
   }
 
   private <T extends Record> void updateRecord(Connection connection,
       RecordType<T> recordType, int id, Map<String, Object> attributes) throws StorageException {
-    StringBuilder stringBuilder = new StringBuilder();
-    stringBuilder.append("UPDATE ").append(recordType.getTableName()).append(" SET ");
-    Joiner.on(" = ?, ").appendTo(stringBuilder, prefixColumnNames(recordType, attributes.keySet()));
-    stringBuilder.append(" = ?");
-    stringBuilder.append(" WHERE ").append(SystemColumnDefs.ID_COLUMN_NAME).append(" = ?;");
-
-    try (PreparedStatement stmt = connection.prepareStatement(stringBuilder.toString())) {
-      int nextIndex = setParameters(recordType, stmt, 1, attributes);
+    List<String> attributeNames = sortedAttributeNames(attributes);
+    String sql = sqlTemplateCache.get(recordType,
+        SqlTemplateCache.Operation.UPDATE_RECORD, attributeNames);
+    if (sql == null) {
+      StringBuilder stringBuilder = new StringBuilder();
+      stringBuilder.append("UPDATE ").append(recordType.getTableName()).append(" SET ");
+      Joiner.on(" = ?, ").appendTo(stringBuilder, prefixColumnNames(recordType, attributeNames));
+      stringBuilder.append(" = ?");
+      stringBuilder.append(" WHERE ").append(SystemColumnDefs.ID_COLUMN_NAME).append(" = ?;");
+      sql = sqlTemplateCache.put(recordType,
+          SqlTemplateCache.Operation.UPDATE_RECORD, attributeNames, stringBuilder.toString());
+    }
+
+    try (PreparedStatement stmt = connection.prepareStatement(sql);
+        StatementRecorder recorder =
+            storageInstrumentation.startStatement(SqlTemplateCache.Operation.UPDATE_RECORD)) {
+      int nextIndex = setParameters(recordType, stmt, 1, attributeNames, attributes);
       stmt.setInt(nextIndex, id);
-      stmt.executeUpdate();
+      recorder.executeUpdate(stmt);
     } catch (SQLException e) {
       logger.log(Level.WARNING, "Failed to update record of type " + recordType.getName(), e);
       throw new StorageException("Failed to update record of type " + recordType.getName(), e);
@@ -257,17 +356,75 @@ class StoreImpl implements Store {
     }
     deleteRecord(currentTransaction.getConnection(),
         record.getRecordType(), record.getId());
+    currentTransaction.recordWritten(RecordCache.key(record.getRecordType(), record.getId()));
+  }
+
+  @Override
+  public void lockRecord(Record record) throws StorageException {
+    RecordType<?> recordType = record.getRecordType();
+    TransactionImpl currentTransaction = this.currentTransaction.get();
+    if (currentTransaction == null) {
+      throw new IllegalStateException("Not within transaction.");
+    }
+    String sql = sqlTemplateCache.get(recordType,
+        SqlTemplateCache.Operation.LOCK_RECORD, ImmutableList.of());
+    if (sql == null) {
+      StringBuilder stringBuilder = new StringBuilder();
+      stringBuilder.append("SELECT ").append(SystemColumnDefs.ID_COLUMN_NAME);
+      stringBuilder.append(" FROM ").append(recordType.getTableName());
+      stringBuilder.append(" WHERE ").append(SystemColumnDefs.ID_COLUMN_NAME).append(" = ?");
+      stringBuilder.append(" FOR UPDATE;");
+      sql = sqlTemplateCache.put(recordType,
+          SqlTemplateCache.Operation.LOCK_RECORD, ImmutableList.of(), stringBuilder.toString());
+    }
+
+    try (PreparedStatement stmt = currentTransaction.getConnection().prepareStatement(sql);
+        StatementRecorder recorder =
+            storageInstrumentation.startStatement(SqlTemplateCache.Operation.LOCK_RECORD)) {
+      stmt.setInt(1, record.getId());
+      try (ResultSet rs = recorder.executeQuery(stmt)) {
+        if (!recorder.next(rs)) {
+          logger.log(Level.WARNING, "Failed to lock record " + record.getId()
+              + " of type " + recordType.getName());
+          throw new StorageException("Failed to lock record " + record.getId()
+              + " of type " + recordType.getName());
+        }
+      }
+      currentTransaction.recordLocked(RecordCache.key(recordType, record.getId()));
+    } catch (SQLException e) {
+      logger.log(Level.WARNING, "Failed to lock record of type " + recordType.getName(), e);
+      throw new StorageException("Failed to lock record of type " + recordType.getName(), e);
+    }
+  }
+
+  /**
+   * Reads of the records contained by a record that the current transaction has locked are
+   * locking reads. They then see the rows committed by whoever held the lock before, rather than
+   * a snapshot taken earlier in the transaction (as MySQL does for repeatable reads).
+   */
+  private boolean isLockingRead(Record containingRecord) {
+    TransactionImpl currentTransaction = this.currentTransaction.get();
+    return currentTransaction != null && currentTransaction.isLocked(
+        RecordCache.key(containingRecord.getRecordType(), containingRecord.getId()));
   }
 
   private <T extends Record> void deleteRecord(Connection connection,
       RecordType<T> recordType, int id) throws StorageException {
-    StringBuilder stringBuilder = new StringBuilder();
-    stringBuilder.append("DELETE FROM ").append(recordType.getTableName());
-    stringBuilder.append(" WHERE ").append(SystemColumnDefs.ID_COLUMN_NAME).append(" = ?;");
+    String sql = sqlTemplateCache.get(recordType,
+        SqlTemplateCache.Operation.DELETE_RECORD, ImmutableList.of());
+    if (sql == null) {
+      StringBuilder stringBuilder = new StringBuilder();
+      stringBuilder.append("DELETE FROM ").append(recordType.getTableName());
+      stringBuilder.append(" WHERE ").append(SystemColumnDefs.ID_COLUMN_NAME).append(" = ?;");
+      sql = sqlTemplateCache.put(recordType,
+          SqlTemplateCache.Operation.DELETE_RECORD, ImmutableList.of(), stringBuilder.toString());
+    }
 
-    try (PreparedStatement stmt = connection.prepareStatement(stringBuilder.toString())) {
+    try (PreparedStatement stmt = connection.prepareStatement(sql);
+        StatementRecorder recorder =
+            storageInstrumentation.startStatement(SqlTemplateCache.Operation.DELETE_RECORD)) {
       stmt.setInt(1, id);
-      stmt.executeUpdate();
+      recorder.executeUpdate(stmt);
     } catch (SQLException e) {
       logger.log(Level.WARNING, "Failed to delete record of type " + recordType.getName(), e);
       throw new StorageException("Failed to delete record of type " + recordType.getName(), e);
@@ -290,110 +447,277 @@ class StoreImpl implements Store {
         containingRecord, id, start, end, attributes);
   }
 
+  @Override
+  public <T extends IntervalRecord> void updateIntervalRecords(Record containingRecord,
+      RecordType<T> recordType, List<Pair<Interval, Map<String, Object>>> updates)
+      throws StorageException {
+    authorizationContext.assertAccess(recordType, ActionType.UPDATE);
+    for (Pair<Interval, Map<String, Object>> update : updates) {
+      recordTypeRegistry.validateRecordAttributes(recordType, update.getSecond(), false);
+    }
+    TransactionImpl currentTransaction = this.currentTransaction.get();
+    if (currentTransaction == null) {
+      throw new IllegalStateException("Not within transaction.");
+    }
+    if (updates.isEmpty()) {
+      return;
+    }
+    ImmutableList.Builder<IntervalUpdate> intervalUpdates = ImmutableList.builder();
+    for (Pair<Interval, Map<String, Object>> update : updates) {
+      intervalUpdates.add(new IntervalUpdate(update.getFirst().getStart().toInstant(),
+          update.getFirst().getEnd().toInstant(), update.getSecond()));
+    }
+    updateIntervalRecords(currentTransaction.getConnection(), containingRecord, recordType,
+        intervalUpdates.build());
+  }
+
   private <T extends IntervalRecord> int updateIntervalRecord(Connection connection,
       Record containingRecord, RecordType<T> recordType, Instant start, Instant end,
       Map<String, Object> attributes) throws StorageException {
-    // Load any record that starts before start and ends after start.
-    RawIntervalRecord<T> overlapping =
-        getIntervalRecord(connection, containingRecord, recordType, start);
-    if (overlapping != null) {
-      // If it ends after end, clone it to create a new one.
-      if (overlapping.getEnd().isAfter(end)) {
-        insertIntervalRecord(connection, containingRecord.getId(), overlapping.getRecordType(),
-            end, overlapping.getEnd(), overlapping.getAttributes());
-      }
-      // Truncate the original.
-      truncateIntervalRecord(connection, overlapping, SystemColumnDefs.END_TIME, start);
-    }
-    // Delete all records that start on or after start and end before end.
-    deleteIntervalRecords(connection, containingRecord, recordType, start, end);
-    // Truncate any record that starts on or after start and ends after end.
-    overlapping = getIntervalRecord(connection, containingRecord, recordType, end.minus(1));
-    if (overlapping != null) {
-      truncateIntervalRecord(connection, overlapping, SystemColumnDefs.START_TIME, end);
-    }
-    // Insert new record.
-    return insertIntervalRecord(connection, containingRecord.getId(), recordType,
-        start, end, attributes);
+    List<IntervalRecordSplicer.Segment> newSegments =
+        updateIntervalRecords(connection, containingRecord, recordType,
+            ImmutableList.of(new IntervalUpdate(start, end, attributes)));
+    return newSegments.get(0).getId();
   }
 
-  private <T extends IntervalRecord> void deleteIntervalRecords(Connection connection,
-      Record containingRecord, RecordType<T> recordType, Instant start, Instant end)
-      throws StorageException {
-    StringBuilder stringBuilder = new StringBuilder();
-    stringBuilder.append("DELETE FROM ").append(recordType.getTableName());
-    stringBuilder.append(" WHERE ");
-    stringBuilder.append(SystemColumnDefs.CONTAINER_ID.getName()).append(" = ? AND ");
-    stringBuilder.append(SystemColumnDefs.START_TIME.getName()).append(" >= ? AND ");
-    stringBuilder.append(SystemColumnDefs.END_TIME.getName()).append(" < ?;");
-
-    try (PreparedStatement stmt = connection.prepareStatement(stringBuilder.toString())) {
+  /**
+   * Splices the updates, in order, into the interval records of the container. This reads all of
+   * the overlapping records at once and then applies the changes as one batch of deletes, one of
+   * resizes and as few batches of inserts as the attributes allow, rather than reading and
+   * writing each overlapping record separately.
+   *
+   * @return the record created for each update
+   */
+  private <T extends IntervalRecord> List<IntervalRecordSplicer.Segment> updateIntervalRecords(
+      Connection connection, Record containingRecord, RecordType<T> recordType,
+      List<IntervalUpdate> updates) throws StorageException {
+    Instant spanStart = updates.get(0).start;
+    Instant spanEnd = updates.get(0).end;
+    for (IntervalUpdate update : updates) {
+      if (update.start.isBefore(spanStart)) {
+        spanStart = update.start;
+      }
+      if (update.end.isAfter(spanEnd)) {
+        spanEnd = update.end;
+      }
+    }
+
+    IntervalRecordSplicer splicer = new IntervalRecordSplicer(
+        findOverlappingIntervalRecords(connection, containingRecord, recordType,
+            spanStart, spanEnd));
+    ImmutableList.Builder<IntervalRecordSplicer.Segment> createdSegments =
+        ImmutableList.builder();
+    for (IntervalUpdate update : updates) {
+      createdSegments.add(
+          splicer.splice(recordType, update.start, update.end, update.attributes));
+    }
+
+    deleteIntervalRecords(connection, recordType, splicer.getDeletedIds());
+    resizeIntervalRecords(connection, recordType, splicer.getResizedSegments());
+    insertIntervalRecords(connection, containingRecord.getId(), splicer.getNewSegments());
+    return createdSegments.build();
+  }
+
+  private <T extends IntervalRecord> List<RawIntervalRecord<T>> findOverlappingIntervalRecords(
+      Connection connection, Record containingRecord, RecordType<T> recordType,
+      Instant start, Instant end) throws StorageException {
+    String sql = sqlTemplateCache.get(recordType,
+        SqlTemplateCache.Operation.FIND_OVERLAPPING_INTERVAL_RECORDS, ImmutableList.of());
+    if (sql == null) {
+      StringBuilder stringBuilder = new StringBuilder();
+      stringBuilder.append("SELECT * FROM ").append(recordType.getTableName());
+      stringBuilder.append(" WHERE ");
+      stringBuilder.append(SystemColumnDefs.CONTAINER_ID.getName()).append(" = ? AND ");
+      stringBuilder.append(SystemColumnDefs.START_TIME.getName()).append(" < ? AND ");
+      stringBuilder.append(SystemColumnDefs.END_TIME.getName()).append(" > ?;");
+      sql = sqlTemplateCache.put(recordType,
+          SqlTemplateCache.Operation.FIND_OVERLAPPING_INTERVAL_RECORDS, ImmutableList.of(),
+          stringBuilder.toString());
+    }
+
+    try (PreparedStatement stmt = connection.prepareStatement(sql);
+        StatementRecorder recorder =
+            storageInstrumentation.startStatement(
+                SqlTemplateCache.Operation.FIND_OVERLAPPING_INTERVAL_RECORDS)) {
       stmt.setInt(1, containingRecord.getId());
-      stmt.setTimestamp(2, getTimestamp(start));
-      stmt.setTimestamp(3, getTimestamp(end));
-      stmt.executeUpdate();
+      stmt.setTimestamp(2, getTimestamp(end));
+      stmt.setTimestamp(3, getTimestamp(start));
+      ImmutableList.Builder<RawIntervalRecord<T>> results = ImmutableList.builder();
+      try (ResultSet rs = recorder.executeQuery(stmt)) {
+        RowDecoder rowDecoder = sqlTemplateCache.getRowDecoder(recordType,
+            SqlTemplateCache.Operation.FIND_OVERLAPPING_INTERVAL_RECORDS, ImmutableList.of(), rs);
+        while (recorder.next(rs)) {
+          RecordType<T> loadedRecordType = loadedRecordType(rowDecoder, rs, recordType);
+          results.add(new RawIntervalRecord<>(
+              rowDecoder.getContainerId(rs),
+              loadedRecordType,
+              rowDecoder.getId(rs),
+              rowDecoder.getStartTime(rs),
+              rowDecoder.getEndTime(rs),
+              rowDecoder.readAttributes(loadedRecordType, rs)));
+        }
+      }
+      return results.build();
+    } catch (SQLException e) {
+      logger.log(Level.WARNING,
+          "Failed to read interval records for type " + recordType.getName(), e);
+      throw new StorageException(
+          "Failed to read interval records for type " + recordType.getName(), e);
+    }
+  }
+
+  private <T extends IntervalRecord> void deleteIntervalRecords(Connection connection,
+      RecordType<T> recordType, List<Integer> ids) throws StorageException {
+    if (ids.isEmpty()) {
+      return;
+    }
+    String sql = sqlTemplateCache.get(recordType,
+        SqlTemplateCache.Operation.DELETE_RECORD, ImmutableList.of());
+    if (sql == null) {
+      StringBuilder stringBuilder = new StringBuilder();
+      stringBuilder.append("DELETE FROM ").append(recordType.getTableName());
+      stringBuilder.append(" WHERE ").append(SystemColumnDefs.ID_COLUMN_NAME).append(" = ?;");
+      sql = sqlTemplateCache.put(recordType,
+          SqlTemplateCache.Operation.DELETE_RECORD, ImmutableList.of(), stringBuilder.toString());
+    }
+
+    try (PreparedStatement stmt = connection.prepareStatement(sql);
+        StatementRecorder recorder =
+            storageInstrumentation.startStatement(SqlTemplateCache.Operation.DELETE_RECORD)) {
+      for (int id : ids) {
+        stmt.setInt(1, id);
+        stmt.addBatch();
+      }
+      recorder.executeBatch(stmt);
     } catch (SQLException e) {
       logger.log(Level.WARNING, "Failed to delete records of type " + recordType.getName(), e);
-      throw new StorageException("Failed to update records of type " + recordType.getName(), e);
+      throw new StorageException("Failed to delete records of type " + recordType.getName(), e);
     }
   }
 
-  private <T extends IntervalRecord> void truncateIntervalRecord(Connection connection,
-      RawIntervalRecord<T> record, ColumnDef columnDef, Instant instant)
+  private <T extends IntervalRecord> void resizeIntervalRecords(Connection connection,
+      RecordType<T> recordType, List<IntervalRecordSplicer.Segment> segments)
       throws StorageException {
-    StringBuilder stringBuilder = new StringBuilder();
-    stringBuilder.append("UPDATE ").append(record.getRecordType().getTableName());
-    stringBuilder.append(" SET ").append(columnDef.getName()).append(" = ?");
-    stringBuilder.append(" WHERE ").append(SystemColumnDefs.ID_COLUMN_NAME).append(" = ?;");
-
-    try (PreparedStatement stmt = connection.prepareStatement(stringBuilder.toString())) {
-      stmt.setTimestamp(1, getTimestamp(instant));
-      stmt.setInt(2, record.getId());
-      stmt.executeUpdate();
+    if (segments.isEmpty()) {
+      return;
+    }
+    String sql = sqlTemplateCache.get(recordType,
+        SqlTemplateCache.Operation.RESIZE_INTERVAL_RECORD, ImmutableList.of());
+    if (sql == null) {
+      StringBuilder stringBuilder = new StringBuilder();
+      stringBuilder.append("UPDATE ").append(recordType.getTableName());
+      stringBuilder.append(" SET ").append(SystemColumnDefs.START_TIME.getName()).append(" = ?, ");
+      stringBuilder.append(SystemColumnDefs.END_TIME.getName()).append(" = ?");
+      stringBuilder.append(" WHERE ").append(SystemColumnDefs.ID_COLUMN_NAME).append(" = ?;");
+      sql = sqlTemplateCache.put(recordType,
+          SqlTemplateCache.Operation.RESIZE_INTERVAL_RECORD, ImmutableList.of(),
+          stringBuilder.toString());
+    }
+
+    try (PreparedStatement stmt = connection.prepareStatement(sql);
+        StatementRecorder recorder =
+            storageInstrumentation.startStatement(
+                SqlTemplateCache.Operation.RESIZE_INTERVAL_RECORD)) {
+      for (IntervalRecordSplicer.Segment segment : segments) {
+        stmt.setTimestamp(1, getTimestamp(segment.getStart()));
+        stmt.setTimestamp(2, getTimestamp(segment.getEnd()));
+        stmt.setInt(3, segment.getId());
+        stmt.addBatch();
+      }
+      recorder.executeBatch(stmt);
     } catch (SQLException e) {
-      logger.log(Level.WARNING,
-          "Failed to update record " + record.getId() + " of type "
-              + record.getRecordType().getName(), e);
-      throw new StorageException(
-          "Failed to update record " + record.getId() + " of type "
-              + record.getRecordType().getName(), e);
-    }
-  }
-
-  private <T extends IntervalRecord> int insertIntervalRecord(Connection connection,
-      int containingId, RecordType<T> recordType,
-      Instant start, Instant end, Map<String, Object> attributes) throws StorageException{
-    StringBuilder stringBuilder = new StringBuilder();
-    stringBuilder.append("INSERT INTO ").append(recordType.getTableName()).append("(");
-    stringBuilder.append(SystemColumnDefs.TYPE.getName()).append(", ");
-    stringBuilder.append(SystemColumnDefs.CONTAINER_ID.getName()).append(", ");
-    stringBuilder.append(SystemColumnDefs.START_TIME.getName()).append(", ");
-    stringBuilder.append(SystemColumnDefs.END_TIME.getName()).append(", ");
-    appendAttributeColumnNames(stringBuilder, recordType, attributes);
-    stringBuilder.append(") VALUES (");
-    appendQuestionMarks(stringBuilder, attributes.size() + 4);
-    stringBuilder.append(");");
-
-    try (PreparedStatement stmt = connection.prepareStatement(stringBuilder.toString(),
-        Statement.RETURN_GENERATED_KEYS)) {
-      stmt.setString(1, recordType.getName());
-      stmt.setInt(2, containingId);
-      stmt.setTimestamp(3, getTimestamp(start));
-      stmt.setTimestamp(4, getTimestamp(end));
-      setParameters(recordType, stmt, 5, attributes);
-      stmt.executeUpdate();
-      // Get the generated ID back.
-      ResultSet tableKeys = stmt.getGeneratedKeys();
-      if (!tableKeys.next()) {
+      logger.log(Level.WARNING, "Failed to update records of type " + recordType.getName(), e);
+      throw new StorageException("Failed to update records of type " + recordType.getName(), e);
+    }
+  }
+
+  /**
+   * Inserts the new records, batching together consecutive records of the same type that set
+   * the same attributes, and sets their generated IDs.
+   */
+  private void insertIntervalRecords(Connection connection, int containingId,
+      List<IntervalRecordSplicer.Segment> segments) throws StorageException {
+    int batchStart = 0;
+    while (batchStart < segments.size()) {
+      RecordType<?> recordType = segments.get(batchStart).getRecordType();
+      List<String> attributeNames =
+          sortedAttributeNames(segments.get(batchStart).getAttributes());
+      int batchEnd = batchStart + 1;
+      while (batchEnd < segments.size()
+          && segments.get(batchEnd).getRecordType().equals(recordType)
+          && sortedAttributeNames(segments.get(batchEnd).getAttributes())
+              .equals(attributeNames)) {
+        batchEnd++;
+      }
+      insertIntervalRecords(connection, containingId, recordType, attributeNames,
+          segments.subList(batchStart, batchEnd));
+      batchStart = batchEnd;
+    }
+  }
+
+  private void insertIntervalRecords(Connection connection, int containingId,
+      RecordType<?> recordType, List<String> attributeNames,
+      List<IntervalRecordSplicer.Segment> segments) throws StorageException {
+    String sql = sqlTemplateCache.get(recordType,
+        SqlTemplateCache.Operation.INSERT_INTERVAL_RECORD, attributeNames);
+    if (sql == null) {
+      StringBuilder stringBuilder = new StringBuilder();
+      stringBuilder.append("INSERT INTO ").append(recordType.getTableName()).append("(");
+      stringBuilder.append(SystemColumnDefs.TYPE.getName()).append(", ");
+      stringBuilder.append(SystemColumnDefs.CONTAINER_ID.getName()).append(", ");
+      stringBuilder.append(SystemColumnDefs.START_TIME.getName()).append(", ");
+      stringBuilder.append(SystemColumnDefs.END_TIME.getName()).append(", ");
+      appendAttributeColumnNames(stringBuilder, recordType, attributeNames);
+      stringBuilder.append(") VALUES (");
+      appendQuestionMarks(stringBuilder, attributeNames.size() + 4);
+      stringBuilder.append(");");
+      sql = sqlTemplateCache.put(recordType,
+          SqlTemplateCache.Operation.INSERT_INTERVAL_RECORD, attributeNames,
+          stringBuilder.toString());
+    }
+
+    try (PreparedStatement stmt = connection.prepareStatement(sql,
+        Statement.RETURN_GENERATED_KEYS);
+        StatementRecorder recorder =
+            storageInstrumentation.startStatement(
+                SqlTemplateCache.Operation.INSERT_INTERVAL_RECORD)) {
+      for (IntervalRecordSplicer.Segment segment : segments) {
+        stmt.setInt(1, recordTypeRegistry.getTypeId(recordType));
+        stmt.setInt(2, containingId);
+        stmt.setTimestamp(3, getTimestamp(segment.getStart()));
+        stmt.setTimestamp(4, getTimestamp(segment.getEnd()));
+        setParameters(recordType, stmt, 5, attributeNames, segment.getAttributes());
+        stmt.addBatch();
+      }
+      recorder.executeBatch(stmt);
+      // Get the generated IDs back, in the same order as the batch.
+      int index = 0;
+      try (ResultSet tableKeys = stmt.getGeneratedKeys()) {
+        while (tableKeys.next() && index < segments.size()) {
+          segments.get(index++).setId(tableKeys.getInt(1));
+        }
+      }
+      if (index != segments.size()) {
         logger.log(Level.WARNING,
-            "Failed to get ID back after insert for type " + recordType.getName());
+            "Failed to get IDs back after batch insert for type " + recordType.getName());
         throw new StorageException(
-            "Failed to get ID back after insert for type " + recordType.getName());
+            "Failed to get IDs back after batch insert for type " + recordType.getName());
       }
-      return tableKeys.getInt(1);
     } catch (SQLException e) {
-      logger.log(Level.WARNING, "Failed to insert record of type " + recordType.getName(), e);
-      throw new StorageException("Failed to insert record of type " + recordType.getName(), e);
+      logger.log(Level.WARNING, "Failed to insert records of type " + recordType.getName(), e);
+      throw new StorageException("Failed to insert records of type " + recordType.getName(), e);
+    }
+  }
+
+  private static class IntervalUpdate {
+    private final Instant start;
+    private final Instant end;
+    private final Map<String, Object> attributes;
+
+    IntervalUpdate(Instant start, Instant end, Map<String, Object> attributes) {
+      this.start = start;
+      this.end = end;
+      this.attributes = attributes;
     }
   }
 
@@ -419,23 +743,17 @@ class StoreImpl implements Store {
     Preconditions.checkArgument(recordType.isAutoIncrementId(),
         "You must specify an ID for a manually identifying record type.");
 
-    StringBuilder stringBuilder = new StringBuilder();
-    stringBuilder.append("INSERT INTO ").append(recordType.getTableName()).append("(");
-    stringBuilder.append(SystemColumnDefs.TYPE.getName()).append(", ");
-    stringBuilder.append(SystemColumnDefs.CONTAINER_ID.getName()).append(", ");
-    stringBuilder.append(SystemColumnDefs.INSTANT.getName()).append(", ");
-    appendAttributeColumnNames(stringBuilder, recordType, attributes);
-    stringBuilder.append(") VALUES (");
-    appendQuestionMarks(stringBuilder, attributes.size() + 3);
-    stringBuilder.append(");");
-
-    try (PreparedStatement stmt = connection.prepareStatement(stringBuilder.toString(),
-        Statement.RETURN_GENERATED_KEYS)) {
-      stmt.setString(1, recordType.getName());
+    List<String> attributeNames = sortedAttributeNames(attributes);
+    try (PreparedStatement stmt = connection.prepareStatement(
+        getInsertInstantRecordSql(recordType, attributeNames), Statement.RETURN_GENERATED_KEYS);
+        StatementRecorder recorder =
+            storageInstrumentation.startStatement(
+                SqlTemplateCache.Operation.INSERT_INSTANT_RECORD)) {
+      stmt.setInt(1, recordTypeRegistry.getTypeId(recordType));
       stmt.setInt(2, containingId);
       stmt.setTimestamp(3, getTimestamp(instant));
-      setParameters(recordType, stmt, 4, attributes);
-      stmt.executeUpdate();
+      setParameters(recordType, stmt, 4, attributeNames, attributes);
+      recorder.executeUpdate(stmt);
       // Get the generated ID back.
       ResultSet tableKeys = stmt.getGeneratedKeys();
       if (!tableKeys.next()) {
@@ -451,6 +769,105 @@ class StoreImpl implements Store {
     }
   }
 
+  @Override
+  public <T extends InstantRecord> List<T> insertInstantRecords(Record containingRecord,
+      RecordType<T> recordType, List<Pair<Instant, Map<String, Object>>> records)
+      throws StorageException {
+    authorizationContext.assertAccess(recordType, ActionType.CREATE);
+    for (Pair<Instant, Map<String, Object>> record : records) {
+      recordTypeRegistry.validateRecordAttributes(recordType, record.getSecond(), true);
+    }
+    TransactionImpl currentTransaction = this.currentTransaction.get();
+    if (currentTransaction == null) {
+      throw new IllegalStateException("Not within transaction.");
+    }
+    ImmutableList.Builder<T> results = ImmutableList.builder();
+    // Records are batched together for as long as they share the same set of attributes, as
+    // each batch can only use a single statement.
+    int batchStart = 0;
+    while (batchStart < records.size()) {
+      Set<String> attributeNames = records.get(batchStart).getSecond().keySet();
+      int batchEnd = batchStart + 1;
+      while (batchEnd < records.size()
+          && records.get(batchEnd).getSecond().keySet().equals(attributeNames)) {
+        batchEnd++;
+      }
+      List<Pair<Instant, Map<String, Object>>> batch = records.subList(batchStart, batchEnd);
+      List<Integer> ids = insertInstantRecords(currentTransaction.getConnection(),
+          containingRecord.getId(), recordType, Ordering.natural().sortedCopy(attributeNames),
+          batch);
+      for (int i = 0; i < batch.size(); i++) {
+        Pair<Instant, Map<String, Object>> record = batch.get(i);
+        results.add(RecordProxy.proxyInstantRecord(recordType,
+            containingRecord, ids.get(i), record.getFirst(), record.getSecond()));
+      }
+      batchStart = batchEnd;
+    }
+    return results.build();
+  }
+
+  private <T extends InstantRecord> List<Integer> insertInstantRecords(Connection connection,
+      int containingId, RecordType<T> recordType, List<String> attributeNames,
+      List<Pair<Instant, Map<String, Object>>> records) throws StorageException {
+    Preconditions.checkArgument(recordType.isAutoIncrementId(),
+        "You must specify an ID for a manually identifying record type.");
+
+    try (PreparedStatement stmt = connection.prepareStatement(
+        getInsertInstantRecordSql(recordType, attributeNames), Statement.RETURN_GENERATED_KEYS);
+        StatementRecorder recorder =
+            storageInstrumentation.startStatement(
+                SqlTemplateCache.Operation.INSERT_INSTANT_RECORD)) {
+      for (Pair<Instant, Map<String, Object>> record : records) {
+        stmt.setInt(1, recordTypeRegistry.getTypeId(recordType));
+        stmt.setInt(2, containingId);
+        stmt.setTimestamp(3, getTimestamp(record.getFirst()));
+        setParameters(recordType, stmt, 4, attributeNames, record.getSecond());
+        stmt.addBatch();
+      }
+      recorder.executeBatch(stmt);
+      // Get the generated IDs back, in the same order as the batch.
+      ImmutableList.Builder<Integer> ids = ImmutableList.builder();
+      int idCount = 0;
+      try (ResultSet tableKeys = stmt.getGeneratedKeys()) {
+        while (tableKeys.next()) {
+          ids.add(tableKeys.getInt(1));
+          idCount++;
+        }
+      }
+      if (idCount != records.size()) {
+        logger.log(Level.WARNING,
+            "Failed to get IDs back after batch insert for type " + recordType.getName());
+        throw new StorageException(
+            "Failed to get IDs back after batch insert for type " + recordType.getName());
+      }
+      return ids.build();
+    } catch (SQLException e) {
+      logger.log(Level.WARNING, "Failed to insert records of type " + recordType.getName(), e);
+      throw new StorageException("Failed to insert records of type " + recordType.getName(), e);
+    }
+  }
+
+  private String getInsertInstantRecordSql(RecordType<?> recordType,
+      List<String> attributeNames) {
+    String sql = sqlTemplateCache.get(recordType,
+        SqlTemplateCache.Operation.INSERT_INSTANT_RECORD, attributeNames);
+    if (sql == null) {
+      StringBuilder stringBuilder = new StringBuilder();
+      stringBuilder.append("INSERT INTO ").append(recordType.getTableName()).append("(");
+      stringBuilder.append(SystemColumnDefs.TYPE.getName()).append(", ");
+      stringBuilder.append(SystemColumnDefs.CONTAINER_ID.getName()).append(", ");
+      stringBuilder.append(SystemColumnDefs.INSTANT.getName()).append(", ");
+      appendAttributeColumnNames(stringBuilder, recordType, attributeNames);
+      stringBuilder.append(") VALUES (");
+      appendQuestionMarks(stringBuilder, attributeNames.size() + 3);
+      stringBuilder.append(");");
+      sql = sqlTemplateCache.put(recordType,
+          SqlTemplateCache.Operation.INSERT_INSTANT_RECORD, attributeNames,
+          stringBuilder.toString());
+    }
+    return sql;
+  }
+
   @Override
   public <T extends InstantRecord> T updateInstantRecord(Record containingRecord,
       RecordType<T> recordType, int id, Instant instant, Map<String, Object> attributes)
@@ -470,25 +887,96 @@ class StoreImpl implements Store {
   private <T extends InstantRecord> void updateInstantRecord(Connection connection,
       RecordType<T> recordType, int id, Instant instant,
       Map<String, Object> attributes) throws StorageException {
-
-    StringBuilder stringBuilder = new StringBuilder();
-    stringBuilder.append("UPDATE ").append(recordType.getTableName()).append(" SET ");
-    Joiner.on(" = ?, ").appendTo(stringBuilder, prefixColumnNames(recordType, attributes.keySet()));
-    stringBuilder.append(" = ?, ");
-    stringBuilder.append(SystemColumnDefs.INSTANT.getName()).append(" = ?");
-    stringBuilder.append(" WHERE ").append(SystemColumnDefs.ID_COLUMN_NAME).append(" = ?;");
-
-    try (PreparedStatement stmt = connection.prepareStatement(stringBuilder.toString())) {
-      int nextIndex = setParameters(recordType, stmt, 1, attributes);
+    List<String> attributeNames = sortedAttributeNames(attributes);
+    try (PreparedStatement stmt = connection.prepareStatement(
+        getUpdateInstantRecordSql(recordType, attributeNames));
+        StatementRecorder recorder =
+            storageInstrumentation.startStatement(
+                SqlTemplateCache.Operation.UPDATE_INSTANT_RECORD)) {
+      int nextIndex = setParameters(recordType, stmt, 1, attributeNames, attributes);
       stmt.setTimestamp(nextIndex++, getTimestamp(instant));
       stmt.setInt(nextIndex, id);
-      stmt.executeUpdate();
+      recorder.executeUpdate(stmt);
     } catch (SQLException e) {
       logger.log(Level.WARNING, "Failed to insert record of type " + recordType.getName(), e);
       throw new StorageException("Failed to insert record of type " + recordType.getName(), e);
     }
   }
 
+  @Override
+  public <T extends InstantRecord> List<T> updateInstantRecords(Record containingRecord,
+      RecordType<T> recordType, List<Pair<T, Map<String, Object>>> updates)
+      throws StorageException {
+    authorizationContext.assertAccess(recordType, ActionType.UPDATE);
+    for (Pair<T, Map<String, Object>> update : updates) {
+      recordTypeRegistry.validateRecordAttributes(recordType, update.getSecond(), false);
+    }
+    TransactionImpl currentTransaction = this.currentTransaction.get();
+    if (currentTransaction == null) {
+      throw new IllegalStateException("Not within transaction.");
+    }
+    ImmutableList.Builder<T> results = ImmutableList.builder();
+    // As with inserts, updates are batched for as long as they share the same attributes.
+    int batchStart = 0;
+    while (batchStart < updates.size()) {
+      Set<String> attributeNames = updates.get(batchStart).getSecond().keySet();
+      int batchEnd = batchStart + 1;
+      while (batchEnd < updates.size()
+          && updates.get(batchEnd).getSecond().keySet().equals(attributeNames)) {
+        batchEnd++;
+      }
+      List<Pair<T, Map<String, Object>>> batch = updates.subList(batchStart, batchEnd);
+      updateInstantRecords(currentTransaction.getConnection(), recordType,
+          Ordering.natural().sortedCopy(attributeNames), batch);
+      for (Pair<T, Map<String, Object>> update : batch) {
+        T record = update.getFirst();
+        results.add(RecordProxy.proxyInstantRecord(recordType,
+            containingRecord, record.getId(), record.getInstant(), update.getSecond()));
+      }
+      batchStart = batchEnd;
+    }
+    return results.build();
+  }
+
+  private <T extends InstantRecord> void updateInstantRecords(Connection connection,
+      RecordType<T> recordType, List<String> attributeNames,
+      List<Pair<T, Map<String, Object>>> updates) throws StorageException {
+    try (PreparedStatement stmt = connection.prepareStatement(
+        getUpdateInstantRecordSql(recordType, attributeNames));
+        StatementRecorder recorder =
+            storageInstrumentation.startStatement(
+                SqlTemplateCache.Operation.UPDATE_INSTANT_RECORD)) {
+      for (Pair<T, Map<String, Object>> update : updates) {
+        int nextIndex = setParameters(recordType, stmt, 1, attributeNames, update.getSecond());
+        stmt.setTimestamp(nextIndex++, getTimestamp(update.getFirst().getInstant()));
+        stmt.setInt(nextIndex, update.getFirst().getId());
+        stmt.addBatch();
+      }
+      recorder.executeBatch(stmt);
+    } catch (SQLException e) {
+      logger.log(Level.WARNING, "Failed to update records of type " + recordType.getName(), e);
+      throw new StorageException("Failed to update records of type " + recordType.getName(), e);
+    }
+  }
+
+  private String getUpdateInstantRecordSql(RecordType<?> recordType,
+      List<String> attributeNames) {
+    String sql = sqlTemplateCache.get(recordType,
+        SqlTemplateCache.Operation.UPDATE_INSTANT_RECORD, attributeNames);
+    if (sql == null) {
+      StringBuilder stringBuilder = new StringBuilder();
+      stringBuilder.append("UPDATE ").append(recordType.getTableName()).append(" SET ");
+      Joiner.on(" = ?, ").appendTo(stringBuilder, prefixColumnNames(recordType, attributeNames));
+      stringBuilder.append(" = ?, ");
+      stringBuilder.append(SystemColumnDefs.INSTANT.getName()).append(" = ?");
+      stringBuilder.append(" WHERE ").append(SystemColumnDefs.ID_COLUMN_NAME).append(" = ?;");
+      sql = sqlTemplateCache.put(recordType,
+          SqlTemplateCache.Operation.UPDATE_INSTANT_RECORD, attributeNames,
+          stringBuilder.toString());
+    }
+    return sql;
+  }
+
   @Override
   public <T extends InstantRecord> void deleteInstantRecords(Record containingRecord,
       RecordType<T> recordType, List<? extends SearchTerm> searchTerms)
@@ -499,16 +987,25 @@ class StoreImpl implements Store {
       throw new IllegalStateException("Not within transaction.");
     }
 
-    StringBuilder stringBuilder = new StringBuilder();
-    stringBuilder.append("DELETE FROM ").append(recordType.getTableName());
     SearchTermHandler<T> searchTermHandler = new SearchTermHandler<>(recordType, searchTerms);
-    searchTermHandler.appendWhereClause(stringBuilder);
-    stringBuilder.append(";");
+    String sql = sqlTemplateCache.get(recordType,
+        SqlTemplateCache.Operation.DELETE_INSTANT_RECORDS, searchTermHandler.getShape());
+    if (sql == null) {
+      StringBuilder stringBuilder = new StringBuilder();
+      stringBuilder.append("DELETE FROM ").append(recordType.getTableName());
+      searchTermHandler.appendWhereClause(stringBuilder);
+      stringBuilder.append(";");
+      sql = sqlTemplateCache.put(recordType,
+          SqlTemplateCache.Operation.DELETE_INSTANT_RECORDS, searchTermHandler.getShape(),
+          stringBuilder.toString());
+    }
 
-    try (PreparedStatement stmt = currentTransaction.getConnection().prepareStatement(
-        stringBuilder.toString())) {
+    try (PreparedStatement stmt = currentTransaction.getConnection().prepareStatement(sql);
+        StatementRecorder recorder =
+            storageInstrumentation.startStatement(
+                SqlTemplateCache.Operation.DELETE_INSTANT_RECORDS)) {
       searchTermHandler.setParameters(stmt, recordType, 1);
-      stmt.executeUpdate();
+      recorder.executeUpdate(stmt);
     } catch (SQLException e) {
       logger.log(Level.WARNING, "Failed to delete records for type " + recordType.getName(), e);
       throw new StorageException("Failed to delete records for type " + recordType.getName(), e);
@@ -528,7 +1025,8 @@ class StoreImpl implements Store {
                   .addAll(searchTerms)
                   .add(ContainerIdentifierSearchTerm.of(
                       containingRecord.getRecordType(), containingRecord.getId()))
-                  .build());
+                  .build(),
+              isLockingRead(containingRecord));
       ImmutableList.Builder<T> resultList = ImmutableList.builder();
       for (RawInstantRecord<T> rawRecord : rawRecords) {
         T record = RecordProxy.proxyInstantRecord(rawRecord.getRecordType(),
@@ -542,10 +1040,8 @@ class StoreImpl implements Store {
 
   private <T extends InstantRecord> Iterable<RawInstantRecord<T>> findInstantRecords(
       Connection connection, RecordType<T> recordType, Instant start, Instant end,
-      List<? extends SearchTerm> searchTerms)
+      List<? extends SearchTerm> searchTerms, boolean lockingRead)
       throws StorageException {
-    StringBuilder stringBuilder = new StringBuilder();
-    stringBuilder.append("SELECT * FROM ").append(recordType.getTableName());
     searchTerms = ImmutableList.<SearchTerm>builder()
         .addAll(searchTerms)
         .add(InstantSearchTerm.of(
@@ -558,21 +1054,39 @@ class StoreImpl implements Store {
             end))
         .build();
     SearchTermHandler<T> searchTermHandler = new SearchTermHandler<>(recordType, searchTerms);
-    searchTermHandler.appendWhereClause(stringBuilder);
-    stringBuilder.append(" ORDER BY ").append(SystemColumnDefs.INSTANT.getName()).append(" ASC ;");
+    SqlTemplateCache.Operation operation = lockingRead
+        ? SqlTemplateCache.Operation.FIND_INSTANT_RECORDS_FOR_UPDATE
+        : SqlTemplateCache.Operation.FIND_INSTANT_RECORDS;
+    String sql = sqlTemplateCache.get(recordType, operation, searchTermHandler.getShape());
+    if (sql == null) {
+      StringBuilder stringBuilder = new StringBuilder();
+      stringBuilder.append("SELECT * FROM ").append(recordType.getTableName());
+      searchTermHandler.appendWhereClause(stringBuilder);
+      stringBuilder.append(" ORDER BY ").append(SystemColumnDefs.INSTANT.getName())
+          .append(" ASC");
+      if (lockingRead) {
+        stringBuilder.append(" FOR UPDATE");
+      }
+      stringBuilder.append(" ;");
+      sql = sqlTemplateCache.put(recordType, operation, searchTermHandler.getShape(),
+          stringBuilder.toString());
+    }
 
     ImmutableList.Builder<RawInstantRecord<T>> records = ImmutableList.builder();
-    try (PreparedStatement stmt = connection.prepareStatement(stringBuilder.toString())) {
+    try (PreparedStatement stmt = connection.prepareStatement(sql);
+        StatementRecorder recorder = storageInstrumentation.startStatement(operation)) {
       searchTermHandler.setParameters(stmt, recordType, 1);
-      try (ResultSet rs = stmt.executeQuery()) {
-        while (rs.next()) {
-          RecordType<T> loadedRecordType = loadedRecordType(rs, recordType);
+      try (ResultSet rs = recorder.executeQuery(stmt)) {
+        RowDecoder rowDecoder = sqlTemplateCache.getRowDecoder(recordType,
+            operation, searchTermHandler.getShape(), rs);
+        while (recorder.next(rs)) {
+          RecordType<T> loadedRecordType = loadedRecordType(rowDecoder, rs, recordType);
           records.add(new RawInstantRecord<>(
-              rs.getInt(SystemColumnDefs.CONTAINER_ID.getName()),
+              rowDecoder.getContainerId(rs),
               loadedRecordType,
-              rs.getInt(SystemColumnDefs.ID_COLUMN_NAME),
-              getInstant(rs, SystemColumnDefs.INSTANT),
-              readAttributes(loadedRecordType, rs)));
+              rowDecoder.getId(rs),
+              rowDecoder.getInstant(rs),
+              rowDecoder.readAttributes(loadedRecordType, rs)));
         }
       }
     } catch (SQLException e) {
@@ -582,6 +1096,177 @@ class StoreImpl implements Store {
     return records.build();
   }
 
+  @Override
+  public <T extends InstantRecord> RecordIterator<T> streamInstantRecords(
+      Record containingRecord, RecordType<T> recordType, Instant start, Instant end,
+      List<? extends SearchTerm> searchTerms) throws StorageException {
+    return streamInstantRecords(containingRecord, recordType, start, end, searchTerms, null, 0);
+  }
+
+  @Override
+  public <T extends InstantRecord> RecordIterator<T> streamInstantRecords(
+      final Record containingRecord, RecordType<T> recordType, Instant start, Instant end,
+      List<? extends SearchTerm> searchTerms, @Nullable InstantRecordPosition after, int limit)
+      throws StorageException {
+    authorizationContext.assertAccess(recordType, ActionType.READ);
+    searchTerms = ImmutableList.<SearchTerm>builder()
+        .addAll(searchTerms)
+        .add(ContainerIdentifierSearchTerm.of(
+            containingRecord.getRecordType(), containingRecord.getId()))
+        .add(InstantSearchTerm.of(
+            SystemColumnDefs.INSTANT,
+            SearchOperator.GREATER_THAN_OR_EQUAL,
+            start))
+        .add(InstantSearchTerm.of(
+            SystemColumnDefs.INSTANT,
+            SearchOperator.LESS_THAN,
+            end))
+        .build();
+    SearchTermHandler<T> searchTermHandler = new SearchTermHandler<>(recordType, searchTerms);
+    boolean limited = limit > 0;
+    List<Object> shape = ImmutableList.of(searchTermHandler.getShape(), after != null, limited);
+    String sql = sqlTemplateCache.get(recordType,
+        SqlTemplateCache.Operation.STREAM_INSTANT_RECORDS, shape);
+    if (sql == null) {
+      StringBuilder stringBuilder = new StringBuilder();
+      stringBuilder.append("SELECT * FROM ").append(recordType.getTableName());
+      searchTermHandler.appendWhereClause(stringBuilder);
+      if (after != null) {
+        // Keyset pagination: continue from the (instant, id) of the last record seen.
+        stringBuilder.append(" AND (")
+            .append(SystemColumnDefs.INSTANT.getName()).append(" > ? OR (")
+            .append(SystemColumnDefs.INSTANT.getName()).append(" = ? AND ")
+            .append(SystemColumnDefs.ID_COLUMN_NAME).append(" > ?))");
+      }
+      stringBuilder.append(" ORDER BY ").append(SystemColumnDefs.INSTANT.getName())
+          .append(" ASC, ").append(SystemColumnDefs.ID_COLUMN_NAME).append(" ASC");
+      if (limited) {
+        stringBuilder.append(" LIMIT ?");
+      }
+      stringBuilder.append(";");
+      sql = sqlTemplateCache.put(recordType,
+          SqlTemplateCache.Operation.STREAM_INSTANT_RECORDS, shape, stringBuilder.toString());
+    }
+
+    // The iterator owns the connection unless it is borrowed from the current transaction. It
+    // never borrows the connection of the current unit of work, as it is usually read after the
+    // unit of work has ended (while the response is being written).
+    TransactionImpl currentTransaction = this.currentTransaction.get();
+    Connection ownedConnection = null;
+    Connection connection;
+    if (currentTransaction != null) {
+      connection = currentTransaction.getConnection();
+    } else {
+      ownedConnection = getNewConnection();
+      connection = ownedConnection;
+    }
+    PreparedStatement stmt = null;
+    StatementRecorder recorder = storageInstrumentation.startStatement(
+        SqlTemplateCache.Operation.STREAM_INSTANT_RECORDS);
+    try {
+      stmt = connection.prepareStatement(sql,
+          ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+      stmt.setFetchSize(limited ? Math.min(limit, STREAMING_FETCH_SIZE) : STREAMING_FETCH_SIZE);
+      int nextIndex = searchTermHandler.setParameters(stmt, recordType, 1);
+      if (after != null) {
+        stmt.setTimestamp(nextIndex++, getTimestamp(after.getInstant()));
+        stmt.setTimestamp(nextIndex++, getTimestamp(after.getInstant()));
+        stmt.setInt(nextIndex++, after.getId());
+      }
+      if (limited) {
+        stmt.setInt(nextIndex, limit);
+      }
+      ResultSet rs = recorder.executeQuery(stmt);
+      RowDecoder rowDecoder = sqlTemplateCache.getRowDecoder(recordType,
+          SqlTemplateCache.Operation.STREAM_INSTANT_RECORDS, shape, rs);
+      return new ResultSetRecordIterator<T>(recordType, ownedConnection, stmt, recorder, rs,
+          rowDecoder) {
+        @Override
+        T readRecord(RowDecoder rowDecoder, ResultSet rs, RecordType<T> loadedRecordType)
+            throws SQLException {
+          return RecordProxy.proxyInstantRecord(loadedRecordType, containingRecord,
+              rowDecoder.getId(rs),
+              rowDecoder.getInstant(rs),
+              rowDecoder.readAttributes(loadedRecordType, rs));
+        }
+      };
+    } catch (SQLException e) {
+      recorder.close();
+      closeStatement(stmt);
+      closeConnection(ownedConnection);
+      logger.log(Level.WARNING, "Failed to read records for type " + recordType.getName(), e);
+      throw new StorageException("Failed to read records for type " + recordType.getName(), e);
+    }
+  }
+
+  @Override
+  @Nullable
+  public <T extends InstantRecord> T getLatestInstantRecord(Record containingRecord,
+      RecordType<T> recordType, Instant date) throws StorageException {
+    authorizationContext.assertAccess(recordType, ActionType.READ);
+    try(ReadingDataSource readingDataSource = new ReadingDataSource()) {
+      RawInstantRecord<T> rawRecord = getLatestInstantRecord(readingDataSource.getConnection(),
+          containingRecord, recordType, date, isLockingRead(containingRecord));
+      if (rawRecord == null) {
+        return null;
+      }
+      return RecordProxy.proxyInstantRecord(rawRecord.getRecordType(),
+          containingRecord, rawRecord.getId(), rawRecord.getInstant(),
+          rawRecord.getAttributes());
+    }
+  }
+
+  @Nullable
+  private <T extends InstantRecord> RawInstantRecord<T> getLatestInstantRecord(
+      Connection connection, Record containingRecord, RecordType<T> recordType, Instant date,
+      boolean lockingRead) throws StorageException {
+    SqlTemplateCache.Operation operation = lockingRead
+        ? SqlTemplateCache.Operation.GET_LATEST_INSTANT_RECORD_FOR_UPDATE
+        : SqlTemplateCache.Operation.GET_LATEST_INSTANT_RECORD;
+    String sql = sqlTemplateCache.get(recordType, operation, ImmutableList.of());
+    if (sql == null) {
+      StringBuilder stringBuilder = new StringBuilder();
+      stringBuilder.append("SELECT * FROM ").append(recordType.getTableName());
+      stringBuilder.append(" WHERE ");
+      stringBuilder.append(SystemColumnDefs.CONTAINER_ID.getName()).append(" = ? AND ");
+      stringBuilder.append(SystemColumnDefs.INSTANT.getName()).append(" <= ?");
+      stringBuilder.append(" ORDER BY ").append(SystemColumnDefs.INSTANT.getName())
+          .append(" DESC LIMIT 1");
+      if (lockingRead) {
+        stringBuilder.append(" FOR UPDATE");
+      }
+      stringBuilder.append(";");
+      sql = sqlTemplateCache.put(recordType, operation, ImmutableList.of(),
+          stringBuilder.toString());
+    }
+
+    try (PreparedStatement stmt = connection.prepareStatement(sql);
+        StatementRecorder recorder = storageInstrumentation.startStatement(operation)) {
+      stmt.setInt(1, containingRecord.getId());
+      stmt.setTimestamp(2, getTimestamp(date));
+      try (ResultSet rs = recorder.executeQuery(stmt)) {
+        RowDecoder rowDecoder =
+            sqlTemplateCache.getRowDecoder(recordType, operation, ImmutableList.of(), rs);
+        if (!recorder.next(rs)) {
+          return null;
+        }
+
+        RecordType<T> loadedRecordType = loadedRecordType(rowDecoder, rs, recordType);
+        return new RawInstantRecord<>(
+            rowDecoder.getContainerId(rs),
+            loadedRecordType,
+            rowDecoder.getId(rs),
+            rowDecoder.getInstant(rs),
+            rowDecoder.readAttributes(loadedRecordType, rs));
+      }
+    } catch (SQLException e) {
+      logger.log(Level.WARNING,
+          "Failed to read instant record for type " + recordType.getName(), e);
+      throw new StorageException(
+          "Failed to read instant record for type " + recordType.getName(), e);
+    }
+  }
+
   @Override
   public <T extends IntervalRecord> T getIntervalRecord(Record containingRecord,
       RecordType<T> recordType, Instant date) throws StorageException {
@@ -601,31 +1286,41 @@ class StoreImpl implements Store {
   @Nullable
   private <T extends IntervalRecord> RawIntervalRecord<T> getIntervalRecord(Connection connection,
       Record containingRecord, RecordType<T> recordType, Instant date) throws StorageException {
+    String sql = sqlTemplateCache.get(recordType,
+        SqlTemplateCache.Operation.GET_INTERVAL_RECORD, ImmutableList.of());
+    if (sql == null) {
+      StringBuilder stringBuilder = new StringBuilder();
+      stringBuilder.append("SELECT * FROM ").append(recordType.getTableName());
+      stringBuilder.append(" WHERE ");
+      stringBuilder.append(SystemColumnDefs.CONTAINER_ID.getName()).append(" = ? AND ");
+      stringBuilder.append(SystemColumnDefs.START_TIME.getName()).append(" <= ? AND ");
+      stringBuilder.append(SystemColumnDefs.END_TIME.getName()).append(" > ?;");
+      sql = sqlTemplateCache.put(recordType,
+          SqlTemplateCache.Operation.GET_INTERVAL_RECORD, ImmutableList.of(),
+          stringBuilder.toString());
+    }
 
-    StringBuilder stringBuilder = new StringBuilder();
-    stringBuilder.append("SELECT * FROM ").append(recordType.getTableName());
-    stringBuilder.append(" WHERE ");
-    stringBuilder.append(SystemColumnDefs.CONTAINER_ID.getName()).append(" = ? AND ");
-    stringBuilder.append(SystemColumnDefs.START_TIME.getName()).append(" <= ? AND ");
-    stringBuilder.append(SystemColumnDefs.END_TIME.getName()).append(" > ?;");
-
-    try (PreparedStatement stmt = connection.prepareStatement(stringBuilder.toString())) {
+    try (PreparedStatement stmt = connection.prepareStatement(sql);
+        StatementRecorder recorder =
+            storageInstrumentation.startStatement(SqlTemplateCache.Operation.GET_INTERVAL_RECORD)) {
       stmt.setInt(1, containingRecord.getId());
       stmt.setTimestamp(2, getTimestamp(date));
       stmt.setTimestamp(3, getTimestamp(date));
-      try (ResultSet rs = stmt.executeQuery()) {
-        if (!rs.next()) {
+      try (ResultSet rs = recorder.executeQuery(stmt)) {
+        RowDecoder rowDecoder = sqlTemplateCache.getRowDecoder(recordType,
+            SqlTemplateCache.Operation.GET_INTERVAL_RECORD, ImmutableList.of(), rs);
+        if (!recorder.next(rs)) {
           return null;
         }
 
-        RecordType<T> loadedRecordType = loadedRecordType(rs, recordType);
+        RecordType<T> loadedRecordType = loadedRecordType(rowDecoder, rs, recordType);
         return new RawIntervalRecord<>(
-            rs.getInt(SystemColumnDefs.CONTAINER_ID.getName()),
+            rowDecoder.getContainerId(rs),
             loadedRecordType,
-            rs.getInt(SystemColumnDefs.ID_COLUMN_NAME),
-            getInstant(rs, SystemColumnDefs.START_TIME),
-            getInstant(rs, SystemColumnDefs.END_TIME),
-            readAttributes(loadedRecordType, rs));
+            rowDecoder.getId(rs),
+            rowDecoder.getStartTime(rs),
+            rowDecoder.getEndTime(rs),
+            rowDecoder.readAttributes(loadedRecordType, rs));
       }
     } catch (SQLException e) {
       logger.log(Level.WARNING,
@@ -657,22 +1352,33 @@ class StoreImpl implements Store {
   private <T extends Record> Iterable<RawRecord<T>> findRecords(Connection connection,
       RecordType<T> recordType, List<? extends SearchTerm> searchTerms,
       List<? extends OrderingTerm> orderingTerms) throws StorageException {
-    StringBuilder stringBuilder = new StringBuilder();
-    stringBuilder.append("SELECT * FROM ").append(recordType.getTableName());
     SearchTermHandler<T> searchTermHandler = new SearchTermHandler<>(recordType, searchTerms);
-    searchTermHandler.appendWhereClause(stringBuilder);
-    appendOrderByClause(stringBuilder, recordType, orderingTerms);
-    stringBuilder.append(";");
+    List<Object> shape = ImmutableList.of(searchTermHandler.getShape(),
+        getOrderingShape(orderingTerms));
+    String sql = sqlTemplateCache.get(recordType, SqlTemplateCache.Operation.FIND_RECORDS, shape);
+    if (sql == null) {
+      StringBuilder stringBuilder = new StringBuilder();
+      stringBuilder.append("SELECT * FROM ").append(recordType.getTableName());
+      searchTermHandler.appendWhereClause(stringBuilder);
+      appendOrderByClause(stringBuilder, recordType, orderingTerms);
+      stringBuilder.append(";");
+      sql = sqlTemplateCache.put(recordType, SqlTemplateCache.Operation.FIND_RECORDS, shape,
+          stringBuilder.toString());
+    }
 
     ImmutableList.Builder<RawRecord<T>> records = ImmutableList.builder();
-    try (PreparedStatement stmt = connection.prepareStatement(stringBuilder.toString())) {
+    try (PreparedStatement stmt = connection.prepareStatement(sql);
+        StatementRecorder recorder =
+            storageInstrumentation.startStatement(SqlTemplateCache.Operation.FIND_RECORDS)) {
       searchTermHandler.setParameters(stmt, recordType, 1);
-      try (ResultSet rs = stmt.executeQuery()) {
-        while (rs.next()) {
-          int id = rs.getInt(SystemColumnDefs.ID_COLUMN_NAME);
-          RecordType<T> loadedRecordType = loadedRecordType(rs, recordType);
+      try (ResultSet rs = recorder.executeQuery(stmt)) {
+        RowDecoder rowDecoder = sqlTemplateCache.getRowDecoder(recordType,
+            SqlTemplateCache.Operation.FIND_RECORDS, shape, rs);
+        while (recorder.next(rs)) {
+          int id = rowDecoder.getId(rs);
+          RecordType<T> loadedRecordType = loadedRecordType(rowDecoder, rs, recordType);
           records.add(new RawRecord<>(loadedRecordType, id,
-              readAttributes(loadedRecordType, rs)));
+              rowDecoder.readAttributes(loadedRecordType, rs)));
         }
       }
     } catch (SQLException e) {
@@ -705,9 +1411,6 @@ class StoreImpl implements Store {
   private <T extends IntervalRecord> Iterable<RawIntervalRecord<T>> findIntervalRecords(
       Connection connection, Record containingRecord, RecordType<T> recordType,
       Instant start, Instant end, List<? extends SearchTerm> searchTerms) throws StorageException {
-
-    StringBuilder stringBuilder = new StringBuilder();
-    stringBuilder.append("SELECT * FROM ").append(recordType.getTableName());
     searchTerms = ImmutableList.<SearchTerm>builder()
         .addAll(searchTerms)
         .add(ContainerIdentifierSearchTerm.of(
@@ -722,23 +1425,37 @@ class StoreImpl implements Store {
             end))
         .build();
     SearchTermHandler<T> searchTermHandler = new SearchTermHandler<>(recordType, searchTerms);
-    searchTermHandler.appendWhereClause(stringBuilder);
-    stringBuilder.append(" ORDER BY ")
-        .append(SystemColumnDefs.START_TIME.getName()).append(" ASC ;");
+    String sql = sqlTemplateCache.get(recordType,
+        SqlTemplateCache.Operation.FIND_INTERVAL_RECORDS, searchTermHandler.getShape());
+    if (sql == null) {
+      StringBuilder stringBuilder = new StringBuilder();
+      stringBuilder.append("SELECT * FROM ").append(recordType.getTableName());
+      searchTermHandler.appendWhereClause(stringBuilder);
+      stringBuilder.append(" ORDER BY ")
+          .append(SystemColumnDefs.START_TIME.getName()).append(" ASC ;");
+      sql = sqlTemplateCache.put(recordType,
+          SqlTemplateCache.Operation.FIND_INTERVAL_RECORDS, searchTermHandler.getShape(),
+          stringBuilder.toString());
+    }
 
-    try (PreparedStatement stmt = connection.prepareStatement(stringBuilder.toString())) {
+    try (PreparedStatement stmt = connection.prepareStatement(sql);
+        StatementRecorder recorder =
+            storageInstrumentation.startStatement(
+                SqlTemplateCache.Operation.FIND_INTERVAL_RECORDS)) {
       searchTermHandler.setParameters(stmt, recordType, 1);
       ImmutableList.Builder<RawIntervalRecord<T>> results = ImmutableList.builder();
-      try (ResultSet rs = stmt.executeQuery()) {
-        while (rs.next()) {
-          RecordType<T> loadedRecordType = loadedRecordType(rs, recordType);
+      try (ResultSet rs = recorder.executeQuery(stmt)) {
+        RowDecoder rowDecoder = sqlTemplateCache.getRowDecoder(recordType,
+            SqlTemplateCache.Operation.FIND_INTERVAL_RECORDS, searchTermHandler.getShape(), rs);
+        while (recorder.next(rs)) {
+          RecordType<T> loadedRecordType = loadedRecordType(rowDecoder, rs, recordType);
           results.add(new RawIntervalRecord<>(
-              rs.getInt(SystemColumnDefs.CONTAINER_ID.getName()),
+              rowDecoder.getContainerId(rs),
               loadedRecordType,
-              rs.getInt(SystemColumnDefs.ID_COLUMN_NAME),
-              getInstant(rs, SystemColumnDefs.START_TIME),
-              getInstant(rs, SystemColumnDefs.END_TIME),
-              readAttributes(loadedRecordType, rs)));
+              rowDecoder.getId(rs),
+              rowDecoder.getStartTime(rs),
+              rowDecoder.getEndTime(rs),
+              rowDecoder.readAttributes(loadedRecordType, rs)));
         }
       }
       return results.build();
@@ -756,31 +1473,56 @@ class StoreImpl implements Store {
     return new ReportBuilder(this, startYear, endYear, granularity, containerIdDimension);
   }
 
-  <T extends InstantRecord> void buildReportPiece(
-      int startYear, int endYear, ReportDateGranularity granularity,
+  /**
+   * Aggregates the records of all of the sources into the buckets of the report, running the
+   * query of each source on its own pooled connection at the same time as the others. The record
+   * sources must be able to aggregate entries from several threads at once.
+   *
+   * <p>The queries are run one after the other (as {@link #buildReportPiece} would) if there is
+   * only one source, if parallel queries are disabled, or if there is a current transaction, as
+   * the other connections would not see the changes that the transaction has not committed.
+   */
+  void buildReportPiecesInParallel(final ImmutableList<Instant> bucketEnds,
+      List<? extends ReportBuilder.RecordSource<?>> recordSources)
+      throws StorageException {
+    if (recordSources.size() < 2
+        || !reportQueryExecutor.isEnabled()
+        || currentTransaction.get() != null) {
+      for (ReportBuilder.RecordSource<?> recordSource : recordSources) {
+        buildReportPiece(bucketEnds, recordSource);
+      }
+      return;
+    }
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (final ReportBuilder.RecordSource<?> recordSource : recordSources) {
+      // The pool threads have no transaction or unit of work, so each task reads with a
+      // connection of its own, but it needs the scope of the caller to be authorized and its
+      // statements belong to the request of the caller.
+      tasks.add(storageInstrumentation.inCurrentRequest(
+          authorizationContext.inCurrentScope(new Callable<Void>() {
+            @Override
+            public Void call() throws StorageException {
+              buildReportPiece(bucketEnds, recordSource);
+              return null;
+            }
+          })));
+    }
+    reportQueryExecutor.invokeAll(tasks);
+  }
+
+  /**
+   * Aggregates the records of the source into the buckets of the report. Each bucket ends at
+   * (and includes) the corresponding instant, and the first bucket also includes everything
+   * before it.
+   */
+  <T extends InstantRecord> void buildReportPiece(ImmutableList<Instant> bucketEnds,
       ReportBuilder.RecordSource<T> recordSource)
       throws StorageException {
     RecordType<T> recordType = recordSource.getRecordType();
     authorizationContext.assertAccess(recordType, ActionType.REPORT);
     try (ReadingDataSource readingDataSource = new ReadingDataSource()) {
-      // Get all records that would match.
-      StringBuilder stringBuilder = new StringBuilder();
-      stringBuilder.append("SELECT ");
-      // Include the date and container ID.
-      stringBuilder.append(getInstantFunction(granularity))
-          .append(" AS ").append(SystemColumnDefs.INSTANT.getName());
-      stringBuilder.append(", ").append(SystemColumnDefs.CONTAINER_ID.getName());
-      // Include the dimensions.
       Iterable<String> dimensions = recordSource.getDimensionAttributes();
-      for (String dimensionColumn : prefixColumnNames(recordType, dimensions)) {
-        stringBuilder.append(", ").append(dimensionColumn);
-      }
-      // Include sums of the measures.
       Iterable<String> measures = recordSource.getMeasureAttributes();
-      for (String measureColumn : prefixColumnNames(recordType, measures)) {
-        stringBuilder.append(", SUM(").append(measureColumn).append(") AS ").append(measureColumn);
-      }
-      stringBuilder.append(" FROM ").append(recordType.getTableName());
       ImmutableList<SearchTerm> searchTerms = ImmutableList.<SearchTerm>builder()
           .addAll(recordSource.getSearchTerms())
           .add(InstantSearchTerm.of(
@@ -790,40 +1532,106 @@ class StoreImpl implements Store {
           .add(InstantSearchTerm.of(
               SystemColumnDefs.INSTANT,
               SearchOperator.LESS_THAN,
-              DateUtil.endOfYear(endYear)))
+              bucketEnds.get(bucketEnds.size() - 1).plus(1)))
           .build();
       SearchTermHandler<T> searchTermHandler = new SearchTermHandler<>(recordType, searchTerms);
-      searchTermHandler.appendWhereClause(stringBuilder);
-      // Group by the date  and container ID.
-      stringBuilder.append(" GROUP BY ").append(SystemColumnDefs.INSTANT.getName());
-      stringBuilder.append(", ").append(SystemColumnDefs.CONTAINER_ID.getName());
-      // Include the dimensions.
-      for (String dimensionColumn : prefixColumnNames(recordType, dimensions)) {
-        stringBuilder.append(", ").append(dimensionColumn);
+      List<Object> shape = ImmutableList.of(bucketEnds.size(), ImmutableList.copyOf(dimensions),
+          ImmutableList.copyOf(measures), searchTermHandler.getShape());
+      List<Integer> bucketEndOrder = new ArrayList<>();
+      String sql = sqlTemplateCache.get(recordType,
+          SqlTemplateCache.Operation.BUILD_REPORT_PIECE, shape);
+      if (sql == null) {
+        // Bucket the matching records in a derived table, so that the bucket expression does
+        // not need to be repeated (along with its parameters) in the GROUP BY clause.
+        StringBuilder innerBuilder = new StringBuilder();
+        innerBuilder.append("SELECT ");
+        appendBucketExpression(innerBuilder, bucketEndOrder, 0, bucketEnds.size() - 1);
+        innerBuilder.append(" AS ").append(REPORT_BUCKET_COLUMN);
+        innerBuilder.append(", ").append(SystemColumnDefs.CONTAINER_ID.getName());
+        for (String column : prefixColumnNames(recordType,
+            Iterables.concat(dimensions, measures))) {
+          innerBuilder.append(", ").append(column);
+        }
+        innerBuilder.append(" FROM ").append(recordType.getTableName());
+        searchTermHandler.appendWhereClause(innerBuilder);
+
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("SELECT ").append(REPORT_BUCKET_COLUMN);
+        stringBuilder.append(", ").append(SystemColumnDefs.CONTAINER_ID.getName());
+        // Include the dimensions.
+        for (String dimensionColumn : prefixColumnNames(recordType, dimensions)) {
+          stringBuilder.append(", ").append(dimensionColumn);
+        }
+        // Include sums of the measures.
+        for (String measureColumn : prefixColumnNames(recordType, measures)) {
+          stringBuilder.append(", SUM(").append(measureColumn).append(") AS ")
+              .append(measureColumn);
+        }
+        stringBuilder.append(" FROM (").append(innerBuilder).append(") AS bucketed");
+        // Group by the bucket and container ID.
+        stringBuilder.append(" GROUP BY ").append(REPORT_BUCKET_COLUMN);
+        stringBuilder.append(", ").append(SystemColumnDefs.CONTAINER_ID.getName());
+        // Include the dimensions.
+        for (String dimensionColumn : prefixColumnNames(recordType, dimensions)) {
+          stringBuilder.append(", ").append(dimensionColumn);
+        }
+        stringBuilder.append(";");
+        sql = sqlTemplateCache.put(recordType,
+            SqlTemplateCache.Operation.BUILD_REPORT_PIECE, shape, stringBuilder.toString());
+      } else {
+        appendBucketExpression(null, bucketEndOrder, 0, bucketEnds.size() - 1);
       }
-      stringBuilder.append(";");
 
       ImmutableMap.Builder<String, JdbcTypeHandler> jdbcTypeHandlersBuilder =
           ImmutableMap.builder();
       for (String dimension : dimensions) {
         jdbcTypeHandlersBuilder.put(dimension, recordType.getJdbcTypeHandler(dimension));
       }
+      ImmutableMap<String, JdbcTypeHandler> jdbcTypeHandlers = jdbcTypeHandlersBuilder.build();
+      // The measures are summed in their stored (unscaled) form and read straight into arrays.
+      List<String> measureColumns = new ArrayList<>();
       for (String measure : measures) {
-        jdbcTypeHandlersBuilder.put(measure, recordType.getJdbcTypeHandler(measure));
+        JdbcTypeHandler jdbcTypeHandler = recordType.getJdbcTypeHandler(measure);
+        if (!(jdbcTypeHandler instanceof BigDecimalTypeHandler)) {
+          throw new IllegalArgumentException("Measure " + measure + " of type "
+              + recordType.getName() + " is not a decimal attribute.");
+        }
+        measureColumns.add(jdbcTypeHandler.getColumnName());
       }
-      ImmutableMap<String, JdbcTypeHandler> jdbcTypeHandlers = jdbcTypeHandlersBuilder.build();
-
-      try (PreparedStatement stmt =
-               readingDataSource.getConnection().prepareStatement(stringBuilder.toString())) {
-        stmt.setTimestamp(1, getTimestamp(DateUtil.endOfYear(startYear - 1)));
-        searchTermHandler.setParameters(stmt, recordType, 2);
-        try (ResultSet rs = stmt.executeQuery()) {
-          while (rs.next()) {
+      long[] measureValues = new long[measureColumns.size()];
+      boolean[] measurePresent = new boolean[measureColumns.size()];
+
+      try (PreparedStatement stmt = readingDataSource.getConnection().prepareStatement(sql);
+          StatementRecorder recorder =
+              storageInstrumentation.startStatement(
+                  SqlTemplateCache.Operation.BUILD_REPORT_PIECE)) {
+        int nextIndex = 1;
+        for (int bucket : bucketEndOrder) {
+          stmt.setTimestamp(nextIndex++, getTimestamp(bucketEnds.get(bucket)));
+        }
+        searchTermHandler.setParameters(stmt, recordType, nextIndex);
+        try (ResultSet rs = recorder.executeQuery(stmt)) {
+          RowDecoder rowDecoder = sqlTemplateCache.getRowDecoder(recordType,
+              SqlTemplateCache.Operation.BUILD_REPORT_PIECE, shape, rs);
+          int bucketColumn = rowDecoder.getColumnIndex(REPORT_BUCKET_COLUMN);
+          RowDecoder.AttributeColumns dimensionColumns =
+              rowDecoder.bindAttributes(jdbcTypeHandlers);
+          int[] measureColumnIndexes = new int[measureColumns.size()];
+          for (int i = 0; i < measureColumnIndexes.length; i++) {
+            measureColumnIndexes[i] = rowDecoder.getColumnIndex(measureColumns.get(i));
+          }
+          while (recorder.next(rs)) {
             // Group and sum to create the results.
+            for (int i = 0; i < measureValues.length; i++) {
+              measureValues[i] = rs.getLong(measureColumnIndexes[i]);
+              measurePresent[i] = !rs.wasNull();
+            }
             recordSource.aggregateEntry(
-                getInstant(rs, SystemColumnDefs.INSTANT),
-                rs.getInt(SystemColumnDefs.CONTAINER_ID.getName()),
-                readAttributes(jdbcTypeHandlers, rs));
+                rs.getInt(bucketColumn),
+                rowDecoder.getContainerId(rs),
+                dimensionColumns.read(rs),
+                measureValues,
+                measurePresent);
           }
         }
       } catch (SQLException e) {
@@ -833,29 +1641,50 @@ class StoreImpl implements Store {
     }
   }
 
-  private String getInstantFunction(ReportDateGranularity granularity) {
-    switch (granularity) {
-      case YEAR:
-        return SystemColumnDefs.SCHEMA
-            + ".reporting_year(?, " + SystemColumnDefs.INSTANT.getName() + ")";
-      case MONTH:
-        return SystemColumnDefs.SCHEMA
-            + ".reporting_month(?, " + SystemColumnDefs.INSTANT.getName() + ")";
-      case DAY:
-        return SystemColumnDefs.SCHEMA
-            + ".reporting_day(?, " + SystemColumnDefs.INSTANT.getName() + ")";
-      default:
-        throw new UnsupportedOperationException(
-            "Granularity " + granularity + " is not supported.");
+  /**
+   * Appends an expression that evaluates to the index of the bucket (between the first and last,
+   * inclusive) that the instant of a record falls in. The buckets are found by a binary search
+   * of nested CASE expressions that compare the instant against the bucket ends, so each record
+   * only needs a handful of comparisons and no function calls.
+   *
+   * @param stringBuilder the builder to append to, or null if the expression has already been
+   *     built and only the order of the parameters is needed
+   * @param bucketEndOrder receives the buckets whose ends are the parameters of the expression,
+   *     in order
+   */
+  private static void appendBucketExpression(@Nullable StringBuilder stringBuilder,
+      List<Integer> bucketEndOrder, int firstBucket, int lastBucket) {
+    if (firstBucket == lastBucket) {
+      if (stringBuilder != null) {
+        stringBuilder.append(firstBucket);
+      }
+      return;
+    }
+    int middleBucket = (firstBucket + lastBucket) / 2;
+    bucketEndOrder.add(middleBucket);
+    if (stringBuilder != null) {
+      stringBuilder.append("CASE WHEN ").append(SystemColumnDefs.INSTANT.getName())
+          .append(" <= ? THEN ");
+    }
+    appendBucketExpression(stringBuilder, bucketEndOrder, firstBucket, middleBucket);
+    if (stringBuilder != null) {
+      stringBuilder.append(" ELSE ");
+    }
+    appendBucketExpression(stringBuilder, bucketEndOrder, middleBucket + 1, lastBucket);
+    if (stringBuilder != null) {
+      stringBuilder.append(" END");
     }
   }
 
   private Connection getNewConnection() throws StorageException {
+    long start = System.nanoTime();
     try {
       return dataSource.getConnection();
     } catch (SQLException e) {
       logger.log(Level.WARNING, "Failed to get connection", e);
       throw new StorageException("Failed to get connection", e);
+    } finally {
+      storageInstrumentation.recordConnection(System.nanoTime() - start);
     }
   }
 
@@ -869,32 +1698,23 @@ class StoreImpl implements Store {
     }
   }
 
-  private Map<String, Object> readAttributes(RecordType<?> recordType, ResultSet rs)
-      throws SQLException {
-    return readAttributes(recordType.getJdbcTypeHandlers(), rs);
-  }
-
-  private Map<String, Object> readAttributes(Map<String, JdbcTypeHandler> jdbcTypeHandlers,
-      ResultSet rs) throws SQLException {
-    Map<String, Object> attributes = new HashMap<>();
-    for (Map.Entry<String, JdbcTypeHandler> jdbcTypeHandlerEntry : jdbcTypeHandlers.entrySet()) {
-      Object value = jdbcTypeHandlerEntry.getValue().get(rs);
-      if (value != null) {
-        attributes.put(jdbcTypeHandlerEntry.getKey(), value);
-      }
-    }
-    return ImmutableMap.copyOf(attributes);
-  }
-
   private int setParameters(RecordType recordType, PreparedStatement stmt, int startIndex,
-      Map<String, Object> attributes) throws SQLException {
-    for (Map.Entry<String, Object> entry : attributes.entrySet()) {
-      JdbcTypeHandler jdbcTypeHandler = recordType.getJdbcTypeHandler(entry.getKey());
-      jdbcTypeHandler.set(stmt, startIndex++, entry.getValue());
+      List<String> attributeNames, Map<String, Object> attributes) throws SQLException {
+    for (String attributeName : attributeNames) {
+      JdbcTypeHandler jdbcTypeHandler = recordType.getJdbcTypeHandler(attributeName);
+      jdbcTypeHandler.set(stmt, startIndex++, attributes.get(attributeName));
     }
     return startIndex;
   }
 
+  /**
+   * Returns the attribute names in a stable order, so that the generated SQL (and therefore the
+   * cached statement) is the same no matter what map implementation the caller used.
+   */
+  private static List<String> sortedAttributeNames(Map<String, Object> attributes) {
+    return Ordering.natural().sortedCopy(attributes.keySet());
+  }
+
   private void appendQuestionMarks(StringBuilder stringBuilder, int numberOfQuestionMarks) {
     for (int i = 0; i < numberOfQuestionMarks; i++) {
       if (i > 0) {
@@ -904,10 +1724,6 @@ class StoreImpl implements Store {
     }
   }
 
-  private static Instant getInstant(ResultSet rs, ColumnDef columnDef) throws SQLException {
-    return new Instant(rs.getTimestamp(columnDef.getName()));
-  }
-
   private static Timestamp getTimestamp(Instant instant) {
     return new Timestamp(instant.getMillis());
   }
@@ -927,8 +1743,21 @@ class StoreImpl implements Store {
   }
 
   private static void appendAttributeColumnNames(StringBuilder stringBuilder,
-      RecordType<?> recordType, Map<String, Object> attributes) {
-    Joiner.on(", ").appendTo(stringBuilder, prefixColumnNames(recordType, attributes.keySet()));
+      RecordType<?> recordType, List<String> attributeNames) {
+    Joiner.on(", ").appendTo(stringBuilder, prefixColumnNames(recordType, attributeNames));
+  }
+
+  private static List<Object> getOrderingShape(List<? extends OrderingTerm> orderingTerms) {
+    ImmutableList.Builder<Object> shape = ImmutableList.builder();
+    for (OrderingTerm orderingTerm : orderingTerms) {
+      if (orderingTerm instanceof AttributeOrderingTerm) {
+        shape.add(((AttributeOrderingTerm) orderingTerm).getAttribute());
+      } else {
+        shape.add(orderingTerm.getClass());
+      }
+      shape.add(orderingTerm.getOrder());
+    }
+    return shape.build();
   }
 
   private <T extends Record> void appendOrderByClause(StringBuilder stringBuilder,
@@ -956,6 +1785,81 @@ class StoreImpl implements Store {
         }));
   }
 
+  private static void closeStatement(@Nullable Statement stmt) {
+    if (stmt != null) {
+      try {
+        stmt.close();
+      } catch (SQLException e) {
+        logger.log(Level.WARNING, "Failed to close statement", e);
+      }
+    }
+  }
+
+  /**
+   * Reads records from a result set as the iterator is advanced, releasing the result set,
+   * statement and (if it owns it) the connection once the last record has been read or the
+   * iterator is closed.
+   */
+  private abstract class ResultSetRecordIterator<T extends Record> extends AbstractIterator<T>
+      implements RecordIterator<T> {
+    private final RecordType<T> recordType;
+    @Nullable
+    private final Connection ownedConnection;
+    private final Statement stmt;
+    private final StatementRecorder recorder;
+    private final ResultSet rs;
+    private final RowDecoder rowDecoder;
+    private boolean closed;
+
+    ResultSetRecordIterator(RecordType<T> recordType, @Nullable Connection ownedConnection,
+        Statement stmt, StatementRecorder recorder, ResultSet rs, RowDecoder rowDecoder) {
+      this.recordType = recordType;
+      this.ownedConnection = ownedConnection;
+      this.stmt = stmt;
+      this.recorder = recorder;
+      this.rs = rs;
+      this.rowDecoder = rowDecoder;
+    }
+
+    abstract T readRecord(RowDecoder rowDecoder, ResultSet rs, RecordType<T> loadedRecordType)
+        throws SQLException;
+
+    @Override
+    protected T computeNext() {
+      if (closed) {
+        return endOfData();
+      }
+      try {
+        if (!recorder.next(rs)) {
+          close();
+          return endOfData();
+        }
+        return readRecord(rowDecoder, rs, loadedRecordType(rowDecoder, rs, recordType));
+      } catch (SQLException e) {
+        close();
+        logger.log(Level.WARNING, "Failed to read records for type " + recordType.getName(), e);
+        throw new IllegalStateException(
+            "Failed to read records for type " + recordType.getName(), e);
+      }
+    }
+
+    @Override
+    public void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        rs.close();
+      } catch (SQLException e) {
+        logger.log(Level.WARNING, "Failed to close result set", e);
+      }
+      recorder.close();
+      closeStatement(stmt);
+      closeConnection(ownedConnection);
+    }
+  }
+
   private class ReadingDataSource implements AutoCloseable {
 
     private Connection localConnection;
@@ -966,6 +1870,10 @@ class StoreImpl implements Store {
         if (currentTransaction != null) {
           return currentTransaction.getConnection();
         }
+        ReadOnlyUnitOfWorkImpl currentUnitOfWork = StoreImpl.this.currentUnitOfWork.get();
+        if (currentUnitOfWork != null) {
+          return currentUnitOfWork.getConnection();
+        }
         localConnection = getNewConnection();
       }
       return localConnection;
@@ -980,15 +1888,100 @@ class StoreImpl implements Store {
     }
   }
 
+  private class ReadOnlyUnitOfWorkImpl implements ReadOnlyUnitOfWork {
+
+    private Connection connection;
+    private boolean originalReadOnly;
+    private int originalIsolation;
+
+    Connection getConnection() throws StorageException {
+      if (connection == null) {
+        Connection newConnection = getNewConnection();
+        try {
+          originalReadOnly = newConnection.isReadOnly();
+          originalIsolation = newConnection.getTransactionIsolation();
+          newConnection.setReadOnly(true);
+          // Each read sees the latest committed data, as it would with its own connection.
+          newConnection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        } catch (SQLException e) {
+          closeConnection(newConnection);
+          logger.log(Level.WARNING, "Failed to prepare read-only connection", e);
+          throw new StorageException("Failed to prepare read-only connection", e);
+        }
+        connection = newConnection;
+      }
+      return connection;
+    }
+
+    @Override
+    public void close() {
+      currentUnitOfWork.remove();
+      if (connection != null) {
+        // The connection may be pooled, so it is restored for whoever uses it next.
+        try {
+          connection.setReadOnly(originalReadOnly);
+          connection.setTransactionIsolation(originalIsolation);
+        } catch (SQLException e) {
+          logger.log(Level.WARNING, "Failed to restore read-only connection", e);
+        }
+        closeConnection(connection);
+        connection = null;
+      }
+    }
+  }
+
   private class SearchTermHandler<T extends Record> {
     private final RecordType<T> recordType;
     private final List<? extends SearchTerm> searchTerms;
     // This is linked to ensure that they are set in the same order as they need to be written.
     private final List<ParameterValue> parameterValues = new LinkedList<>();
+    private final List<Object> shape;
 
     public SearchTermHandler(RecordType<T> recordType, List<? extends SearchTerm> searchTerms) {
       this.recordType = recordType;
       this.searchTerms = searchTerms;
+      this.shape = collectSearchTerms(searchTerms);
+    }
+
+    /**
+     * Returns a description of the search terms that ignores the values being searched for, so
+     * that it can be used to look up a previously generated statement.
+     */
+    List<Object> getShape() {
+      return shape;
+    }
+
+    private List<Object> collectSearchTerms(List<? extends SearchTerm> searchTerms) {
+      ImmutableList.Builder<Object> shape = ImmutableList.builder();
+      for (SearchTerm searchTerm : searchTerms) {
+        if (searchTerm instanceof OrSearchTerm) {
+          shape.add(collectSearchTerms(((OrSearchTerm) searchTerm).getSearchTerms()));
+        } else if (searchTerm instanceof ContainerIdentifierSearchTerm) {
+          ContainerIdentifierSearchTerm containerIdentifierSearchTerm =
+              (ContainerIdentifierSearchTerm) searchTerm;
+          shape.add(SystemColumnDefs.CONTAINER_ID.getName());
+          parameterValues.add(new IntegerParameterValue(containerIdentifierSearchTerm.getId()));
+        } else if (searchTerm instanceof IdentifierSearchTerm) {
+          IdentifierSearchTerm identifierSearchTerm = (IdentifierSearchTerm) searchTerm;
+          shape.add(SystemColumnDefs.ID_COLUMN_NAME);
+          parameterValues.add(new IntegerParameterValue(identifierSearchTerm.getId()));
+        } else if (searchTerm instanceof AttributeSearchTerm) {
+          AttributeSearchTerm attributeSearchTerm = (AttributeSearchTerm) searchTerm;
+          shape.add(attributeSearchTerm.getAttribute());
+          shape.add(attributeSearchTerm.getOperator());
+          parameterValues.add(new AttributeParameterValue(
+              attributeSearchTerm.getAttribute(), attributeSearchTerm.getValue()));
+        } else if (searchTerm instanceof InstantSearchTerm) {
+          InstantSearchTerm instantSearchTerm = (InstantSearchTerm) searchTerm;
+          shape.add(instantSearchTerm.getColumnDef().getName());
+          shape.add(instantSearchTerm.getOperator());
+          parameterValues.add(new InstantParameterValue(instantSearchTerm.getInstant()));
+        } else {
+          throw new UnsupportedOperationException(
+              "Search term " + searchTerm.getClass().getName() + " is not supported.");
+        }
+      }
+      return shape.build();
     }
 
     public void appendWhereClause(StringBuilder stringBuilder) {
@@ -997,16 +1990,16 @@ class StoreImpl implements Store {
       }
       stringBuilder.append(" WHERE ");
       if (recordType.getParentType() != null) {
-        stringBuilder.append(SystemColumnDefs.TYPE.getName()).append(" IN ('");
-        Joiner.on("', '").appendTo(stringBuilder,
+        stringBuilder.append(SystemColumnDefs.TYPE.getName()).append(" IN (");
+        Joiner.on(", ").appendTo(stringBuilder,
             Iterables.transform(recordTypeRegistry.getAssignableTypes(recordType),
-                new Function<RecordType, String>() {
+                new Function<RecordType, Integer>() {
                   @Override
-                  public String apply(RecordType assignableRecordType) {
-                    return assignableRecordType.getName();
+                  public Integer apply(RecordType assignableRecordType) {
+                    return recordTypeRegistry.getTypeId(assignableRecordType);
                   }
                 }));
-        stringBuilder.append("')");
+        stringBuilder.append(")");
         if (!searchTerms.isEmpty()) {
           stringBuilder.append(" AND ");
         }
@@ -1045,37 +2038,30 @@ class StoreImpl implements Store {
       if (searchTerm instanceof OrSearchTerm) {
         writeOrClause(stringBuilder, ((OrSearchTerm) searchTerm).getSearchTerms());
       } else if (searchTerm instanceof ContainerIdentifierSearchTerm) {
-        ContainerIdentifierSearchTerm containerIdentifierSearchTerm =
-            (ContainerIdentifierSearchTerm) searchTerm;
         stringBuilder.append(SystemColumnDefs.CONTAINER_ID.getName()).append(" = ?");
-        parameterValues.add(new IntegerParameterValue(containerIdentifierSearchTerm.getId()));
       } else if (searchTerm instanceof IdentifierSearchTerm) {
-        IdentifierSearchTerm identifierSearchTerm = (IdentifierSearchTerm) searchTerm;
         stringBuilder.append(SystemColumnDefs.ID_COLUMN_NAME).append(" = ?");
-        parameterValues.add(new IntegerParameterValue(identifierSearchTerm.getId()));
       } else if (searchTerm instanceof AttributeSearchTerm) {
         AttributeSearchTerm attributeSearchTerm = (AttributeSearchTerm) searchTerm;
         stringBuilder.append(prefixColumnName(recordType, attributeSearchTerm.getAttribute()))
             .append(" ")
             .append(attributeSearchTerm.getOperator().toSql()).append(" ?");
-        parameterValues.add(new AttributeParameterValue(
-            attributeSearchTerm.getAttribute(), attributeSearchTerm.getValue()));
       } else if (searchTerm instanceof InstantSearchTerm) {
         InstantSearchTerm instantSearchTerm = (InstantSearchTerm) searchTerm;
         stringBuilder.append(instantSearchTerm.getColumnDef().getName()).append(" ")
             .append(instantSearchTerm.getOperator().toSql()).append(" ?");
-        parameterValues.add(new InstantParameterValue(instantSearchTerm.getInstant()));
       } else {
         throw new UnsupportedOperationException(
             "Search term " + searchTerm.getClass().getName() + " is not supported.");
       }
     }
 
-    public <T extends Record> void setParameters(PreparedStatement stmt, RecordType<T> recordType,
+    public <T extends Record> int setParameters(PreparedStatement stmt, RecordType<T> recordType,
         int index) throws SQLException {
       for (ParameterValue parameterValue : parameterValues) {
         parameterValue.set(stmt, index++, recordType);
       }
+      return index;
     }
 
     private abstract class ParameterValue {
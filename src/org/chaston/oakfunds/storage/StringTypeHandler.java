@@ -29,8 +29,8 @@ class StringTypeHandler extends JdbcTypeHandler {
   }
 
   @Override
-  Object get(ResultSet rs) throws SQLException {
-    String value = rs.getString(getColumnName());
+  Object get(ResultSet rs, int columnIndex) throws SQLException {
+    String value = rs.getString(columnIndex);
     return rs.wasNull() ? null : value;
   }
 
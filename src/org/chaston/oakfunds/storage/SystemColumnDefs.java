@@ -35,8 +35,11 @@ public class SystemColumnDefs {
       new ColumnDef(ID_COLUMN_NAME, Types.INTEGER, true, false);
   public static final ColumnDef AUTO_NUMBERED_ID =
       new ColumnDef(ID_COLUMN_NAME, Types.INTEGER, true, true);
+  /**
+   * The ID of the type of the record, as registered in the {@link RecordTypeCatalog}.
+   */
   public static final ColumnDef TYPE =
-      new ColumnDef(SYSTEM_COLUMN_PREFIX + "type", Types.VARCHAR, true);
+      new ColumnDef(SYSTEM_COLUMN_PREFIX + "type", Types.SMALLINT, true);
   public static final ColumnDef CONTAINER_ID =
       new ColumnDef(SYSTEM_COLUMN_PREFIX + "container_id", Types.INTEGER, true);
   public static final ColumnDef INSTANT =
@@ -45,4 +48,6 @@ public class SystemColumnDefs {
       new ColumnDef(SYSTEM_COLUMN_PREFIX + "start_time", Types.TIMESTAMP, true);
   public static final ColumnDef END_TIME =
       new ColumnDef(SYSTEM_COLUMN_PREFIX + "end_time", Types.TIMESTAMP, true);
+  public static final ColumnDef NAME =
+      new ColumnDef(SYSTEM_COLUMN_PREFIX + "name", Types.VARCHAR, true);
 }
@@ -15,8 +15,14 @@
  */
 package org.chaston.oakfunds.storage;
 
+import com.google.common.collect.ImmutableSet;
+
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -29,6 +35,9 @@ class TransactionImpl implements Transaction {
 
   private final StoreImpl store;
   private final Connection connection;
+  private final Set<RecordCache.RecordKey> writtenRecords = new HashSet<>();
+  private final Set<RecordCache.RecordKey> lockedRecords = new HashSet<>();
+  private final List<Runnable> afterCommitActions = new ArrayList<>();
 
   TransactionImpl(StoreImpl store, Connection connection) throws SQLException {
     this.store = store;
@@ -40,15 +49,35 @@ class TransactionImpl implements Transaction {
     return connection;
   }
 
+  void recordWritten(RecordCache.RecordKey recordKey) {
+    writtenRecords.add(recordKey);
+  }
+
+  void recordLocked(RecordCache.RecordKey recordKey) {
+    lockedRecords.add(recordKey);
+  }
+
+  boolean isLocked(RecordCache.RecordKey recordKey) {
+    return lockedRecords.contains(recordKey);
+  }
+
+  void runAfterCommit(Runnable action) {
+    afterCommitActions.add(action);
+  }
+
   @Override
   public void commit() throws StorageException {
     try {
       connection.commit();
+      for (Runnable action : afterCommitActions) {
+        action.run();
+      }
     } catch (SQLException e) {
       logger.log(Level.WARNING, "Failed to commit transaction", e);
       throw new StorageException("Failed to commit transaction", e);
     } finally {
-      store.endTransaction(connection);
+      // Even if the commit failed, the cached copies can no longer be trusted.
+      store.endTransaction(connection, writtenRecords);
     }
   }
 
@@ -59,7 +88,8 @@ class TransactionImpl implements Transaction {
     } catch (SQLException e) {
       logger.log(Level.WARNING, "Failed to roll back transaction", e);
     } finally {
-      store.endTransaction(connection);
+      // The written records were never cached, so there is nothing to invalidate.
+      store.endTransaction(connection, ImmutableSet.<RecordCache.RecordKey>of());
     }
   }
 }
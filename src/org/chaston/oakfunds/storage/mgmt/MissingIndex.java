@@ -0,0 +1,34 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage.mgmt;
+
+import org.chaston.oakfunds.jdbc.IndexDef;
+
+/**
+ * TODO(mchaston): write JavaDocs
+ */
+class MissingIndex extends TableDefDiscrepancy {
+  private final IndexDef indexDef;
+
+  MissingIndex(String table, IndexDef indexDef) {
+    super(table);
+    this.indexDef = indexDef;
+  }
+
+  public IndexDef getIndexDef() {
+    return indexDef;
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage.mgmt;
+
+import org.chaston.oakfunds.storage.SystemColumnDefs;
+
+/**
+ * A table that still stores the names of the record types in its type column, rather than the
+ * IDs from the record type catalog, or whose conversion from names to IDs was interrupted.
+ *
+ * <p>MySQL commits each schema change as it is made, so a failed conversion can leave the IDs in
+ * the {@link #MIGRATED_TYPE_COLUMN_NAME} column only. Such tables are reported with the state of
+ * their type column so that the conversion can continue from where it stopped.
+ */
+class NamedTypeColumn extends TableDefDiscrepancy {
+
+  // Holds the type IDs while a type column is converted from names to IDs.
+  static final String MIGRATED_TYPE_COLUMN_NAME = SystemColumnDefs.TYPE.getName() + "_migrated";
+
+  /**
+   * The contents of the type column of the table.
+   */
+  enum TypeColumnState {
+    NAMES,
+    IDS,
+    MISSING
+  }
+
+  private final TypeColumnState typeColumnState;
+  private final boolean hasMigratedColumn;
+
+  NamedTypeColumn(String table, TypeColumnState typeColumnState, boolean hasMigratedColumn) {
+    super(table);
+    this.typeColumnState = typeColumnState;
+    this.hasMigratedColumn = hasMigratedColumn;
+  }
+
+  public TypeColumnState getTypeColumnState() {
+    return typeColumnState;
+  }
+
+  /**
+   * Returns whether the table has the column that holds the type IDs during the conversion.
+   */
+  public boolean hasMigratedColumn() {
+    return hasMigratedColumn;
+  }
+}
@@ -16,13 +16,16 @@
 package org.chaston.oakfunds.storage.mgmt;
 
 import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.MultimapBuilder;
 import com.google.inject.Inject;
 import org.chaston.oakfunds.jdbc.ColumnDef;
 import org.chaston.oakfunds.jdbc.FunctionDef;
+import org.chaston.oakfunds.jdbc.IndexDef;
 import org.chaston.oakfunds.jdbc.TableDef;
 import org.chaston.oakfunds.storage.AttributeType;
 import org.chaston.oakfunds.storage.Identifiable;
@@ -42,6 +45,7 @@ import java.util.Set;
 public class SchemaBuilder {
   private final ImmutableMap<String, TableDef> tableDefs;
   private final ImmutableMap<String, FunctionDef> functionDefs;
+  private final ImmutableSortedSet<String> recordTypeNames;
 
   @Inject
   SchemaBuilder(Set<RecordType> recordTypes, Set<FunctionDef> functionDefs) {
@@ -59,6 +63,11 @@ public class SchemaBuilder {
       functionDefsBuilder.put(functionDef.getName(), functionDef);
     }
     this.functionDefs = functionDefsBuilder.build();
+    ImmutableSortedSet.Builder<String> recordTypeNamesBuilder = ImmutableSortedSet.naturalOrder();
+    for (RecordType recordType : recordTypes) {
+      recordTypeNamesBuilder.add(recordType.getName());
+    }
+    this.recordTypeNames = recordTypeNamesBuilder.build();
   }
 
   private Multimap<RecordType, RecordType> groupBySuperType(Set<? extends RecordType> recordTypes) {
@@ -101,6 +110,7 @@ public class SchemaBuilder {
 
       if (rootType.getContainingType() != null) {
         tableDefBuilder.addColumnDef(SystemColumnDefs.CONTAINER_ID);
+        addContainerIndex(tableDefBuilder, rootType);
       }
 
       Collection<RecordType> subTypes = entry.getValue();
@@ -111,12 +121,52 @@ public class SchemaBuilder {
               toSqlType(attributeType.getType()),
               false)); // Never make user defined types required.
         }
+        for (IndexDef indexDef : subType.getIndexDefs()) {
+          tableDefBuilder.addIndexDef(indexDef);
+        }
       }
       baseTables.put(rootType.getName(), tableDefBuilder);
     }
     return baseTables.build();
   }
 
+  /**
+   * Contained records are always looked up by their container and time, so those columns are
+   * always indexed together. For types with unique instants the index also enforces that.
+   */
+  private void addContainerIndex(TableDef.Builder tableDefBuilder, RecordType<?> rootType) {
+    switch (rootType.getTemporalType()) {
+      case NONE:
+        tableDefBuilder.addIndexDef(new IndexDef(rootType.getName() + "_container_idx",
+            ImmutableList.of(SystemColumnDefs.CONTAINER_ID.getName())));
+        break;
+      case INSTANT:
+        if (rootType.hasUniqueInstants()) {
+          tableDefBuilder.addIndexDef(new IndexDef(rootType.getName() + "_container_instant_uidx",
+              ImmutableList.of(
+                  SystemColumnDefs.CONTAINER_ID.getName(),
+                  SystemColumnDefs.INSTANT.getName()),
+              true));
+        } else {
+          tableDefBuilder.addIndexDef(new IndexDef(rootType.getName() + "_container_instant_idx",
+              ImmutableList.of(
+                  SystemColumnDefs.CONTAINER_ID.getName(),
+                  SystemColumnDefs.INSTANT.getName())));
+        }
+        break;
+      case INTERVAL:
+        tableDefBuilder.addIndexDef(new IndexDef(rootType.getName() + "_container_interval_idx",
+            ImmutableList.of(
+                SystemColumnDefs.CONTAINER_ID.getName(),
+                SystemColumnDefs.START_TIME.getName(),
+                SystemColumnDefs.END_TIME.getName())));
+        break;
+      default:
+        throw new UnsupportedOperationException(
+            "Temporal type " + rootType.getTemporalType() + " is not supported.");
+    }
+  }
+
   private int toSqlType(Class<?> attributeType) {
     if (String.class.equals(attributeType)) {
       return Types.VARCHAR;
@@ -146,4 +196,11 @@ public class SchemaBuilder {
   public ImmutableMap<String, FunctionDef> getFunctionDefs() {
     return functionDefs;
   }
+
+  /**
+   * Returns the names of the record types that need to be registered in the catalog.
+   */
+  public ImmutableSortedSet<String> getRecordTypeNames() {
+    return recordTypeNames;
+  }
 }
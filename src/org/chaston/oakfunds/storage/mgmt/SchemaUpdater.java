@@ -15,22 +15,28 @@
  */
 package org.chaston.oakfunds.storage.mgmt;
 
+import com.google.common.base.Joiner;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.MultimapBuilder;
 import com.google.inject.Inject;
 import org.chaston.oakfunds.jdbc.ColumnDef;
 import org.chaston.oakfunds.jdbc.FunctionDef;
+import org.chaston.oakfunds.jdbc.IndexDef;
 import org.chaston.oakfunds.jdbc.TableDef;
+import org.chaston.oakfunds.storage.RecordTypeCatalog;
 import org.chaston.oakfunds.storage.SystemColumnDefs;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -62,6 +68,10 @@ public class SchemaUpdater {
           Iterables.filter(discrepancies, MissingTable.class));
       handleTableDefDiscrepancies(connection,
           Iterables.filter(discrepancies, TableDefDiscrepancy.class));
+      registerRecordTypes(connection,
+          Iterables.filter(discrepancies, UnregisteredRecordType.class));
+      migrateNamedTypeColumns(connection,
+          Iterables.filter(discrepancies, NamedTypeColumn.class));
       createMissingFunctions(connection,
           Iterables.filter(discrepancies, MissingFunction.class));
     }
@@ -105,6 +115,26 @@ public class SchemaUpdater {
         logger.log(Level.SEVERE, "Failure to execute: " + createTableStatement.toString(), e);
         throw e;
       }
+      for (IndexDef indexDef : missingTable.getIndexDefs().values()) {
+        createIndex(connection, missingTable.getFullName(), indexDef);
+      }
+    }
+  }
+
+  private void createIndex(Connection connection, String tableName, IndexDef indexDef)
+      throws SQLException {
+    StringBuilder createIndexStatement = new StringBuilder();
+    createIndexStatement.append(indexDef.isUnique() ? "CREATE UNIQUE INDEX " : "CREATE INDEX ")
+        .append(indexDef.getName());
+    createIndexStatement.append(" ON ").append(tableName).append(" (");
+    Joiner.on(", ").appendTo(createIndexStatement, indexDef.getColumnNames());
+    createIndexStatement.append(");");
+    try (Statement stmt = connection.createStatement()) {
+      stmt.executeUpdate(createIndexStatement.toString());
+      logger.info("Index " + indexDef.getName() + " was created.");
+    } catch (SQLException e) {
+      logger.log(Level.SEVERE, "Failure to execute: " + createIndexStatement.toString(), e);
+      throw e;
     }
   }
 
@@ -147,6 +177,14 @@ public class SchemaUpdater {
         : discrepanciesByTable.entrySet()) {
       String tableName = entry.getKey();
       for (TableDefDiscrepancy tableDefDiscrepancy : entry.getValue()) {
+        if (tableDefDiscrepancy instanceof MissingIndex) {
+          // Handled once all of the columns have been added.
+          continue;
+        }
+        if (tableDefDiscrepancy instanceof NamedTypeColumn) {
+          // Handled once the record types have been registered.
+          continue;
+        }
         // MySQL supports multiple actions per ALTER TABLE, but others do not, so we should
         // alter tables one piece at a time.
         StringBuilder alterTableStatement = new StringBuilder();
@@ -176,6 +214,104 @@ public class SchemaUpdater {
           throw e;
         }
       }
+      for (TableDefDiscrepancy tableDefDiscrepancy : entry.getValue()) {
+        if (tableDefDiscrepancy instanceof MissingIndex) {
+          createIndex(connection, tableName, ((MissingIndex) tableDefDiscrepancy).getIndexDef());
+        }
+      }
+    }
+  }
+
+  private void registerRecordTypes(Connection connection,
+      Iterable<UnregisteredRecordType> unregisteredRecordTypes) throws SQLException {
+    List<String> recordTypeNames = new ArrayList<>();
+    for (UnregisteredRecordType unregisteredRecordType : unregisteredRecordTypes) {
+      recordTypeNames.add(unregisteredRecordType.getRecordTypeName());
+    }
+    for (String recordTypeName : RecordTypeCatalog.registerTypes(connection, recordTypeNames)) {
+      logger.info("Record type " + recordTypeName + " was registered.");
+    }
+  }
+
+  /**
+   * Converts the type columns that hold the names of the record types to hold their IDs instead.
+   * The IDs are written to a new column which then replaces the original. Each step can be run
+   * again, so a conversion that was interrupted (leaving the migrated column behind) continues
+   * from where it stopped.
+   */
+  private void migrateNamedTypeColumns(Connection connection,
+      Iterable<NamedTypeColumn> namedTypeColumns) throws SQLException {
+    String typeColumnName = SystemColumnDefs.TYPE.getName();
+    String migratedColumnName = NamedTypeColumn.MIGRATED_TYPE_COLUMN_NAME;
+    for (NamedTypeColumn namedTypeColumn : namedTypeColumns) {
+      String tableName = namedTypeColumn.getTableName();
+
+      if (namedTypeColumn.getTypeColumnState() == NamedTypeColumn.TypeColumnState.NAMES) {
+        // Rows may have been written for types that are no longer bound, which still need IDs.
+        List<String> recordTypeNames = new ArrayList<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                 "SELECT DISTINCT " + typeColumnName + " FROM " + tableName + ";")) {
+          while (rs.next()) {
+            recordTypeNames.add(rs.getString(1));
+          }
+        }
+        for (String recordTypeName
+            : RecordTypeCatalog.registerTypes(connection, recordTypeNames)) {
+          logger.info("Record type " + recordTypeName + " was registered.");
+        }
+
+        if (!namedTypeColumn.hasMigratedColumn()) {
+          executeUpdate(connection, "ALTER TABLE " + tableName
+              + " ADD COLUMN " + migratedColumnName + " SMALLINT;");
+        }
+        executeUpdate(connection, "UPDATE " + tableName
+            + " SET " + migratedColumnName + " = ("
+            + "SELECT " + SystemColumnDefs.ID_COLUMN_NAME
+            + " FROM " + RecordTypeCatalog.TABLE_DEF.getFullName()
+            + " WHERE " + SystemColumnDefs.NAME.getName()
+            + " = " + tableName + "." + typeColumnName + ");");
+        // The names are only dropped once every row has its ID, as they cannot be recovered.
+        checkNoMissingTypeIds(connection, tableName);
+        executeUpdate(connection, "ALTER TABLE " + tableName
+            + " DROP COLUMN " + typeColumnName + ";");
+      }
+
+      if (namedTypeColumn.getTypeColumnState() != NamedTypeColumn.TypeColumnState.IDS) {
+        // A default is needed to add a required column to a table that already has rows.
+        executeUpdate(connection, "ALTER TABLE " + tableName
+            + " ADD COLUMN " + typeColumnName + " SMALLINT DEFAULT 0 NOT NULL;");
+      }
+      executeUpdate(connection, "UPDATE " + tableName
+          + " SET " + typeColumnName + " = " + migratedColumnName + ";");
+      executeUpdate(connection, "ALTER TABLE " + tableName
+          + " DROP COLUMN " + migratedColumnName + ";");
+      logger.info("Column " + tableName + "." + typeColumnName + " was migrated to type IDs.");
+    }
+  }
+
+  private void checkNoMissingTypeIds(Connection connection, String tableName)
+      throws SQLException {
+    String countStatement = "SELECT COUNT(*) FROM " + tableName
+        + " WHERE " + NamedTypeColumn.MIGRATED_TYPE_COLUMN_NAME + " IS NULL;";
+    int missingTypeIds;
+    try (Statement stmt = connection.createStatement();
+         ResultSet rs = stmt.executeQuery(countStatement)) {
+      rs.next();
+      missingTypeIds = rs.getInt(1);
+    }
+    if (missingTypeIds > 0) {
+      throw new SQLException(missingTypeIds + " rows of " + tableName
+          + " have no type ID, so their type names were not dropped.");
+    }
+  }
+
+  private void executeUpdate(Connection connection, String sql) throws SQLException {
+    try (Statement stmt = connection.createStatement()) {
+      stmt.executeUpdate(sql);
+    } catch (SQLException e) {
+      logger.log(Level.SEVERE, "Failure to execute: " + sql, e);
+      throw e;
     }
   }
 
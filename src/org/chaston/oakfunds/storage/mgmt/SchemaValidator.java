@@ -17,11 +17,14 @@ package org.chaston.oakfunds.storage.mgmt;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 import org.chaston.oakfunds.jdbc.ColumnDef;
 import org.chaston.oakfunds.jdbc.DatabaseVariantHandler;
 import org.chaston.oakfunds.jdbc.FunctionDef;
+import org.chaston.oakfunds.jdbc.IndexDef;
 import org.chaston.oakfunds.jdbc.TableDef;
+import org.chaston.oakfunds.storage.RecordTypeCatalog;
 import org.chaston.oakfunds.storage.SystemColumnDefs;
 
 import javax.sql.DataSource;
@@ -29,6 +32,7 @@ import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -51,7 +55,10 @@ public class SchemaValidator {
   }
 
   Iterable<SchemaDiscrepancy> validateSchema() throws SQLException {
-    ImmutableMap<String, TableDef> tableDefs = schemaBuilder.getTableDefs();
+    ImmutableMap<String, TableDef> tableDefs = ImmutableMap.<String, TableDef>builder()
+        .putAll(schemaBuilder.getTableDefs())
+        .put(RecordTypeCatalog.TABLE_DEF.getName(), RecordTypeCatalog.TABLE_DEF)
+        .build();
     ImmutableMap<String, FunctionDef> functionDefs = schemaBuilder.getFunctionDefs();
     ImmutableList.Builder<SchemaDiscrepancy> schemaDiscrepancies = ImmutableList.builder();
     Set<String> seenTables = new HashSet<>();
@@ -99,6 +106,16 @@ public class SchemaValidator {
           // TODO: validate function (?)
         }
       }
+
+      // Look for record types without IDs.
+      Set<String> registeredRecordTypes = seenTables.contains(RecordTypeCatalog.TABLE_DEF.getName())
+          ? RecordTypeCatalog.readTypeIds(connection).keySet()
+          : ImmutableSet.<String>of();
+      for (String recordTypeName : schemaBuilder.getRecordTypeNames()) {
+        if (!registeredRecordTypes.contains(recordTypeName)) {
+          schemaDiscrepancies.add(new UnregisteredRecordType(recordTypeName));
+        }
+      }
     }
     for (TableDef expectedTable : tableDefs.values()) {
       if (!seenTables.contains(expectedTable.getName())) {
@@ -116,26 +133,79 @@ public class SchemaValidator {
   private void validateTable(DatabaseMetaData metaData, TableDef tableDef,
       ImmutableList.Builder<SchemaDiscrepancy> schemaDiscrepancies) throws SQLException {
     Set<String> seenColumns = new HashSet<>();
+    NamedTypeColumn.TypeColumnState typeColumnState = NamedTypeColumn.TypeColumnState.MISSING;
+    boolean hasMigratedTypeColumn = false;
     String schemaName = databaseVariantHandler.toDatabaseForm(SystemColumnDefs.SCHEMA);
     String tableName = databaseVariantHandler.toDatabaseForm(tableDef.getName());
     try (ResultSet columns = metaData.getColumns(null, schemaName, tableName, null)) {
       while (columns.next()) {
         String columnName =
             databaseVariantHandler.toNormalName(columns.getString("COLUMN_NAME"));
+        if (columnName.equals(NamedTypeColumn.MIGRATED_TYPE_COLUMN_NAME)) {
+          // Left behind by a conversion of the type column that did not finish.
+          hasMigratedTypeColumn = true;
+          continue;
+        }
         ColumnDef columnDef = tableDef.getColumnDefs().get(columnName);
         if (columnDef == null) {
           schemaDiscrepancies.add(new ExtraColumn(tableDef.getFullName(), columnName));
           continue;
         }
         seenColumns.add(columnName);
+        if (columnDef == SystemColumnDefs.TYPE) {
+          // Names were written before the types were given IDs.
+          typeColumnState = isCharacterType(columns.getInt("DATA_TYPE"))
+              ? NamedTypeColumn.TypeColumnState.NAMES
+              : NamedTypeColumn.TypeColumnState.IDS;
+        }
         // TODO: validate column type
         // TODO: validate whether column is required
       }
     }
+    if (typeColumnState == NamedTypeColumn.TypeColumnState.NAMES || hasMigratedTypeColumn) {
+      schemaDiscrepancies.add(new NamedTypeColumn(tableDef.getFullName(), typeColumnState,
+          hasMigratedTypeColumn));
+    }
     for (ColumnDef expectedColumn : tableDef.getColumnDefs().values()) {
       if (!seenColumns.contains(expectedColumn.getName())) {
+        if (expectedColumn == SystemColumnDefs.TYPE && hasMigratedTypeColumn) {
+          // Added back by the conversion, from the IDs in the migrated column.
+          continue;
+        }
         schemaDiscrepancies.add(new MissingColumn(tableDef.getFullName(), expectedColumn));
       }
     }
+
+    Set<String> seenIndexes = new HashSet<>();
+    try (ResultSet indexes = metaData.getIndexInfo(null, schemaName, tableName, false, true)) {
+      while (indexes.next()) {
+        String indexName = indexes.getString("INDEX_NAME");
+        if (indexName == null) {
+          // Table statistics are reported without an index name.
+          continue;
+        }
+        seenIndexes.add(databaseVariantHandler.toNormalName(indexName));
+        // TODO: validate index columns
+      }
+    }
+    for (IndexDef expectedIndex : tableDef.getIndexDefs().values()) {
+      if (!seenIndexes.contains(expectedIndex.getName())) {
+        schemaDiscrepancies.add(new MissingIndex(tableDef.getFullName(), expectedIndex));
+      }
+    }
+  }
+
+  private static boolean isCharacterType(int sqlType) {
+    switch (sqlType) {
+      case Types.CHAR:
+      case Types.VARCHAR:
+      case Types.LONGVARCHAR:
+      case Types.NCHAR:
+      case Types.NVARCHAR:
+      case Types.LONGNVARCHAR:
+        return true;
+      default:
+        return false;
+    }
   }
 }
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage.ui;
+
+import com.google.inject.Singleton;
+import com.google.inject.servlet.ServletModule;
+
+/**
+ * TODO(mchaston): write JavaDocs
+ */
+public class StorageServletModule extends ServletModule {
+  @Override
+  protected void configureServlets() {
+    serve("/storage/metrics").with(StorageMetricsServlet.class);
+    bind(StorageMetricsServlet.class).in(Singleton.class);
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.util;
+
+import org.json.simple.JSONValue;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Writes JSON straight to a {@link Writer} as it is produced, rather than building a tree of
+ * {@link org.json.simple.JSONObject}s and {@link org.json.simple.JSONArray}s first. The
+ * separators between the members of objects and arrays are written automatically.
+ */
+public class JSONStreamWriter {
+
+  private final Writer writer;
+  // Whether anything has been written yet at each level of nesting.
+  private boolean[] nonEmpty = new boolean[8];
+  private int depth;
+  private boolean afterName;
+
+  public JSONStreamWriter(Writer writer) {
+    this.writer = writer;
+  }
+
+  public JSONStreamWriter beginObject() throws IOException {
+    return begin('{');
+  }
+
+  public JSONStreamWriter endObject() throws IOException {
+    return end('}');
+  }
+
+  public JSONStreamWriter beginArray() throws IOException {
+    return begin('[');
+  }
+
+  public JSONStreamWriter endArray() throws IOException {
+    return end(']');
+  }
+
+  /**
+   * Writes the name of the next member of the current object.
+   */
+  public JSONStreamWriter name(String name) throws IOException {
+    if (depth == 0 || afterName) {
+      throw new IllegalStateException("A name can only be written within an object.");
+    }
+    writeSeparator();
+    writer.write('"');
+    writer.write(JSONValue.escape(name));
+    writer.write("\":");
+    afterName = true;
+    return this;
+  }
+
+  /**
+   * Writes a value, which can be anything that json-simple can write or a
+   * {@link JSONRepresentable}. {@link JSONStreamable}s are streamed too.
+   */
+  public JSONStreamWriter value(@Nullable Object value) throws IOException {
+    if (value instanceof JSONStreamable) {
+      ((JSONStreamable) value).writeJSON(this);
+      return this;
+    }
+    writeSeparator();
+    if (value instanceof JSONRepresentable) {
+      ((JSONRepresentable) value).toJSONObject().writeJSONString(writer);
+    } else {
+      JSONValue.writeJSONString(value, writer);
+    }
+    return this;
+  }
+
+  /**
+   * Writes a member of the current object.
+   */
+  public JSONStreamWriter member(String name, @Nullable Object value) throws IOException {
+    return name(name).value(value);
+  }
+
+  private JSONStreamWriter begin(char bracket) throws IOException {
+    writeSeparator();
+    writer.write(bracket);
+    depth++;
+    if (depth == nonEmpty.length) {
+      nonEmpty = Arrays.copyOf(nonEmpty, depth * 2);
+    }
+    nonEmpty[depth] = false;
+    return this;
+  }
+
+  private JSONStreamWriter end(char bracket) throws IOException {
+    if (depth == 0 || afterName) {
+      throw new IllegalStateException("Nothing to end with " + bracket + ".");
+    }
+    writer.write(bracket);
+    depth--;
+    return this;
+  }
+
+  private void writeSeparator() throws IOException {
+    if (afterName) {
+      afterName = false;
+      return;
+    }
+    if (nonEmpty[depth] && depth > 0) {
+      writer.write(',');
+    }
+    nonEmpty[depth] = true;
+  }
+}
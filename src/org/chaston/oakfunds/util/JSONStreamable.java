@@ -0,0 +1,26 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.util;
+
+import java.io.IOException;
+
+/**
+ * Something that can write itself to a {@link JSONStreamWriter}, without creating the
+ * {@link org.json.simple.JSONObject} that it would otherwise be represented by.
+ */
+public interface JSONStreamable extends JSONRepresentable {
+  void writeJSON(JSONStreamWriter writer) throws IOException;
+}
@@ -15,7 +15,6 @@
  */
 package org.chaston.oakfunds.util;
 
-import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
@@ -26,23 +25,38 @@ import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.util.Iterator;
 
 /**
  * TODO(mchaston): write JavaDocs
  */
 public class JSONUtils {
+  /**
+   * Writes the items as a JSON array. Items that are {@link JSONStreamable} are written straight
+   * to the writer, so if the iterable is lazy too the first items are written before the last
+   * ones are read.
+   */
   public static void writeJSONString(PrintWriter writer,
       Iterable<? extends JSONRepresentable> jsonRepresentables) throws IOException {
-    JSONArray jsonArray = new JSONArray();
-    for (JSONRepresentable record : jsonRepresentables) {
-      jsonArray.add(record.toJSONObject());
+    writeJSONString(writer, jsonRepresentables.iterator());
+  }
+
+  /**
+   * Writes the items as a JSON array one at a time, so that they never all need to be in memory.
+   */
+  public static void writeJSONString(PrintWriter writer,
+      Iterator<? extends JSONRepresentable> jsonRepresentables) throws IOException {
+    JSONStreamWriter jsonStreamWriter = new JSONStreamWriter(writer);
+    jsonStreamWriter.beginArray();
+    while (jsonRepresentables.hasNext()) {
+      jsonStreamWriter.value(jsonRepresentables.next());
     }
-    jsonArray.writeJSONString(writer);
+    jsonStreamWriter.endArray();
   }
 
   public static void writeJSONString(PrintWriter writer, JSONRepresentable jsonRepresentable)
       throws IOException {
-    jsonRepresentable.toJSONObject().writeJSONString(writer);
+    new JSONStreamWriter(writer).value(jsonRepresentable);
   }
 
   public static JSONObject readRequest(HttpServletRequest request, String requestType)
@@ -20,7 +20,10 @@ import org.chaston.oakfunds.security.AuthenticationException;
 import org.chaston.oakfunds.security.AuthenticationScope;
 import org.chaston.oakfunds.security.AuthorizationException;
 import org.chaston.oakfunds.security.UserAuthenticationManager;
+import org.chaston.oakfunds.storage.ReadOnlyUnitOfWork;
 import org.chaston.oakfunds.storage.StorageException;
+import org.chaston.oakfunds.storage.StorageInstrumentation;
+import org.chaston.oakfunds.storage.StorageStatistics;
 import org.chaston.oakfunds.storage.Store;
 import org.chaston.oakfunds.storage.Transaction;
 import org.chaston.oakfunds.xsrf.XsrfUtil;
@@ -29,23 +32,30 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * TODO(mchaston): write JavaDocs
  */
 public class RequestHandler {
+  private static final Logger logger = Logger.getLogger(RequestHandler.class.getName());
+
   private final Store store;
   private final UserAuthenticationManager userAuthenticationManager;
   private final XsrfUtil xsrfUtil;
+  private final StorageInstrumentation storageInstrumentation;
 
   @Inject
   RequestHandler(
       Store store,
       UserAuthenticationManager userAuthenticationManager,
-      XsrfUtil xsrfUtil) {
+      XsrfUtil xsrfUtil,
+      StorageInstrumentation storageInstrumentation) {
     this.store = store;
     this.userAuthenticationManager = userAuthenticationManager;
     this.xsrfUtil = xsrfUtil;
+    this.storageInstrumentation = storageInstrumentation;
   }
 
   public <V> V handle(HttpServletRequest request, HttpServletResponse response, Action<V> action)
@@ -54,9 +64,43 @@ public class RequestHandler {
       response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
       return null;
     }
+    StorageStatistics storageStatistics = storageInstrumentation.startRequest();
     try {
+      return doReadOnlyAction(request, action);
+    } finally {
+      endRequest(request, storageStatistics);
+    }
+  }
+
+  /**
+   * Handles a read-only request whose response is written from the value of the action, such as
+   * a stream of records. The request only ends once the response has been written, so that the
+   * statements that run while writing it count towards the request.
+   */
+  public <V> void handle(HttpServletRequest request, HttpServletResponse response,
+      Action<V> action, ResponseWriter<V> responseWriter) throws ServletException, IOException {
+    if (!xsrfUtil.verifyXsrfToken(request)) {
+      response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+      return;
+    }
+    StorageStatistics storageStatistics = storageInstrumentation.startRequest();
+    try {
+      responseWriter.writeResponse(doReadOnlyAction(request, action), response);
+    } finally {
+      endRequest(request, storageStatistics);
+    }
+  }
+
+  private <V> V doReadOnlyAction(HttpServletRequest request, Action<V> action)
+      throws ServletException {
+    try {
+      // All of the reads of the request, including those to authenticate the user, share one
+      // connection.
+      ReadOnlyUnitOfWork unitOfWork = store.startReadOnlyUnitOfWork();
       try (AuthenticationScope authenticationScope = userAuthenticationManager.authenticateUser()) {
         return action.doAction(request);
+      } finally {
+        unitOfWork.close();
       }
     } catch (StorageException e) {
       throw new ServletException("Failed to handle request due to a storage problem.", e);
@@ -73,6 +117,7 @@ public class RequestHandler {
       response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
       return null;
     }
+    StorageStatistics storageStatistics = storageInstrumentation.startRequest();
     try {
       try (AuthenticationScope authenticationScope = userAuthenticationManager.authenticateUser()) {
         Transaction transaction = store.startTransaction();
@@ -95,10 +140,37 @@ public class RequestHandler {
       throw new ServletException("Failed to handle request due to an authentication problem.", e);
     } catch (AuthorizationException e) {
       throw new ServletException("Failed to handle request due to an authorization problem.", e);
+    } finally {
+      endRequest(request, storageStatistics);
+    }
+  }
+
+  /**
+   * Logs a summary of the storage work done by the request. Requests that were slow or ran too
+   * many statements are logged as warnings, so that they stand out.
+   */
+  private void endRequest(HttpServletRequest request, StorageStatistics storageStatistics) {
+    storageInstrumentation.endRequest(storageStatistics);
+    boolean slow = storageInstrumentation.isSlow(storageStatistics);
+    boolean chatty = storageInstrumentation.isChatty(storageStatistics);
+    Level level = slow || chatty ? Level.WARNING : Level.FINE;
+    if (logger.isLoggable(level)) {
+      logger.log(level, request.getMethod() + " " + request.getRequestURI()
+          + (slow ? " [slow]" : "") + (chatty ? " [chatty]" : "") + ": "
+          + storageStatistics.getSummary());
     }
   }
 
   public interface Action<V> {
     V doAction(HttpServletRequest request) throws StorageException, ServletException;
   }
+
+  /**
+   * Writes the response of a request from the value of its action. Values that hold storage
+   * resources (such as a {@link org.chaston.oakfunds.storage.RecordIterator}) must be closed by
+   * the writer.
+   */
+  public interface ResponseWriter<V> {
+    void writeResponse(V value, HttpServletResponse response) throws IOException;
+  }
 }
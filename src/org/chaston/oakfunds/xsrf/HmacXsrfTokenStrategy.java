@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.xsrf;
+
+import com.google.inject.Inject;
+import org.apache.commons.codec.binary.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+/**
+ * Creates XSRF tokens using an HMAC-SHA256 of the material, which is much cheaper to create and
+ * verify than the RSA signatures of {@link XsrfSigner}. The HMAC key is derived from the same
+ * private key, so that all instances of the application agree on it.
+ */
+public class HmacXsrfTokenStrategy implements XsrfTokenStrategy {
+  private static final Charset CHARSET = Charset.forName("UTF-8");
+  private static final String ALGORITHM = "HmacSHA256";
+
+  // Not part of the Base64 alphabet, so these tokens are never mistaken for RSA signatures.
+  static final String TOKEN_PREFIX = "h1.";
+
+  private final XsrfSigner xsrfSigner;
+  private final ThreadLocal<Mac> macs = new ThreadLocal<>();
+  private SecretKeySpec secretKey;
+
+  @Inject
+  HmacXsrfTokenStrategy(XsrfSigner xsrfSigner) {
+    // The key is derived on first use, as the private key is not available in every environment.
+    this.xsrfSigner = xsrfSigner;
+  }
+
+  HmacXsrfTokenStrategy(byte[] key) throws GeneralSecurityException {
+    this.xsrfSigner = null;
+    this.secretKey = new SecretKeySpec(key, ALGORITHM);
+    // Fail now, rather than on first use, if the algorithm is not available.
+    Mac.getInstance(ALGORITHM).init(secretKey);
+  }
+
+  private synchronized SecretKeySpec getSecretKey() throws GeneralSecurityException {
+    if (secretKey == null) {
+      secretKey = new SecretKeySpec(xsrfSigner.deriveHmacKey(), ALGORITHM);
+    }
+    return secretKey;
+  }
+
+  @Override
+  public boolean accepts(String token) {
+    return token.startsWith(TOKEN_PREFIX);
+  }
+
+  @Override
+  public String sign(String material) throws GeneralSecurityException {
+    return TOKEN_PREFIX + Base64.encodeBase64URLSafeString(mac(material));
+  }
+
+  @Override
+  public boolean verify(String material, String token) throws GeneralSecurityException {
+    if (!accepts(token)) {
+      return false;
+    }
+    byte[] expected = mac(material);
+    byte[] actual = Base64.decodeBase64(token.substring(TOKEN_PREFIX.length()));
+    return MessageDigest.isEqual(expected, actual);
+  }
+
+  private byte[] mac(String material) throws GeneralSecurityException {
+    Mac mac = macs.get();
+    if (mac == null) {
+      mac = Mac.getInstance(ALGORITHM);
+      mac.init(getSecretKey());
+      macs.set(mac);
+    }
+    // doFinal() resets the MAC, so it is ready for the next use on this thread.
+    return mac.doFinal(material.getBytes(CHARSET));
+  }
+}
@@ -26,6 +26,7 @@ public class XsrfModule extends ServletModule {
   protected void configureServlets() {
     bind(XsrfUtil.class).in(Singleton.class);
     bind(XsrfSigner.class).in(Singleton.class);
+    bind(HmacXsrfTokenStrategy.class).in(Singleton.class);
     bind(XsrfServlet.class).in(Singleton.class);
 
     serve("/xsrf.js").with(XsrfServlet.class);
@@ -21,16 +21,19 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
 import java.security.KeyStore;
+import java.security.MessageDigest;
 import java.security.PrivateKey;
 import java.security.SecureRandom;
 import java.security.Signature;
 import java.security.cert.Certificate;
 
 /**
- * TODO(mchaston): write JavaDocs
+ * Creates XSRF tokens by RSA signing the material. This is expensive, so it is only kept to
+ * verify tokens that were issued before {@link HmacXsrfTokenStrategy}.
  */
-public class XsrfSigner {
+public class XsrfSigner implements XsrfTokenStrategy {
   private static final Charset CHARSET = Charset.forName("UTF-8");
   private final SecureRandom secureRandom = new SecureRandom();
   private final Certificate certificate;
@@ -41,6 +44,12 @@ public class XsrfSigner {
     this.privateKey = loadPrivateKey();
   }
 
+  @Override
+  public boolean accepts(String token) {
+    return Base64.isBase64(token);
+  }
+
+  @Override
   public String sign(String material) throws GeneralSecurityException {
     Signature sig = Signature.getInstance("SHA256withRSA");
     sig.initSign(privateKey, secureRandom);
@@ -48,6 +57,7 @@ public class XsrfSigner {
     return Base64.encodeBase64String(sig.sign());
   }
 
+  @Override
   public boolean verify(String material, String signature) throws GeneralSecurityException {
     Signature sig = Signature.getInstance("SHA256withRSA");
     sig.initVerify(certificate);
@@ -55,6 +65,19 @@ public class XsrfSigner {
     return sig.verify(Base64.decodeBase64(signature));
   }
 
+  /**
+   * Returns a key for {@link HmacXsrfTokenStrategy} that is derived from the private key.
+   */
+  byte[] deriveHmacKey() throws GeneralSecurityException {
+    if (privateKey == null) {
+      throw new InvalidKeyException("The XSRF private key is not available.");
+    }
+    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    digest.update("oakfunds-xsrf-hmac".getBytes(CHARSET));
+    digest.update(privateKey.getEncoded());
+    return digest.digest();
+  }
+
   /*
    * The following keys were created using:
    * keytool -genkeypair -alias xsrf -keyalg RSA -keypass ofxsrf -storetype pkcs12 \
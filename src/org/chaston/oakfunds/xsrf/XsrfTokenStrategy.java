@@ -0,0 +1,36 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.xsrf;
+
+import com.google.inject.ProvidedBy;
+
+import java.security.GeneralSecurityException;
+
+/**
+ * A way of creating and checking the XSRF tokens that tie a request to the logged in user.
+ */
+@ProvidedBy(XsrfTokenStrategyProvider.class)
+public interface XsrfTokenStrategy {
+  /**
+   * Returns whether the token looks like one that this strategy created, so that tokens created
+   * by a previous strategy can still be verified by it.
+   */
+  boolean accepts(String token);
+
+  String sign(String material) throws GeneralSecurityException;
+
+  boolean verify(String material, String token) throws GeneralSecurityException;
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.xsrf;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import org.chaston.oakfunds.util.Flag;
+
+/**
+ * Provides the strategy used to create new XSRF tokens, which is selected by the
+ * xsrf_token_strategy flag.
+ */
+class XsrfTokenStrategyProvider implements Provider<XsrfTokenStrategy> {
+
+  private static final Flag<String> XSRF_TOKEN_STRATEGY =
+      Flag.builder("xsrf_token_strategy", "hmac").build();
+
+  private final Provider<HmacXsrfTokenStrategy> hmacXsrfTokenStrategyProvider;
+  private final Provider<XsrfSigner> xsrfSignerProvider;
+
+  @Inject
+  XsrfTokenStrategyProvider(Provider<HmacXsrfTokenStrategy> hmacXsrfTokenStrategyProvider,
+      Provider<XsrfSigner> xsrfSignerProvider) {
+    this.hmacXsrfTokenStrategyProvider = hmacXsrfTokenStrategyProvider;
+    this.xsrfSignerProvider = xsrfSignerProvider;
+  }
+
+  @Override
+  public XsrfTokenStrategy get() {
+    switch (XSRF_TOKEN_STRATEGY.get()) {
+      case "hmac":
+        return hmacXsrfTokenStrategyProvider.get();
+      case "rsa":
+        return xsrfSignerProvider.get();
+      default:
+        throw new IllegalArgumentException(
+            "Unknown XSRF token strategy: " + XSRF_TOKEN_STRATEGY.get());
+    }
+  }
+}
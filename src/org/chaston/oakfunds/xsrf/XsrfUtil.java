@@ -16,9 +16,14 @@
 package org.chaston.oakfunds.xsrf;
 
 import com.google.appengine.api.utils.SystemProperty;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 import org.chaston.oakfunds.security.AuthenticationException;
 import org.chaston.oakfunds.security.UserAuthenticator;
+import org.chaston.oakfunds.util.Flag;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -26,6 +31,7 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 /**
@@ -35,13 +41,39 @@ public class XsrfUtil {
 
   private static final Logger LOG = Logger.getLogger(XsrfUtil.class.getName());
 
+  private static final Flag<Integer> XSRF_VERIFIED_TOKEN_CACHE_SIZE =
+      Flag.builder("xsrf_verified_token_cache_size", 1000).build();
+  private static final int VERIFIED_TOKEN_EXPIRY_MINUTES = 10;
+
   private final UserAuthenticator userAuthenticator;
-  private final XsrfSigner xsrfSigner;
+  private final XsrfTokenStrategy signingStrategy;
+  private final ImmutableList<XsrfTokenStrategy> verifyingStrategies;
+  // The tokens that were recently verified for each user, or null if disabled.
+  private final Cache<VerifiedToken, Boolean> verifiedTokens;
 
   @Inject
-  XsrfUtil(UserAuthenticator userAuthenticator, XsrfSigner xsrfSigner) {
+  XsrfUtil(UserAuthenticator userAuthenticator, XsrfTokenStrategy signingStrategy,
+      HmacXsrfTokenStrategy hmacXsrfTokenStrategy, XsrfSigner xsrfSigner) {
+    // Tokens are verified by whichever strategy created them, so that the tokens in existing
+    // cookies keep working when the signing strategy changes.
+    this(userAuthenticator, signingStrategy,
+        ImmutableSet.of(signingStrategy, hmacXsrfTokenStrategy, xsrfSigner).asList(),
+        XSRF_VERIFIED_TOKEN_CACHE_SIZE.get());
+  }
+
+  XsrfUtil(UserAuthenticator userAuthenticator, XsrfTokenStrategy signingStrategy,
+      ImmutableList<XsrfTokenStrategy> verifyingStrategies, int verifiedTokenCacheSize) {
     this.userAuthenticator = userAuthenticator;
-    this.xsrfSigner = xsrfSigner;
+    this.signingStrategy = signingStrategy;
+    this.verifyingStrategies = verifyingStrategies;
+    if (verifiedTokenCacheSize > 0) {
+      verifiedTokens = CacheBuilder.newBuilder()
+          .maximumSize(verifiedTokenCacheSize)
+          .expireAfterWrite(VERIFIED_TOKEN_EXPIRY_MINUTES, TimeUnit.MINUTES)
+          .build();
+    } else {
+      verifiedTokens = null;
+    }
   }
 
   void addXsrfToken(HttpServletResponse response)
@@ -51,7 +83,7 @@ public class XsrfUtil {
       // When logged in, add the XSRF cookie
       StringBuilder cookie = new StringBuilder();
       try {
-        cookie.append("XSRF-TOKEN=").append(xsrfSigner.sign(createMaterial()));
+        cookie.append("XSRF-TOKEN=").append(signingStrategy.sign(createMaterial()));
       } catch (GeneralSecurityException e) {
         throw new ServletException("Failure to create XSRF signature.");
       }
@@ -71,12 +103,27 @@ public class XsrfUtil {
     if (token == null || token.isEmpty()) {
       return false;
     }
-    try {
-      return xsrfSigner.verify(createMaterial(), token);
-    } catch (GeneralSecurityException e) {
-      LOG.warning("Unable to verify XSRF token.");
-      return false;
+    String material = createMaterial();
+    VerifiedToken verifiedToken = new VerifiedToken(material, token);
+    if (verifiedTokens != null && verifiedTokens.getIfPresent(verifiedToken) != null) {
+      return true;
+    }
+    for (XsrfTokenStrategy strategy : verifyingStrategies) {
+      if (strategy.accepts(token)) {
+        boolean verified;
+        try {
+          verified = strategy.verify(material, token);
+        } catch (GeneralSecurityException e) {
+          LOG.warning("Unable to verify XSRF token.");
+          return false;
+        }
+        if (verified && verifiedTokens != null) {
+          verifiedTokens.put(verifiedToken, true);
+        }
+        return verified;
+      }
     }
+    return false;
   }
 
   private String createMaterial() throws ServletException {
@@ -86,4 +133,31 @@ public class XsrfUtil {
       throw new ServletException("Failed to authenticate user", e);
     }
   }
+
+  private static class VerifiedToken {
+    private final String material;
+    private final String token;
+
+    VerifiedToken(String material, String token) {
+      this.material = material;
+      this.token = token;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof VerifiedToken)) {
+        return false;
+      }
+      VerifiedToken that = (VerifiedToken) o;
+      return material.equals(that.material) && token.equals(that.token);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * material.hashCode() + token.hashCode();
+    }
+  }
 }
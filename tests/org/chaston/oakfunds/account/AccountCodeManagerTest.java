@@ -21,10 +21,12 @@ import com.google.inject.Inject;
 import com.google.inject.Injector;
 import org.chaston.oakfunds.bootstrap.BootstrapModule;
 import org.chaston.oakfunds.jdbc.DatabaseTearDown;
+import org.chaston.oakfunds.jdbc.PooledDataSource;
 import org.chaston.oakfunds.security.AuthenticationScope;
 import org.chaston.oakfunds.security.TestUserAuthenticatorModule;
 import org.chaston.oakfunds.security.UserAuthenticationManager;
 import org.chaston.oakfunds.security.UserSecurityModule;
+import org.chaston.oakfunds.storage.ReadOnlyUnitOfWork;
 import org.chaston.oakfunds.storage.StorageException;
 import org.chaston.oakfunds.storage.Store;
 import org.chaston.oakfunds.storage.TestStorageModule;
@@ -36,6 +38,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import javax.sql.DataSource;
 import java.sql.SQLException;
 
 import static org.junit.Assert.assertEquals;
@@ -54,6 +57,8 @@ public class AccountCodeManagerTest {
   @Inject
   private Store store;
   @Inject
+  private DataSource dataSource;
+  @Inject
   private SchemaDeploymentTask schemaDeploymentTask;
   @Inject
   private DatabaseTearDown databaseTearDown;
@@ -107,4 +112,62 @@ public class AccountCodeManagerTest {
     assertEquals(50000, Iterables.get(accountCodes, 0).getId());
     assertEquals(80000, Iterables.get(accountCodes, 1).getId());
   }
+
+  @Test
+  public void getAccountCodeIsCached() throws StorageException {
+    Transaction transaction = store.startTransaction();
+    accountCodeManager.createAccountCode(80000, "Operating");
+    transaction.commit();
+
+    long hitCount = store.getRecordCacheStats().hitCount();
+    assertEquals("Operating", accountCodeManager.getAccountCode(80000).getTitle());
+    assertEquals("Operating", accountCodeManager.getAccountCode(80000).getTitle());
+    assertEquals(hitCount + 1, store.getRecordCacheStats().hitCount());
+  }
+
+  @Test
+  public void updatedAccountCodeIsNotStale() throws StorageException {
+    Transaction transaction = store.startTransaction();
+    accountCodeManager.createAccountCode(80000, "Operating");
+    transaction.commit();
+    // Populate the cache.
+    accountCodeManager.getAccountCode(80000);
+
+    // A rolled back update leaves the cached value intact.
+    transaction = store.startTransaction();
+    accountCodeManager.updateAccountCode(80000, "Rolled back");
+    assertEquals("Rolled back", accountCodeManager.getAccountCode(80000).getTitle());
+    transaction.rollback();
+    assertEquals("Operating", accountCodeManager.getAccountCode(80000).getTitle());
+
+    // A committed update replaces it.
+    transaction = store.startTransaction();
+    accountCodeManager.updateAccountCode(80000, "Operating Account");
+    transaction.commit();
+    assertEquals("Operating Account", accountCodeManager.getAccountCode(80000).getTitle());
+  }
+
+  @Test
+  public void readsShareConnectionInUnitOfWork() throws StorageException {
+    Transaction transaction = store.startTransaction();
+    accountCodeManager.createAccountCode(80000, "Operating");
+    accountCodeManager.createAccountCode(50000, "Electricity");
+    transaction.commit();
+
+    PooledDataSource pooledDataSource = (PooledDataSource) dataSource;
+    long connectionsRequested = pooledDataSource.getMetrics().getConnectionsRequested();
+    try (ReadOnlyUnitOfWork unitOfWork = store.startReadOnlyUnitOfWork()) {
+      assertEquals(2, Iterables.size(accountCodeManager.getAccountCodes()));
+      assertEquals(2, Iterables.size(accountCodeManager.getAccountCodes()));
+
+      // Writes still happen in a transaction of their own.
+      transaction = store.startTransaction();
+      accountCodeManager.createAccountCode(60000, "Water");
+      transaction.commit();
+
+      assertEquals(3, Iterables.size(accountCodeManager.getAccountCodes()));
+    }
+    assertEquals(connectionsRequested + 2,
+        pooledDataSource.getMetrics().getConnectionsRequested());
+  }
 }
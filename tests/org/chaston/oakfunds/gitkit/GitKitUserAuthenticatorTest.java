@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.gitkit;
+
+import com.google.identitytoolkit.GitkitUser;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Provider;
+import org.chaston.oakfunds.bootstrap.BootstrapModule;
+import org.chaston.oakfunds.jdbc.DatabaseTearDown;
+import org.chaston.oakfunds.security.AuthenticationScope;
+import org.chaston.oakfunds.security.SystemAuthenticationManager;
+import org.chaston.oakfunds.security.TestUserAuthenticatorModule;
+import org.chaston.oakfunds.security.User;
+import org.chaston.oakfunds.security.UserManager;
+import org.chaston.oakfunds.security.UserSecurityModule;
+import org.chaston.oakfunds.storage.Store;
+import org.chaston.oakfunds.storage.TestStorageModule;
+import org.chaston.oakfunds.storage.mgmt.SchemaDeploymentTask;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.sql.SQLException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * TODO(mchaston): write JavaDocs
+ */
+@RunWith(JUnit4.class)
+public class GitKitUserAuthenticatorTest {
+
+  @Inject
+  private Store store;
+  @Inject
+  private SystemAuthenticationManager systemAuthenticationManager;
+  @Inject
+  private UserManager userManager;
+  @Inject
+  private SchemaDeploymentTask schemaDeploymentTask;
+  @Inject
+  private DatabaseTearDown databaseTearDown;
+
+  private AuthenticationState authenticationState;
+  private StubTokenValidator tokenValidator;
+  private GitKitUserAuthenticator userAuthenticator;
+
+  @Before
+  public void setUp() throws Exception {
+    Injector injector = Guice.createInjector(
+        new BootstrapModule(),
+        new UserSecurityModule(),
+        new TestStorageModule(),
+        new TestUserAuthenticatorModule());
+    injector.injectMembers(this);
+
+    tokenValidator = new StubTokenValidator();
+    userAuthenticator = new GitKitUserAuthenticator(store, systemAuthenticationManager,
+        userManager,
+        new Provider<AuthenticationState>() {
+          @Override
+          public AuthenticationState get() {
+            return authenticationState;
+          }
+        },
+        tokenValidator, 60);
+  }
+
+  @After
+  public void teardown() throws SQLException {
+    databaseTearDown.teardown();
+  }
+
+  @Test
+  public void authenticateValidToken() throws Exception {
+    authenticationState = new AuthenticationState();
+    assertTrue(userAuthenticator.authenticateToken(authenticationState, "valid"));
+    assertTrue(userAuthenticator.isUserLoggedIn());
+    assertEquals("gitkit:user", userAuthenticator.getAuthenticatedUser().getIdentifier());
+
+    try (AuthenticationScope authenticationScope =
+             systemAuthenticationManager.authenticateSystem()) {
+      User user = userManager.getUser("gitkit:user");
+      assertNotNull(user);
+      assertEquals("user@example.com", user.getEmail());
+    }
+  }
+
+  @Test
+  public void authenticateInvalidToken() throws Exception {
+    authenticationState = new AuthenticationState();
+    assertFalse(userAuthenticator.authenticateToken(authenticationState, "invalid"));
+    assertFalse(userAuthenticator.isUserLoggedIn());
+  }
+
+  @Test
+  public void validatedTokensAreCached() throws Exception {
+    authenticationState = new AuthenticationState();
+    assertTrue(userAuthenticator.authenticateToken(authenticationState, "valid"));
+
+    // A new session with the same token is authenticated without validating it again.
+    authenticationState = new AuthenticationState();
+    assertTrue(userAuthenticator.authenticateToken(authenticationState, "valid"));
+    assertEquals("gitkit:user", userAuthenticator.getAuthenticatedUser().getIdentifier());
+    assertEquals(1, tokenValidator.validations);
+
+    // Invalid tokens are validated every time.
+    authenticationState = new AuthenticationState();
+    assertFalse(userAuthenticator.authenticateToken(authenticationState, "invalid"));
+    assertFalse(userAuthenticator.authenticateToken(authenticationState, "invalid"));
+    assertEquals(3, tokenValidator.validations);
+  }
+
+  private static class StubTokenValidator implements GitkitTokenValidator {
+    private int validations;
+
+    @Override
+    public GitkitUser validateToken(String token) {
+      validations++;
+      if (!token.equals("valid")) {
+        return null;
+      }
+      return new GitkitUser()
+          .setLocalId("gitkit:user")
+          .setEmail("user@example.com")
+          .setName("Gitkit User");
+    }
+  }
+}
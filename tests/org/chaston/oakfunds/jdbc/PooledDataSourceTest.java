@@ -0,0 +1,94 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.jdbc;
+
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * TODO(mchaston): write JavaDocs
+ */
+@RunWith(JUnit4.class)
+public class PooledDataSourceTest {
+
+  @Inject
+  private DataSource dataSource;
+  @Inject
+  private DatabaseTearDown databaseTearDown;
+
+  @Before
+  public void setUp() {
+    Guice.createInjector(new LocalDataSourceModule()).injectMembers(this);
+  }
+
+  @After
+  public void teardown() throws SQLException {
+    databaseTearDown.teardown();
+  }
+
+  @Test
+  public void connectionsAreReused() throws SQLException {
+    assertTrue(dataSource instanceof PooledDataSource);
+    PooledDataSource pooledDataSource = (PooledDataSource) dataSource;
+
+    Connection connection = pooledDataSource.getConnection();
+    ConnectionPoolMetrics metrics = pooledDataSource.getMetrics();
+    assertEquals(1, metrics.getNumActive());
+    assertEquals(1, metrics.getConnectionsRequested());
+    connection.close();
+
+    metrics = pooledDataSource.getMetrics();
+    assertEquals(0, metrics.getNumActive());
+    assertEquals(1, metrics.getNumIdle());
+
+    // The idle connection is handed out again.
+    connection = pooledDataSource.getConnection();
+    metrics = pooledDataSource.getMetrics();
+    assertEquals(1, metrics.getNumActive());
+    assertEquals(0, metrics.getNumIdle());
+    connection.close();
+
+    metrics = pooledDataSource.getMetrics();
+    assertEquals(2, metrics.getConnectionsRequested());
+    assertTrue(metrics.getMaxWaitNanos() > 0);
+    assertTrue(metrics.getTotalWaitNanos() >= metrics.getMaxWaitNanos());
+  }
+
+  @Test
+  public void unpooledConnections() throws SQLException {
+    Injector injector = Guice.createInjector(LocalDataSourceModule.unpooled());
+    DataSource unpooledDataSource = injector.getInstance(DataSource.class);
+    assertFalse(unpooledDataSource instanceof PooledDataSource);
+    try (Connection connection = unpooledDataSource.getConnection()) {
+      assertTrue(connection.isValid(0));
+    }
+    injector.getInstance(DatabaseTearDown.class).teardown();
+  }
+}
@@ -15,7 +15,10 @@
  */
 package org.chaston.oakfunds.ledger;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
 import com.google.inject.Guice;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
@@ -28,6 +31,9 @@ import org.chaston.oakfunds.security.AuthenticationScope;
 import org.chaston.oakfunds.security.TestUserAuthenticatorModule;
 import org.chaston.oakfunds.security.UserAuthenticationManager;
 import org.chaston.oakfunds.security.UserSecurityModule;
+import org.chaston.oakfunds.storage.InstantRecordPosition;
+import org.chaston.oakfunds.storage.ReadOnlyUnitOfWork;
+import org.chaston.oakfunds.storage.RecordIterator;
 import org.chaston.oakfunds.storage.Report;
 import org.chaston.oakfunds.storage.ReportDateGranularity;
 import org.chaston.oakfunds.storage.ReportEntry;
@@ -39,8 +45,10 @@ import org.chaston.oakfunds.storage.Transaction;
 import org.chaston.oakfunds.storage.mgmt.SchemaDeploymentTask;
 import org.chaston.oakfunds.util.BigDecimalUtil;
 import org.chaston.oakfunds.util.DateUtil;
+import org.chaston.oakfunds.util.Pair;
 import org.joda.time.DateTimeFieldType;
 import org.joda.time.Instant;
+import org.joda.time.Interval;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -49,6 +57,7 @@ import org.junit.runners.JUnit4;
 
 import java.math.BigDecimal;
 import java.sql.SQLException;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -127,6 +136,62 @@ public class LedgerManagerTest {
         ledgerManager.getInterestRate(bankAccount, Instant.parse("2015-01-01")));
   }
 
+  @Test
+  public void setInterestRateSchedule() throws StorageException {
+    Transaction transaction = store.startTransaction();
+    AccountCode accountCode = accountCodeManager.createAccountCode(80000, "Operating");
+    BankAccount bankAccount = ledgerManager.createBankAccount(accountCode, "Bob's bank", BankAccountType.OPERATING);
+    BigDecimal interestRate = BigDecimalUtil.valueOf(0.03); // 3%
+    ledgerManager.setInterestRate(bankAccount, interestRate, DateUtil.BEGINNING_OF_TIME,
+        DateUtil.END_OF_TIME);
+    transaction.commit();
+
+    BigDecimal interestRate2 = BigDecimalUtil.valueOf(0.04); // 4%
+    BigDecimal interestRate3 = BigDecimalUtil.valueOf(0.05); // 5%
+    BigDecimal interestRate4 = BigDecimalUtil.valueOf(0.06); // 6%
+    transaction = store.startTransaction();
+    ledgerManager.setInterestRates(bankAccount, ImmutableList.of(
+        Pair.of(new Interval(Instant.parse("2014-01-01"), Instant.parse("2016-01-01")),
+            interestRate2),
+        // Splits the previous one.
+        Pair.of(new Interval(Instant.parse("2015-01-01"), Instant.parse("2015-07-01")),
+            interestRate3),
+        Pair.of(new Interval(Instant.parse("2017-01-01"), Instant.parse("2018-01-01")),
+            interestRate4)));
+    transaction.commit();
+
+    assertEquals(interestRate,
+        ledgerManager.getInterestRate(bankAccount, Instant.parse("2013-01-01")));
+    assertEquals(interestRate2,
+        ledgerManager.getInterestRate(bankAccount, Instant.parse("2014-01-01")));
+    assertEquals(interestRate3,
+        ledgerManager.getInterestRate(bankAccount, Instant.parse("2015-03-01")));
+    assertEquals(interestRate2,
+        ledgerManager.getInterestRate(bankAccount, Instant.parse("2015-07-01")));
+    assertEquals(interestRate,
+        ledgerManager.getInterestRate(bankAccount, Instant.parse("2016-06-01")));
+    assertEquals(interestRate4,
+        ledgerManager.getInterestRate(bankAccount, Instant.parse("2017-06-01")));
+    assertEquals(interestRate,
+        ledgerManager.getInterestRate(bankAccount, Instant.parse("2019-01-01")));
+
+    // Replacing the whole schedule removes the records within it.
+    transaction = store.startTransaction();
+    ledgerManager.setInterestRates(bankAccount, ImmutableList.of(
+        Pair.of(new Interval(Instant.parse("2010-01-01"), Instant.parse("2020-01-01")),
+            interestRate2)));
+    transaction.commit();
+
+    assertEquals(interestRate,
+        ledgerManager.getInterestRate(bankAccount, Instant.parse("2009-01-01")));
+    assertEquals(interestRate2,
+        ledgerManager.getInterestRate(bankAccount, Instant.parse("2015-03-01")));
+    assertEquals(interestRate2,
+        ledgerManager.getInterestRate(bankAccount, Instant.parse("2017-06-01")));
+    assertEquals(interestRate,
+        ledgerManager.getInterestRate(bankAccount, Instant.parse("2020-01-01")));
+  }
+
   @Test
   public void getAccounts() throws StorageException {
     Transaction transaction = store.startTransaction();
@@ -269,6 +334,100 @@ public class LedgerManagerTest {
         ledgerManager.getBalance(bankAccount, Instant.parse("2014-09-29")));
   }
 
+  @Test
+  public void getBalanceAcrossCheckpoints() throws StorageException {
+    Transaction transaction = store.startTransaction();
+    AccountCode operatingAccountCode = accountCodeManager.createAccountCode(80000, "Operating");
+    BankAccount bankAccount = ledgerManager.createBankAccount(operatingAccountCode, "Bob's bank", BankAccountType.OPERATING);
+    ledgerManager.recordTransaction(bankAccount, Instant.parse("2014-01-15"),
+        BigDecimalUtil.valueOf(1000));
+    ledgerManager.recordTransaction(bankAccount, Instant.parse("2014-03-15"),
+        BigDecimalUtil.valueOf(2000));
+    transaction.commit();
+
+    // Record a transaction before the existing checkpoints.
+    transaction = store.startTransaction();
+    ledgerManager.recordTransaction(bankAccount, Instant.parse("2014-02-10"),
+        BigDecimalUtil.valueOf(500));
+    transaction.commit();
+
+    assertBalances(bankAccount);
+
+    // Rebuilding the checkpoints must not change the balances.
+    transaction = store.startTransaction();
+    ledgerManager.rebuildBalanceCheckpoints(bankAccount);
+    transaction.commit();
+
+    assertBalances(bankAccount);
+  }
+
+  private void assertBalances(BankAccount bankAccount) throws StorageException {
+    assertEquals(BigDecimal.ZERO,
+        ledgerManager.getBalance(bankAccount, Instant.parse("2014-01-14")));
+    assertEquals(BigDecimalUtil.valueOf(1000),
+        ledgerManager.getBalance(bankAccount, Instant.parse("2014-02-01")));
+    assertEquals(BigDecimalUtil.valueOf(1500),
+        ledgerManager.getBalance(bankAccount, Instant.parse("2014-02-10")));
+    assertEquals(BigDecimalUtil.valueOf(1500),
+        ledgerManager.getBalance(bankAccount, Instant.parse("2014-03-14")));
+    assertEquals(BigDecimalUtil.valueOf(3500),
+        ledgerManager.getBalance(bankAccount, Instant.parse("2014-03-15")));
+    assertEquals(BigDecimalUtil.valueOf(3500),
+        ledgerManager.getBalance(bankAccount, Instant.parse("2015-01-01")));
+  }
+
+  @Test
+  public void getAccountTransactionsInPages() throws StorageException {
+    ReportingAccounts accounts = initReportingDataset();
+
+    List<AccountTransaction> firstPage;
+    try (RecordIterator<AccountTransaction> transactions =
+             ledgerManager.getAccountTransactions(accounts.bankAccount, null, 4)) {
+      firstPage = ImmutableList.copyOf(transactions);
+    }
+    assertEquals(4, firstPage.size());
+    assertEquals(Instant.parse("2013-12-31"), firstPage.get(0).getInstant());
+    assertEquals(Instant.parse("2014-03-01"), firstPage.get(3).getInstant());
+
+    List<AccountTransaction> secondPage;
+    try (RecordIterator<AccountTransaction> transactions =
+             ledgerManager.getAccountTransactions(accounts.bankAccount,
+                 InstantRecordPosition.of(Iterables.getLast(firstPage)), 4)) {
+      secondPage = ImmutableList.copyOf(transactions);
+    }
+    assertEquals(2, secondPage.size());
+    assertEquals(Instant.parse("2014-03-15"), secondPage.get(0).getInstant());
+    assertEquals(Instant.parse("2014-04-15"), secondPage.get(1).getInstant());
+
+    // Without a limit, everything is streamed.
+    try (RecordIterator<AccountTransaction> transactions =
+             ledgerManager.getAccountTransactions(accounts.bankAccount, null, 0)) {
+      assertEquals(Iterables.size(ledgerManager.getAccountTransactions(accounts.bankAccount)),
+          Iterators.size(transactions));
+    }
+  }
+
+  @Test
+  public void getAccountTransactionsAfterUnitOfWork() throws StorageException {
+    ReportingAccounts accounts = initReportingDataset();
+    int transactionCount =
+        Iterables.size(ledgerManager.getAccountTransactions(accounts.bankAccount));
+
+    // The servlets read the stream after the unit of work of the request has been closed.
+    RecordIterator<AccountTransaction> transactions;
+    ReadOnlyUnitOfWork unitOfWork = store.startReadOnlyUnitOfWork();
+    try {
+      transactions = ledgerManager.getAccountTransactions(accounts.bankAccount, null, 0);
+    } finally {
+      unitOfWork.close();
+    }
+    try {
+      assertEquals(transactionCount, Iterators.size(transactions));
+    } finally {
+      transactions.close();
+    }
+  }
+
   @Test
   public void runReportForOneAccount() throws StorageException {
     ReportingAccounts accounts = initReportingDataset();
@@ -310,6 +469,43 @@ public class LedgerManagerTest {
     }
   }
 
+  @Test
+  public void runReportForManyAccounts() throws StorageException {
+    ReportingAccounts accounts = initReportingDataset();
+    Transaction transaction = store.startTransaction();
+    AccountCode accountCode = accountCodeManager.createAccountCode(50000, "Electricity");
+    ExpenseAccount emptyAccount =
+        ledgerManager.createExpenseAccount(accountCode, "Electricity", null);
+    transaction.commit();
+
+    ImmutableMap<Integer, Report> reports = ledgerManager.runReports(
+        ImmutableList.<Account<?>>of(
+            accounts.bankAccount, accounts.interestRevenueAccount, emptyAccount),
+        YEAR_2014, YEAR_2015, ReportDateGranularity.MONTH);
+
+    assertEquals(3, reports.size());
+    assertTrue(Iterables.isEmpty(reports.get(emptyAccount.getId()).getRows()));
+    for (Account<?> account
+        : ImmutableList.<Account<?>>of(accounts.bankAccount, accounts.interestRevenueAccount)) {
+      ReportRow expectedRow = Iterables.getOnlyElement(ledgerManager.runReport(account,
+          YEAR_2014, YEAR_2015, ReportDateGranularity.MONTH).getRows());
+      ReportRow reportRow = Iterables.getOnlyElement(reports.get(account.getId()).getRows());
+      assertEquals(expectedRow.getDimensions(), reportRow.getDimensions());
+      assertEquals(13, Iterables.size(reportRow.getEntries()));
+      for (int i = 0; i < 13; i++) {
+        ReportEntry expectedEntry = Iterables.get(expectedRow.getEntries(), i);
+        ReportEntry entry = Iterables.get(reportRow.getEntries(), i);
+        assertEquals(expectedEntry.getInstant(), entry.getInstant());
+        assertEquals(expectedEntry.getMeasure(AccountTransaction.ATTRIBUTE_AMOUNT),
+            entry.getMeasure(AccountTransaction.ATTRIBUTE_AMOUNT));
+      }
+    }
+    assertEquals(BigDecimalUtil.valueOf(5000),
+        Iterables.get(Iterables.getOnlyElement(
+            reports.get(accounts.interestRevenueAccount.getId()).getRows()).getEntries(), 12)
+            .getMeasure(AccountTransaction.ATTRIBUTE_AMOUNT));
+  }
+
   private ReportingAccounts initReportingDataset() throws StorageException {
     ReportingAccounts reportingAccounts = new ReportingAccounts();
 
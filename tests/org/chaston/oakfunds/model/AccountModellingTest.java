@@ -222,6 +222,38 @@ public class AccountModellingTest {
     assertEquals(BigDecimalUtil.valueOf(96000), entry.getMeasure(ModelManager.MEASURE_AMOUNT));
   }
 
+  @Test
+  public void runReportWithinTransaction() throws Exception {
+    final Model baseModel = modelManager.getBaseModel();
+    runInTransaction(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        ledgerManager.recordTransaction(expenseAccount1, DateUtil.endOfMonth(2014, 1),
+            BigDecimalUtil.valueOf(1000));
+        modelManager.setMonthlyRecurringEventDetails(baseModel, expenseAccount1,
+            Instant.parse("2014-02-01"), Instant.parse("2014-05-01"),
+            BigDecimal.valueOf(1000));
+
+        // The record sources cannot be queried on other connections, as they would not see
+        // the uncommitted transactions.
+        Report report = modelManager.runTransactionReport(baseModel, YEAR_2014, YEAR_2015,
+            ReportDateGranularity.MONTH);
+        ReportRow row = report.getRow(
+            ImmutableMap.<String, Object>of(
+                ModelManager.DIMENSION_ACCOUNT_ID, expenseAccount1.getId()));
+
+        ReportEntry entry = Iterables.get(row.getEntries(), 1);
+        assertEquals(DateUtil.endOfMonth(2014, 1), entry.getInstant());
+        assertEquals(BigDecimalUtil.valueOf(1000), entry.getMeasure(ModelManager.MEASURE_AMOUNT));
+
+        entry = Iterables.get(row.getEntries(), 4);
+        assertEquals(DateUtil.endOfMonth(2014, 4), entry.getInstant());
+        assertEquals(BigDecimalUtil.valueOf(4000), entry.getMeasure(ModelManager.MEASURE_AMOUNT));
+        return null;
+      }
+    });
+  }
+
   @Test
   public void runReportWithCompensatedModelTransactions() {
 
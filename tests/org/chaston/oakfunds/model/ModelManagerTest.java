@@ -15,6 +15,7 @@
  */
 package org.chaston.oakfunds.model;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.inject.Guice;
@@ -25,6 +26,7 @@ import org.chaston.oakfunds.account.AccountCodeManager;
 import org.chaston.oakfunds.account.AccountCodeModule;
 import org.chaston.oakfunds.bootstrap.BootstrapModule;
 import org.chaston.oakfunds.jdbc.DatabaseTearDown;
+import org.chaston.oakfunds.ledger.Account;
 import org.chaston.oakfunds.ledger.ExpenseAccount;
 import org.chaston.oakfunds.ledger.LedgerManager;
 import org.chaston.oakfunds.ledger.LedgerModule;
@@ -54,14 +56,17 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.util.Iterator;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * TODO(mchaston): write JavaDocs
@@ -375,6 +380,45 @@ public class ModelManagerTest {
     }
   }
 
+  @Test
+  public void updateAdHocEventAmountKeepsDistributions() throws StorageException {
+    // Create the initial event.
+    Transaction transaction = store.startTransaction();
+    AccountCode accountCode = accountCodeManager.createAccountCode(7000, "Maintenance");
+    ExpenseAccount expenseAccount =
+        ledgerManager.createExpenseAccount(accountCode, "House Painting", null);
+    ModelAccountTransaction modelAccountTransaction =
+        modelManager.createAdHocEvent(modelManager.getBaseModel(), expenseAccount,
+            Instant.parse("2017-01-01"),
+            5, DistributionTimeUnit.YEARS, BigDecimalUtil.valueOf(60000));
+    transaction.commit();
+
+    List<ModelDistributionTransaction> oldModelDistributionTransactions = ImmutableList.copyOf(
+        modelManager.getModelDistributionTransactions(modelManager.getBaseModel(), expenseAccount,
+            DateUtil.BEGINNING_OF_TIME, DateUtil.END_OF_TIME));
+
+    // Only the amount changes, so the schedule stays the same.
+    transaction = store.startTransaction();
+    modelManager.updateAdHocEvent(modelAccountTransaction,
+        Instant.parse("2017-01-01"),
+        5, DistributionTimeUnit.YEARS, BigDecimalUtil.valueOf(120000));
+    transaction.commit();
+
+    List<ModelDistributionTransaction> newModelDistributionTransactions = ImmutableList.copyOf(
+        modelManager.getModelDistributionTransactions(modelManager.getBaseModel(), expenseAccount,
+            DateUtil.BEGINNING_OF_TIME, DateUtil.END_OF_TIME));
+
+    assertEquals(oldModelDistributionTransactions.size(), newModelDistributionTransactions.size());
+    for (int i = 0; i < oldModelDistributionTransactions.size(); i++) {
+      ModelDistributionTransaction oldTransaction = oldModelDistributionTransactions.get(i);
+      ModelDistributionTransaction newTransaction = newModelDistributionTransactions.get(i);
+      assertEquals(oldTransaction.getId(), newTransaction.getId());
+      assertEquals(oldTransaction.getInstant(), newTransaction.getInstant());
+      assertEquals(oldTransaction.getAmount().multiply(BigDecimal.valueOf(2)),
+          newTransaction.getAmount());
+    }
+  }
+
   @Test
   public void deleteAdHocEvent() throws StorageException {
     // Create the initial event.
@@ -402,6 +446,149 @@ public class ModelManagerTest {
     assertTrue(Iterables.isEmpty(newModelDistributionTransactions));
   }
 
+  @Test
+  public void overrideAdHocEventInModel() throws StorageException {
+    Transaction transaction = store.startTransaction();
+    Model model = modelManager.createNewModel("Alternative Model");
+    AccountCode accountCode = accountCodeManager.createAccountCode(7000, "Maintenance");
+    ExpenseAccount expenseAccount =
+        ledgerManager.createExpenseAccount(accountCode, "House Painting", null);
+    ModelAccountTransaction baseModelAccountTransaction =
+        modelManager.createAdHocEvent(modelManager.getBaseModel(), expenseAccount,
+            Instant.parse("2017-01-01"),
+            5, DistributionTimeUnit.YEARS, BigDecimalUtil.valueOf(60000));
+    transaction.commit();
+
+    // Double the cost in the other model only.
+    transaction = store.startTransaction();
+    modelManager.overrideAdHocEvent(model, baseModelAccountTransaction,
+        Instant.parse("2017-01-01"),
+        5, DistributionTimeUnit.YEARS, BigDecimalUtil.valueOf(120000));
+    transaction.commit();
+
+    assertDistributions(modelManager.getBaseModel(), expenseAccount, 23000, 1000);
+    assertDistributions(model, expenseAccount, 46000, 2000);
+
+    // Overriding again replaces the previous override.
+    transaction = store.startTransaction();
+    modelManager.overrideAdHocEvent(model, baseModelAccountTransaction,
+        Instant.parse("2017-01-01"),
+        5, DistributionTimeUnit.YEARS, BigDecimalUtil.valueOf(30000));
+    transaction.commit();
+
+    assertDistributions(modelManager.getBaseModel(), expenseAccount, 23000, 1000);
+    assertDistributions(model, expenseAccount, 11500, 500);
+    // The model only stores the cancellation of the base event and its replacement.
+    assertEquals(2, Iterables.size(modelManager.getModelTransactions(model, expenseAccount,
+        DateUtil.BEGINNING_OF_TIME, DateUtil.END_OF_TIME)));
+
+    transaction = store.startTransaction();
+    modelManager.excludeAdHocEvent(model, baseModelAccountTransaction);
+    transaction.commit();
+
+    assertDistributions(modelManager.getBaseModel(), expenseAccount, 23000, 1000);
+    assertDistributions(model, expenseAccount, 0, 0);
+
+    transaction = store.startTransaction();
+    modelManager.revertAdHocEvent(model, baseModelAccountTransaction);
+    transaction.commit();
+
+    assertDistributions(model, expenseAccount, 23000, 1000);
+    assertTrue(Iterables.isEmpty(modelManager.getModelTransactions(model, expenseAccount,
+        DateUtil.BEGINNING_OF_TIME, DateUtil.END_OF_TIME)));
+  }
+
+  @Test
+  public void changeOverriddenBaseAdHocEvent() throws StorageException {
+    Transaction transaction = store.startTransaction();
+    Model model = modelManager.createNewModel("Alternative Model");
+    AccountCode accountCode = accountCodeManager.createAccountCode(7000, "Maintenance");
+    ExpenseAccount expenseAccount =
+        ledgerManager.createExpenseAccount(accountCode, "House Painting", null);
+    ModelAccountTransaction baseModelAccountTransaction =
+        modelManager.createAdHocEvent(modelManager.getBaseModel(), expenseAccount,
+            Instant.parse("2017-01-01"),
+            5, DistributionTimeUnit.YEARS, BigDecimalUtil.valueOf(60000));
+    modelManager.overrideAdHocEvent(model, baseModelAccountTransaction,
+        Instant.parse("2017-01-01"),
+        5, DistributionTimeUnit.YEARS, BigDecimalUtil.valueOf(30000));
+    transaction.commit();
+
+    // The model keeps its replacement when the base event changes.
+    transaction = store.startTransaction();
+    baseModelAccountTransaction = modelManager.updateAdHocEvent(baseModelAccountTransaction,
+        Instant.parse("2017-01-01"),
+        5, DistributionTimeUnit.YEARS, BigDecimalUtil.valueOf(120000));
+    transaction.commit();
+
+    assertDistributions(modelManager.getBaseModel(), expenseAccount, 46000, 2000);
+    assertDistributions(model, expenseAccount, 11500, 500);
+    assertEquals(2, Iterables.size(modelManager.getModelTransactions(model, expenseAccount,
+        DateUtil.BEGINNING_OF_TIME, DateUtil.END_OF_TIME)));
+
+    // Nothing is left to override once the base event is deleted.
+    transaction = store.startTransaction();
+    modelManager.deleteAdHocEvent(baseModelAccountTransaction);
+    transaction.commit();
+
+    assertTrue(Iterables.isEmpty(modelManager.getModelTransactions(model, expenseAccount,
+        DateUtil.BEGINNING_OF_TIME, DateUtil.END_OF_TIME)));
+    assertTrue(Iterables.isEmpty(modelManager.getModelDistributionTransactions(model,
+        expenseAccount, DateUtil.BEGINNING_OF_TIME, DateUtil.END_OF_TIME)));
+  }
+
+  @Test
+  public void cancellationCannotBeChangedDirectly() throws StorageException {
+    Transaction transaction = store.startTransaction();
+    Model model = modelManager.createNewModel("Alternative Model");
+    AccountCode accountCode = accountCodeManager.createAccountCode(7000, "Maintenance");
+    ExpenseAccount expenseAccount =
+        ledgerManager.createExpenseAccount(accountCode, "House Painting", null);
+    ModelAccountTransaction baseModelAccountTransaction =
+        modelManager.createAdHocEvent(modelManager.getBaseModel(), expenseAccount,
+            Instant.parse("2017-01-01"),
+            5, DistributionTimeUnit.YEARS, BigDecimalUtil.valueOf(60000));
+    modelManager.excludeAdHocEvent(model, baseModelAccountTransaction);
+    transaction.commit();
+
+    ModelAccountTransaction cancellation = Iterables.getOnlyElement(
+        modelManager.getModelTransactions(model, expenseAccount,
+            DateUtil.BEGINNING_OF_TIME, DateUtil.END_OF_TIME));
+    assertEquals(baseModelAccountTransaction.getId(),
+        (int) cancellation.getOverriddenTransactionId());
+
+    transaction = store.startTransaction();
+    try {
+      modelManager.updateAdHocEvent(cancellation, Instant.parse("2017-01-01"),
+          5, DistributionTimeUnit.YEARS, BigDecimalUtil.valueOf(-30000));
+      fail("The cancellation was updated directly.");
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+    try {
+      modelManager.deleteAdHocEvent(cancellation);
+      fail("The cancellation was deleted directly.");
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+    transaction.rollback();
+
+    assertDistributions(model, expenseAccount, 0, 0);
+  }
+
+  private void assertDistributions(Model model, Account account, long initialAmount,
+      long monthlyAmount) throws StorageException {
+    Report report = modelManager.runDistributionReport(model,
+        YEAR_2014, YEAR_2015, ReportDateGranularity.MONTH);
+    ReportRow reportRow = report.getRow(
+        ImmutableMap.of(ModelManager.DIMENSION_ACCOUNT_ID, (Object) account.getId()));
+    for (int i = 0; i <= 12; i++) {
+      ReportEntry entry = Iterables.get(reportRow.getEntries(), i);
+      assertEquals(BigDecimalUtil.valueOf(initialAmount + (i * monthlyAmount)),
+          entry.getMeasure(ModelDistributionTransaction.ATTRIBUTE_AMOUNT));
+    }
+  }
+
   @Test
   public void runDistributionReport() throws StorageException {
     ReportingAccounts accounts = initReportingDataset();
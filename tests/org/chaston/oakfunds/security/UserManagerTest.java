@@ -15,6 +15,7 @@
  */
 package org.chaston.oakfunds.security;
 
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.Iterables;
 import com.google.inject.Guice;
 import com.google.inject.Inject;
@@ -35,6 +36,7 @@ import org.junit.runners.JUnit4;
 import java.sql.SQLException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -52,6 +54,8 @@ public class UserManagerTest {
   @Inject
   private UserAuthenticationManager userAuthenticationManager;
   @Inject
+  private AuthorizationContext authorizationContext;
+  @Inject
   private SchemaDeploymentTask schemaDeploymentTask;
   @Inject
   private DatabaseTearDown databaseTearDown;
@@ -248,4 +252,30 @@ public class UserManagerTest {
     roleGrants = userManager.getRoleGrants(user);
     assertTrue(Iterables.isEmpty(roleGrants));
   }
+
+  @Test
+  public void authenticatedUserPermissionsAreCached() throws Exception {
+    CacheStats initialStats = userAuthenticationManager.getPermissionCacheStats();
+    authenticationScope.close();
+    authenticationScope = userAuthenticationManager.authenticateUser();
+
+    CacheStats stats = userAuthenticationManager.getPermissionCacheStats();
+    assertEquals(initialStats.hitCount() + 1, stats.hitCount());
+    assertEquals(initialStats.loadCount(), stats.loadCount());
+    assertTrue(authorizationContext.getAllPermissions().contains("user.read"));
+  }
+
+  @Test
+  public void revokedRoleIsNotCached() throws Exception {
+    User user = userManager.getUser(TestUserAuthenticator.TEST_USER_IDENTIFIER);
+    RoleGrant roleGrant = Iterables.getOnlyElement(userManager.getRoleGrants(user));
+
+    Transaction transaction = store.startTransaction();
+    userManager.revokeRole(roleGrant);
+    transaction.commit();
+
+    authenticationScope.close();
+    authenticationScope = userAuthenticationManager.authenticateUser();
+    assertFalse(authorizationContext.getAllPermissions().contains("user.read"));
+  }
 }
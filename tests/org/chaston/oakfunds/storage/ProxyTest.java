@@ -17,16 +17,20 @@ package org.chaston.oakfunds.storage;
 
 import com.google.common.collect.ImmutableMap;
 import org.chaston.oakfunds.util.BigDecimalUtil;
+import org.chaston.oakfunds.util.JSONStreamWriter;
 import org.joda.time.Instant;
 import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.io.StringWriter;
 import java.math.BigDecimal;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 /**
  * TODO(mchaston): write JavaDocs
@@ -63,6 +67,47 @@ public class ProxyTest {
     assertEquals("second", jsonAttributes.get("identifiable"));
   }
 
+  @Test
+  public void recordWriteJSON() throws Exception {
+    ImmutableMap.Builder<String, Object> attributes = ImmutableMap.builder();
+    attributes.put("name", "a \"quoted\" name");
+    attributes.put("int", 4);
+    attributes.put("date", Instant.parse("2014-4-25T10:30:12"));
+    attributes.put("big_decimal", BigDecimalUtil.valueOf(12.34567));
+    attributes.put("identifiable", CustomEnum.SECOND);
+
+    TestSimpleRecord record =
+        RecordProxy.proxyRecord(TestSimpleRecord.TYPE, null, 1, attributes.build());
+
+    // The streamed JSON is the same as the JSON object.
+    StringWriter writer = new StringWriter();
+    record.writeJSON(new JSONStreamWriter(writer));
+    JSONParser jsonParser = new JSONParser();
+    assertEquals(jsonParser.parse(record.toJSONObject().toJSONString()),
+        jsonParser.parse(writer.toString()));
+  }
+
+  @Test
+  public void recordGetters() {
+    ImmutableMap.Builder<String, Object> attributes = ImmutableMap.builder();
+    attributes.put("name", "a name");
+    attributes.put("boolean", true);
+    attributes.put("int", 4);
+    attributes.put("identifiable", CustomEnum.THIRD);
+
+    TestSimpleRecord record =
+        RecordProxy.proxyRecord(TestSimpleRecord.TYPE, null, 7, attributes.build());
+
+    assertEquals(TestSimpleRecord.TYPE, record.getRecordType());
+    assertEquals(7, record.getId());
+    assertEquals("a name", record.getName());
+    assertNull(record.getString());
+    assertEquals(true, record.getBoolean());
+    assertEquals(4, record.getInt());
+    assertEquals(CustomEnum.THIRD, record.getCustomEnum());
+    assertEquals("simple_record:7", record.toString());
+  }
+
   private interface TestSimpleRecord extends Record<TestSimpleRecord> {
     final RecordType<TestSimpleRecord> TYPE =
         RecordType.builder("simple_record", TestSimpleRecord.class)
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.storage;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * TODO(mchaston): write JavaDocs
+ */
+@RunWith(JUnit4.class)
+public class StorageInstrumentationTest {
+
+  private StorageInstrumentation storageInstrumentation;
+
+  @Before
+  public void setUp() {
+    storageInstrumentation = new StorageInstrumentation(null);
+  }
+
+  @Test
+  public void recordRequest() {
+    StorageStatistics storageStatistics = storageInstrumentation.startRequest();
+    storageInstrumentation.recordConnection(TimeUnit.MILLISECONDS.toNanos(2));
+    recordStatement(storageStatistics, SqlTemplateCache.Operation.FIND_RECORDS, 3, 20, 0);
+    recordStatement(storageStatistics, SqlTemplateCache.Operation.FIND_RECORDS, 1, 5, 0);
+    recordStatement(storageStatistics, SqlTemplateCache.Operation.UPDATE_RECORD, 4, 0, 1);
+    storageInstrumentation.endRequest(storageStatistics);
+
+    // Statements outside of a request are only counted in the metrics.
+    recordStatement(null, SqlTemplateCache.Operation.GET_RECORD, 1, 1, 0);
+
+    assertEquals(3, storageStatistics.getStatementCount());
+    assertEquals(25, storageStatistics.getRowsRead());
+    assertEquals(1, storageStatistics.getRowsAffected());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(8), storageStatistics.getJdbcNanos());
+    assertEquals(1, storageStatistics.getConnectionCount());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(2), storageStatistics.getConnectionWaitNanos());
+    assertEquals("3 statements (update_record: 1, find_records: 2), 25 rows read, "
+        + "1 rows affected, 8.0 ms in JDBC, 1 connections (2.0 ms waiting)",
+        storageStatistics.getSummary());
+    assertFalse(storageInstrumentation.isSlow(storageStatistics));
+    assertFalse(storageInstrumentation.isChatty(storageStatistics));
+
+    StorageMetrics storageMetrics = storageInstrumentation.getStorageMetrics();
+    assertEquals(4, storageMetrics.getStatementCount());
+    assertEquals(26, storageMetrics.getRowsRead());
+    assertEquals(9, storageMetrics.getJdbcTimeMillis());
+    assertEquals(1, storageMetrics.getRequestCount());
+    assertEquals(Long.valueOf(2),
+        storageMetrics.getStatementCountsByOperation().get("find_records"));
+    assertEquals(Long.valueOf(1), storageMetrics.getRequestStatementHistogram().get("<=5"));
+    assertEquals(Long.valueOf(2), storageMetrics.getStatementLatencyHistogram().get("<=1000us"));
+  }
+
+  @Test
+  public void slowAndChattyRequests() {
+    StorageStatistics slowStatistics = storageInstrumentation.startRequest();
+    recordStatement(slowStatistics, SqlTemplateCache.Operation.BUILD_REPORT_PIECE, 1500, 100, 0);
+    storageInstrumentation.endRequest(slowStatistics);
+    assertTrue(storageInstrumentation.isSlow(slowStatistics));
+    assertFalse(storageInstrumentation.isChatty(slowStatistics));
+
+    StorageStatistics chattyStatistics = storageInstrumentation.startRequest();
+    for (int i = 0; i < 100; i++) {
+      recordStatement(chattyStatistics, SqlTemplateCache.Operation.UPDATE_INSTANT_RECORD, 1, 0, 1);
+    }
+    storageInstrumentation.endRequest(chattyStatistics);
+    assertFalse(storageInstrumentation.isSlow(chattyStatistics));
+    assertTrue(storageInstrumentation.isChatty(chattyStatistics));
+
+    StorageMetrics storageMetrics = storageInstrumentation.getStorageMetrics();
+    assertEquals(2, storageMetrics.getRequestCount());
+    assertEquals(1, storageMetrics.getSlowRequestCount());
+    assertEquals(1, storageMetrics.getChattyRequestCount());
+  }
+
+  @Test
+  public void inCurrentRequest() throws Exception {
+    StorageStatistics storageStatistics = storageInstrumentation.startRequest();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      executor.submit(storageInstrumentation.inCurrentRequest(new Callable<Void>() {
+        @Override
+        public Void call() {
+          storageInstrumentation.recordConnection(TimeUnit.MILLISECONDS.toNanos(1));
+          return null;
+        }
+      })).get();
+    } finally {
+      executor.shutdown();
+    }
+    storageInstrumentation.endRequest(storageStatistics);
+    assertEquals(1, storageStatistics.getConnectionCount());
+  }
+
+  private void recordStatement(@Nullable StorageStatistics storageStatistics,
+      SqlTemplateCache.Operation operation, long jdbcMillis, long rowsRead, long rowsAffected) {
+    storageInstrumentation.recordStatement(storageStatistics, operation,
+        TimeUnit.MILLISECONDS.toNanos(jdbcMillis), rowsRead, rowsAffected);
+  }
+}
@@ -15,10 +15,12 @@
  */
 package org.chaston.oakfunds.storage.mgmt;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import org.chaston.oakfunds.jdbc.ColumnDef;
 import org.chaston.oakfunds.jdbc.FunctionDef;
+import org.chaston.oakfunds.jdbc.IndexDef;
 import org.chaston.oakfunds.jdbc.TableDef;
 import org.chaston.oakfunds.storage.AttributeMethod;
 import org.chaston.oakfunds.storage.EnumIdentifiableSource;
@@ -122,6 +124,13 @@ public class SchemaBuilderTest {
     assertSame(SystemColumnDefs.CONTAINER_ID, columnDefs.get("sys_container_id"));
 
     assertContainsColumn(columnDefs, "usr_big_decimal", Types.BIGINT);
+
+    ImmutableMap<String, IndexDef> indexDefs = tableDef.getIndexDefs();
+    assertEquals(2, indexDefs.size());
+    assertEquals(ImmutableList.of("sys_container_id", "sys_instant"),
+        indexDefs.get("instant_record_container_instant_idx").getColumnNames());
+    assertEquals(ImmutableList.of("usr_big_decimal"),
+        indexDefs.get("instant_record_big_decimal_idx").getColumnNames());
   }
 
   @Test
@@ -146,6 +155,11 @@ public class SchemaBuilderTest {
     assertSame(SystemColumnDefs.CONTAINER_ID, columnDefs.get("sys_container_id"));
 
     assertContainsColumn(columnDefs, "usr_big_decimal", Types.BIGINT);
+
+    ImmutableMap<String, IndexDef> indexDefs = tableDef.getIndexDefs();
+    assertEquals(1, indexDefs.size());
+    assertEquals(ImmutableList.of("sys_container_id", "sys_start_time", "sys_end_time"),
+        indexDefs.get("interval_record_container_interval_idx").getColumnNames());
   }
 
   private void assertContainsColumn(ImmutableMap<String, ColumnDef> columnDefs,
@@ -272,6 +286,7 @@ public class SchemaBuilderTest {
     final RecordType<TestInstantRecord> TYPE =
         RecordType.builder("instant_record", TestInstantRecord.class)
             .containedBy(TestSimpleRecord.TYPE)
+            .withIndex("big_decimal")
             .build();
 
     @ParentIdMethod
@@ -29,10 +29,13 @@ import org.junit.runners.JUnit4;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * TODO(mchaston): write JavaDocs
@@ -41,6 +44,7 @@ import static org.junit.Assert.assertEquals;
 public class SchemaUpdaterTest {
 
   @Inject private SchemaUpdater schemaUpdater;
+  @Inject private SchemaValidator schemaValidator;
   @Inject private DataSource dataSource;
   private Connection connection;
 
@@ -84,4 +88,93 @@ public class SchemaUpdaterTest {
     Iterable<SchemaDiscrepancy> discrepancies = schemaUpdater.updateSchema();
     assertEquals(0, Iterables.size(discrepancies));
   }
+
+  @Test
+  public void testUpdateFromMissingIndex() throws SQLException {
+    assertEquals(0, Iterables.size(schemaUpdater.updateSchema()));
+    try (Statement stmt = connection.createStatement()) {
+      stmt.execute("DROP INDEX oakfunds.account_transaction_container_instant_idx;");
+    }
+
+    Iterable<MissingIndex> missingIndexes =
+        Iterables.filter(schemaValidator.validateSchema(), MissingIndex.class);
+    assertEquals(1, Iterables.size(missingIndexes));
+    assertEquals("account_transaction_container_instant_idx",
+        Iterables.getOnlyElement(missingIndexes).getIndexDef().getName());
+
+    Iterable<SchemaDiscrepancy> discrepancies = schemaUpdater.updateSchema();
+    assertEquals(0, Iterables.size(discrepancies));
+  }
+
+  @Test
+  public void testUpdateFromNamedTypeColumn() throws SQLException {
+    assertEquals(0, Iterables.size(schemaUpdater.updateSchema()));
+    try (Statement stmt = connection.createStatement()) {
+      // Put the table back to how it was before the types had IDs.
+      stmt.execute("ALTER TABLE oakfunds.account_code DROP COLUMN sys_type;");
+      stmt.execute("ALTER TABLE oakfunds.account_code ADD COLUMN sys_type VARCHAR(255);");
+      stmt.execute("INSERT INTO oakfunds.account_code (sys_id, sys_type, usr_title)"
+          + " VALUES (1000, 'account_code', 'Savings');");
+      stmt.execute("INSERT INTO oakfunds.account_code (sys_id, sys_type, usr_title)"
+          + " VALUES (2000, 'old_account_code', 'Checking');");
+    }
+
+    Iterable<NamedTypeColumn> namedTypeColumns =
+        Iterables.filter(schemaValidator.validateSchema(), NamedTypeColumn.class);
+    assertEquals(1, Iterables.size(namedTypeColumns));
+    assertEquals("oakfunds.account_code",
+        Iterables.getOnlyElement(namedTypeColumns).getTableName());
+
+    Iterable<SchemaDiscrepancy> discrepancies = schemaUpdater.updateSchema();
+    assertEquals(0, Iterables.size(discrepancies));
+
+    try (Statement stmt = connection.createStatement();
+         ResultSet rs = stmt.executeQuery("SELECT a.sys_id, c.sys_name"
+             + " FROM oakfunds.account_code a"
+             + " JOIN oakfunds.sys_record_type c ON a.sys_type = c.sys_id"
+             + " ORDER BY a.sys_id;")) {
+      assertTrue(rs.next());
+      assertEquals(1000, rs.getInt(1));
+      assertEquals("account_code", rs.getString(2));
+      assertTrue(rs.next());
+      assertEquals(2000, rs.getInt(1));
+      assertEquals("old_account_code", rs.getString(2));
+      assertFalse(rs.next());
+    }
+  }
+
+  @Test
+  public void testUpdateFromInterruptedTypeColumnMigration() throws SQLException {
+    assertEquals(0, Iterables.size(schemaUpdater.updateSchema()));
+    try (Statement stmt = connection.createStatement()) {
+      // Put the table back to how a migration leaves it when it fails after the names were
+      // dropped.
+      stmt.execute("ALTER TABLE oakfunds.account_code DROP COLUMN sys_type;");
+      stmt.execute("ALTER TABLE oakfunds.account_code ADD COLUMN sys_type_migrated SMALLINT;");
+      stmt.execute("INSERT INTO oakfunds.account_code (sys_id, sys_type_migrated, usr_title)"
+          + " SELECT 1000, sys_id, 'Savings' FROM oakfunds.sys_record_type"
+          + " WHERE sys_name = 'account_code';");
+    }
+
+    Iterable<SchemaDiscrepancy> discrepancies = schemaValidator.validateSchema();
+    assertEquals(0, Iterables.size(Iterables.filter(discrepancies, MissingColumn.class)));
+    assertEquals(0, Iterables.size(Iterables.filter(discrepancies, ExtraColumn.class)));
+    NamedTypeColumn namedTypeColumn =
+        Iterables.getOnlyElement(Iterables.filter(discrepancies, NamedTypeColumn.class));
+    assertEquals("oakfunds.account_code", namedTypeColumn.getTableName());
+    assertEquals(NamedTypeColumn.TypeColumnState.MISSING, namedTypeColumn.getTypeColumnState());
+    assertTrue(namedTypeColumn.hasMigratedColumn());
+
+    assertEquals(0, Iterables.size(schemaUpdater.updateSchema()));
+
+    try (Statement stmt = connection.createStatement();
+         ResultSet rs = stmt.executeQuery("SELECT a.sys_id, c.sys_name"
+             + " FROM oakfunds.account_code a"
+             + " JOIN oakfunds.sys_record_type c ON a.sys_type = c.sys_id;")) {
+      assertTrue(rs.next());
+      assertEquals(1000, rs.getInt(1));
+      assertEquals("account_code", rs.getString(2));
+      assertFalse(rs.next());
+    }
+  }
 }
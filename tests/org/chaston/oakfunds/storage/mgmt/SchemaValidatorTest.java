@@ -40,6 +40,7 @@ import static org.junit.Assert.assertEquals;
 public class SchemaValidatorTest {
 
   @Inject private SchemaValidator schemaValidator;
+  @Inject private SchemaBuilder schemaBuilder;
   @Inject private DataSource dataSource;
   private Connection connection;
 
@@ -64,7 +65,10 @@ public class SchemaValidatorTest {
   @Test
   public void testValidateEmptySchema() throws SQLException {
     Iterable<SchemaDiscrepancy> discrepancies = schemaValidator.validateSchema();
-    assertEquals(11, Iterables.size(Iterables.filter(discrepancies, MissingTable.class)));
+    // The tables of the record types and the record type catalog.
+    assertEquals(13, Iterables.size(Iterables.filter(discrepancies, MissingTable.class)));
     assertEquals(3, Iterables.size(Iterables.filter(discrepancies, MissingFunction.class)));
+    assertEquals(schemaBuilder.getRecordTypeNames().size(),
+        Iterables.size(Iterables.filter(discrepancies, UnregisteredRecordType.class)));
   }
 }
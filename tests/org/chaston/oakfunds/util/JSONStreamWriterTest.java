@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.util;
+
+import com.google.common.collect.ImmutableList;
+import org.json.simple.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * TODO(mchaston): write JavaDocs
+ */
+@RunWith(JUnit4.class)
+public class JSONStreamWriterTest {
+
+  @Test
+  public void writeNested() throws IOException {
+    StringWriter stringWriter = new StringWriter();
+    new JSONStreamWriter(stringWriter)
+        .beginObject()
+        .member("name", "a \"quoted\" name")
+        .member("count", 3)
+        .name("values").beginArray()
+            .value(1)
+            .value(null)
+            .beginObject().member("flag", true).endObject()
+            .beginArray().endArray()
+        .endArray()
+        .name("empty").beginObject().endObject()
+        .endObject();
+    assertEquals("{\"name\":\"a \\\"quoted\\\" name\",\"count\":3,"
+        + "\"values\":[1,null,{\"flag\":true},[]],\"empty\":{}}",
+        stringWriter.toString());
+  }
+
+  @Test
+  public void writeRepresentables() throws IOException {
+    JSONRepresentable jsonRepresentable = new JSONRepresentable() {
+      @Override
+      public JSONObject toJSONObject() {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("id", 1);
+        return jsonObject;
+      }
+    };
+    JSONStreamable jsonStreamable = new JSONStreamable() {
+      @Override
+      public void writeJSON(JSONStreamWriter writer) throws IOException {
+        writer.beginObject().member("id", 2).endObject();
+      }
+
+      @Override
+      public JSONObject toJSONObject() {
+        throw new UnsupportedOperationException();
+      }
+    };
+    StringWriter stringWriter = new StringWriter();
+    JSONUtils.writeJSONString(new PrintWriter(stringWriter),
+        ImmutableList.<JSONRepresentable>of(jsonRepresentable, jsonStreamable, jsonRepresentable));
+    assertEquals("[{\"id\":1},{\"id\":2},{\"id\":1}]", stringWriter.toString());
+  }
+}
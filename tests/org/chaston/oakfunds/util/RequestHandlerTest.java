@@ -0,0 +1,184 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.util;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import org.chaston.oakfunds.account.AccountCode;
+import org.chaston.oakfunds.account.AccountCodeManager;
+import org.chaston.oakfunds.account.AccountCodeModule;
+import org.chaston.oakfunds.bootstrap.BootstrapModule;
+import org.chaston.oakfunds.jdbc.DatabaseTearDown;
+import org.chaston.oakfunds.ledger.AccountTransaction;
+import org.chaston.oakfunds.ledger.BankAccount;
+import org.chaston.oakfunds.ledger.BankAccountType;
+import org.chaston.oakfunds.ledger.LedgerManager;
+import org.chaston.oakfunds.ledger.LedgerModule;
+import org.chaston.oakfunds.security.AuthenticationScope;
+import org.chaston.oakfunds.security.TestUserAuthenticatorModule;
+import org.chaston.oakfunds.security.UserAuthenticationManager;
+import org.chaston.oakfunds.security.UserSecurityModule;
+import org.chaston.oakfunds.storage.RecordIterator;
+import org.chaston.oakfunds.storage.StorageException;
+import org.chaston.oakfunds.storage.StorageInstrumentation;
+import org.chaston.oakfunds.storage.Store;
+import org.chaston.oakfunds.storage.TestStorageModule;
+import org.chaston.oakfunds.storage.Transaction;
+import org.chaston.oakfunds.storage.mgmt.SchemaDeploymentTask;
+import org.chaston.oakfunds.xsrf.XsrfUtil;
+import org.joda.time.Instant;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * TODO(mchaston): write JavaDocs
+ */
+@RunWith(JUnit4.class)
+public class RequestHandlerTest {
+
+  private static final Logger requestHandlerLogger =
+      Logger.getLogger(RequestHandler.class.getName());
+
+  @Inject
+  private AccountCodeManager accountCodeManager;
+  @Inject
+  private UserAuthenticationManager userAuthenticationManager;
+  @Inject
+  private LedgerManager ledgerManager;
+  @Inject
+  private Store store;
+  @Inject
+  private StorageInstrumentation storageInstrumentation;
+  @Inject
+  private SchemaDeploymentTask schemaDeploymentTask;
+  @Inject
+  private DatabaseTearDown databaseTearDown;
+
+  private RequestHandler requestHandler;
+  private final List<LogRecord> logRecords = new ArrayList<>();
+  private final Handler logHandler = new Handler() {
+    @Override
+    public void publish(LogRecord record) {
+      logRecords.add(record);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+  };
+
+  @Before
+  public void setUp() throws Exception {
+    Injector injector = Guice.createInjector(
+        new AccountCodeModule(),
+        new BootstrapModule(),
+        new LedgerModule(),
+        new UserSecurityModule(),
+        new TestStorageModule(),
+        new TestUserAuthenticatorModule());
+    injector.injectMembers(this);
+
+    XsrfUtil xsrfUtil = mock(XsrfUtil.class);
+    when(xsrfUtil.verifyXsrfToken(any(HttpServletRequest.class))).thenReturn(true);
+    requestHandler = new RequestHandler(store, userAuthenticationManager, xsrfUtil,
+        storageInstrumentation);
+
+    requestHandlerLogger.addHandler(logHandler);
+    requestHandlerLogger.setLevel(Level.FINE);
+  }
+
+  @After
+  public void teardown() throws SQLException {
+    requestHandlerLogger.removeHandler(logHandler);
+    requestHandlerLogger.setLevel(null);
+    databaseTearDown.teardown();
+  }
+
+  @Test
+  public void streamedStatementsCountTowardsRequest() throws Exception {
+    final BankAccount bankAccount;
+    AuthenticationScope authenticationScope = userAuthenticationManager.authenticateUser();
+    try {
+      Transaction transaction = store.startTransaction();
+      AccountCode accountCode = accountCodeManager.createAccountCode(80000, "Operating");
+      bankAccount = ledgerManager.createBankAccount(accountCode, "Bob's bank",
+          BankAccountType.OPERATING);
+      ledgerManager.recordTransaction(bankAccount, Instant.parse("2014-01-15"),
+          BigDecimalUtil.valueOf(1000));
+      ledgerManager.recordTransaction(bankAccount, Instant.parse("2014-02-15"),
+          BigDecimalUtil.valueOf(2000));
+      transaction.commit();
+    } finally {
+      authenticationScope.close();
+    }
+
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getMethod()).thenReturn("GET");
+    when(request.getRequestURI())
+        .thenReturn("/ledger/account/" + bankAccount.getId() + "/transactions");
+    final List<AccountTransaction> written = new ArrayList<>();
+    requestHandler.handle(request, mock(HttpServletResponse.class),
+        new RequestHandler.Action<RecordIterator<AccountTransaction>>() {
+          @Override
+          public RecordIterator<AccountTransaction> doAction(HttpServletRequest request)
+              throws StorageException {
+            return ledgerManager.getAccountTransactions(bankAccount, null, 0);
+          }
+        },
+        new RequestHandler.ResponseWriter<RecordIterator<AccountTransaction>>() {
+          @Override
+          public void writeResponse(RecordIterator<AccountTransaction> accountTransactions,
+              HttpServletResponse response) throws IOException {
+            try {
+              Iterators.addAll(written, accountTransactions);
+            } finally {
+              accountTransactions.close();
+            }
+          }
+        });
+
+    assertEquals(2, written.size());
+    String summary = Iterables.getOnlyElement(logRecords).getMessage();
+    assertTrue(summary, summary.contains("stream_instant_records: 1"));
+  }
+}
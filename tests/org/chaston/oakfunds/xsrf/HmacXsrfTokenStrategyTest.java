@@ -0,0 +1,72 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.xsrf;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * TODO(mchaston): write JavaDocs
+ */
+@RunWith(JUnit4.class)
+public class HmacXsrfTokenStrategyTest {
+  private static final byte[] KEY = "test key".getBytes(Charset.forName("UTF-8"));
+
+  @Test
+  public void testSign() throws GeneralSecurityException {
+    HmacXsrfTokenStrategy strategy = new HmacXsrfTokenStrategy(KEY);
+    String token = strategy.sign("foo");
+    assertTrue(strategy.accepts(token));
+    assertTrue(strategy.verify("foo", token));
+    // The MAC is reused, so check that it was reset.
+    assertTrue(strategy.verify("foo", strategy.sign("foo")));
+  }
+
+  @Test
+  public void testVerifyOtherMaterial() throws GeneralSecurityException {
+    HmacXsrfTokenStrategy strategy = new HmacXsrfTokenStrategy(KEY);
+    assertFalse(strategy.verify("bar", strategy.sign("foo")));
+  }
+
+  @Test
+  public void testVerifyOtherKey() throws GeneralSecurityException {
+    HmacXsrfTokenStrategy strategy = new HmacXsrfTokenStrategy(KEY);
+    HmacXsrfTokenStrategy otherStrategy =
+        new HmacXsrfTokenStrategy("other key".getBytes(Charset.forName("UTF-8")));
+    String token = strategy.sign("foo");
+    assertNotEquals(token, otherStrategy.sign("foo"));
+    assertFalse(otherStrategy.verify("foo", token));
+  }
+
+  @Test
+  public void testLegacyTokensNotAccepted() throws GeneralSecurityException {
+    HmacXsrfTokenStrategy strategy = new HmacXsrfTokenStrategy(KEY);
+    String legacyToken = "dGhpcyBpcyBub3QgYSByZWFsIHNpZ25hdHVyZQ==";
+    assertFalse(strategy.accepts(legacyToken));
+    assertFalse(strategy.verify("foo", legacyToken));
+    // XsrfSigner accepts any Base64 token, so these must never look like one.
+    assertFalse(Base64.isBase64(strategy.sign("foo")));
+  }
+}
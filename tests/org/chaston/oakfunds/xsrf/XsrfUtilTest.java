@@ -0,0 +1,104 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.xsrf;
+
+import com.google.common.collect.ImmutableList;
+import org.chaston.oakfunds.security.TestUserAuthenticator;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import javax.servlet.ServletException;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * TODO(mchaston): write JavaDocs
+ */
+@RunWith(JUnit4.class)
+public class XsrfUtilTest {
+
+  private HmacXsrfTokenStrategy hmacXsrfTokenStrategy;
+  private LegacyXsrfTokenStrategy legacyXsrfTokenStrategy;
+
+  @Before
+  public void setUp() throws GeneralSecurityException {
+    hmacXsrfTokenStrategy =
+        new HmacXsrfTokenStrategy("test key".getBytes(Charset.forName("UTF-8")));
+    legacyXsrfTokenStrategy = new LegacyXsrfTokenStrategy();
+  }
+
+  @Test
+  public void verifyTokenFromEitherStrategy() throws Exception {
+    XsrfUtil xsrfUtil = createXsrfUtil(0);
+    assertTrue(xsrfUtil.verifyXsrfToken(
+        hmacXsrfTokenStrategy.sign(TestUserAuthenticator.TEST_USER_IDENTIFIER)));
+    assertTrue(xsrfUtil.verifyXsrfToken(
+        legacyXsrfTokenStrategy.sign(TestUserAuthenticator.TEST_USER_IDENTIFIER)));
+    assertFalse(xsrfUtil.verifyXsrfToken(hmacXsrfTokenStrategy.sign("other_user")));
+    assertFalse(xsrfUtil.verifyXsrfToken(legacyXsrfTokenStrategy.sign("other_user")));
+    assertFalse(xsrfUtil.verifyXsrfToken(""));
+  }
+
+  @Test
+  public void verifiedTokensAreCached() throws ServletException {
+    XsrfUtil xsrfUtil = createXsrfUtil(10);
+    String token = legacyXsrfTokenStrategy.sign(TestUserAuthenticator.TEST_USER_IDENTIFIER);
+    assertTrue(xsrfUtil.verifyXsrfToken(token));
+    assertTrue(xsrfUtil.verifyXsrfToken(token));
+    assertEquals(1, legacyXsrfTokenStrategy.verifications);
+
+    // Failures are never cached.
+    String badToken = legacyXsrfTokenStrategy.sign("other_user");
+    assertFalse(xsrfUtil.verifyXsrfToken(badToken));
+    assertFalse(xsrfUtil.verifyXsrfToken(badToken));
+    assertEquals(3, legacyXsrfTokenStrategy.verifications);
+  }
+
+  private XsrfUtil createXsrfUtil(int verifiedTokenCacheSize) {
+    return new XsrfUtil(new TestUserAuthenticator(), hmacXsrfTokenStrategy,
+        ImmutableList.<XsrfTokenStrategy>of(hmacXsrfTokenStrategy, legacyXsrfTokenStrategy),
+        verifiedTokenCacheSize);
+  }
+
+  /**
+   * Stands in for the RSA signer, which needs the production keys.
+   */
+  private static class LegacyXsrfTokenStrategy implements XsrfTokenStrategy {
+    private int verifications;
+
+    @Override
+    public boolean accepts(String token) {
+      return token.startsWith("legacy:");
+    }
+
+    @Override
+    public String sign(String material) {
+      return "legacy:" + material;
+    }
+
+    @Override
+    public boolean verify(String material, String token) {
+      verifications++;
+      return token.equals(sign(material));
+    }
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014 Miles Chaston
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.chaston.oakfunds.ledger;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.chaston.oakfunds.account.AccountCodeModule;
+import org.chaston.oakfunds.jdbc.RemoteDataStoreModule;
+import org.chaston.oakfunds.security.AuthenticationScope;
+import org.chaston.oakfunds.security.SystemAuthenticationManager;
+import org.chaston.oakfunds.security.SystemSecurityModule;
+import org.chaston.oakfunds.storage.RecordTypeRegistryModule;
+import org.chaston.oakfunds.storage.StorageModule;
+import org.chaston.oakfunds.storage.Store;
+import org.chaston.oakfunds.storage.Transaction;
+import org.chaston.oakfunds.util.Flags;
+
+/**
+ * Rebuilds the balance checkpoints of every account from its transactions. Used to backfill the
+ * checkpoints for data that was recorded before they existed.
+ */
+public class BalanceCheckpointRebuilderCmd {
+  public static void main(String[] args) throws Exception {
+    Flags.parse(args);
+    Injector injector = Guice.createInjector(
+        new AccountCodeModule(),
+        new LedgerModule(),
+        new RecordTypeRegistryModule(),
+        new RemoteDataStoreModule(),
+        new StorageModule(),
+        new SystemSecurityModule());
+
+    SystemAuthenticationManager authenticationManager =
+        injector.getInstance(SystemAuthenticationManager.class);
+    LedgerManager ledgerManager = injector.getInstance(LedgerManager.class);
+    Store store = injector.getInstance(Store.class);
+    try (AuthenticationScope authenticationScope = authenticationManager.authenticateSystem()) {
+      for (Account account : ledgerManager.getAccounts()) {
+        // Each account is rebuilt in its own transaction to keep them short.
+        Transaction transaction = store.startTransaction();
+        boolean success = false;
+        try {
+          ledgerManager.rebuildBalanceCheckpoints(account);
+          success = true;
+        } finally {
+          if (success) {
+            transaction.commit();
+          } else {
+            transaction.rollback();
+          }
+        }
+        System.out.println("Rebuilt balance checkpoints for " + account.getTitle() + ".");
+      }
+    }
+
+    System.out.println("** Balance checkpoints rebuilt successfully. **");
+  }
+}